@@ -23,6 +23,7 @@ package org.canova.api.berkeley;
 import java.io.Serializable;
 import java.text.NumberFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -32,6 +33,10 @@ import java.util.NoSuchElementException;
  * not efficiently support containment, removal, or element promotion
  * (decreaseKey) -- these methods are therefore not yet implemented.  It is a maximum
  * priority queue, so next() gives the highest-priority object.
+ * <p>
+ * When constructed with a {@link Comparator} the elements themselves are
+ * ordered by it and the priorities are only carried along; next() then gives
+ * the greatest element according to the comparator.
  *
  * @author Dan Klein
  */
@@ -41,6 +46,7 @@ public class PriorityQueue<E> implements Iterator<E>, Serializable, Cloneable, P
 	int capacity;
 	List<E> elements;
 	double[] priorities;
+	Comparator<? super E> comparator;
 
 	protected void grow(int newCapacity) {
 		List<E> newElements = new ArrayList<>(newCapacity);
@@ -66,10 +72,22 @@ public class PriorityQueue<E> implements Iterator<E>, Serializable, Cloneable, P
 		return 2 * loc + 2;
 	}
 
+	/**
+	 * Orders the entries at the two heap locations: positive if the entry
+	 * at loc1 should come out of the queue before the entry at loc2.
+	 */
+	protected int compare(int loc1, int loc2) {
+		if (comparator != null)
+			return comparator.compare(elements.get(loc1), elements.get(loc2));
+		if (priorities[loc1] > priorities[loc2]) return 1;
+		if (priorities[loc1] < priorities[loc2]) return -1;
+		return 0;
+	}
+
 	protected void heapifyUp(int loc) {
 		if (loc == 0) return;
 		int parent = parent(loc);
-		if (priorities[loc] > priorities[parent]) {
+		if (compare(loc, parent) > 0) {
 			swap(loc, parent);
 			heapifyUp(parent);
 		}
@@ -79,14 +97,11 @@ public class PriorityQueue<E> implements Iterator<E>, Serializable, Cloneable, P
 		int max = loc;
 		int leftChild = leftChild(loc);
 		if (leftChild < size()) {
-			double priority = priorities[loc];
-			double leftChildPriority = priorities[leftChild];
-			if (leftChildPriority > priority) max = leftChild;
+			if (compare(leftChild, loc) > 0) max = leftChild;
 			int rightChild = rightChild(loc);
 			if (rightChild < size()) {
-				double rightChildPriority = priorities[rightChild(loc)];
-				if (rightChildPriority > priority
-						&& rightChildPriority > leftChildPriority) max = rightChild;
+				if (compare(rightChild, loc) > 0
+						&& compare(rightChild, leftChild) > 0) max = rightChild;
 			}
 		}
 		if (max == loc) return;
@@ -246,6 +261,7 @@ public class PriorityQueue<E> implements Iterator<E>, Serializable, Cloneable, P
 	@Override
 	public PriorityQueue<E> clone() {
 		PriorityQueue<E> clonePQ = new PriorityQueue<E>();
+		clonePQ.comparator = comparator;
 		clonePQ.size = size;
 		clonePQ.capacity = capacity;
 		clonePQ.elements = new ArrayList<E>(capacity);
@@ -269,6 +285,17 @@ public class PriorityQueue<E> implements Iterator<E>, Serializable, Cloneable, P
 		grow(legalCapacity);
 	}
 
+	/**
+	 * A queue whose elements are ordered by the given comparator rather than
+	 * by their priorities.
+	 * @param capacity the initial capacity
+	 * @param comparator the element ordering; the greatest element is returned first
+	 */
+	public PriorityQueue(int capacity, Comparator<? super E> comparator) {
+		this(capacity);
+		this.comparator = comparator;
+	}
+
 	public static void main(String[] args) {
 		PriorityQueue<String> pq = new PriorityQueue<String>();
 		System.out.println(pq);
@@ -368,7 +368,7 @@ public class Configuration implements Iterable<Map.Entry<String,String>>,
 
     private static Pattern varPat = Pattern.compile("\\$\\{[^\\}\\$\u0020]+\\}");
 
-  private String substituteVars(String expr) {
+    String substituteVars(String expr) {
         if (expr == null) {
             return null;
         }
@@ -428,6 +428,20 @@ public class Configuration implements Iterable<Map.Entry<String,String>>,
         return getProps().getProperty(name);
     }
 
+    /**
+     * An immutable snapshot of this configuration for sharing across threads.
+     *
+     * All values are variable expanded once up front and held in a plain map,
+     * so lookups take no locks, and typed getters cache their parsed values.
+     * Setters on the snapshot throw {@link UnsupportedOperationException};
+     * later changes to this configuration are not reflected in it.
+     *
+     * @return the frozen configuration
+     */
+    public Configuration freeze() {
+        return new FrozenConfiguration(this);
+    }
+
     /**
      * Set the <code>value</code> of the <code>name</code> property.
      *
@@ -486,16 +500,20 @@ public class Configuration implements Iterable<Map.Entry<String,String>>,
         if (valueString == null)
             return defaultValue;
         try {
-            String hexString = getHexDigits(valueString);
-            if (hexString != null) {
-                return Integer.parseInt(hexString, 16);
-            }
-            return Integer.parseInt(valueString);
+            return parseInt(valueString);
         } catch (NumberFormatException e) {
             return defaultValue;
         }
     }
 
+    static int parseInt(String valueString) {
+        String hexString = getHexDigits(valueString);
+        if (hexString != null) {
+            return Integer.parseInt(hexString, 16);
+        }
+        return Integer.parseInt(valueString);
+    }
+
     /**
      * Set the value of the <code>name</code> property to an <code>int</code>.
      *
@@ -522,17 +540,21 @@ public class Configuration implements Iterable<Map.Entry<String,String>>,
         if (valueString == null)
             return defaultValue;
         try {
-            String hexString = getHexDigits(valueString);
-            if (hexString != null) {
-                return Long.parseLong(hexString, 16);
-            }
-            return Long.parseLong(valueString);
+            return parseLong(valueString);
         } catch (NumberFormatException e) {
             return defaultValue;
         }
     }
 
-    private String getHexDigits(String value) {
+    static long parseLong(String valueString) {
+        String hexString = getHexDigits(valueString);
+        if (hexString != null) {
+            return Long.parseLong(hexString, 16);
+        }
+        return Long.parseLong(valueString);
+    }
+
+    private static String getHexDigits(String value) {
         boolean negative = false;
         String str = value;
         String hexString;
@@ -0,0 +1,173 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.conf;
+
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable snapshot of a {@link Configuration}, see {@link Configuration#freeze()}.
+ *
+ * Values are variable expanded once when the snapshot is taken. Both the raw
+ * and the expanded values live in plain hash maps that are never written after
+ * construction, so reads are lock free and the snapshot can be shared by any
+ * number of reader threads. Parsed numeric values are cached per key.
+ *
+ * @author Adam Gibson
+ */
+public class FrozenConfiguration extends Configuration {
+
+    //marks a value that is missing or doesn't parse, the caller's default applies
+    private static final Object INVALID = new Object();
+
+    private final Map<String, String> raw = new HashMap<>();
+    private final Map<String, String> values = new HashMap<>();
+    private final ConcurrentMap<String, Object> ints = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> longs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Object> floats = new ConcurrentHashMap<>();
+
+    FrozenConfiguration(Configuration other) {
+        super(other);
+        for (Map.Entry<String, String> entry : other)
+            raw.put(entry.getKey(), entry.getValue());
+        for (String key : raw.keySet())
+            values.put(key, other.get(key));
+    }
+
+    @Override
+    public Configuration freeze() {
+        return this;
+    }
+
+    @Override
+    public String get(String name) {
+        return values.get(name);
+    }
+
+    @Override
+    public String get(String name, String defaultValue) {
+        String value = values.get(name);
+        return value != null ? value : substituteVars(defaultValue);
+    }
+
+    @Override
+    public String getRaw(String name) {
+        return raw.get(name);
+    }
+
+    @Override
+    public int getInt(String name, int defaultValue) {
+        Object parsed = ints.get(name);
+        if (parsed == null) {
+            try {
+                String value = values.get(name);
+                parsed = value == null ? INVALID : Integer.valueOf(parseInt(value));
+            } catch (NumberFormatException e) {
+                parsed = INVALID;
+            }
+            ints.putIfAbsent(name, parsed);
+        }
+        return parsed == INVALID ? defaultValue : (Integer) parsed;
+    }
+
+    @Override
+    public long getLong(String name, long defaultValue) {
+        Object parsed = longs.get(name);
+        if (parsed == null) {
+            try {
+                String value = values.get(name);
+                parsed = value == null ? INVALID : Long.valueOf(parseLong(value));
+            } catch (NumberFormatException e) {
+                parsed = INVALID;
+            }
+            longs.putIfAbsent(name, parsed);
+        }
+        return parsed == INVALID ? defaultValue : (Long) parsed;
+    }
+
+    @Override
+    public float getFloat(String name, float defaultValue) {
+        Object parsed = floats.get(name);
+        if (parsed == null) {
+            try {
+                String value = values.get(name);
+                parsed = value == null ? INVALID : Float.valueOf(value);
+            } catch (NumberFormatException e) {
+                parsed = INVALID;
+            }
+            floats.putIfAbsent(name, parsed);
+        }
+        return parsed == INVALID ? defaultValue : (Float) parsed;
+    }
+
+    @Override
+    public boolean getBoolean(String name, boolean defaultValue) {
+        String valueString = values.get(name);
+        return "true".equals(valueString) ||
+                !"false".equals(valueString) && defaultValue;
+    }
+
+    @Override
+    public void set(String name, String value) {
+        throw new UnsupportedOperationException("Configuration is frozen");
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException("Configuration is frozen");
+    }
+
+    @Override
+    public void addResource(String name) {
+        throw new UnsupportedOperationException("Configuration is frozen");
+    }
+
+    @Override
+    public void addResource(URL url) {
+        throw new UnsupportedOperationException("Configuration is frozen");
+    }
+
+    @Override
+    public void addResource(InputStream in) {
+        throw new UnsupportedOperationException("Configuration is frozen");
+    }
+
+    @Override
+    public void reloadConfiguration() {
+        //a snapshot doesn't pick up newly added default resources
+    }
+
+    @Override
+    public int size() {
+        return raw.size();
+    }
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        return Collections.unmodifiableMap(raw).entrySet().iterator();
+    }
+}
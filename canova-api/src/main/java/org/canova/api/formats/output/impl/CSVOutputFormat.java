@@ -26,6 +26,7 @@ import org.canova.api.exceptions.CanovaException;
 import org.canova.api.formats.output.OutputFormat;
 import org.canova.api.records.writer.RecordWriter;
 import org.canova.api.records.writer.impl.CSVRecordWriter;
+import org.canova.api.records.writer.impl.FileRecordWriter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -40,7 +41,7 @@ public class CSVOutputFormat implements OutputFormat {
     public RecordWriter createWriter(Configuration conf) throws CanovaException {
         String outputPath = conf.get(OutputFormat.OUTPUT_PATH,".");
         try {
-            return new CSVRecordWriter(new File(outputPath));
+            return new CSVRecordWriter(new File(outputPath), false, conf.getInt(FileRecordWriter.BUFFER_SIZE, 0));
         } catch (FileNotFoundException e) {
             throw new CanovaException(e);
         }
@@ -27,6 +27,7 @@ import org.canova.api.exceptions.CanovaException;
 import org.canova.api.formats.output.OutputFormat;
 import org.canova.api.records.writer.RecordWriter;
 import org.canova.api.records.writer.impl.LineRecordWriter;
+import org.canova.api.records.writer.impl.FileRecordWriter;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -40,7 +41,7 @@ public class LineOutputFormat implements OutputFormat {
     public RecordWriter createWriter(Configuration conf) throws CanovaException {
         String outputPath = conf.get(OutputFormat.OUTPUT_PATH,".");
         try {
-            return new LineRecordWriter(new File(outputPath));
+            return new LineRecordWriter(new File(outputPath), false, conf.getInt(FileRecordWriter.BUFFER_SIZE, 0));
         } catch (FileNotFoundException e) {
             throw new CanovaException(e);
         }
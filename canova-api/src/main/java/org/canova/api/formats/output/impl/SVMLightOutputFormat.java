@@ -26,6 +26,7 @@ import org.canova.api.conf.Configuration;
 import org.canova.api.exceptions.CanovaException;
 import org.canova.api.formats.output.OutputFormat;
 import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.records.writer.impl.FileRecordWriter;
 import org.canova.api.records.writer.impl.SVMLightRecordWriter;
 
 import java.io.File;
@@ -40,7 +41,7 @@ public class SVMLightOutputFormat implements OutputFormat {
         String outputPath = conf.get(OutputFormat.OUTPUT_PATH,".");
         try {
             //return new LineRecordWriter(new File(outputPath));
-		return new SVMLightRecordWriter(new File(outputPath));
+		return new SVMLightRecordWriter(new File(outputPath),false,conf.getInt(FileRecordWriter.BUFFER_SIZE,0));
         } catch (Exception e) {
             throw new CanovaException(e);
         }
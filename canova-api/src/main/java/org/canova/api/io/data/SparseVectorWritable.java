@@ -0,0 +1,172 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.api.io.data;
+
+
+import org.canova.api.io.WritableUtils;
+import org.canova.api.writable.Writable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writable for a sparse block of a vector: a fixed width and the
+ * non zero entries in ascending index order.
+ *
+ * A record may mix plain scalar writables and sparse blocks. Record
+ * writers lay them out in order, so a block of width n takes up the
+ * indices [offset, offset + n) of the final vector and only its non zero
+ * entries are ever written.
+ *
+ * @author Adam Gibson
+ */
+public class SparseVectorWritable implements Writable {
+
+    private int size;
+    private int numNonZero;
+    private int[] indices;
+    private double[] values;
+
+    public SparseVectorWritable() {
+        this(0);
+    }
+
+    /**
+     * @param size the width of the block
+     */
+    public SparseVectorWritable(int size) {
+        this.size = size;
+        this.indices = new int[4];
+        this.values = new double[4];
+    }
+
+    /**
+     * Adds value to the entry at index, keeping entries sorted.
+     * Entries that add up to zero are kept until written.
+     * @param index the index within the block
+     * @param value the value to add
+     */
+    public void add(int index, double value) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        int pos = Arrays.binarySearch(indices, 0, numNonZero, index);
+        if (pos >= 0) {
+            values[pos] += value;
+            return;
+        }
+        pos = -pos - 1;
+        if (numNonZero == indices.length) {
+            indices = Arrays.copyOf(indices, numNonZero * 2);
+            values = Arrays.copyOf(values, numNonZero * 2);
+        }
+        System.arraycopy(indices, pos, indices, pos + 1, numNonZero - pos);
+        System.arraycopy(values, pos, values, pos + 1, numNonZero - pos);
+        indices[pos] = index;
+        values[pos] = value;
+        numNonZero++;
+    }
+
+    /** Removes all entries, keeping the width */
+    public void clear() {
+        numNonZero = 0;
+    }
+
+    /** The width of the block */
+    public int size() { return size; }
+
+    /** The number of stored entries */
+    public int numNonZero() { return numNonZero; }
+
+    /** The index of the i'th stored entry */
+    public int indexAt(int i) { return indices[i]; }
+
+    /** The value of the i'th stored entry */
+    public double valueAt(int i) { return values[i]; }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        WritableUtils.writeVInt(out, size);
+        WritableUtils.writeVInt(out, numNonZero);
+        int last = 0;
+        for (int i = 0; i < numNonZero; i++) {
+            //indices are ascending, so deltas stay small
+            WritableUtils.writeVInt(out, indices[i] - last);
+            last = indices[i];
+            out.writeDouble(values[i]);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        size = WritableUtils.readVInt(in);
+        numNonZero = WritableUtils.readVInt(in);
+        if (indices.length < numNonZero) {
+            indices = new int[numNonZero];
+            values = new double[numNonZero];
+        }
+        int last = 0;
+        for (int i = 0; i < numNonZero; i++) {
+            last += WritableUtils.readVInt(in);
+            indices[i] = last;
+            values[i] = in.readDouble();
+        }
+    }
+
+    /**
+     * Returns true iff <code>o</code> is a SparseVectorWritable with the same width and entries.
+     */
+    public boolean equals(Object o) {
+        if (!(o instanceof SparseVectorWritable))
+            return false;
+        SparseVectorWritable other = (SparseVectorWritable) o;
+        if (size != other.size || numNonZero != other.numNonZero)
+            return false;
+        for (int i = 0; i < numNonZero; i++)
+            if (indices[i] != other.indices[i] || values[i] != other.values[i])
+                return false;
+        return true;
+    }
+
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < numNonZero; i++) {
+            //+ 0.0 turns -0.0 into 0.0, which equals() treats as the same value
+            long bits = Double.doubleToLongBits(values[i] + 0.0);
+            hash = 31 * (31 * hash + indices[i]) + (int) (bits ^ (bits >>> 32));
+        }
+        return hash;
+    }
+
+    /**
+     * The entries as space separated index:value pairs, indices relative to the block
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < numNonZero; i++) {
+            if (i > 0)
+                sb.append(' ');
+            sb.append(indices[i]).append(':').append(values[i]);
+        }
+        return sb.toString();
+    }
+
+}
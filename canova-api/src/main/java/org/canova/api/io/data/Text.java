@@ -180,6 +180,148 @@ public class Text extends BinaryComparable
             return -1;
         }
     }
+    /**
+     * Reusable byte ranges of a {@link Text}, filled in by
+     * {@link Text#split(byte, Slices)}. Each slice is the half open range
+     * [start, end) of the backing buffer.
+     */
+    public static class Slices {
+        private int[] starts = new int[16];
+        private int[] ends = new int[16];
+        private int size;
+
+        /** Number of slices */
+        public int size() { return size; }
+
+        /** Offset of the first byte of slice i */
+        public int start(int i) { return starts[i]; }
+
+        /** Offset one past the last byte of slice i */
+        public int end(int i) { return ends[i]; }
+
+        /** Number of bytes in slice i */
+        public int length(int i) { return ends[i] - starts[i]; }
+
+        void clear() { size = 0; }
+
+        void add(int start, int end) {
+            if (size == starts.length) {
+                starts = java.util.Arrays.copyOf(starts, size * 2);
+                ends = java.util.Arrays.copyOf(ends, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            size++;
+        }
+    }
+
+    /**
+     * Splits the valid bytes on a single byte delimiter without decoding.
+     * Like {@link String#split(String)} trailing empty slices are dropped.
+     * A delimiter below 0x80 never matches inside a multi byte UTF-8 character.
+     * @param delimiter the byte to split on
+     * @param slices the slices to reuse; cleared first
+     * @return slices
+     */
+    public Slices split(byte delimiter, Slices slices) {
+        slices.clear();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == delimiter) {
+                slices.add(start, i);
+                start = i + 1;
+            }
+        }
+        slices.add(start, length);
+        // match String.split: drop trailing empty strings, but keep one for an empty text
+        while (slices.size > 1 && slices.length(slices.size - 1) == 0)
+            slices.size--;
+        if (slices.size == 1 && length > 0 && slices.length(0) == 0)
+            slices.size = 0;
+        return slices;
+    }
+
+    /**
+     * Splits the valid bytes on a single byte delimiter
+     * @see #split(byte, Slices)
+     */
+    public Slices split(byte delimiter) {
+        return split(delimiter, new Slices());
+    }
+
+    /**
+     * Parses a double from a range of the valid bytes
+     * @see #parseDouble(byte[], int, int)
+     */
+    public double parseDouble(int start, int end) {
+        checkRange(start, end);
+        return parseDouble(bytes, start, end);
+    }
+
+    /**
+     * Parses the whole text as a double
+     */
+    public double parseDouble() {
+        return parseDouble(bytes, 0, length);
+    }
+
+    /**
+     * Parses an int from a range of the valid bytes
+     * @see #parseInt(byte[], int, int)
+     */
+    public int parseInt(int start, int end) {
+        checkRange(start, end);
+        return parseInt(bytes, start, end);
+    }
+
+    /**
+     * Parses the whole text as an int
+     */
+    public int parseInt() {
+        return parseInt(bytes, 0, length);
+    }
+
+    /**
+     * Removes leading and trailing ASCII whitespace (bytes &lt;= ' ', as {@link String#trim()}) in place.
+     * @return this
+     */
+    public Text trim() {
+        int start = trimStart(bytes, 0, length);
+        int end = trimEnd(bytes, start, length);
+        if (start > 0)
+            System.arraycopy(bytes, start, bytes, 0, end - start);
+        length = end - start;
+        return this;
+    }
+
+    /**
+     * Compares to another text ignoring ASCII case.
+     * @see #compareIgnoreCase(byte[], int, int, byte[], int, int)
+     */
+    public int compareToIgnoreCase(Text other) {
+        return compareIgnoreCase(bytes, 0, length, other.getBytes(), 0, other.getLength());
+    }
+
+    /**
+     * Whether this equals the given ASCII string ignoring case, without decoding
+     * @param ascii the string to compare to
+     */
+    public boolean equalsIgnoreCase(String ascii) {
+        if (ascii.length() != length)
+            return false;
+        for (int i = 0; i < length; i++) {
+            char c = ascii.charAt(i);
+            if (c >= 0x80 || toLowerAscii(bytes[i]) != toLowerAscii((byte) c))
+                return false;
+        }
+        return true;
+    }
+
+    private void checkRange(int start, int end) {
+        if (start < 0 || end > length || start > end)
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+    }
+
     /** Set to contain the contents of a string.
      */
     public void set(String string) {
@@ -401,6 +543,153 @@ public class Text extends BinaryComparable
         return bytes;
     }
 
+    // exact powers of ten for the fast path of parseDouble
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Parses a double from UTF-8 bytes in the range [start, end) without
+     * decoding them to a String. Plain decimals with up to 15 significant digits
+     * and a small exponent are converted exactly; anything else (long mantissas,
+     * large exponents, NaN, Infinity, hex) is handed to {@link Double#parseDouble(String)},
+     * so results always match it.
+     * @throws NumberFormatException if the range isn't a number
+     */
+    public static double parseDouble(byte[] utf8, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (utf8[i] == '-' || utf8[i] == '+')) {
+            negative = utf8[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean sawDigit = false;
+        for (; i < end && utf8[i] >= '0' && utf8[i] <= '9'; i++) {
+            sawDigit = true;
+            if (mantissa != 0 || utf8[i] != '0')
+                digits++;
+            mantissa = mantissa * 10 + (utf8[i] - '0');
+            if (digits > 15)
+                return parseDoubleSlow(utf8, start, end);
+        }
+        if (i < end && utf8[i] == '.') {
+            for (i++; i < end && utf8[i] >= '0' && utf8[i] <= '9'; i++) {
+                sawDigit = true;
+                if (mantissa != 0 || utf8[i] != '0')
+                    digits++;
+                mantissa = mantissa * 10 + (utf8[i] - '0');
+                exponent--;
+                if (digits > 15)
+                    return parseDoubleSlow(utf8, start, end);
+            }
+        }
+        if (!sawDigit)
+            return parseDoubleSlow(utf8, start, end);
+        if (i < end && (utf8[i] == 'e' || utf8[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (utf8[i] == '-' || utf8[i] == '+')) {
+                negativeExponent = utf8[i] == '-';
+                i++;
+            }
+            if (i == end)
+                return parseDoubleSlow(utf8, start, end);
+            int e = 0;
+            for (; i < end && utf8[i] >= '0' && utf8[i] <= '9'; i++) {
+                e = e * 10 + (utf8[i] - '0');
+                if (e > 1000)
+                    return parseDoubleSlow(utf8, start, end);
+            }
+            exponent += negativeExponent ? -e : e;
+        }
+        if (i != end || exponent < -22 || exponent > 22)
+            return parseDoubleSlow(utf8, start, end);
+
+        // both the mantissa (< 2^53) and the power of ten are exact, so one rounding gives the correct result
+        double value = exponent < 0 ? mantissa / POWERS_OF_TEN[-exponent] : mantissa * POWERS_OF_TEN[exponent];
+        return negative ? -value : value;
+    }
+
+    private static double parseDoubleSlow(byte[] utf8, int start, int end) {
+        try {
+            return Double.parseDouble(decode(utf8, start, end - start));
+        } catch (CharacterCodingException e) {
+            throw new NumberFormatException("Invalid UTF-8 in number");
+        }
+    }
+
+    /**
+     * Parses a decimal int from UTF-8 bytes in the range [start, end) without
+     * decoding them to a String. Accepts the same input as {@link Integer#parseInt(String)}
+     * for ASCII digits.
+     * @throws NumberFormatException if the range isn't an int
+     */
+    public static int parseInt(byte[] utf8, int start, int end) {
+        if (start >= end)
+            throw new NumberFormatException("Empty int");
+        int i = start;
+        boolean negative = false;
+        if (utf8[i] == '-' || utf8[i] == '+') {
+            negative = utf8[i] == '-';
+            if (++i == end)
+                throw new NumberFormatException("No digits in int");
+        }
+        // accumulate negatively so Integer.MIN_VALUE fits
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int result = 0;
+        for (; i < end; i++) {
+            int digit = utf8[i] - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10)
+                throw new NumberFormatException("Invalid int at byte " + i);
+            result *= 10;
+            if (result < limit + digit)
+                throw new NumberFormatException("Int overflow at byte " + i);
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * First offset in [start, end) that isn't ASCII whitespace, or end
+     */
+    public static int trimStart(byte[] utf8, int start, int end) {
+        while (start < end && (utf8[start] & 0xff) <= ' ')
+            start++;
+        return start;
+    }
+
+    /**
+     * One past the last offset in [start, end) that isn't ASCII whitespace, or start
+     */
+    public static int trimEnd(byte[] utf8, int start, int end) {
+        while (end > start && (utf8[end - 1] & 0xff) <= ' ')
+            end--;
+        return end;
+    }
+
+    /**
+     * Lexicographic order of UTF-8 bytes folding ASCII letters to lower case.
+     * Non ASCII bytes are compared as is.
+     */
+    public static int compareIgnoreCase(byte[] b1, int s1, int l1,
+                                        byte[] b2, int s2, int l2) {
+        int n = Math.min(l1, l2);
+        for (int i = 0; i < n; i++) {
+            int a = toLowerAscii(b1[s1 + i]) & 0xff;
+            int b = toLowerAscii(b2[s2 + i]) & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return l1 - l2;
+    }
+
+    private static byte toLowerAscii(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
     /** Read a UTF8 encoded string from in
      */
     public static String readString(DataInput in) throws IOException {
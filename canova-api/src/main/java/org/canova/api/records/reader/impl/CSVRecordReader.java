@@ -41,6 +41,8 @@ public class CSVRecordReader extends LineRecordReader {
     private boolean skippedLines = false;
     private int skipNumLines = 0;
     private String delimiter = ",";
+    private Text.Slices slices = new Text.Slices();
+    private static final String REGEX_META_CHARS = ".$|()[]{}^?*+\\";
     public final static String SKIP_NUM_LINES = NAME_SPACE + ".skipnumlines";
     public final static String DELIMITER = NAME_SPACE + ".delimiter";
 
@@ -85,12 +87,31 @@ public class CSVRecordReader extends LineRecordReader {
             skippedLines = true;
         }
         Text t =  (Text) super.next().iterator().next();
-        String val = new String(t.getBytes());
-        String[] split = val.split(delimiter);
         List<Writable> ret = new ArrayList<>();
+        if(isByteDelimiter(delimiter)) {
+            //split the raw bytes, no decoding or regex per line
+            slices = t.split((byte) delimiter.charAt(0), slices);
+            byte[] bytes = t.getBytes();
+            for(int i = 0; i < slices.size(); i++) {
+                Text column = new Text();
+                column.set(bytes, slices.start(i), slices.length(i));
+                ret.add(column);
+            }
+            return ret;
+        }
+
+        String[] split = t.toString().split(delimiter);
         for(String s : split)
             ret.add(new Text(s));
         return ret;
 
     }
+
+    /**
+     * Whether the delimiter regex is a single ASCII character matching only itself
+     */
+    private static boolean isByteDelimiter(String delimiter) {
+        return delimiter.length() == 1 && delimiter.charAt(0) < 0x80
+                && REGEX_META_CHARS.indexOf(delimiter.charAt(0)) < 0;
+    }
 }
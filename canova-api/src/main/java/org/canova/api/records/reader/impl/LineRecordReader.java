@@ -73,31 +73,26 @@ public class LineRecordReader implements RecordReader {
     public Collection<Writable> next() {
         List<Writable> ret = new ArrayList<>();
 
-        if(iter.hasNext()) {
+        if(hasNext()) {
             ret.add(new Text(iter.next()));
             return ret;
         }
-        else {
+
+        throw new NoSuchElementException("No more elements found!");
+    }
+
+    @Override
+    public boolean hasNext() {
+        //a split over a directory: move on to the next file once this one is done, skipping empty ones
+        while(iter != null && !iter.hasNext() && locations != null && currIndex < locations.length - 1) {
             currIndex++;
             try {
                 close();
                 iter = IOUtils.lineIterator(new InputStreamReader(locations[currIndex].toURL().openStream()));
             } catch (IOException e) {
-                e.printStackTrace();
-            }
-
-            if(iter.hasNext()) {
-                ret.add(new Text(iter.next()));
-                return ret;
+                throw new IllegalStateException("Unable to read " + locations[currIndex], e);
             }
-
         }
-
-        throw new NoSuchElementException("No more elements found!");
-    }
-
-    @Override
-    public boolean hasNext() {
         return iter != null && iter.hasNext();
     }
 
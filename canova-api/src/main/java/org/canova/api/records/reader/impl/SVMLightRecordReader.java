@@ -32,7 +32,6 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.StringTokenizer;
 
 /**
  * Adapted from the weka svmlight reader
@@ -53,60 +52,43 @@ public class SVMLightRecordReader extends LineRecordReader {
     @Override
     public Collection<Writable> next() {
         Text t =  (Text) super.next().iterator().next();
-        String val = new String(t.getBytes());
+        byte[] bytes = t.getBytes();
+        int length = t.getLength();
         Collection<Writable> ret = new ArrayList<>();
-        StringTokenizer tok;
-        int	index,max;
-        String	col;
-        double	value;
 
-        // actual data
+        // single pass over the raw bytes: tokens are separated by spaces or tabs
         try {
-            // determine max index
-            max = 0;
-            tok = new StringTokenizer(val, " \t");
-            tok.nextToken();  // skip class
-            while (tok.hasMoreTokens()) {
-                col = tok.nextToken();
-                // finished?
-                if (col.startsWith("#"))
-                    break;
-                // qid is not supported
-                if (col.startsWith("qid:"))
-                    continue;
-                // actual value
-                index = Integer.parseInt(col.substring(0, col.indexOf(":")));
-                if (index > max)
-                    max = index;
-            }
-
-            // read values into array
-            tok    = new StringTokenizer(val, " \t");
-
+            int start = skipSeparators(bytes, 0, length);
+            int end = nextSeparator(bytes, start, length);
+            if (start == end)
+                throw new IllegalArgumentException("Missing class");
             // 1. class
-            double classVal = Double.parseDouble(tok.nextToken());
+            double classVal = Text.parseDouble(bytes, start, end);
             int numAttributesAdded = 0;
             // 2. attributes
-            while (tok.hasMoreTokens()) {
-                col  = tok.nextToken();
+            while ((start = skipSeparators(bytes, end, length)) < length) {
+                end = nextSeparator(bytes, start, length);
                 // finished?
-                if (col.startsWith("#"))
+                if (bytes[start] == '#')
                     break;
                 // qid is not supported
-                if (col.startsWith("qid:"))
+                if (end - start >= 4 && bytes[start] == 'q' && bytes[start + 1] == 'i'
+                        && bytes[start + 2] == 'd' && bytes[start + 3] == ':')
                     continue;
+                int colon = start;
+                while (colon < end && bytes[colon] != ':')
+                    colon++;
+                if (colon == end)
+                    throw new IllegalArgumentException("Missing ':' in " + Text.decode(bytes, start, end - start));
                 // actual value
-                index = Integer.parseInt(col.substring(0, col.indexOf(":"))) - 1;
+                int index = Text.parseInt(bytes, start, colon) - 1;
                 if(index > numAttributesAdded) {
-                    int totalDiff = Math.abs(numAttributesAdded - index);
                     for(int i = numAttributesAdded; i < index; i++) {
                         ret.add(new DoubleWritable(0.0));
-
                     }
-                    numAttributesAdded += totalDiff;
+                    numAttributesAdded = index;
                 }
-                value = Double.parseDouble(col.substring(col.indexOf(":") + 1));
-                ret.add(new DoubleWritable(value));
+                ret.add(new DoubleWritable(Text.parseDouble(bytes, colon + 1, end)));
                 numAttributesAdded++;
             }
 
@@ -121,12 +103,24 @@ public class SVMLightRecordReader extends LineRecordReader {
             ret.add(new DoubleWritable(classVal));
         }
         catch (Exception e) {
-            log.error("Error parsing line '" + val + "': ",e);
+            log.error("Error parsing line '" + t + "': ",e);
         }
 
         return ret;
     }
 
+    private static int skipSeparators(byte[] bytes, int i, int end) {
+        while (i < end && (bytes[i] == ' ' || bytes[i] == '\t'))
+            i++;
+        return i;
+    }
+
+    private static int nextSeparator(byte[] bytes, int i, int end) {
+        while (i < end && bytes[i] != ' ' && bytes[i] != '\t')
+            i++;
+        return i;
+    }
+
     @Override
     public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
         super.initialize(conf, split);
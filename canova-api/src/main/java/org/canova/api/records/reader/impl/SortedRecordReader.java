@@ -0,0 +1,154 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.reader.impl;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.sort.ExternalRecordSorter;
+import org.canova.api.split.InputSplit;
+import org.canova.api.writable.Writable;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Sorts the records of another record reader by one column.
+ *
+ * The wrapped reader is drained on initialization through an
+ * {@link ExternalRecordSorter}, so inputs larger than memory are
+ * spilled to sorted runs on disk and merged.
+ *
+ * Configure via:
+ * sort column: org.canova.api.records.reader.RecordReader.sortcolumn
+ * memory budget in bytes: org.canova.api.records.reader.RecordReader.sortmemory
+ * spill directory: org.canova.api.records.reader.RecordReader.sorttmpdir
+ * keep only the first record per key: org.canova.api.records.reader.RecordReader.sortdistinct
+ *
+ * @author Adam Gibson
+ */
+public class SortedRecordReader implements RecordReader {
+
+    public final static String SORT_COLUMN = NAME_SPACE + ".sortcolumn";
+    public final static String MEMORY_BUDGET = NAME_SPACE + ".sortmemory";
+    public final static String TMP_DIR = NAME_SPACE + ".sorttmpdir";
+    public final static String DISTINCT = NAME_SPACE + ".sortdistinct";
+
+    private RecordReader reader;
+    private int sortColumn;
+    private long memoryBudget = ExternalRecordSorter.DEFAULT_MEMORY_BUDGET;
+    private File tmpDir;
+    private boolean distinct = false;
+    //the sort of the current split, not part of the reader's serialized state
+    private transient ExternalRecordSorter sorter;
+    private transient Iterator<Collection<Writable>> iter;
+    protected Configuration conf;
+
+    public SortedRecordReader(RecordReader reader) {
+        this(reader, 0);
+    }
+
+    /**
+     * @param reader the reader to sort
+     * @param sortColumn the column to sort on
+     */
+    public SortedRecordReader(RecordReader reader, int sortColumn) {
+        this.reader = reader;
+        this.sortColumn = sortColumn;
+    }
+
+    /**
+     * @param reader the reader to sort
+     * @param sortColumn the column to sort on
+     * @param memoryBudget bytes to buffer before spilling a sorted run
+     * @param distinct whether to keep only the first record per key
+     */
+    public SortedRecordReader(RecordReader reader, int sortColumn, long memoryBudget, boolean distinct) {
+        this(reader, sortColumn);
+        this.memoryBudget = memoryBudget;
+        this.distinct = distinct;
+    }
+
+    @Override
+    public void initialize(InputSplit split) throws IOException, InterruptedException {
+        reader.initialize(split);
+        sort();
+    }
+
+    @Override
+    public void initialize(Configuration conf, InputSplit split) throws IOException, InterruptedException {
+        setConf(conf);
+        reader.initialize(conf, split);
+        sort();
+    }
+
+    private void sort() throws IOException {
+        if (sorter != null)
+            sorter.close();
+        sorter = new ExternalRecordSorter(sortColumn, memoryBudget, tmpDir);
+        sorter.setDistinct(distinct);
+        while (reader.hasNext()) {
+            Collection<Writable> record = reader.next();
+            if (!record.isEmpty())
+                sorter.add(record);
+        }
+        iter = sorter.sort();
+    }
+
+    @Override
+    public Collection<Writable> next() {
+        if (iter == null)
+            throw new NoSuchElementException("Reader has not been initialized");
+        return iter.next();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iter != null && iter.hasNext();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (sorter != null) {
+            sorter.close();
+            sorter = null;
+        }
+        reader.close();
+    }
+
+    @Override
+    public void setConf(Configuration conf) {
+        this.conf = conf;
+        this.sortColumn = conf.getInt(SORT_COLUMN, sortColumn);
+        this.memoryBudget = conf.getLong(MEMORY_BUDGET, memoryBudget);
+        this.distinct = conf.getBoolean(DISTINCT, distinct);
+        String dir = conf.get(TMP_DIR);
+        if (dir != null)
+            this.tmpDir = new File(dir);
+    }
+
+    @Override
+    public Configuration getConf() {
+        return conf;
+    }
+}
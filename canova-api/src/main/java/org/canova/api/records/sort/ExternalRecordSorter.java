@@ -0,0 +1,529 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.sort;
+
+import org.canova.api.berkeley.PriorityQueue;
+import org.canova.api.io.DataInputBuffer;
+import org.canova.api.io.DataOutputBuffer;
+import org.canova.api.io.RawComparator;
+import org.canova.api.io.WritableComparable;
+import org.canova.api.io.WritableComparator;
+import org.canova.api.io.WritableUtils;
+import org.canova.api.util.ReflectionUtils;
+import org.canova.api.writable.Writable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * External merge sort for records.
+ *
+ * Records are serialized as they are added and ordered by one key column using
+ * the {@link RawComparator} registered for the key's writable class, so keys
+ * are never deserialized while sorting. Once the buffered records exceed the
+ * memory budget they are sorted and spilled to a run file; the runs are then
+ * k-way merged with a {@link PriorityQueue}. At most maxFanIn runs are open at
+ * once: with more runs than that, groups of them are first merged into longer
+ * runs, in as many passes as it takes.
+ *
+ * The sort is stable: records with equal keys come out in the order they were added.
+ * Optionally only the first record of each distinct key is kept.
+ *
+ * All records must have the same number of columns and the same
+ * writable class in each column.
+ *
+ * @author Adam Gibson
+ */
+public class ExternalRecordSorter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ExternalRecordSorter.class);
+
+    public final static long DEFAULT_MEMORY_BUDGET = 64L * 1024L * 1024L;
+    public final static int DEFAULT_MAX_FAN_IN = 64;
+    //bookkeeping overhead per buffered record: 4 ints of offsets, plus the sort order and its merge buffer while spilling
+    private final static int BYTES_PER_RECORD = 24;
+
+    private final int keyColumn;
+    private final long memoryBudget;
+    private final File tmpDir;
+    private boolean distinct = false;
+    private int maxFanIn = DEFAULT_MAX_FAN_IN;
+
+    private Class<? extends Writable>[] columnClasses;
+    private RawComparator comparator;
+
+    private DataOutputBuffer buffer = new DataOutputBuffer();
+    private DataOutputBuffer scratch = new DataOutputBuffer();
+    private int[] starts = new int[1024];
+    private int[] lengths = new int[1024];
+    private int[] keyStarts = new int[1024];
+    private int[] keyLengths = new int[1024];
+    private int numRecords = 0;
+
+    private List<File> runs = new ArrayList<>();
+    private int numSpilled = 0;
+    private List<RunCursor> openRuns = new ArrayList<>();
+
+    /**
+     * Sort on the given column with the default memory budget,
+     * spilling to the system temp directory
+     * @param keyColumn the column to sort on
+     */
+    public ExternalRecordSorter(int keyColumn) {
+        this(keyColumn, DEFAULT_MEMORY_BUDGET, null);
+    }
+
+    /**
+     * @param keyColumn the column to sort on
+     * @param memoryBudget the number of bytes to buffer before spilling a sorted run
+     * @param tmpDir the directory for run files, or null for the system temp directory
+     */
+    public ExternalRecordSorter(int keyColumn, long memoryBudget, File tmpDir) {
+        if (keyColumn < 0)
+            throw new IllegalArgumentException("Key column must be >= 0");
+        if (memoryBudget <= 0)
+            throw new IllegalArgumentException("Memory budget must be > 0");
+        this.keyColumn = keyColumn;
+        this.memoryBudget = memoryBudget;
+        this.tmpDir = tmpDir;
+    }
+
+    /**
+     * Only keep the first record for each distinct key
+     * @param distinct whether to drop records with a key equal to the previous one
+     */
+    public void setDistinct(boolean distinct) {
+        this.distinct = distinct;
+    }
+
+    public boolean isDistinct() {
+        return distinct;
+    }
+
+    /**
+     * The most run files to keep open while merging
+     * @param maxFanIn the number of runs merged at once, at least 2
+     */
+    public void setMaxFanIn(int maxFanIn) {
+        if (maxFanIn < 2)
+            throw new IllegalArgumentException("Max fan in must be >= 2");
+        this.maxFanIn = maxFanIn;
+    }
+
+    public int getMaxFanIn() {
+        return maxFanIn;
+    }
+
+    /**
+     * The number of runs spilled to disk so far
+     * @return the number of run files
+     */
+    public int getNumRuns() {
+        return numSpilled;
+    }
+
+    /**
+     * Add a record to be sorted
+     * @param record the record to add
+     * @throws IOException if spilling a run fails
+     */
+    public void add(Collection<Writable> record) throws IOException {
+        if (columnClasses == null)
+            initColumns(record);
+        else if (record.size() != columnClasses.length)
+            throw new IllegalArgumentException("Expected " + columnClasses.length + " columns but record has " + record.size());
+
+        if (numRecords == starts.length)
+            growIndex();
+
+        int start = buffer.getLength();
+        int column = 0;
+        for (Writable w : record) {
+            if (w.getClass() != columnClasses[column])
+                throw new IllegalArgumentException("Column " + column + " is a " + w.getClass().getName() + " but earlier records had " + columnClasses[column].getName());
+            scratch.reset();
+            w.write(scratch);
+            WritableUtils.writeVInt(buffer, scratch.getLength());
+            if (column == keyColumn) {
+                keyStarts[numRecords] = buffer.getLength();
+                keyLengths[numRecords] = scratch.getLength();
+            }
+            buffer.write(scratch.getData(), 0, scratch.getLength());
+            column++;
+        }
+
+        starts[numRecords] = start;
+        lengths[numRecords] = buffer.getLength() - start;
+        numRecords++;
+
+        if (buffer.getLength() + (long) numRecords * BYTES_PER_RECORD >= memoryBudget)
+            spill();
+    }
+
+    /**
+     * Sort everything added so far. If nothing was spilled the records are
+     * returned straight from memory, otherwise all runs are merged.
+     * @return the records in key order
+     * @throws IOException if spilling or opening the runs fails
+     */
+    public Iterator<Collection<Writable>> sort() throws IOException {
+        if (columnClasses == null)
+            return Collections.<Collection<Writable>>emptyList().iterator();
+
+        if (runs.isEmpty())
+            return new RecordIterator(new MemoryCursor(sortedOrder()));
+
+        if (numRecords > 0)
+            spill();
+
+        while (runs.size() > maxFanIn)
+            mergePass();
+
+        log.info("Merging " + runs.size() + " sorted runs");
+        return new RecordIterator(new MergeCursor(openRuns(runs)));
+    }
+
+    //merges each group of maxFanIn consecutive runs into one, so the run order (and the sort's stability) is kept
+    private void mergePass() throws IOException {
+        log.info("Merging " + runs.size() + " sorted runs in groups of " + maxFanIn);
+        List<File> merged = new ArrayList<>();
+        List<File> created = new ArrayList<>();
+        boolean success = false;
+        try {
+            for (int from = 0; from < runs.size(); from += maxFanIn) {
+                List<File> group = runs.subList(from, Math.min(from + maxFanIn, runs.size()));
+                if (group.size() == 1) {
+                    merged.add(group.get(0));
+                    continue;
+                }
+                File run = File.createTempFile("canova-sort-run", ".bin", tmpDir);
+                run.deleteOnExit();
+                created.add(run);
+                merged.add(run);
+                MergeCursor cursor = new MergeCursor(openRuns(group));
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+                    while (cursor.advance()) {
+                        WritableUtils.writeVInt(out, cursor.length);
+                        out.write(cursor.data, cursor.start, cursor.length);
+                    }
+                } finally {
+                    for (RunCursor open : openRuns)
+                        open.close();
+                    openRuns.clear();
+                }
+            }
+            success = true;
+        } finally {
+            //the runs of a failed pass are left for close(), only its new files are dropped here
+            List<File> obsolete = success ? new ArrayList<>(runs) : created;
+            if (success) {
+                obsolete.removeAll(merged);
+                runs = merged;
+            }
+            for (File run : obsolete)
+                if (!run.delete())
+                    log.warn("Unable to delete sort run " + run.getAbsolutePath());
+        }
+    }
+
+    private PriorityQueue<RunCursor> openRuns(List<File> files) throws IOException {
+        PriorityQueue<RunCursor> queue = new PriorityQueue<>(files.size(), new Comparator<RunCursor>() {
+            @Override
+            public int compare(RunCursor a, RunCursor b) {
+                int c = compareKeys(a, b);
+                if (c == 0)
+                    c = a.run - b.run;
+                //the queue hands back the greatest element first
+                return -c;
+            }
+        });
+
+        for (int i = 0; i < files.size(); i++) {
+            RunCursor cursor = new RunCursor(files.get(i), i);
+            openRuns.add(cursor);
+            if (cursor.advance())
+                queue.add(cursor, 0);
+        }
+        return queue;
+    }
+
+    /**
+     * Deletes any run files
+     */
+    @Override
+    public void close() throws IOException {
+        for (RunCursor cursor : openRuns)
+            cursor.close();
+        openRuns.clear();
+        for (File run : runs)
+            if (!run.delete())
+                log.warn("Unable to delete sort run " + run.getAbsolutePath());
+        runs.clear();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void initColumns(Collection<Writable> record) {
+        if (keyColumn >= record.size())
+            throw new IllegalArgumentException("Key column " + keyColumn + " out of range for a record with " + record.size() + " columns");
+        columnClasses = new Class[record.size()];
+        int column = 0;
+        for (Writable w : record)
+            columnClasses[column++] = w.getClass();
+
+        if (!WritableComparable.class.isAssignableFrom(columnClasses[keyColumn]))
+            throw new IllegalArgumentException("Key column " + keyColumn + " is a " + columnClasses[keyColumn].getName() + " which is not a WritableComparable");
+        comparator = WritableComparator.get((Class<? extends WritableComparable>) columnClasses[keyColumn]);
+    }
+
+    private void growIndex() {
+        int newLength = starts.length * 2;
+        starts = Arrays.copyOf(starts, newLength);
+        lengths = Arrays.copyOf(lengths, newLength);
+        keyStarts = Arrays.copyOf(keyStarts, newLength);
+        keyLengths = Arrays.copyOf(keyLengths, newLength);
+    }
+
+    //stable merge sort of the buffered record indices by their raw keys
+    private int[] sortedOrder() {
+        int[] order = new int[numRecords];
+        for (int i = 0; i < numRecords; i++)
+            order[i] = i;
+        int[] tmp = new int[numRecords];
+        mergeSort(order, tmp, 0, numRecords);
+        return order;
+    }
+
+    private void mergeSort(int[] order, int[] tmp, int from, int to) {
+        if (to - from < 2)
+            return;
+        int mid = (from + to) >>> 1;
+        mergeSort(order, tmp, from, mid);
+        mergeSort(order, tmp, mid, to);
+        if (compareBuffered(order[mid - 1], order[mid]) <= 0)
+            return;
+        System.arraycopy(order, from, tmp, from, to - from);
+        int i = from, j = mid, k = from;
+        while (i < mid && j < to)
+            order[k++] = compareBuffered(tmp[j], tmp[i]) < 0 ? tmp[j++] : tmp[i++];
+        while (i < mid)
+            order[k++] = tmp[i++];
+        while (j < to)
+            order[k++] = tmp[j++];
+    }
+
+    private int compareBuffered(int a, int b) {
+        byte[] data = buffer.getData();
+        return comparator.compare(data, keyStarts[a], keyLengths[a], data, keyStarts[b], keyLengths[b]);
+    }
+
+    private int compareKeys(Cursor a, Cursor b) {
+        return comparator.compare(a.data, a.keyStart, a.keyLength, b.data, b.keyStart, b.keyLength);
+    }
+
+    private void spill() throws IOException {
+        int[] order = sortedOrder();
+        File run = File.createTempFile("canova-sort-run", ".bin", tmpDir);
+        run.deleteOnExit();
+        byte[] data = buffer.getData();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run)))) {
+            for (int i : order) {
+                WritableUtils.writeVInt(out, lengths[i]);
+                out.write(data, starts[i], lengths[i]);
+            }
+        }
+
+        runs.add(run);
+        numSpilled++;
+        log.debug("Spilled run " + run.getAbsolutePath() + " with " + numRecords + " records");
+        buffer.reset();
+        numRecords = 0;
+    }
+
+    /**
+     * Position of the current serialized record and its key
+     */
+    private abstract static class Cursor {
+        byte[] data;
+        int start;
+        int length;
+        int keyStart;
+        int keyLength;
+
+        abstract boolean advance() throws IOException;
+    }
+
+    private class MemoryCursor extends Cursor {
+        private final int[] order;
+        private int position = 0;
+
+        MemoryCursor(int[] order) {
+            this.order = order;
+        }
+
+        @Override
+        boolean advance() {
+            if (position >= order.length)
+                return false;
+            int i = order[position++];
+            data = buffer.getData();
+            start = starts[i];
+            length = lengths[i];
+            keyStart = keyStarts[i];
+            keyLength = keyLengths[i];
+            return true;
+        }
+    }
+
+    private class RunCursor extends Cursor implements Closeable {
+        private final int run;
+        private final DataInputStream in;
+
+        RunCursor(File file, int run) throws IOException {
+            this.run = run;
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            this.data = new byte[64];
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            int recordLength;
+            try {
+                recordLength = WritableUtils.readVInt(in);
+            } catch (EOFException e) {
+                close();
+                return false;
+            }
+            if (data.length < recordLength)
+                data = new byte[Math.max(recordLength, data.length * 2)];
+            in.readFully(data, 0, recordLength);
+            start = 0;
+            length = recordLength;
+
+            int pos = 0;
+            for (int column = 0; column < keyColumn; column++)
+                pos += WritableUtils.decodeVIntSize(data[pos]) + WritableComparator.readVInt(data, pos);
+            keyLength = WritableComparator.readVInt(data, pos);
+            keyStart = pos + WritableUtils.decodeVIntSize(data[pos]);
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    private class MergeCursor extends Cursor {
+        private final PriorityQueue<RunCursor> queue;
+        private RunCursor current;
+
+        MergeCursor(PriorityQueue<RunCursor> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        boolean advance() throws IOException {
+            if (current != null && current.advance())
+                queue.add(current, 0);
+            if (queue.isEmpty()) {
+                current = null;
+                return false;
+            }
+            current = queue.next();
+            data = current.data;
+            start = current.start;
+            length = current.length;
+            keyStart = current.keyStart;
+            keyLength = current.keyLength;
+            return true;
+        }
+    }
+
+    /**
+     * Deserializes records from a cursor, dropping duplicate keys if requested
+     */
+    private class RecordIterator implements Iterator<Collection<Writable>> {
+        private final Cursor cursor;
+        private final DataInputBuffer in = new DataInputBuffer();
+        private byte[] lastKey = new byte[64];
+        private int lastKeyLength = -1;
+        private boolean ready = false;
+        private boolean done = false;
+
+        RecordIterator(Cursor cursor) {
+            this.cursor = cursor;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!ready && !done)
+                fetch();
+            return ready;
+        }
+
+        @Override
+        public Collection<Writable> next() {
+            if (!hasNext())
+                throw new NoSuchElementException("No more records");
+            ready = false;
+            List<Writable> ret = new ArrayList<>(columnClasses.length);
+            in.reset(cursor.data, cursor.start, cursor.length);
+            try {
+                for (Class<? extends Writable> clazz : columnClasses) {
+                    WritableUtils.readVInt(in);
+                    Writable w = ReflectionUtils.newInstance(clazz, null);
+                    w.readFields(in);
+                    ret.add(w);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return ret;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private void fetch() {
+            try {
+                while (cursor.advance()) {
+                    if (distinct) {
+                        if (lastKeyLength >= 0 && comparator.compare(lastKey, 0, lastKeyLength, cursor.data, cursor.keyStart, cursor.keyLength) == 0)
+                            continue;
+                        if (lastKey.length < cursor.keyLength)
+                            lastKey = new byte[cursor.keyLength];
+                        System.arraycopy(cursor.data, cursor.keyStart, lastKey, 0, cursor.keyLength);
+                        lastKeyLength = cursor.keyLength;
+                    }
+                    ready = true;
+                    return;
+                }
+                done = true;
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
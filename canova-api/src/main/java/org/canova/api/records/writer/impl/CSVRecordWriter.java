@@ -45,6 +45,10 @@ public class CSVRecordWriter extends FileRecordWriter {
         super(path, append);
     }
 
+    public CSVRecordWriter(File path, boolean append, int bufferSize) throws FileNotFoundException {
+        super(path, append, bufferSize);
+    }
+
     public CSVRecordWriter(Configuration conf) throws FileNotFoundException {
         super(conf);
     }
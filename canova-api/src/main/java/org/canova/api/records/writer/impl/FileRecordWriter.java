@@ -47,6 +47,8 @@ public  class FileRecordWriter implements RecordWriter {
     public final static String NEW_LINE = "\n";
     private boolean append;
     public final static String PATH = "org.canova.api.records.writer.path";
+    //bytes to buffer before writing to the file, 0 (the default) writes every record through
+    public final static String BUFFER_SIZE = "org.canova.api.records.writer.buffer";
 
     protected Configuration conf;
 
@@ -60,9 +62,17 @@ public  class FileRecordWriter implements RecordWriter {
 
 
     public FileRecordWriter(File path,boolean append) throws FileNotFoundException {
+        this(path,append,0);
+    }
+
+    /**
+     * @param bufferSize bytes to buffer before writing to the file, 0 writes every record through
+     */
+    public FileRecordWriter(File path,boolean append,int bufferSize) throws FileNotFoundException {
         this.writeTo = path;
         this.append = append;
-        out = new DataOutputStream(new FileOutputStream(writeTo,append));
+        OutputStream file = new FileOutputStream(writeTo,append);
+        out = new DataOutputStream(bufferSize > 0 ? new BufferedOutputStream(file,bufferSize) : file);
     }
 
 
@@ -103,8 +113,10 @@ public  class FileRecordWriter implements RecordWriter {
         this.conf = conf;
         this.writeTo = new File(conf.get(PATH,"input.txt"));
         append = conf.getBoolean(APPEND,true);
+        int bufferSize = conf.getInt(BUFFER_SIZE,0);
         try {
-            out = new DataOutputStream(new FileOutputStream(writeTo,append));
+            OutputStream file = new FileOutputStream(writeTo,append);
+            out = new DataOutputStream(bufferSize > 0 ? new BufferedOutputStream(file,bufferSize) : file);
         } catch (FileNotFoundException e) {
             throw new RuntimeException(e);
         }
@@ -21,6 +21,7 @@
 package org.canova.api.records.writer.impl;
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.LibSvm;
 import org.canova.api.writable.Writable;
 
@@ -72,13 +73,32 @@ public class LibSvmRecordWriter extends LineRecordWriter implements LibSvm {
             write.append(response);
         write.append(" ");
 
+        // sparse blocks take up several indices, so track the next index separately
+        int offset = 0;
         for(int i = 0; i < asList.size() - 1; i++) {
+            if(asList.get(i) instanceof SparseVectorWritable) {
+                SparseVectorWritable sparse = (SparseVectorWritable) asList.get(i);
+                for(int j = 0; j < sparse.numNonZero(); j++) {
+                    double val = sparse.valueAt(j);
+                    if(val == 0.0)
+                        continue;
+                    write.append(offset + sparse.indexAt(j) + 1).append(":");
+                    if(val == (int) val)
+                        write.append((int) val);
+                    else
+                        write.append(val);
+                    write.append(" ");
+                }
+                offset += sparse.size();
+                continue;
+            }
             //sparse format
             double val = Double.valueOf(asList.get(i).toString());
-           
+            offset++;
+
             if(val == 0.0)
                 continue;
-            write.append(i + 1).append(":");
+            write.append(offset).append(":");
             try {
                 write.append(Integer.valueOf(asList.get(i).toString()));
             }
@@ -47,6 +47,10 @@ public class LineRecordWriter extends FileRecordWriter {
         super(path, append);
     }
 
+    public LineRecordWriter(File path, boolean append, int bufferSize) throws FileNotFoundException {
+        super(path, append, bufferSize);
+    }
+
     public LineRecordWriter(Configuration conf) throws FileNotFoundException {
         super(conf);
     }
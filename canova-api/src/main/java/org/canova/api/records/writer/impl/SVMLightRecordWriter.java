@@ -22,6 +22,7 @@ package org.canova.api.records.writer.impl;
 
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.writable.Writable;
 
 import java.io.*;
@@ -48,6 +49,10 @@ public class SVMLightRecordWriter extends FileRecordWriter {
         super(path,append);
     }
 
+    public SVMLightRecordWriter(File path,boolean append,int bufferSize) throws FileNotFoundException {
+        super(path,append,bufferSize);
+    }
+
     public SVMLightRecordWriter(Configuration conf) throws FileNotFoundException {
         super(conf);
     }
@@ -63,14 +68,28 @@ public class SVMLightRecordWriter extends FileRecordWriter {
 
             // get only the non-zero entries
             Double value = 0.0;
+            // sparse blocks take up several indices, so track the next index separately
+            int offset = 0;
 
             for (int i = 0; i < recordList.size() - 1; i++) {
 
-                value = Double.valueOf(recordList.get(i).toString());
+                Writable column = recordList.get(i);
+                if (column instanceof SparseVectorWritable) {
+                    SparseVectorWritable sparse = (SparseVectorWritable) column;
+                    for (int j = 0; j < sparse.numNonZero(); j++) {
+                        if (sparse.valueAt(j) != 0.0)
+                            result.append(" ").append(offset + sparse.indexAt(j) + 1).append(":").append(sparse.valueAt(j));
+                    }
+                    offset += sparse.size();
+                    continue;
+                }
+
+                value = Double.valueOf(column.toString());
 
-                if ( value > 0.0 ) {
-                	result.append(" ").append(i + 1).append(":").append(Double.valueOf(recordList.get(i).toString()));
+                if ( value != 0.0 ) {
+                	result.append(" ").append(offset + 1).append(":").append(value);
                 }
+                offset++;
 
             }
 
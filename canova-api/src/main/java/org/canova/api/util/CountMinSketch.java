@@ -0,0 +1,157 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.util;
+
+import java.io.Serializable;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Count-min sketch: approximate counts for an unbounded number of keys
+ * in a fixed number of counters.
+ *
+ * Each key maps to one counter in each of depth rows of width counters,
+ * and its estimate is the smallest of them. Estimates never undercount;
+ * with conservative update (only the counters at the current minimum grow)
+ * they overcount by little more than the colliding keys' counts, at most
+ * e / width of the total with probability 1 - exp(-depth).
+ *
+ * Counters saturate at Integer.MAX_VALUE rather than wrap.
+ *
+ * @author Adam Gibson
+ */
+public class CountMinSketch implements Serializable {
+
+    private static final long serialVersionUID = -5084982213094657923L;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final int depth;
+    private final int width;
+    private final int[] counts;
+    private long total = 0;
+
+    /**
+     * @param depth the number of rows (hash functions)
+     * @param width the number of counters per row
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1)
+            throw new IllegalArgumentException("Depth and width must be at least 1");
+        if ((long) depth * width > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Sketch too large: " + depth + " x " + width);
+        this.depth = depth;
+        this.width = width;
+        this.counts = new int[depth * width];
+    }
+
+    /**
+     * The widest sketch of the given depth that fits in a memory budget
+     * @param bytes the memory budget for the counters
+     * @param depth the number of rows
+     * @return the sketch
+     */
+    public static CountMinSketch forMemory(long bytes, int depth) {
+        long width = bytes / (4L * depth);
+        return new CountMinSketch(depth, (int) Math.max(1, Math.min(width, Integer.MAX_VALUE / depth)));
+    }
+
+    /**
+     * Add to the count of a key
+     * @param key the key
+     * @param count the amount to add, non negative
+     * @return the key's estimate after adding
+     */
+    public int add(String key, int count) {
+        byte[] bytes = key.getBytes(UTF_8);
+        int h1 = MurmurHash3.hash32(bytes, 0, bytes.length, MurmurHash3.DEFAULT_SEED);
+        int h2 = MurmurHash3.hash32(bytes, 0, bytes.length, h1);
+        int estimate = estimate(h1, h2);
+        long target = Math.min((long) estimate + count, Integer.MAX_VALUE);
+        //conservative update: raise each counter only as far as the new estimate
+        for (int i = 0; i < depth; i++) {
+            int slot = slot(i, h1, h2);
+            if (counts[slot] < target)
+                counts[slot] = (int) target;
+        }
+        total += count;
+        return (int) target;
+    }
+
+    /**
+     * @param key the key
+     * @return the estimated count, never less than the true count
+     */
+    public int estimate(String key) {
+        byte[] bytes = key.getBytes(UTF_8);
+        int h1 = MurmurHash3.hash32(bytes, 0, bytes.length, MurmurHash3.DEFAULT_SEED);
+        return estimate(h1, MurmurHash3.hash32(bytes, 0, bytes.length, h1));
+    }
+
+    private int estimate(int h1, int h2) {
+        int min = Integer.MAX_VALUE;
+        for (int i = 0; i < depth; i++)
+            min = Math.min(min, counts[slot(i, h1, h2)]);
+        return min;
+    }
+
+    //row i uses h1 + i * h2, two hashes are as good as depth independent ones
+    private int slot(int row, int h1, int h2) {
+        int h = h1 + row * h2;
+        return row * width + (int) ((h & 0xffffffffL) % width);
+    }
+
+    /**
+     * Add the counts of a sketch of the same dimensions. The result still
+     * never undercounts, though it loses the tightness of conservative update.
+     * @param other the sketch to add
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width)
+            throw new IllegalArgumentException("Can only merge sketches of the same dimensions");
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = (int) Math.min((long) counts[i] + other.counts[i], Integer.MAX_VALUE);
+        total += other.total;
+    }
+
+    /** Removes all counts */
+    public void clear() {
+        Arrays.fill(counts, 0);
+        total = 0;
+    }
+
+    /** The sum of all the counts added */
+    public long total() {
+        return total;
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    /** The memory the counters take up, in bytes */
+    public long sizeInBytes() {
+        return 4L * counts.length;
+    }
+}
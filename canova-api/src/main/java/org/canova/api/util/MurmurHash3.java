@@ -0,0 +1,112 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.util;
+
+/**
+ * MurmurHash3 (x86, 32 bit), a fast non cryptographic hash with good
+ * mixing. Suited to hash partitioning and feature hashing where the
+ * polynomial hash of {@link org.canova.api.io.WritableComparator#hashBytes(byte[], int, int)}
+ * distributes poorly.
+ *
+ * A port of Austin Appleby's public domain MurmurHash3_x86_32.
+ *
+ * @author Adam Gibson
+ */
+public class MurmurHash3 {
+
+    public final static int DEFAULT_SEED = 0x9747b28c;
+
+    private static final int C1 = 0xcc9e2d51;
+    private static final int C2 = 0x1b873593;
+
+    private MurmurHash3() {
+    }
+
+    /**
+     * Hash a range of bytes
+     * @param data the bytes to hash
+     * @param offset the first byte
+     * @param length the number of bytes
+     * @param seed the seed
+     * @return the 32 bit hash
+     */
+    public static int hash32(byte[] data, int offset, int length, int seed) {
+        int h1 = seed;
+        int end = offset + (length & ~3);
+        for (int i = offset; i < end; i += 4) {
+            int k1 = (data[i] & 0xff) | (data[i + 1] & 0xff) << 8 | (data[i + 2] & 0xff) << 16 | data[i + 3] << 24;
+            h1 = mixH1(h1, mixK1(k1));
+        }
+
+        int k1 = 0;
+        switch (length & 3) {
+            case 3:
+                k1 = (data[end + 2] & 0xff) << 16;
+            case 2:
+                k1 |= (data[end + 1] & 0xff) << 8;
+            case 1:
+                k1 |= (data[end] & 0xff);
+                h1 ^= mixK1(k1);
+        }
+
+        return fmix(h1 ^ length);
+    }
+
+    /**
+     * Hash a range of bytes with the default seed
+     */
+    public static int hash32(byte[] data, int offset, int length) {
+        return hash32(data, offset, length, DEFAULT_SEED);
+    }
+
+    /**
+     * Hash a long, e.g. a composite of ids
+     * @param key the value to hash
+     * @param seed the seed
+     * @return the 32 bit hash
+     */
+    public static int hashLong(long key, int seed) {
+        int h1 = mixH1(seed, mixK1((int) key));
+        h1 = mixH1(h1, mixK1((int) (key >>> 32)));
+        return fmix(h1 ^ 8);
+    }
+
+    private static int mixK1(int k1) {
+        k1 *= C1;
+        k1 = Integer.rotateLeft(k1, 15);
+        return k1 * C2;
+    }
+
+    private static int mixH1(int h1, int k1) {
+        h1 ^= k1;
+        h1 = Integer.rotateLeft(h1, 13);
+        return h1 * 5 + 0xe6546b64;
+    }
+
+    private static int fmix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.conf;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Gibson
+ */
+public class FrozenConfigurationTest {
+
+    @Test
+    public void testFrozenMatchesSource() {
+        Configuration conf = new Configuration();
+        conf.set("canova.test.root", "/data");
+        conf.set("tempdir", "${canova.test.root}/tmp");
+        conf.setInt("width", 28);
+        conf.set("height", "0x1C");
+        conf.set("broken", "abc");
+        conf.setLong("big", 1L << 40);
+        conf.setFloat("ratio", 0.25f);
+        conf.setBoolean("flag", true);
+
+        Configuration frozen = conf.freeze();
+        assertEquals("/data/tmp", frozen.get("tempdir"));
+        assertEquals("${canova.test.root}/tmp", frozen.getRaw("tempdir"));
+        assertEquals("/data/x", frozen.get("missing", "${canova.test.root}/x"));
+        assertEquals(28, frozen.getInt("width", 0));
+        assertEquals(28, frozen.getInt("height", 0));
+        //cached lookups still honour each caller's default
+        assertEquals(5, frozen.getInt("broken", 5));
+        assertEquals(6, frozen.getInt("broken", 6));
+        assertEquals(7, frozen.getInt("missing", 7));
+        assertEquals(1L << 40, frozen.getLong("big", 0));
+        assertEquals(0.25f, frozen.getFloat("ratio", 0), 1e-6);
+        assertTrue(frozen.getBoolean("flag", false));
+        assertEquals(conf.size(), frozen.size());
+        assertSame(frozen, frozen.freeze());
+
+        conf.set("width", "10");
+        assertEquals(28, frozen.getInt("width", 0));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFrozenIsImmutable() {
+        new Configuration().freeze().set("key", "value");
+    }
+
+}
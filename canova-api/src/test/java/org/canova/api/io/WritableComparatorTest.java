@@ -0,0 +1,104 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.io;
+
+import org.canova.api.util.MurmurHash3;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Gibson
+ */
+public class WritableComparatorTest {
+
+    //the byte at a time implementations the word at a time ones must agree with
+    private static int compareBytesSlow(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+        for (int i = 0; i < Math.min(l1, l2); i++) {
+            int a = b1[s1 + i] & 0xff;
+            int b = b2[s2 + i] & 0xff;
+            if (a != b)
+                return a - b;
+        }
+        return l1 - l2;
+    }
+
+    private static int hashBytesSlow(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++)
+            hash = (31 * hash) + (int) bytes[i];
+        return hash;
+    }
+
+    @Test
+    public void testCompareBytesMatchesByteAtATime() {
+        Random random = new Random(12345);
+        for (int trial = 0; trial < 10000; trial++) {
+            byte[] b1 = new byte[random.nextInt(40)];
+            random.nextBytes(b1);
+            byte[] b2 = b1.clone();
+            //mostly shared prefixes, so the difference lands in and after the word loop
+            if (b2.length > 0 && random.nextBoolean())
+                b2[random.nextInt(b2.length)] = (byte) random.nextInt(256);
+            int s1 = b1.length == 0 ? 0 : random.nextInt(b1.length);
+            int s2 = random.nextBoolean() ? s1 : (b2.length == 0 ? 0 : random.nextInt(b2.length));
+            int l1 = random.nextInt(b1.length - s1 + 1);
+            int l2 = random.nextBoolean() ? Math.min(l1, b2.length - s2) : random.nextInt(b2.length - s2 + 1);
+            assertEquals(compareBytesSlow(b1, s1, l1, b2, s2, l2), WritableComparator.compareBytes(b1, s1, l1, b2, s2, l2));
+            assertEquals(compareBytesSlow(b2, s2, l2, b1, s1, l1), WritableComparator.compareBytes(b2, s2, l2, b1, s1, l1));
+        }
+    }
+
+    @Test
+    public void testHashBytesMatchesByteAtATime() {
+        Random random = new Random(54321);
+        for (int trial = 0; trial < 1000; trial++) {
+            byte[] bytes = new byte[random.nextInt(100)];
+            random.nextBytes(bytes);
+            int offset = bytes.length == 0 ? 0 : random.nextInt(bytes.length);
+            int length = random.nextInt(bytes.length - offset + 1);
+            assertEquals(hashBytesSlow(bytes, offset, length), WritableComparator.hashBytes(bytes, offset, length));
+        }
+    }
+
+    @Test
+    public void testMurmurHash3() {
+        Charset utf8 = Charset.forName("UTF-8");
+        assertEquals(0, MurmurHash3.hash32(new byte[0], 0, 0, 0));
+        assertEquals(0x514E28B7, MurmurHash3.hash32(new byte[0], 0, 0, 1));
+        assertEquals(0x2362F9DE, MurmurHash3.hash32(new byte[4], 0, 4, 0));
+        byte[] aaaa = "aaaa".getBytes(utf8);
+        assertEquals(0x5A97808A, MurmurHash3.hash32(aaaa, 0, aaaa.length, 0x9747b28c));
+        byte[] hello = "Hello, world!".getBytes(utf8);
+        assertEquals(0x24884CBA, MurmurHash3.hash32(hello, 0, hello.length, 0x9747b28c));
+        byte[] fox = "The quick brown fox jumps over the lazy dog".getBytes(utf8);
+        assertEquals(0x2FA826CD, MurmurHash3.hash32(fox, 0, fox.length, 0x9747b28c));
+
+        byte[] longBytes = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putLong(0, 1234567890123L).array();
+        assertEquals(MurmurHash3.hash32(longBytes, 0, 8, 7), MurmurHash3.hashLong(1234567890123L, 7));
+    }
+
+}
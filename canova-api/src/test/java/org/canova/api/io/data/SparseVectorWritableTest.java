@@ -0,0 +1,55 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.io.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the sparse vector block
+ */
+public class SparseVectorWritableTest {
+
+    private static SparseVectorWritable block(double value) {
+        SparseVectorWritable ret = new SparseVectorWritable(10);
+        ret.add(3, value);
+        return ret;
+    }
+
+    @Test
+    public void testHashCodeUsesWholeValue() {
+        //values with a short mantissa have all zero low 32 bits
+        assertNotEquals(block(1.0).hashCode(), block(2.0).hashCode());
+        assertNotEquals(block(0.5).hashCode(), block(4.0).hashCode());
+        assertEquals(block(2.0), block(2.0));
+        assertEquals(block(2.0).hashCode(), block(2.0).hashCode());
+    }
+
+    @Test
+    public void testNegativeZeroIsConsistentWithEquals() {
+        SparseVectorWritable zero = block(0.0);
+        SparseVectorWritable negativeZero = block(-0.0);
+        assertEquals(zero, negativeZero);
+        assertEquals(zero.hashCode(), negativeZero.hashCode());
+    }
+
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.io.data;
+
+import org.junit.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Gibson
+ */
+public class TextTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static String[] slices(Text text, Text.Slices slices) {
+        String[] ret = new String[slices.size()];
+        for (int i = 0; i < ret.length; i++)
+            ret[i] = new String(text.getBytes(), slices.start(i), slices.length(i), UTF_8);
+        return ret;
+    }
+
+    @Test
+    public void testSplitMatchesStringSplit() {
+        Text.Slices reuse = new Text.Slices();
+        String[] lines = {"a,b,c", "a,,c", ",a", "a,b,,", ",,", "", "x", "é,ü,日本"};
+        for (String line : lines) {
+            Text text = new Text(line);
+            assertArrayEquals(line, line.split(","), slices(text, text.split((byte) ',', reuse)));
+        }
+        //a reused text must not leak bytes past its length
+        Text text = new Text("1,2,3,4,5,6");
+        text.set("7,8");
+        assertArrayEquals(new String[]{"7", "8"}, slices(text, text.split((byte) ',', reuse)));
+    }
+
+    @Test
+    public void testParseMatchesJdk() {
+        String[] doubles = {"0", "-0", "1", "-1.5", "3.14159", "1e10", "1E-5", "+2.5e+3", ".5", "5.",
+                "0.1", "123456789012345678", "1e300", "4.9e-324", "NaN", "-Infinity", "0.30000000000000004"};
+        for (String s : doubles) {
+            byte[] bytes = ("  " + s + " ").getBytes();
+            assertEquals(s, Double.parseDouble(s), Text.parseDouble(bytes, 2, 2 + s.length()), 0);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < 10000; i++) {
+            String s = Double.toString(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10));
+            assertEquals(s, Double.parseDouble(s), new Text(s).parseDouble(), 0);
+            String f = String.format("%.4f", random.nextGaussian() * 100);
+            assertEquals(f, Double.parseDouble(f), new Text(f).parseDouble(), 0);
+        }
+
+        for (String s : Arrays.asList("0", "-7", "+42", "2147483647", "-2147483648"))
+            assertEquals(Integer.parseInt(s), new Text(s).parseInt());
+        for (String s : Arrays.asList("", "-", "2147483648", "1.5", "a1")) {
+            try {
+                new Text(s).parseInt();
+                fail(s);
+            } catch (NumberFormatException e) {
+                //expected
+            }
+        }
+    }
+
+    @Test
+    public void testTrimAndIgnoreCase() {
+        assertEquals("a b", new Text(" \ta b \n").trim().toString());
+        assertEquals("", new Text("   ").trim().toString());
+        assertTrue(new Text("Label").equalsIgnoreCase("LABEL"));
+        assertFalse(new Text("Label").equalsIgnoreCase("Labels"));
+        assertEquals(0, new Text("NOMINAL").compareToIgnoreCase(new Text("nominal")));
+        assertTrue(new Text("apple").compareToIgnoreCase(new Text("Banana")) < 0);
+    }
+
+}
@@ -59,5 +59,27 @@ public class LineReaderTest {
 
     }
 
+    @Test
+    public void testLineReaderDirectory() throws Exception {
+        File dir = new File("tmpdir");
+        dir.mkdirs();
+        FileUtils.writeLines(new File(dir,"a.txt"), Arrays.asList("1","2"));
+        FileUtils.writeLines(new File(dir,"b.txt"), Arrays.<String>asList());
+        FileUtils.writeLines(new File(dir,"c.txt"), Arrays.asList("3"));
+        RecordReader reader = new LineRecordReader();
+        reader.initialize(new FileSplit(dir));
+        int count = 0;
+        while(reader.hasNext()) {
+            assertEquals(1,reader.next().size());
+            count++;
+        }
+        reader.close();
+        FileUtils.deleteDirectory(dir);
+
+        //every file, past the empty one
+        assertEquals(3,count);
+
+    }
+
 
 }
@@ -23,9 +23,12 @@ package org.canova.api.records.reader.impl;
 import static org.junit.Assume.*;
 import static org.junit.Assert.*;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.writer.RecordWriter;
 import org.canova.api.records.writer.impl.SVMLightRecordWriter;
@@ -40,6 +43,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 
@@ -92,6 +96,35 @@ public class SVMRecordWriterTest {
         assertEquals(150,records.size());
     }
 
+    @Test
+    public void testSparseBlocks() throws Exception {
+        SparseVectorWritable block = new SparseVectorWritable(10);
+        block.add(7, 1.0);
+        block.add(2, -1.0);
+        List<Writable> record = Arrays.<Writable>asList(new DoubleWritable(0.5), block, new DoubleWritable(2.0), new DoubleWritable(1.0));
+        File out = File.createTempFile("sparse", ".txt");
+        out.deleteOnExit();
+        RecordWriter writer = new SVMLightRecordWriter(out,false);
+        writer.write(record);
+        writer.close();
+        //the block covers indices 2-11, the scalar after it lands on 12
+        assertEquals("1.0 1:0.5 4:-1.0 9:1.0 12:2.0", FileUtils.readFileToString(out).trim());
+    }
+
+    @Test
+    public void testNegativeValues() throws Exception {
+        SparseVectorWritable block = new SparseVectorWritable(3);
+        block.add(1, -2.0);
+        List<Writable> record = Arrays.<Writable>asList(new DoubleWritable(-0.5), new DoubleWritable(0.0), block, new DoubleWritable(-3.0), new DoubleWritable(1.0));
+        File out = File.createTempFile("negative", ".txt");
+        out.deleteOnExit();
+        RecordWriter writer = new SVMLightRecordWriter(out,false);
+        writer.write(record);
+        writer.close();
+        //negative features are written whether they are scalars or in a block, zeros are skipped
+        assertEquals("1.0 1:-0.5 4:-2.0 6:-3.0", FileUtils.readFileToString(out).trim());
+    }
+
     @Test
     public void testSparseData() throws Exception {
         RecordReader svmLightRecordReader = new SVMLightRecordReader();
@@ -0,0 +1,129 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.records.sort;
+
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.IntWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.reader.impl.CollectionRecordReader;
+import org.canova.api.records.reader.impl.SortedRecordReader;
+import org.canova.api.writable.Writable;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Gibson
+ */
+public class ExternalRecordSorterTest {
+
+    private List<Collection<Writable>> records(int n, long seed) {
+        Random random = new Random(seed);
+        List<Collection<Writable>> ret = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            ret.add(Arrays.<Writable>asList(new Text("row" + i), new IntWritable(random.nextInt(100)), new DoubleWritable(i)));
+        }
+        return ret;
+    }
+
+    private List<Collection<Writable>> expected(List<Collection<Writable>> records) {
+        List<Collection<Writable>> sorted = new ArrayList<>(records);
+        //Collections.sort is stable, as is the external sort
+        Collections.sort(sorted, new Comparator<Collection<Writable>>() {
+            @Override
+            public int compare(Collection<Writable> a, Collection<Writable> b) {
+                return ((IntWritable) new ArrayList<>(a).get(1)).compareTo(new ArrayList<>(b).get(1));
+            }
+        });
+        return sorted;
+    }
+
+    private List<Collection<Writable>> drain(Iterator<Collection<Writable>> iter) {
+        List<Collection<Writable>> ret = new ArrayList<>();
+        while (iter.hasNext())
+            ret.add(iter.next());
+        return ret;
+    }
+
+    @Test
+    public void testInMemorySort() throws Exception {
+        List<Collection<Writable>> records = records(500, 123);
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(1)) {
+            for (Collection<Writable> record : records)
+                sorter.add(record);
+            assertEquals(expected(records), drain(sorter.sort()));
+            assertEquals(0, sorter.getNumRuns());
+        }
+    }
+
+    @Test
+    public void testSpillAndMerge() throws Exception {
+        List<Collection<Writable>> records = records(5000, 42);
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(1, 4096, null)) {
+            for (Collection<Writable> record : records)
+                sorter.add(record);
+            List<Collection<Writable>> sorted = drain(sorter.sort());
+            assertTrue(sorter.getNumRuns() > 1);
+            assertEquals(expected(records), sorted);
+        }
+    }
+
+    @Test
+    public void testBoundedFanIn() throws Exception {
+        List<Collection<Writable>> records = records(5000, 7);
+        try (ExternalRecordSorter sorter = new ExternalRecordSorter(1, 1024, null)) {
+            sorter.setMaxFanIn(3);
+            for (Collection<Writable> record : records)
+                sorter.add(record);
+            List<Collection<Writable>> sorted = drain(sorter.sort());
+            //several merge passes, still stable
+            assertTrue(sorter.getNumRuns() > 9);
+            assertEquals(expected(records), sorted);
+        }
+    }
+
+    @Test
+    public void testTextKeysDistinct() throws Exception {
+        List<Collection<Writable>> records = new ArrayList<>();
+        String[] keys = {"pear", "apple", "fig", "apple", "pear", "banana"};
+        for (int i = 0; i < keys.length; i++)
+            records.add(Arrays.<Writable>asList(new Text(keys[i]), new IntWritable(i)));
+
+        RecordReader reader = new SortedRecordReader(new CollectionRecordReader(records), 0, 32, true);
+        reader.initialize(null);
+        List<String> sortedKeys = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        while (reader.hasNext()) {
+            List<Writable> record = new ArrayList<>(reader.next());
+            sortedKeys.add(record.get(0).toString());
+            values.add(((IntWritable) record.get(1)).get());
+        }
+        reader.close();
+
+        assertEquals(Arrays.asList("apple", "banana", "fig", "pear"), sortedKeys);
+        //the first occurrence of each key is kept
+        assertEquals(Arrays.asList(1, 5, 2, 0), values);
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.api.util;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Adam Gibson
+ */
+public class CountMinSketchTest {
+
+    @Test
+    public void testNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(4, 1024);
+        Map<String, Integer> exact = new HashMap<>();
+        Random random = new Random(123);
+        for (int i = 0; i < 100000; i++) {
+            //log uniform: a few frequent keys, a long tail
+            String key = "key" + (int) Math.exp(random.nextDouble() * 9);
+            Integer count = exact.get(key);
+            exact.put(key, count == null ? 1 : count + 1);
+            sketch.add(key, 1);
+        }
+        assertEquals(100000, sketch.total());
+        long overcount = 0;
+        for (Map.Entry<String, Integer> entry : exact.entrySet()) {
+            int estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue());
+            overcount += estimate - entry.getValue();
+        }
+        //a few thousand keys in 1024 counters per row, the average error stays small
+        assertTrue(overcount / (double) exact.size() < 100000 * Math.E / 1024);
+        assertTrue(sketch.estimate("never added") < 100000 * Math.E / 1024);
+    }
+
+    @Test
+    public void testMergeAndMemory() {
+        CountMinSketch a = CountMinSketch.forMemory(1 << 16, 4);
+        assertEquals(4096, a.width());
+        assertEquals(1 << 16, a.sizeInBytes());
+        CountMinSketch b = CountMinSketch.forMemory(1 << 16, 4);
+        a.add("word", 3);
+        b.add("word", 4);
+        b.add("other", 1);
+        a.merge(b);
+        assertEquals(7, a.estimate("word"));
+        assertEquals(8, a.total());
+    }
+
+}
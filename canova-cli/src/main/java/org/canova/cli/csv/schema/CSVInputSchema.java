@@ -21,18 +21,28 @@
 package org.canova.cli.csv.schema;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import au.com.bytecode.opencsv.CSVParser;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Strings;
 import org.apache.commons.math3.util.Pair;
 import org.canova.cli.csv.schema.CSVSchemaColumn.TransformType;
+import org.canova.cli.csv.statistics.ColumnStatistics;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,6 +61,19 @@ public class CSVInputSchema {
 	// columns: { columnName, column Schema }
 	private Map<String, CSVSchemaColumn> columnSchemas = new LinkedHashMap<>();
 
+	// schema files read so far, a long running process (canova serve) sees the same ones over and over
+	private static final ConcurrentMap<String, CachedSchemaFile> SCHEMA_FILES = new ConcurrentHashMap<>();
+
+	private static class CachedSchemaFile {
+		final long lastModified;
+		final List<String> lines;
+
+		CachedSchemaFile(long lastModified, List<String> lines) {
+			this.lastModified = lastModified;
+			this.lines = lines;
+		}
+	}
+
 	public CSVSchemaColumn getColumnSchemaByName( String colName ) {
 
 		return this.columnSchemas.get(colName);
@@ -171,8 +194,41 @@ public class CSVInputSchema {
 
 		CSVSchemaColumn.ColumnType colTypeEnum =
         CSVSchemaColumn.ColumnType.valueOf(columnType.toUpperCase());
+
+		// transforms may carry arguments, e.g. !HASH:4096:SIGNED
+		String[] transformParts = columnTransform.toUpperCase().substring(1).split(":");
 		CSVSchemaColumn.TransformType colTransformEnum =
-        CSVSchemaColumn.TransformType.valueOf(columnTransform.toUpperCase().substring(1));
+        CSVSchemaColumn.TransformType.valueOf(transformParts[0]);
+
+		if (colTransformEnum == TransformType.HASH) {
+			int buckets = CSVSchemaColumn.DEFAULT_HASH_BUCKETS;
+			boolean signed = false;
+			try {
+				if (transformParts.length > 1) {
+					buckets = Integer.parseInt(transformParts[1]);
+				}
+			} catch (NumberFormatException e) {
+				log.error("Invalid hash bucket count in {}", columnTransform);
+				return null;
+			}
+			if (transformParts.length > 2) {
+				if (!"SIGNED".equals(transformParts[2])) {
+					log.error("Unknown hash option in {}", columnTransform);
+					return null;
+				}
+				signed = true;
+			}
+			if (transformParts.length > 3 || buckets < 1) {
+				log.error("Invalid hash transform {}", columnTransform);
+				return null;
+			}
+			return new CSVSchemaColumn( columnName, colTypeEnum, buckets, signed );
+		}
+
+		if (transformParts.length > 1) {
+			log.error("Transform {} takes no arguments", columnTransform);
+			return null;
+		}
 
 		return new CSVSchemaColumn( columnName, colTypeEnum, colTransformEnum );
 	}
@@ -206,19 +262,30 @@ public class CSVInputSchema {
 	}
 
 	public void parseSchemaFile(String schemaPath) throws Exception {
-		try (BufferedReader br = new BufferedReader(new FileReader(schemaPath))) {
-		    for (String line; (line = br.readLine()) != null; ) {
-		        // process the line.
-		    	if (!this.validateSchemaLine(line) ) {
-		    		throw new Exception("Bad Schema for CSV Data: \n\t" + line);
-		    	}
-
-		    	// now add it to the schema cache
-		    	this.addSchemaLine(line);
+		File schemaFile = new File(schemaPath).getAbsoluteFile();
+		CachedSchemaFile cached = SCHEMA_FILES.get(schemaFile.getPath());
+		if (null == cached || cached.lastModified != schemaFile.lastModified()) {
+			List<String> lines = new ArrayList<>();
+			try (BufferedReader br = new BufferedReader(new FileReader(schemaFile))) {
+			    for (String line; (line = br.readLine()) != null; ) {
+			        lines.add(line);
+			    }
+			    // line is not visible here.
+			}
+			cached = new CachedSchemaFile(schemaFile.lastModified(), lines);
+		}
 
+		for (String line : cached.lines) {
+		    // process the line.
+		    if (!this.validateSchemaLine(line) ) {
+		    	throw new Exception("Bad Schema for CSV Data: \n\t" + line);
 		    }
-		    // line is not visible here.
+
+		    // now add it to the schema cache
+		    this.addSchemaLine(line);
 		}
+		// only cache files that parsed
+		SCHEMA_FILES.put(schemaFile.getPath(), cached);
 		csvParser = new CSVParser(this.delimiter.charAt(0));
 	}
 
@@ -234,20 +301,115 @@ public class CSVInputSchema {
 		int colCount = 0;
 
 		for (Map.Entry<String, CSVSchemaColumn> entry : this.columnSchemas.entrySet()) {
-			if (entry.getValue().transform != CSVSchemaColumn.TransformType.SKIP) {
-				colCount++;
-			}
+			colCount += entry.getValue().getOutputWidth();
 		}
 
 		return colCount;
 
 	}
 
+	/**
+	 * Whether any column needs the statistics pre-pass. When none does
+	 * (e.g. only hashed and numeric columns) the data can be vectorized in a single pass.
+	 *
+	 * @return true if a pre-pass over the data is required
+	 */
+	public boolean requiresStatistics() {
+
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+			if (column.requiresStatistics()) {
+				return true;
+			}
+		}
+
+		return false;
+
+	}
+
 	public void evaluateInputRecord(String csvRecordLine) throws Exception {
 
-		// does the record have the same number of columns that our schema expects?
+		this.evaluateColumns(csvParser.parseLine(csvRecordLine), null);
+
+	}
+
+	/**
+	 * Whether the statistics can be estimated from a sample of the records: true when
+	 * no column needs the full set of distinct values
+	 */
+	public boolean supportsSampledStatistics() {
+
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+			if (column.requiresDictionary()) {
+				return false;
+			}
+		}
+
+		return true;
+
+	}
+
+	/**
+	 * @return an empty accumulator for a part of the data, see {@link #evaluateInputRecord(String, DatasetSummaryStatistics)}
+	 */
+	public DatasetSummaryStatistics newStatistics() {
+
+		return new DatasetSummaryStatistics(this.columnSchemas.size());
+
+	}
+
+	/**
+	 * Collects the statistics of a record into the calling thread's accumulator instead of
+	 * the schema, so threads can each evaluate a part of the dataset. Combine the parts
+	 * in data order with {@link #mergeStatistics(DatasetSummaryStatistics)}.
+	 *
+	 * @param csvRecordLine the record
+	 * @param stats the accumulator of the calling thread
+	 */
+	public void evaluateInputRecord(String csvRecordLine, DatasetSummaryStatistics stats) throws Exception {
+
+		this.evaluateInputRecord(csvRecordLine, stats, this.newParser());
+
+	}
+
+	/**
+	 * {@link #evaluateInputRecord(String, DatasetSummaryStatistics)} with the calling thread's parser
+	 *
+	 * @param parser a parser from {@link #newParser()}, only ever used by the calling thread
+	 */
+	public void evaluateInputRecord(String csvRecordLine, DatasetSummaryStatistics stats, CSVParser parser) throws Exception {
+
+		this.evaluateColumns(parser.parseLine(csvRecordLine), stats);
+
+	}
+
+	/**
+	 * The shared parser keeps state between lines, so each thread of a parallel pre-pass needs its own
+	 *
+	 * @return a parser for this schema's delimiter
+	 */
+	public CSVParser newParser() {
 
-		String[] columns = csvParser.parseLine(csvRecordLine);
+		return new CSVParser(this.delimiter.charAt(0));
+
+	}
+
+	/**
+	 * Folds the statistics of the next part of the data into the schema columns
+	 *
+	 * @param partial the accumulator of one part
+	 */
+	public void mergeStatistics(DatasetSummaryStatistics partial) {
+
+		int colIndex = 0;
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+			column.mergeStatistics(partial.getColumn(colIndex++));
+		}
+
+	}
+
+	private void evaluateColumns(String[] columns, DatasetSummaryStatistics stats) throws Exception {
+
+		// does the record have the same number of columns that our schema expects?
 
 		if (Strings.isNullOrEmpty(columns[0])) {
 			log.info("Skipping blank line");
@@ -269,7 +431,11 @@ public class CSVInputSchema {
 
 			try {
 				// now work with key and value...
-				colSchemaEntry.evaluateColumnValue(columns[colIndex]);
+				if (null == stats) {
+					colSchemaEntry.evaluateColumnValue(columns[colIndex]);
+				} else {
+					colSchemaEntry.evaluateColumnValue(columns[colIndex], stats.getColumn(colIndex));
+				}
 			} catch (NumberFormatException e) {
 				log.error( "Invalid number for column "+ colKey);
 				throw e;
@@ -279,6 +445,10 @@ public class CSVInputSchema {
 
 		}
 
+		if (null != stats) {
+			stats.recordCount++;
+		}
+
 	}
 
 
@@ -288,12 +458,20 @@ public class CSVInputSchema {
 	 *
 	 */
 	public void computeDatasetStatistics() {
+
+		// lay out the transformed vector: one-hot widths are only known now
+		int offset = 0;
+		for (CSVSchemaColumn column : this.columnSchemas.values()) {
+			column.outputOffset = offset;
+			offset += column.getOutputWidth();
+		}
+
 		this.hasComputedStats = true;
 	}
 
 	/**
-	 * Writes the Statistics we have generated to a JSON-formated file
-	 * TODO a function to read them back in.
+	 * Writes the Statistics we have generated to a JSON-formated file,
+	 * {@link #loadDatasetStatistics(Reader)} reads them back in.
 	 * @param w - the writer to write them out to
      */
 	public void dumpDatasetStatisticsToFile(Writer w) throws IOException {
@@ -310,29 +488,30 @@ public class CSVInputSchema {
 			dumpGenerator.writeStringField("key", value.name);
 			dumpGenerator.writeStringField("type", value.columnType.toString());
 			dumpGenerator.writeStringField("transform", value.transform.toString());
+			dumpGenerator.writeNumberField("offset", value.outputOffset);
 
 			switch ( value.transform) {
 				case LABEL:
 				case COPY:
-					dumpGenerator.writeNumberField("size", value.recordLabels.size());
-					dumpGenerator.writeFieldName("labels");
-
-					dumpGenerator.writeStartArray();
-					for (Map.Entry<String, Pair<Integer, Integer>> label : value.recordLabels.entrySet()) {
-						dumpGenerator.writeStartObject();
-						dumpGenerator.writeStringField("label", label.getKey());
-						dumpGenerator.writeNumberField("ID", label.getValue().getFirst());
-						dumpGenerator.writeNumberField("occurrences", label.getValue().getSecond());
-						dumpGenerator.writeEndObject();
-					}
-					dumpGenerator.writeEndArray();
-
+				case ONEHOT:
+					this.dumpLabels(dumpGenerator, value);
 					break;
 				case NORMALIZE:
 					dumpGenerator.writeNumberField("min", value.minValue);
 					dumpGenerator.writeNumberField("max", value.maxValue);
+					// nominal columns normalize their label IDs
+					if (CSVSchemaColumn.ColumnType.NUMERIC != value.columnType && CSVSchemaColumn.ColumnType.NUMERICDEFAULT != value.columnType) {
+						this.dumpLabels(dumpGenerator, value);
+					}
+					break;
+				case HASH:
+					dumpGenerator.writeNumberField("buckets", value.hashBuckets);
+					dumpGenerator.writeBooleanField("signed", value.signedHash);
 					break;
 				case BINARIZE:
+					// numeric columns binarize on the midpoint of the range
+					dumpGenerator.writeNumberField("min", value.minValue);
+					dumpGenerator.writeNumberField("max", value.maxValue);
 					break;
 				case SKIP:
 					break;
@@ -349,6 +528,100 @@ public class CSVInputSchema {
 		dumpGenerator.flush();
 
 	}
+
+	private void dumpLabels(JsonGenerator dumpGenerator, CSVSchemaColumn value) throws IOException {
+
+		dumpGenerator.writeNumberField("size", value.recordLabels.size());
+		dumpGenerator.writeFieldName("labels");
+
+		dumpGenerator.writeStartArray();
+		for (Map.Entry<String, Pair<Integer, Integer>> label : value.recordLabels.entrySet()) {
+			dumpGenerator.writeStartObject();
+			dumpGenerator.writeStringField("label", label.getKey());
+			dumpGenerator.writeNumberField("ID", label.getValue().getFirst());
+			dumpGenerator.writeNumberField("occurrences", label.getValue().getSecond());
+			dumpGenerator.writeEndObject();
+		}
+		dumpGenerator.writeEndArray();
+
+	}
+
+	/**
+	 * Reads statistics written by {@link #dumpDatasetStatisticsToFile(Writer)} back into the
+	 * columns of this schema, e.g. to vectorize new data exactly like earlier data without
+	 * another pre-pass. Columns are matched by name, columns the dump doesn't mention keep
+	 * their statistics.
+	 *
+	 * @param r the reader to read them from
+	 */
+	public void loadDatasetStatistics(Reader r) throws IOException {
+		JsonParser parser = new JsonFactory().createParser(r);
+		try {
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Statistics must be a JSON object");
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				parser.nextToken();
+				if (!"schema".equals(field)) {
+					parser.skipChildren();
+					continue;
+				}
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					this.loadColumnStatistics(parser);
+				}
+			}
+		} finally {
+			parser.close();
+		}
+		this.computeDatasetStatistics();
+	}
+
+	private void loadColumnStatistics(JsonParser parser) throws IOException {
+		String key = null;
+		ColumnStatistics stats = new ColumnStatistics();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			JsonToken token = parser.nextToken();
+			if ("key".equals(field)) {
+				key = parser.getText();
+			} else if ("min".equals(field)) {
+				stats.minValue = readDouble(parser, token);
+			} else if ("max".equals(field)) {
+				stats.maxValue = readDouble(parser, token);
+			} else if ("labels".equals(field)) {
+				// dumped in ID order, so re-adding them in order restores the IDs
+				while (parser.nextToken() == JsonToken.START_OBJECT) {
+					String label = null;
+					int occurrences = 0;
+					while (parser.nextToken() == JsonToken.FIELD_NAME) {
+						String labelField = parser.getCurrentName();
+						parser.nextToken();
+						if ("label".equals(labelField)) {
+							label = parser.getText();
+						} else if ("occurrences".equals(labelField)) {
+							occurrences = parser.getIntValue();
+						}
+					}
+					stats.labels.put(label, new Pair<>(stats.labels.size(), occurrences));
+				}
+			} else {
+				parser.skipChildren();
+			}
+		}
+		CSVSchemaColumn column = this.columnSchemas.get(key);
+		if (null == column) {
+			log.warn("Statistics for unknown column {} ignored", key);
+			return;
+		}
+		column.mergeStatistics(stats);
+	}
+
+	// non finite numbers are written as strings
+	private static double readDouble(JsonParser parser, JsonToken token) throws IOException {
+		return token == JsonToken.VALUE_STRING ? Double.parseDouble(parser.getText()) : parser.getDoubleValue();
+	}
+
 	public void debugPringDatasetStatistics() {
 
 		log.info("Print Schema --------");
@@ -362,7 +635,11 @@ public class CSVInputSchema {
 
 			log.info("> " + value.name + ", " + value.columnType + ", " + value.transform);
 
-			if (value.transform == TransformType.LABEL) {
+			if (value.transform == TransformType.ONEHOT) {
+
+				log.info("\t\toffset: {}, width: {}", value.outputOffset, value.getOutputWidth());
+
+			} else if (value.transform == TransformType.LABEL) {
 
 				log.info("\t> Label > Class Balance Report ");
 				if ( value.recordLabels.isEmpty()) {
@@ -379,9 +656,14 @@ public class CSVInputSchema {
 
 			} else if ( value.transform == TransformType.BINARIZE ) {
 				log.info("\t\tBINARY");
+			} else if ( value.transform == TransformType.HASH ) {
+				log.info("\t\tbuckets: {}, signed: {}", value.hashBuckets, value.signedHash);
 			} else {
 				log.info("\t\tmin: {}", value.minValue);
 				log.info("\t\tmax: {}", value.maxValue);
+				if (value.invalidDataEntries > 0) {
+					log.info("\t\tinvalid entries: {}", value.invalidDataEntries);
+				}
 
 			}
 
@@ -20,10 +20,13 @@
 
 package org.canova.cli.csv.schema;
 
-import java.util.LinkedHashMap;
+import java.nio.charset.Charset;
 import java.util.Map;
 
 import org.apache.commons.math3.util.Pair;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.util.MurmurHash3;
+import org.canova.cli.csv.statistics.ColumnStatistics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,9 +56,12 @@ TODO:
 */
 public class CSVSchemaColumn {
 	private static final Logger log = LoggerFactory.getLogger(CSVSchemaColumn.class);
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 
 	public enum ColumnType { NUMERIC, DATE, NOMINAL, NUMERICDEFAULT }
-	public enum TransformType { COPY, SKIP, BINARIZE, NORMALIZE, LABEL }
+	public enum TransformType { COPY, SKIP, BINARIZE, NORMALIZE, LABEL, HASH, ONEHOT }
+
+	public static final int DEFAULT_HASH_BUCKETS = 1 << 18;
 
 	public String name = ""; // the name of the attribute/column
 	public ColumnType columnType = null;
@@ -76,9 +82,26 @@ public class CSVSchemaColumn {
 
 
 
+	// everything collected so far, the public fields mirror it
+	private ColumnStatistics statistics = new ColumnStatistics();
+
 	// we want to track the label counts to understand the class balance
 	// layout: { columnName, columnID, occurenceCount }
-	public Map<String, Pair<Integer, Integer>> recordLabels = new LinkedHashMap<>();
+	public Map<String, Pair<Integer, Integer>> recordLabels = statistics.labels;
+
+	// !HASH: number of feature slots the column is hashed into, and whether each value
+	// is emitted as +/-1 (signed hashing, collisions tend to cancel out) or as 1
+	public int hashBuckets = DEFAULT_HASH_BUCKETS;
+	public boolean signedHash = false;
+
+	// statistics from a sample don't cover every value: clamp normalized values into
+	// the sampled range and count how often that happened
+	public boolean clampToRange = false;
+	public long clampedValues = 0;
+
+	// index of this column's first entry in the transformed vector, assigned by
+	// CSVInputSchema.computeDatasetStatistics() once the widths are known
+	public int outputOffset = -1;
 
 
 	public CSVSchemaColumn(String colName, ColumnType colType, TransformType transformType) {
@@ -89,6 +112,78 @@ public class CSVSchemaColumn {
 
 	}
 
+	/**
+	 * A !HASH column
+	 * @param hashBuckets the number of feature slots
+	 * @param signedHash emit +/-1 instead of 1
+	 */
+	public CSVSchemaColumn(String colName, ColumnType colType, int hashBuckets, boolean signedHash) {
+
+		this(colName, colType, TransformType.HASH);
+		if (hashBuckets < 1) {
+			throw new IllegalArgumentException("Hash bucket count must be positive, was " + hashBuckets);
+		}
+		this.hashBuckets = hashBuckets;
+		this.signedHash = signedHash;
+
+	}
+
+	/**
+	 * Whether the transform of this column needs the statistics pre-pass.
+	 * Hashed columns and numeric copies are computed from the value alone.
+	 */
+	public boolean requiresStatistics() {
+
+		switch (this.transform) {
+			case SKIP:
+			case HASH:
+				return false;
+			case COPY:
+			case LABEL:
+				return this.columnType != ColumnType.NUMERIC && this.columnType != ColumnType.NUMERICDEFAULT;
+			default:
+				return true;
+		}
+
+	}
+
+	/**
+	 * Whether the transform needs every distinct value seen in the pre-pass (label
+	 * IDs, one-hot slots). Those can't be estimated from a sample, unlike min / max.
+	 */
+	public boolean requiresDictionary() {
+
+		if (!this.requiresStatistics()) {
+			return false;
+		}
+		if (TransformType.ONEHOT == this.transform) {
+			return true;
+		}
+		if (TransformType.BINARIZE == this.transform) {
+			return false;
+		}
+		return this.columnType != ColumnType.NUMERIC && this.columnType != ColumnType.NUMERICDEFAULT;
+
+	}
+
+	/**
+	 * @return the number of vector entries this column produces
+	 */
+	public int getOutputWidth() {
+
+		switch (this.transform) {
+			case SKIP:
+				return 0;
+			case HASH:
+				return this.hashBuckets;
+			case ONEHOT:
+				return this.recordLabels.size();
+			default:
+				return 1;
+		}
+
+	}
+
 	/**
 	 * This method collects dataset statistics about the column that we'll
 	 * need later to
@@ -100,6 +195,26 @@ public class CSVSchemaColumn {
 	 */
 	public void evaluateColumnValue(String value) throws Exception {
 
+		try {
+			this.evaluateColumnValue(value, this.statistics);
+		} finally {
+			// an invalid value is counted before it's reported
+			this.syncStatistics();
+		}
+
+	}
+
+	/**
+	 * Collects the statistics for one value into a separate accumulator, leaving
+	 * this column untouched. Lets each thread of a parallel pre-pass work on its own
+	 * part of the data, see {@link #mergeStatistics(ColumnStatistics)}.
+	 *
+	 * @param value the raw column value
+	 * @param stats the accumulator of the calling thread
+	 * @throws Exception
+	 */
+	public void evaluateColumnValue(String value, ColumnStatistics stats) throws Exception {
+
 		/*
 		 * Need to get stats for the following transforms here:
 		 * 1. normalize
@@ -107,70 +222,74 @@ public class CSVSchemaColumn {
 		 *
 		 */
 
+		if (TransformType.HASH == this.transform) {
+			// the hashing trick needs no dictionary and no statistics
+			return;
+		}
+
+		if (TransformType.ONEHOT == this.transform) {
+			// numeric columns are expanded by their distinct values too
+			stats.addLabel(value.trim());
+			return;
+		}
+
 		if ( ColumnType.NUMERIC == this.columnType|| ColumnType.NUMERICDEFAULT== this.columnType) {
 			// then we want to look at min/max values if the field isn't blank. (and allowed to be blank)
 
 			if ((ColumnType.NUMERICDEFAULT != this.columnType) || !value.trim().isEmpty()) {
 
 				double tmpVal;
-				tmpVal = Double.parseDouble(value);
+				try {
+					tmpVal = Double.parseDouble(value);
+				} catch (NumberFormatException e) {
+					stats.invalidDataEntries++;
+					throw e;
+				}
 
 				// System.out.println( "converted: " + tmpVal );
 
 				if (Double.isNaN(tmpVal)) {
+					stats.invalidDataEntries++;
 					throw new Exception("The column was defined as Numeric yet could not be parsed as a Double");
 				}
 
-				if (Double.isNaN(this.minValue)) {
-
-					this.minValue = tmpVal;
-
-				} else if (tmpVal < this.minValue) {
-
-					this.minValue = tmpVal;
-
-				}
-
-				if (Double.isNaN(this.maxValue)) {
-
-					this.maxValue = tmpVal;
-
-				} else if (tmpVal > this.maxValue) {
-
-					this.maxValue = tmpVal;
-
-				}
+				stats.add(tmpVal);
 			}
 		} else if ( ColumnType.NOMINAL == this.columnType || TransformType.LABEL == this.transform ) {
 
 		//	System.out.println( "> label '" + value + "' " );
 
-			String trimmedKey = value.trim();
+			stats.addLabel(value.trim());
 
-			// then we want to track the record label
-			if ( this.recordLabels.containsKey( trimmedKey ) ) {
+		} else if (TransformType.BINARIZE != this.transform) {
+			// BINARIZE doesn't require validation .. min/max etc..
+			throw new Exception("Unknown ColumnType / Transform type combination "+this.columnType+"/"+ this.transform);
+		}
 
-				//System.out.println( " size: " + this.recordLabels.size() );
+	}
 
-				Integer labelID = this.recordLabels.get( trimmedKey ).getFirst();
-				Integer countInt = this.recordLabels.get( trimmedKey ).getSecond();
-				countInt++;
+	/**
+	 * Folds the statistics a thread collected for the next part of the data into this column.
+	 * Merging the parts in data order gives the same result as evaluating every value here.
+	 *
+	 * @param partial the accumulator of one part
+	 */
+	public void mergeStatistics(ColumnStatistics partial) {
 
-				this.recordLabels.put( trimmedKey, new Pair<>( labelID, countInt ) );
+		this.statistics.merge(partial);
+		this.syncStatistics();
 
-			} else {
+	}
 
-				Integer labelID = this.recordLabels.size();
-				this.recordLabels.put( trimmedKey, new Pair<>( labelID, 1 ) );
+	public ColumnStatistics getStatistics() {
+		return this.statistics;
+	}
 
-			//	System.out.println( ">>> Adding Label: '" + trimmedKey + "' @ " + labelID );
+	private void syncStatistics() {
 
-			}
-
-		} else if (TransformType.BINARIZE != this.transform) {
-			// BINARIZE doesn't require validation .. min/max etc..
-			throw new Exception("Unknown ColumnType / Transform type combination "+this.columnType+"/"+ this.transform);
-		}
+		this.minValue = this.statistics.minValue;
+		this.maxValue = this.statistics.maxValue;
+		this.invalidDataEntries = this.statistics.invalidDataEntries;
 
 	}
 
@@ -229,6 +348,23 @@ public class CSVSchemaColumn {
 
 	}
 
+	/**
+	 * The ID of a value that must have been seen in the statistics pass. Statistics
+	 * loaded from an earlier run (incremental mode) don't know values that only show up
+	 * in the new data, those records can't be vectorized consistently with the old ones.
+	 *
+	 * @throws IllegalArgumentException if the value has no ID
+	 */
+	private int requireLabelID( String label ) {
+
+		Integer ID = this.getLabelID( label );
+		if (null == ID) {
+			throw new IllegalArgumentException("Column " + this.name + ": value '" + label + "' wasn't seen when the dataset statistics were collected");
+		}
+		return ID;
+
+	}
+
 
 	public double transformColumnValue(String inputColumnValue) {
 
@@ -241,6 +377,10 @@ public class CSVSchemaColumn {
 				return this.copy(inputColumnValue);
 			case NORMALIZE:
 				return this.normalize(inputColumnValue);
+			case HASH:
+				return this.hashIndex(inputColumnValue);
+			case ONEHOT:
+				return this.copy(inputColumnValue);
 			case SKIP:
 				return 0.0; // but the vector engine has to remove this from output
 		}
@@ -265,7 +405,7 @@ public class CSVSchemaColumn {
 
 			String key = inputColumnValue.trim();
 
-			return_value = this.getLabelID( key );
+			return_value = this.requireLabelID( key );
 
 
 		}
@@ -321,6 +461,10 @@ public class CSVSchemaColumn {
 					return_value = (avgValue - this.minValue) / range;
 				} else {
 					double val = Double.parseDouble(inputColumnValue);
+					if (this.clampToRange && (val < this.minValue || val > this.maxValue)) {
+						val = Math.min(Math.max(val, this.minValue), this.maxValue);
+						this.clampedValues++;
+					}
 					double normalizedOut = (val - this.minValue) / range;
 					return_value = normalizedOut;
 				}
@@ -333,8 +477,7 @@ public class CSVSchemaColumn {
 			String key = inputColumnValue.trim();
 
 			double totalLabels = this.recordLabels.size();
-			Integer ID = this.getLabelID(key);
-			double labelIndex = this.getLabelID( key ) + 1.0;
+			double labelIndex = this.requireLabelID( key ) + 1.0;
 
 			//System.out.println("Index Label: " + labelIndex);
 
@@ -365,13 +508,7 @@ public class CSVSchemaColumn {
 			// its a nominal value in the indexed list -> pull the index, return it as a double
 
 			// TODO: how do get a numeric index from a list of labels?
-			Integer ID = this.getLabelID( inputColumnValue.trim() );
-
-			if (ID == null) {
-				log.error("label:{} returned NULL -- inputColumnValue:{}", this.name, inputColumnValue);
-			}
-
-			return_value = ID;
+			return_value = this.requireLabelID( inputColumnValue.trim() );
 
 		}
 
@@ -382,5 +519,54 @@ public class CSVSchemaColumn {
 
 
 
-}
+	/**
+	 * The raw 32 bit hash of the trimmed value's UTF-8 bytes
+	 */
+	private int hashValue(String inputColumnValue) {
+
+		byte[] bytes = inputColumnValue.trim().getBytes(UTF_8);
+		return MurmurHash3.hash32(bytes, 0, bytes.length);
+
+	}
+
+	/*
+	 * Needed Statistics for hash() - none, the bucket of a value is a pure function of it
+	 */
+	public int hashIndex(String inputColumnValue) {
+
+		return ((hashValue(inputColumnValue) & Integer.MAX_VALUE) % this.hashBuckets);
+
+	}
+
+	/**
+	 * Hashes the value into a sparse block of hashBuckets entries with a single non zero entry
+	 *
+	 * @param inputColumnValue the raw column value
+	 * @return the sparse block for the value
+	 */
+	public SparseVectorWritable hash(String inputColumnValue) {
+
+		int h = hashValue(inputColumnValue);
+		SparseVectorWritable ret = new SparseVectorWritable(this.hashBuckets);
+		// the low bits pick the bucket, the otherwise unused sign bit picks the sign
+		double value = (this.signedHash && h < 0) ? -1.0 : 1.0;
+		ret.add((h & Integer.MAX_VALUE) % this.hashBuckets, value);
+		return ret;
 
+	}
+
+	/*
+	 * Needed Statistics for oneHot() - index of labels to IDs, the block is as wide as the label count
+	 *
+	 * @throws IllegalArgumentException for a value the pre-pass never saw, as for NORMALIZE and LABEL
+	 */
+	public SparseVectorWritable oneHot(String inputColumnValue) {
+
+		SparseVectorWritable ret = new SparseVectorWritable(this.recordLabels.size());
+		ret.add(this.requireLabelID( inputColumnValue.trim() ), 1.0);
+
+		return ret;
+
+	}
+
+}
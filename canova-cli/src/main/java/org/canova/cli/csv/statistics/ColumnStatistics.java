@@ -0,0 +1,137 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.csv.statistics;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.math3.util.Pair;
+
+/**
+ * Accumulates the statistics of one column (or one vector transform) over part of a dataset
+ * -	min / max
+ * -	count and invalid entry count
+ * -	mean and variance (Welford's single pass update)
+ * -	label occurrence counts, labels numbered in first seen order
+ *
+ * An accumulator is only ever touched by one thread. Partial results for
+ * different parts of the data are combined with {@link #merge(ColumnStatistics)},
+ * which is associative: merging the parts of a dataset in order gives the same
+ * min / max, counts and label IDs as one sequential pass over it.
+ *
+ * @author josh
+ *
+ */
+public class ColumnStatistics {
+
+	public double minValue = Double.NaN;
+	public double maxValue = Double.NaN;
+
+	// number of numeric values added
+	public long count = 0;
+	public double mean = 0.0;
+	// sum of squared differences from the mean
+	private double m2 = 0.0;
+
+	// used to track input values that do not match the schema data type
+	public long invalidDataEntries = 0;
+
+	// layout: { label, { labelID, occurenceCount } }
+	public Map<String, Pair<Integer, Integer>> labels = new LinkedHashMap<>();
+
+	public void add(double value) {
+
+		if (Double.isNaN(this.minValue) || value < this.minValue) {
+			this.minValue = value;
+		}
+		if (Double.isNaN(this.maxValue) || value > this.maxValue) {
+			this.maxValue = value;
+		}
+
+		this.count++;
+		double delta = value - this.mean;
+		this.mean += delta / this.count;
+		this.m2 += delta * (value - this.mean);
+
+	}
+
+	public void addLabel(String label) {
+		this.addLabel(label, 1);
+	}
+
+	private void addLabel(String label, int occurrences) {
+
+		Pair<Integer, Integer> entry = this.labels.get(label);
+		if (null == entry) {
+			this.labels.put(label, new Pair<>(this.labels.size(), occurrences));
+		} else {
+			this.labels.put(label, new Pair<>(entry.getFirst(), entry.getSecond() + occurrences));
+		}
+
+	}
+
+	/**
+	 * @return the population variance of the values added
+	 */
+	public double variance() {
+		return this.count > 0 ? this.m2 / this.count : 0.0;
+	}
+
+	public double stddev() {
+		return Math.sqrt(this.variance());
+	}
+
+	/**
+	 * Folds the statistics of the data that comes after this accumulator's data into it.
+	 * Labels new to this accumulator get the next IDs, in the other accumulator's order.
+	 *
+	 * @param other the accumulator for the following part of the data, left unchanged
+	 * @return this
+	 */
+	public ColumnStatistics merge(ColumnStatistics other) {
+
+		if (!Double.isNaN(other.minValue) && (Double.isNaN(this.minValue) || other.minValue < this.minValue)) {
+			this.minValue = other.minValue;
+		}
+		if (!Double.isNaN(other.maxValue) && (Double.isNaN(this.maxValue) || other.maxValue > this.maxValue)) {
+			this.maxValue = other.maxValue;
+		}
+
+		// Chan et al. pairwise combination of the Welford moments
+		if (other.count > 0) {
+			long total = this.count + other.count;
+			double delta = other.mean - this.mean;
+			this.mean += delta * other.count / total;
+			this.m2 += other.m2 + delta * delta * ((double) this.count * other.count / total);
+			this.count = total;
+		}
+
+		this.invalidDataEntries += other.invalidDataEntries;
+
+		for (Map.Entry<String, Pair<Integer, Integer>> label : other.labels.entrySet()) {
+			this.addLabel(label.getKey(), label.getValue().getSecond());
+		}
+
+		return this;
+
+	}
+
+}
@@ -20,6 +20,9 @@
 
 package org.canova.cli.csv.statistics;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Tracks statistics about the dataset being vectorized
  * - right now just focused on the CLI+CSV conversion stuff
@@ -34,9 +37,50 @@ package org.canova.cli.csv.statistics;
  * -	automatically flag suspect data (stasitically)
  * -	suggest settings for training based on dataset
  * 
+ * One instance holds a thread's statistics for a part of the dataset (one
+ * {@link ColumnStatistics} per schema column), parts are combined with
+ * {@link #merge(DatasetSummaryStatistics)}
+ *
  * @author josh
  *
  */
 public class DatasetSummaryStatistics {
 
+	public long recordCount = 0;
+
+	private List<ColumnStatistics> columns = new ArrayList<>();
+
+	public DatasetSummaryStatistics(int numColumns) {
+		for (int i = 0; i < numColumns; i++) {
+			this.columns.add(new ColumnStatistics());
+		}
+	}
+
+	public ColumnStatistics getColumn(int index) {
+		return this.columns.get(index);
+	}
+
+	public int getNumColumns() {
+		return this.columns.size();
+	}
+
+	/**
+	 * Folds in the statistics of the part of the data that follows this one
+	 *
+	 * @param other the following part
+	 * @return this
+	 */
+	public DatasetSummaryStatistics merge(DatasetSummaryStatistics other) {
+
+		if (other.getNumColumns() != this.getNumColumns()) {
+			throw new IllegalArgumentException("Can't merge statistics over " + other.getNumColumns() + " columns into " + this.getNumColumns());
+		}
+		for (int i = 0; i < this.columns.size(); i++) {
+			this.columns.get(i).merge(other.getColumn(i));
+		}
+		this.recordCount += other.recordCount;
+		return this;
+
+	}
+
 }
@@ -0,0 +1,191 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.csv.statistics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Draws a random sample of lines from a set of files without reading them end to end
+ *
+ * The files are treated as one stretch of bytes cut into as many equal strata as
+ * lines are wanted. A random byte offset is drawn in each stratum, the reader seeks
+ * there and takes the first line that starts at or after it. Stratifying by offset
+ * spreads the sample over the whole input (no runs of adjacent lines), and only
+ * the bytes of the sampled lines are read.
+ *
+ * A line is picked with a probability proportional to the length of the line in
+ * front of it, which is fine for estimating ranges but not for exact frequencies.
+ *
+ * @author josh
+ *
+ */
+public class StratifiedLineSampler {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private final List<File> files = new ArrayList<>();
+	private final Random random;
+	private boolean skipFirstLine = false;
+
+	public StratifiedLineSampler(URI[] locations, long seed) {
+		for (URI location : locations) {
+			File f = new File(location);
+			if (f.isFile() && f.length() > 0) {
+				this.files.add(f);
+			}
+		}
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Never sample the first line of the first file, e.g. a csv header
+	 */
+	public StratifiedLineSampler skipFirstLine(boolean skipFirstLine) {
+		this.skipFirstLine = skipFirstLine;
+		return this;
+	}
+
+	/**
+	 * @param numLines the number of strata, at most this many lines come back
+	 * @return the sampled lines in file order, a line is never returned twice
+	 */
+	public List<String> sample(int numLines) throws IOException {
+
+		List<String> ret = new ArrayList<>(numLines);
+		long totalLength = 0;
+		for (File f : this.files) {
+			totalLength += f.length();
+		}
+		if (totalLength == 0 || numLines <= 0) {
+			return ret;
+		}
+
+		double stratumLength = (double) totalLength / numLines;
+		int fileIndex = 0;
+		long fileStart = 0;
+		long lastLineStart = -1;
+		RandomAccessFile in = null;
+
+		try {
+			for (int i = 0; i < numLines; i++) {
+
+				long offset = (long) ((i + this.random.nextDouble()) * stratumLength);
+				offset = Math.min(offset, totalLength - 1);
+
+				// strata are visited in order, so the file only ever moves forward
+				boolean nextFile = false;
+				while (offset >= fileStart + this.files.get(fileIndex).length()) {
+					fileStart += this.files.get(fileIndex).length();
+					fileIndex++;
+					nextFile = true;
+				}
+				if (null == in || nextFile) {
+					if (null != in) {
+						in.close();
+					}
+					in = new RandomAccessFile(this.files.get(fileIndex), "r");
+					lastLineStart = -1;
+				}
+
+				long lineStart = this.nextLineStart(in, offset - fileStart);
+				if (lineStart < 0 || lineStart == lastLineStart) {
+					continue;
+				}
+				if (this.skipFirstLine && 0 == fileIndex && 0 == lineStart) {
+					continue;
+				}
+				lastLineStart = lineStart;
+				ret.add(this.readLine(in, lineStart));
+
+			}
+		} finally {
+			if (null != in) {
+				in.close();
+			}
+		}
+
+		return ret;
+
+	}
+
+	/**
+	 * @return the offset of the first line starting at or after position, -1 at the end of the file
+	 */
+	private long nextLineStart(RandomAccessFile in, long position) throws IOException {
+
+		if (0 == position) {
+			return 0;
+		}
+
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		// a line starts at position if the byte before it ends a line
+		long pos = position - 1;
+		in.seek(pos);
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			for (int i = 0; i < read; i++) {
+				if ('\n' == buffer[i]) {
+					long start = pos + i + 1;
+					return start < in.length() ? start : -1;
+				}
+			}
+			pos += read;
+		}
+		return -1;
+
+	}
+
+	private String readLine(RandomAccessFile in, long lineStart) throws IOException {
+
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		in.seek(lineStart);
+		int read;
+		outer:
+		while ((read = in.read(buffer)) > 0) {
+			for (int i = 0; i < read; i++) {
+				if ('\n' == buffer[i]) {
+					line.write(buffer, 0, i);
+					break outer;
+				}
+			}
+			line.write(buffer, 0, read);
+		}
+
+		byte[] bytes = line.toByteArray();
+		int length = bytes.length;
+		if (length > 0 && '\r' == bytes[length - 1]) {
+			length--;
+		}
+		return new String(bytes, 0, length, UTF_8);
+
+	}
+
+}
@@ -22,6 +22,8 @@ package org.canova.cli.driver;
 
 import java.util.Arrays;
 
+import org.canova.cli.subcommands.Serve;
+import org.canova.cli.subcommands.Submit;
 import org.canova.cli.subcommands.Vectorize;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.CmdLineException;
@@ -41,9 +43,11 @@ import org.slf4j.LoggerFactory;
 public class CommandLineInterfaceDriver {
     private static final Logger log = LoggerFactory.getLogger(CommandLineInterfaceDriver.class);
 
-    @Argument(required=true,index=0,metaVar="action",usage="subcommands, e.g., {vectorize}",handler=SubCommandHandler.class)
+    @Argument(required=true,index=0,metaVar="action",usage="subcommands, e.g., {vectorize, serve, submit}",handler=SubCommandHandler.class)
     @SubCommands({
-            @SubCommand(name="vectorize",impl=Vectorize.class)
+            @SubCommand(name="vectorize",impl=Vectorize.class),
+            @SubCommand(name="serve",impl=Serve.class),
+            @SubCommand(name="submit",impl=Submit.class)
     })
     protected org.canova.cli.subcommands.SubCommand action;
 
@@ -74,6 +78,8 @@ public class CommandLineInterfaceDriver {
     	System.out.println( "" );
     	System.out.println( "\tCommands:" );
     	System.out.println( "\t\tvectorize\t\tVectorization engine for text, csv, image, and custom data vectorization" );
+    	System.out.println( "\t\tserve\t\t\tKeeps a warm vectorization daemon running on a loopback port" );
+    	System.out.println( "\t\tsubmit\t\t\tRuns a vectorization job on the daemon" );
     	System.out.println( "" );
     	System.out.println( "\tExample:" );
     	System.out.println( "\t\tcanova vectorize -conf /tmp/iris_conf.txt " );
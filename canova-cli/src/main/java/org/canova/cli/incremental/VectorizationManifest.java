@@ -0,0 +1,303 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.incremental;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Record of an incremental vectorization: which input files went into which output
+ * part, and the dataset statistics every part was vectorized with.
+ *
+ * A file counts as processed when its path, size and modification time match an
+ * entry, or when its content hash matches one (a copy, or a touched file). A file
+ * that changed in place is vectorized again into the part it went into, which
+ * replaces the part and the file's entry, see {@link #getEntry(File)}.
+ *
+ * The manifest is rewritten after every finished part, always to a temporary file
+ * that is then renamed over the old one, so a killed job leaves either the old or
+ * the new manifest and never a torn one.
+ *
+ * @author josh
+ *
+ */
+public class VectorizationManifest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	public static class Entry {
+		public String path;
+		public long size;
+		public long lastModified;
+		public String hash;
+		public String part;
+	}
+
+	private final File manifestFile;
+	private List<Entry> entries = new ArrayList<>();
+	private Map<String, Entry> byPath = new HashMap<>();
+	private Map<String, Entry> byHash = new HashMap<>();
+	private int nextPart = 0;
+	private String statistics = null;
+
+	public VectorizationManifest(File manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+
+	/**
+	 * Loads the manifest if it exists, a missing manifest is an empty one
+	 */
+	public static VectorizationManifest load(File manifestFile) throws IOException {
+
+		VectorizationManifest manifest = new VectorizationManifest(manifestFile);
+		if (!manifestFile.exists()) {
+			return manifest;
+		}
+
+		try (Reader r = new InputStreamReader(new FileInputStream(manifestFile), UTF_8)) {
+			JsonParser parser = new JsonFactory().createParser(r);
+			if (parser.nextToken() != JsonToken.START_OBJECT) {
+				throw new IOException("Bad manifest " + manifestFile);
+			}
+			while (parser.nextToken() == JsonToken.FIELD_NAME) {
+				String field = parser.getCurrentName();
+				JsonToken token = parser.nextToken();
+				if ("nextPart".equals(field)) {
+					manifest.nextPart = parser.getIntValue();
+				} else if ("statistics".equals(field)) {
+					manifest.statistics = token == JsonToken.VALUE_NULL ? null : parser.getText();
+				} else if ("files".equals(field)) {
+					while (parser.nextToken() == JsonToken.START_OBJECT) {
+						manifest.add(readEntry(parser));
+					}
+				} else {
+					parser.skipChildren();
+				}
+			}
+		}
+		return manifest;
+
+	}
+
+	private static Entry readEntry(JsonParser parser) throws IOException {
+
+		Entry entry = new Entry();
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			String field = parser.getCurrentName();
+			parser.nextToken();
+			if ("path".equals(field)) {
+				entry.path = parser.getText();
+			} else if ("size".equals(field)) {
+				entry.size = parser.getLongValue();
+			} else if ("lastModified".equals(field)) {
+				entry.lastModified = parser.getLongValue();
+			} else if ("hash".equals(field)) {
+				entry.hash = parser.getText();
+			} else if ("part".equals(field)) {
+				entry.part = parser.getText();
+			} else {
+				parser.skipChildren();
+			}
+		}
+		return entry;
+
+	}
+
+	// a file recorded again (changed in place) replaces its old entry
+	private void add(Entry entry) {
+		Entry old = this.byPath.put(entry.path, entry);
+		if (null != old) {
+			this.entries.remove(old);
+			if (old == this.byHash.get(old.hash)) {
+				this.byHash.remove(old.hash);
+			}
+		}
+		this.entries.add(entry);
+		this.byHash.put(entry.hash, entry);
+	}
+
+	/**
+	 * @return true if the file, or a file with the same content, already went into a part
+	 */
+	public boolean isProcessed(File f) throws IOException {
+
+		Entry entry = this.byPath.get(f.getAbsolutePath());
+		if (null != entry) {
+			if (entry.size == f.length() && entry.lastModified == f.lastModified()) {
+				return true;
+			}
+			// touched, or changed in place: its own content decides, not a copy elsewhere
+			return entry.hash.equals(hash(f));
+		}
+		return this.byHash.containsKey(hash(f));
+
+	}
+
+	/**
+	 * @return the entry recorded for the file's path, null if it never went into a part
+	 */
+	public Entry getEntry(File f) {
+		return this.byPath.get(f.getAbsolutePath());
+	}
+
+	/**
+	 * @return the number of files that went into the given part
+	 */
+	public int numFiles(String part) {
+		int count = 0;
+		for (Entry entry : this.entries) {
+			if (part.equals(entry.part)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Records that the files went into the given output part
+	 */
+	public void addPart(List<File> files, String part) throws IOException {
+
+		for (File f : files) {
+			Entry entry = new Entry();
+			entry.path = f.getAbsolutePath();
+			entry.size = f.length();
+			entry.lastModified = f.lastModified();
+			entry.hash = hash(f);
+			entry.part = part;
+			this.add(entry);
+		}
+
+	}
+
+	/**
+	 * @return true if some file went into the given part
+	 */
+	public boolean hasPart(String part) {
+		for (Entry entry : this.entries) {
+			if (part.equals(entry.part)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the name of the next output part, and reserves it
+	 */
+	public String nextPartName() {
+		return String.format("part-%05d", this.nextPart++);
+	}
+
+	/**
+	 * The frozen dataset statistics (as written by the vectorization engine), null before the first part
+	 */
+	public String getStatistics() {
+		return this.statistics;
+	}
+
+	public void setStatistics(String statistics) {
+		this.statistics = statistics;
+	}
+
+	public List<Entry> getEntries() {
+		return this.entries;
+	}
+
+	/**
+	 * Writes the manifest to a temporary file and renames it over the old manifest
+	 */
+	public void save() throws IOException {
+
+		File tmp = new File(this.manifestFile.getPath() + ".tmp");
+		try (Writer w = new OutputStreamWriter(new FileOutputStream(tmp), UTF_8)) {
+			JsonGenerator generator = new JsonFactory().createGenerator(w);
+			generator.useDefaultPrettyPrinter();
+			generator.writeStartObject();
+			generator.writeNumberField("nextPart", this.nextPart);
+			generator.writeStringField("statistics", this.statistics);
+			generator.writeFieldName("files");
+			generator.writeStartArray();
+			for (Entry entry : this.entries) {
+				generator.writeStartObject();
+				generator.writeStringField("path", entry.path);
+				generator.writeNumberField("size", entry.size);
+				generator.writeNumberField("lastModified", entry.lastModified);
+				generator.writeStringField("hash", entry.hash);
+				generator.writeStringField("part", entry.part);
+				generator.writeEndObject();
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+			generator.flush();
+		}
+		Files.move(tmp.toPath(), this.manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+	}
+
+	/**
+	 * @return the hex MD5 of the file's content
+	 */
+	public static String hash(File f) throws IOException {
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] buffer = new byte[65536];
+		try (InputStream in = new FileInputStream(f)) {
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b & 0xff));
+		}
+		return sb.toString();
+
+	}
+
+}
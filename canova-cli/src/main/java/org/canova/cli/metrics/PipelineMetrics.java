@@ -0,0 +1,420 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.metrics;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Throughput and latency numbers for one run of a vectorization pipeline
+ *
+ * -	rows vectorized and input bytes read (UTF-8 line sizes, over all passes), and their rates since start()
+ * -	per stage (read, parse, transform, write) call counts, time spent, and a latency histogram
+ * -	queue depths (current and max) for the buffers a pipeline keeps, e.g. the shuffle buffer
+ * -	GC pause time since start()
+ *
+ * Stages are timed by the caller:
+ *
+ * 		long t = System.nanoTime();
+ * 		Collection<Writable> w = reader.next();
+ * 		t = metrics.lap(Stage.READ, t);
+ * 		writer.write(w);
+ * 		metrics.lap(Stage.WRITE, t);
+ *
+ * Everything is updated with atomics, so worker threads can report into the same instance.
+ * Histograms have one bucket per power of two nanoseconds, percentiles are reported as the
+ * upper bound of their bucket.
+ *
+ * @author josh
+ *
+ */
+public class PipelineMetrics {
+
+	private static final Logger log = LoggerFactory.getLogger(PipelineMetrics.class);
+
+	public enum Stage { READ, PARSE, TRANSFORM, WRITE }
+
+	private final StageMetrics[] stages = new StageMetrics[Stage.values().length];
+	private final AtomicLong rows = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final Map<String, QueueDepth> queues = new TreeMap<>();
+
+	private long startNanos = System.nanoTime();
+	private long stopNanos = -1;
+	private long gcMillisAtStart = gcMillis();
+	private long gcMillisAtStop = -1;
+	private ScheduledExecutorService reporter = null;
+
+	public PipelineMetrics() {
+		for (Stage stage : Stage.values()) {
+			this.stages[stage.ordinal()] = new StageMetrics();
+		}
+	}
+
+	/**
+	 * Restarts the clocks the rates and the GC time are measured from
+	 */
+	public void start() {
+		this.startNanos = System.nanoTime();
+		this.stopNanos = -1;
+		this.gcMillisAtStart = gcMillis();
+		this.gcMillisAtStop = -1;
+	}
+
+	/**
+	 * Freezes the clocks and stops periodic reporting
+	 */
+	public void stop() {
+		this.stopReporting();
+		this.stopNanos = System.nanoTime();
+		this.gcMillisAtStop = gcMillis();
+	}
+
+	/**
+	 * Logs a summary line every intervalSeconds until stop()
+	 */
+	public void startReporting(long intervalSeconds) {
+		this.startReporting(intervalSeconds, null);
+	}
+
+	/**
+	 * Prints a summary line to the console every intervalSeconds until stop(), logs it if console is null
+	 */
+	public synchronized void startReporting(long intervalSeconds, final PrintStream console) {
+
+		if (intervalSeconds <= 0 || null != this.reporter) {
+			return;
+		}
+		this.reporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "canova-metrics");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.reporter.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				if (null == console) {
+					log.info(summary());
+				} else {
+					console.println("Pipeline metrics: " + summary());
+				}
+			}
+		}, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+
+	}
+
+	public synchronized void stopReporting() {
+		if (null != this.reporter) {
+			this.reporter.shutdownNow();
+			this.reporter = null;
+		}
+	}
+
+	/**
+	 * Records the time since startNanos against the stage
+	 *
+	 * @return now, the start of whatever comes next
+	 */
+	public long lap(Stage stage, long startNanos) {
+		long now = System.nanoTime();
+		this.stages[stage.ordinal()].record(now - startNanos);
+		return now;
+	}
+
+	public void record(Stage stage, long nanos) {
+		this.stages[stage.ordinal()].record(nanos);
+	}
+
+	public void addRows(long count) {
+		this.rows.addAndGet(count);
+	}
+
+	public void addBytes(long count) {
+		this.bytes.addAndGet(count);
+	}
+
+	/**
+	 * Counts one line of input: its UTF-8 encoded size plus the line break
+	 */
+	public void addLine(CharSequence line) {
+		this.bytes.addAndGet(utf8Length(line) + 1);
+	}
+
+	/**
+	 * @return the number of bytes the chars take in UTF-8, without encoding them
+	 */
+	static long utf8Length(CharSequence chars) {
+		long length = 0;
+		for (int i = 0; i < chars.length(); i++) {
+			char c = chars.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < chars.length() && Character.isLowSurrogate(chars.charAt(i + 1))) {
+				// a pair of UTF-16 chars, one 4 byte code point
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	public void setQueueDepth(String queue, long depth) {
+		QueueDepth q;
+		synchronized (this.queues) {
+			q = this.queues.get(queue);
+			if (null == q) {
+				q = new QueueDepth();
+				this.queues.put(queue, q);
+			}
+		}
+		q.set(depth);
+	}
+
+	public long getRows() {
+		return this.rows.get();
+	}
+
+	public long getBytes() {
+		return this.bytes.get();
+	}
+
+	public StageMetrics getStage(Stage stage) {
+		return this.stages[stage.ordinal()];
+	}
+
+	public double elapsedSeconds() {
+		long end = this.stopNanos < 0 ? System.nanoTime() : this.stopNanos;
+		return (end - this.startNanos) / 1e9;
+	}
+
+	public long gcPauseMillis() {
+		long end = this.gcMillisAtStop < 0 ? gcMillis() : this.gcMillisAtStop;
+		return end - this.gcMillisAtStart;
+	}
+
+	private double rate(long count) {
+		double seconds = this.elapsedSeconds();
+		return seconds > 0 ? count / seconds : 0.0;
+	}
+
+	/**
+	 * @return a one line summary for the log
+	 */
+	public String summary() {
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "%d rows (%.1f rows/sec, %.1f KB/sec) in %.1fs, GC %dms",
+				this.getRows(), this.rate(this.getRows()), this.rate(this.getBytes()) / 1024, this.elapsedSeconds(), this.gcPauseMillis()));
+		for (Stage stage : Stage.values()) {
+			StageMetrics s = this.getStage(stage);
+			if (s.count() > 0) {
+				sb.append(String.format(Locale.ROOT, ", %s %.1fs (p99 %dus)", stage.name().toLowerCase(), s.totalNanos() / 1e9, s.percentileNanos(0.99) / 1000));
+			}
+		}
+		synchronized (this.queues) {
+			for (Map.Entry<String, QueueDepth> q : this.queues.entrySet()) {
+				sb.append(", ").append(q.getKey()).append(" depth ").append(q.getValue().current.get());
+			}
+		}
+		return sb.toString();
+
+	}
+
+	/**
+	 * Writes all the numbers as a JSON object
+	 */
+	public void writeJson(Writer w) throws IOException {
+
+		JsonGenerator generator = new JsonFactory().createGenerator(w);
+		generator.useDefaultPrettyPrinter();
+		generator.writeStartObject();
+		generator.writeNumberField("elapsedSeconds", this.elapsedSeconds());
+		generator.writeNumberField("rows", this.getRows());
+		generator.writeNumberField("bytes", this.getBytes());
+		generator.writeNumberField("rowsPerSecond", this.rate(this.getRows()));
+		generator.writeNumberField("bytesPerSecond", this.rate(this.getBytes()));
+		generator.writeNumberField("gcPauseMillis", this.gcPauseMillis());
+
+		generator.writeObjectFieldStart("stages");
+		for (Stage stage : Stage.values()) {
+			StageMetrics s = this.getStage(stage);
+			generator.writeObjectFieldStart(stage.name().toLowerCase());
+			generator.writeNumberField("count", s.count());
+			generator.writeNumberField("totalMillis", s.totalNanos() / 1e6);
+			generator.writeNumberField("meanMicros", s.count() == 0 ? 0.0 : s.totalNanos() / 1e3 / s.count());
+			generator.writeNumberField("p50Micros", s.percentileNanos(0.5) / 1e3);
+			generator.writeNumberField("p90Micros", s.percentileNanos(0.9) / 1e3);
+			generator.writeNumberField("p99Micros", s.percentileNanos(0.99) / 1e3);
+			generator.writeNumberField("maxMicros", s.maxNanos() / 1e3);
+			generator.writeArrayFieldStart("histogram");
+			for (int b = 0; b < StageMetrics.BUCKETS; b++) {
+				long count = s.buckets.get(b);
+				if (count > 0) {
+					generator.writeStartObject();
+					generator.writeNumberField("upToMicros", StageMetrics.upperBound(b) / 1e3);
+					generator.writeNumberField("count", count);
+					generator.writeEndObject();
+				}
+			}
+			generator.writeEndArray();
+			generator.writeEndObject();
+		}
+		generator.writeEndObject();
+
+		generator.writeObjectFieldStart("queues");
+		synchronized (this.queues) {
+			for (Map.Entry<String, QueueDepth> q : this.queues.entrySet()) {
+				generator.writeObjectFieldStart(q.getKey());
+				generator.writeNumberField("current", q.getValue().current.get());
+				generator.writeNumberField("max", q.getValue().max.get());
+				generator.writeEndObject();
+			}
+		}
+		generator.writeEndObject();
+
+		generator.writeEndObject();
+		generator.flush();
+
+	}
+
+	@Override
+	public String toString() {
+		StringWriter w = new StringWriter();
+		try {
+			this.writeJson(w);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return w.toString();
+	}
+
+	private static long gcMillis() {
+		long total = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+			total += Math.max(0, gc.getCollectionTime());
+		}
+		return total;
+	}
+
+	/**
+	 * Count, total time and latency histogram of one stage
+	 */
+	public static class StageMetrics {
+
+		static final int BUCKETS = 64;
+
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+		// bucket b holds latencies in [2^(b-1), 2^b) ns, bucket 0 holds 0
+		private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+		void record(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			this.count.incrementAndGet();
+			this.totalNanos.addAndGet(nanos);
+			this.buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(nanos));
+			long max = this.maxNanos.get();
+			while (nanos > max && !this.maxNanos.compareAndSet(max, nanos)) {
+				max = this.maxNanos.get();
+			}
+		}
+
+		static long upperBound(int bucket) {
+			return bucket >= BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket);
+		}
+
+		public long count() {
+			return this.count.get();
+		}
+
+		public long totalNanos() {
+			return this.totalNanos.get();
+		}
+
+		public long maxNanos() {
+			return this.maxNanos.get();
+		}
+
+		/**
+		 * @return the upper bound of the bucket holding the given percentile (0..1), capped at the max seen
+		 */
+		public long percentileNanos(double percentile) {
+			long total = this.count();
+			if (total == 0) {
+				return 0;
+			}
+			long rank = (long) Math.ceil(percentile * total);
+			long seen = 0;
+			for (int b = 0; b < BUCKETS; b++) {
+				seen += this.buckets.get(b);
+				if (seen >= rank) {
+					return Math.min(upperBound(b), this.maxNanos());
+				}
+			}
+			return this.maxNanos();
+		}
+
+	}
+
+	private static class QueueDepth {
+
+		final AtomicLong current = new AtomicLong();
+		final AtomicLong max = new AtomicLong();
+
+		void set(long depth) {
+			this.current.set(depth);
+			long m = this.max.get();
+			while (depth > m && !this.max.compareAndSet(m, depth)) {
+				m = this.max.get();
+			}
+		}
+
+	}
+
+}
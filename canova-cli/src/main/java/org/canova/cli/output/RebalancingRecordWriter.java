@@ -0,0 +1,313 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.output;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.writable.Writable;
+
+/**
+ * Rebalances the classes of the vectorized records toward a target distribution as they
+ * are written, so no second pass or temporary copy of the output is needed.
+ *
+ * With n(c) records of class c and a target share p(c), class c should end up with
+ * p(c) * N records, where N is the number of records of all the rebalanced classes. That is
+ * a rate r(c) = p(c) * N / n(c) per record:
+ *
+ * -	r(c) < 1, majority class: each record is kept with probability r(c) (Bernoulli sampling)
+ * -	r(c) > 1, minority class: each record is written, followed by r(c) - 1 duplicates on
+ * 		average (the fraction is a Bernoulli draw). The duplicates are drawn from a bounded
+ * 		reservoir sample of the class seen so far, so they spread over the class instead of
+ * 		repeating the current record back to back.
+ *
+ * The counts are best known up front (e.g. the label counts of the CSV pre-pass), otherwise
+ * the rates are estimated from the counts seen so far, which converges as the stream goes on.
+ * Classes the target doesn't mention are written unchanged.
+ *
+ * @author josh
+ *
+ */
+public class RebalancingRecordWriter implements RecordWriter {
+
+	public static final String UNIFORM = "uniform";
+	public static final int DEFAULT_RESERVOIR_SIZE = 1024;
+
+	private final RecordWriter writer;
+	// class -> target share, null for uniform over all the classes
+	private Map<String, Double> target;
+	private final int reservoirSize;
+	private final Random random;
+
+	private int labelIndex = SplittingRecordWriter.LAST;
+	// class -> rate, when the counts are known up front
+	private Map<String, Double> rates = null;
+
+	private final Map<String, long[]> seen = new HashMap<>();
+	private long seenTargeted = 0;
+	private final Map<String, List<Collection<Writable>>> reservoirs = new HashMap<>();
+	private final Map<String, long[]> written = new LinkedHashMap<>();
+
+	private Configuration conf = null;
+
+	/**
+	 * @param writer where the rebalanced records go
+	 * @param target the target share per class (normalized), null for uniform
+	 * @param reservoirSize the number of records kept per minority class to draw duplicates from
+	 * @param seed the seed for the sampling
+	 */
+	public RebalancingRecordWriter(RecordWriter writer, Map<String, Double> target, int reservoirSize, long seed) {
+
+		if (reservoirSize < 1) {
+			throw new IllegalArgumentException("The reservoir needs room for at least one record");
+		}
+		this.writer = writer;
+		this.target = null == target ? null : normalize(target);
+		this.reservoirSize = reservoirSize;
+		this.random = new Random(seed);
+
+	}
+
+	/**
+	 * Parses a target distribution: "uniform", or comma separated class=weight pairs, e.g. "spam=1,ham=2"
+	 *
+	 * @return the weights per class, null for uniform
+	 */
+	public static Map<String, Double> parseTarget(String target) {
+
+		if (UNIFORM.equals(target.trim().toLowerCase())) {
+			return null;
+		}
+		Map<String, Double> ret = new LinkedHashMap<>();
+		for (String pair : target.split(",")) {
+			int eq = pair.lastIndexOf('=');
+			if (eq < 0) {
+				throw new IllegalArgumentException("Expected class=weight, not " + pair);
+			}
+			ret.put(pair.substring(0, eq).trim(), Double.parseDouble(pair.substring(eq + 1).trim()));
+		}
+		return ret;
+
+	}
+
+	private static Map<String, Double> normalize(Map<String, Double> weights) {
+
+		double sum = 0;
+		for (double weight : weights.values()) {
+			if (weight < 0) {
+				throw new IllegalArgumentException("Class weights can't be negative");
+			}
+			sum += weight;
+		}
+		if (sum <= 0) {
+			throw new IllegalArgumentException("Class weights must sum to more than 0");
+		}
+		Map<String, Double> ret = new LinkedHashMap<>();
+		for (Map.Entry<String, Double> entry : weights.entrySet()) {
+			ret.put(entry.getKey(), entry.getValue() / sum);
+		}
+		return ret;
+
+	}
+
+	/**
+	 * @return the target, keyed by class, null for uniform
+	 */
+	public Map<String, Double> getTarget() {
+		return this.target;
+	}
+
+	/**
+	 * Replaces the target, e.g. rekeyed to the classes as written, before the first record
+	 *
+	 * @param target the target share per class (normalized), null for uniform
+	 */
+	public void setTarget(Map<String, Double> target) {
+		this.target = null == target ? null : normalize(target);
+	}
+
+	/**
+	 * @param index the position of the class in each record, or SplittingRecordWriter.LAST
+	 * @param classCounts the number of records per class (keyed like the class writable's toString()), or null if unknown
+	 */
+	public void rebalanceOn(int index, Map<String, ? extends Number> classCounts) {
+
+		this.labelIndex = index;
+		this.rates = null;
+		if (null == classCounts) {
+			return;
+		}
+
+		long targeted = 0;
+		int numTargeted = 0;
+		for (Map.Entry<String, ? extends Number> entry : classCounts.entrySet()) {
+			if (this.isTargeted(entry.getKey())) {
+				targeted += entry.getValue().longValue();
+				numTargeted++;
+			}
+		}
+		this.rates = new HashMap<>();
+		for (Map.Entry<String, ? extends Number> entry : classCounts.entrySet()) {
+			long count = entry.getValue().longValue();
+			if (count > 0 && this.isTargeted(entry.getKey())) {
+				this.rates.put(entry.getKey(), this.share(entry.getKey(), numTargeted) * targeted / count);
+			}
+		}
+
+	}
+
+	private boolean isTargeted(String label) {
+		return null == this.target || this.target.containsKey(label);
+	}
+
+	private double share(String label, int numClasses) {
+		return null == this.target ? 1.0 / numClasses : this.target.get(label);
+	}
+
+	private double rateOf(String label) {
+
+		if (!this.isTargeted(label)) {
+			return 1.0;
+		}
+		if (null != this.rates) {
+			Double rate = this.rates.get(label);
+			// a class the counts missed is left alone
+			return null == rate ? 1.0 : rate;
+		}
+		// estimated from the stream so far, this record included
+		long count = this.seen.get(label)[0];
+		int numClasses = null == this.target ? this.seen.size() : this.target.size();
+		return this.share(label, numClasses) * this.seenTargeted / count;
+
+	}
+
+	@Override
+	public void write(Collection<Writable> record) throws IOException {
+
+		String label = SplittingRecordWriter.classOf(record, this.labelIndex);
+		long[] count = this.seen.get(label);
+		if (null == count) {
+			count = new long[1];
+			this.seen.put(label, count);
+		}
+		count[0]++;
+		if (this.isTargeted(label)) {
+			this.seenTargeted++;
+		}
+
+		double rate = this.rateOf(label);
+		if (rate < 1.0) {
+			if (this.random.nextDouble() < rate) {
+				this.emit(label, record);
+			}
+			return;
+		}
+
+		this.emit(label, record);
+		if (rate > 1.0) {
+			List<Collection<Writable>> reservoir = this.sample(label, record, count[0]);
+			double extra = rate - 1.0;
+			int copies = (int) extra;
+			if (this.random.nextDouble() < extra - copies) {
+				copies++;
+			}
+			for (int i = 0; i < copies; i++) {
+				this.emit(label, reservoir.get(this.random.nextInt(reservoir.size())));
+			}
+		}
+
+	}
+
+	// reservoir sampling (algorithm R) over the records of one class
+	private List<Collection<Writable>> sample(String label, Collection<Writable> record, long seenOfClass) {
+
+		List<Collection<Writable>> reservoir = this.reservoirs.get(label);
+		if (null == reservoir) {
+			reservoir = new ArrayList<>();
+			this.reservoirs.put(label, reservoir);
+		}
+		if (reservoir.size() < this.reservoirSize) {
+			reservoir.add(record);
+		} else {
+			long slot = (long) (this.random.nextDouble() * seenOfClass);
+			if (slot < this.reservoirSize) {
+				reservoir.set((int) slot, record);
+			}
+		}
+		return reservoir;
+
+	}
+
+	private void emit(String label, Collection<Writable> record) throws IOException {
+
+		long[] count = this.written.get(label);
+		if (null == count) {
+			count = new long[1];
+			this.written.put(label, count);
+		}
+		count[0]++;
+		this.writer.write(record);
+
+	}
+
+	/**
+	 * @return the number of records written per class
+	 */
+	public Map<String, Long> getWrittenCounts() {
+		Map<String, Long> ret = new LinkedHashMap<>();
+		for (Map.Entry<String, long[]> entry : this.written.entrySet()) {
+			ret.put(entry.getKey(), entry.getValue()[0]);
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the writer the rebalanced records go to
+	 */
+	public RecordWriter getWriter() {
+		return this.writer;
+	}
+
+	@Override
+	public void close() {
+		this.reservoirs.clear();
+		this.writer.close();
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+	}
+
+	@Override
+	public Configuration getConf() {
+		return this.conf;
+	}
+
+}
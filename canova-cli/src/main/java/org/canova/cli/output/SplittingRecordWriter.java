@@ -0,0 +1,288 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.output;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.writable.Writable;
+
+/**
+ * Splits the vectorized records into train / validation / test sets as they are written,
+ * routing every record to one of several writers, so splitting costs no second pass
+ * over the output.
+ *
+ * -	unstratified: each record goes to split i with probability ratios[i]
+ * -	stratified: the record's class is read from one position of the record. When the
+ * 		number of records per class is known up front (e.g. the label counts of the CSV
+ * 		pre-pass) each class is split exactly: a record goes to split i with probability
+ * 		(records of its class still owed to split i) / (records of its class still to come),
+ * 		which is sampling without replacement and hits round(ratio * count) per split.
+ * 		Classes without a known count, or that show up more often than counted, are split
+ * 		on their running counts: a record goes to a split with probability proportional to
+ * 		how far the split is behind its share of the class so far, which keeps every split
+ * 		within one record of its share at any point of the stream.
+ *
+ * Same seed, same input order, same split.
+ *
+ * @author josh
+ *
+ */
+public class SplittingRecordWriter implements RecordWriter {
+
+	// stratify on the last writable of the record, where most input formats append the label
+	public static final int LAST = Integer.MAX_VALUE;
+
+	private final List<RecordWriter> writers;
+	private final double[] cumulative;
+	private final double[] ratios;
+	private final Random random;
+	private final long[] written;
+
+	private int stratifyIndex = -1;
+	// class -> records still owed to each split
+	private Map<String, long[]> remaining = new HashMap<>();
+	// class -> records of the class written to each split
+	private Map<String, long[]> classWritten = new HashMap<>();
+
+	private Configuration conf = null;
+
+	/**
+	 * @param writers one writer per split
+	 * @param ratios the share of the records for each split, normalized to sum to 1
+	 * @param seed the seed for the random routing
+	 */
+	public SplittingRecordWriter(List<RecordWriter> writers, double[] ratios, long seed) {
+
+		if (writers.size() != ratios.length || ratios.length == 0) {
+			throw new IllegalArgumentException("Need one ratio per writer");
+		}
+		double sum = 0;
+		for (double ratio : ratios) {
+			if (ratio < 0) {
+				throw new IllegalArgumentException("Split ratios can't be negative");
+			}
+			sum += ratio;
+		}
+		if (sum <= 0) {
+			throw new IllegalArgumentException("Split ratios must sum to more than 0");
+		}
+
+		this.writers = new ArrayList<>(writers);
+		this.ratios = new double[ratios.length];
+		this.cumulative = new double[ratios.length];
+		double running = 0;
+		for (int i = 0; i < ratios.length; i++) {
+			this.ratios[i] = ratios[i] / sum;
+			running += this.ratios[i];
+			this.cumulative[i] = running;
+		}
+		this.random = new Random(seed);
+		this.written = new long[ratios.length];
+
+	}
+
+	/**
+	 * Parses comma separated ratios, e.g. "0.8,0.1,0.1"
+	 */
+	public static double[] parseRatios(String ratios) {
+		String[] parts = ratios.split(",");
+		double[] ret = new double[parts.length];
+		for (int i = 0; i < parts.length; i++) {
+			ret[i] = Double.parseDouble(parts[i].trim());
+		}
+		return ret;
+	}
+
+	/**
+	 * The usual names of the splits: train / test or train / validation / test, split0..n otherwise
+	 */
+	public static String[] splitNames(int numSplits) {
+		if (numSplits == 2) {
+			return new String[] { "train", "test" };
+		} else if (numSplits == 3) {
+			return new String[] { "train", "validation", "test" };
+		}
+		String[] names = new String[numSplits];
+		for (int i = 0; i < numSplits; i++) {
+			names[i] = "split" + i;
+		}
+		return names;
+	}
+
+	/**
+	 * Keeps the class balance the same in every split
+	 *
+	 * @param index the position of the class in each record, or LAST
+	 * @param classCounts the number of records per class (keyed like the class writable's toString()), or null if unknown
+	 */
+	public void stratifyOn(int index, Map<String, ? extends Number> classCounts) {
+
+		this.stratifyIndex = index;
+		this.remaining.clear();
+		this.classWritten.clear();
+		if (null == classCounts) {
+			return;
+		}
+		for (Map.Entry<String, ? extends Number> entry : classCounts.entrySet()) {
+			long count = entry.getValue().longValue();
+			long[] owed = new long[this.ratios.length];
+			long assigned = 0;
+			for (int i = 0; i < owed.length; i++) {
+				owed[i] = Math.round(this.cumulative[i] * count) - assigned;
+				assigned += owed[i];
+			}
+			this.remaining.put(entry.getKey(), owed);
+		}
+
+	}
+
+	@Override
+	public void write(Collection<Writable> record) throws IOException {
+
+		int split = this.chooseSplit(record);
+		this.written[split]++;
+		this.writers.get(split).write(record);
+
+	}
+
+	private int chooseSplit(Collection<Writable> record) {
+
+		if (this.stratifyIndex >= 0) {
+			String label = classOf(record, this.stratifyIndex);
+			long[] counts = this.classWritten.get(label);
+			if (null == counts) {
+				counts = new long[this.ratios.length];
+				this.classWritten.put(label, counts);
+			}
+			int split = this.chooseOwedSplit(this.remaining.get(label));
+			if (split < 0) {
+				split = this.chooseBehindSplit(counts);
+			}
+			counts[split]++;
+			return split;
+		}
+
+		double draw = this.random.nextDouble();
+		for (int i = 0; i < this.cumulative.length - 1; i++) {
+			if (draw < this.cumulative[i]) {
+				return i;
+			}
+		}
+		return this.cumulative.length - 1;
+
+	}
+
+	// sampling without replacement from the records of a counted class, -1 once they are used up
+	private int chooseOwedSplit(long[] owed) {
+
+		if (null == owed) {
+			return -1;
+		}
+		long total = 0;
+		for (long o : owed) {
+			total += o;
+		}
+		if (total <= 0) {
+			return -1;
+		}
+		long draw = (long) (this.random.nextDouble() * total);
+		for (int i = 0; i < owed.length; i++) {
+			if (draw < owed[i]) {
+				owed[i]--;
+				return i;
+			}
+			draw -= owed[i];
+		}
+		return -1;
+
+	}
+
+	// the splits that would fall short of their share with one more record of the class, weighted by how far
+	private int chooseBehindSplit(long[] counts) {
+
+		long seen = 0;
+		for (long count : counts) {
+			seen += count;
+		}
+		double[] behind = new double[counts.length];
+		double total = 0;
+		int last = 0;
+		for (int i = 0; i < counts.length; i++) {
+			behind[i] = Math.max(0, this.ratios[i] * (seen + 1) - counts[i]);
+			total += behind[i];
+			if (behind[i] > 0) {
+				last = i;
+			}
+		}
+		double draw = this.random.nextDouble() * total;
+		for (int i = 0; i < behind.length; i++) {
+			if (draw < behind[i]) {
+				return i;
+			}
+			draw -= behind[i];
+		}
+		return last;
+
+	}
+
+	static String classOf(Collection<Writable> record, int index) {
+		Iterator<Writable> iter = record.iterator();
+		Writable last = null;
+		for (int i = 0; i <= index && iter.hasNext(); i++) {
+			last = iter.next();
+		}
+		return null == last ? null : last.toString();
+	}
+
+	/**
+	 * @return the number of records written to each split
+	 */
+	public long[] getWrittenCounts() {
+		return this.written.clone();
+	}
+
+	@Override
+	public void close() {
+		for (RecordWriter writer : this.writers) {
+			writer.close();
+		}
+	}
+
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+	}
+
+	@Override
+	public Configuration getConf() {
+		return this.conf;
+	}
+
+}
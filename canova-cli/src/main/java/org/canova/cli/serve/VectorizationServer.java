@@ -0,0 +1,268 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.serve;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.Charset;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.canova.cli.subcommands.Vectorize;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps one warm JVM around for many vectorization jobs, so class loading and JIT
+ * warm up are paid for once instead of per job. Jobs share no state beyond that.
+ *
+ * Listens on the loopback interface only. The protocol is one request line per
+ * connection, UTF-8:
+ *
+ * 		VECTORIZE <absolute path of the conf file>
+ * 			>	PROGRESS <console line of the job>		(any number)
+ * 			>	OK <output path>  |  FAILED <reason>
+ * 		PING
+ * 			>	PONG
+ * 		SHUTDOWN
+ * 			>	OK								(running jobs finish first)
+ *
+ * Jobs run on a fixed size worker pool, connections wait for a free worker.
+ *
+ * @author josh
+ *
+ */
+public class VectorizationServer implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(VectorizationServer.class);
+	static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	public static final int DEFAULT_PORT = 9876;
+
+	public static final String VECTORIZE = "VECTORIZE";
+	public static final String PING = "PING";
+	public static final String SHUTDOWN = "SHUTDOWN";
+	public static final String PROGRESS = "PROGRESS";
+	public static final String PONG = "PONG";
+	public static final String OK = "OK";
+	public static final String FAILED = "FAILED";
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService connections = Executors.newCachedThreadPool();
+	private final ExecutorService workers;
+	private volatile boolean running = true;
+
+	/**
+	 * @param port the loopback port to listen on, 0 picks a free one
+	 * @param threads the number of jobs to run at once
+	 */
+	public VectorizationServer(int port, int threads) throws IOException {
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		this.workers = Executors.newFixedThreadPool(threads);
+	}
+
+	public int getPort() {
+		return this.serverSocket.getLocalPort();
+	}
+
+	/**
+	 * Accepts connections until shut down, either by a SHUTDOWN request or close()
+	 */
+	public void serve() throws IOException {
+
+		while (this.running) {
+			final Socket socket;
+			try {
+				socket = this.serverSocket.accept();
+			} catch (SocketException e) {
+				if (!this.running) {
+					break;
+				}
+				throw e;
+			}
+			this.connections.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						handle(socket);
+					} catch (IOException e) {
+						log.warn("Lost connection to client", e);
+					} finally {
+						try {
+							socket.close();
+						} catch (IOException e) {
+							// already gone
+						}
+					}
+				}
+			});
+		}
+
+	}
+
+	private void handle(Socket socket) throws IOException {
+
+		BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), UTF_8));
+		final PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+
+		String request = in.readLine();
+		if (null == request) {
+			return;
+		}
+		request = request.trim();
+
+		if (PING.equals(request)) {
+			out.println(PONG);
+		} else if (SHUTDOWN.equals(request)) {
+			this.close();
+			out.println(OK);
+		} else if (request.startsWith(VECTORIZE + " ")) {
+			final String confPath = request.substring(VECTORIZE.length() + 1).trim();
+			Future<String> job;
+			try {
+				job = this.workers.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						return vectorize(confPath, out);
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				out.println(FAILED + " server is shutting down");
+				return;
+			}
+			try {
+				out.println(OK + " " + job.get());
+			} catch (ExecutionException e) {
+				log.error("Job " + confPath + " failed", e.getCause());
+				out.println(FAILED + " " + singleLine(e.getCause()));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				out.println(FAILED + " interrupted");
+			}
+		} else {
+			out.println(FAILED + " unknown request: " + request);
+		}
+
+	}
+
+	private static String vectorize(String confPath, PrintStream out) throws Exception {
+
+		if (!new File(confPath).isFile()) {
+			throw new IllegalArgumentException("No conf file at " + confPath);
+		}
+		log.info("Vectorizing {}", confPath);
+
+		Vectorize vectorize = new Vectorize();
+		vectorize.configurationFile = confPath;
+		vectorize.console = new PrintStream(new LinePrefixOutputStream(out, (PROGRESS + " ").getBytes(UTF_8)), true, "UTF-8");
+		vectorize.execute();
+		vectorize.console.flush();
+		if (!vectorize.isComplete()) {
+			throw new IllegalStateException("vectorization did not complete, see the progress output");
+		}
+		return vectorize.outputVectorFilename;
+
+	}
+
+	private static String singleLine(Throwable t) {
+		String message = null == t.getMessage() ? t.toString() : t.getMessage();
+		return message.replace('\n', ' ').replace('\r', ' ');
+	}
+
+	/**
+	 * Stops accepting connections, jobs already submitted finish
+	 */
+	@Override
+	public void close() throws IOException {
+
+		this.running = false;
+		this.workers.shutdown();
+		this.connections.shutdown();
+		this.serverSocket.close();
+
+	}
+
+	/**
+	 * Prefixes every line written through it, keeps each job's console output tagged
+	 */
+	static class LinePrefixOutputStream extends FilterOutputStream {
+
+		private final byte[] prefix;
+		private boolean atLineStart = true;
+
+		LinePrefixOutputStream(OutputStream out, byte[] prefix) {
+			super(out);
+			this.prefix = prefix;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (this.atLineStart) {
+				this.out.write(this.prefix);
+				this.atLineStart = false;
+			}
+			this.out.write(b);
+			if (b == '\n') {
+				this.atLineStart = true;
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			int start = off;
+			int end = off + len;
+			for (int i = off; i < end; i++) {
+				if (b[i] == '\n') {
+					this.writeSegment(b, start, i + 1 - start);
+					this.atLineStart = true;
+					start = i + 1;
+				}
+			}
+			if (start < end) {
+				this.writeSegment(b, start, end - start);
+			}
+		}
+
+		private void writeSegment(byte[] b, int off, int len) throws IOException {
+			if (this.atLineStart) {
+				this.out.write(this.prefix);
+				this.atLineStart = false;
+			}
+			this.out.write(b, off, len);
+		}
+
+	}
+
+}
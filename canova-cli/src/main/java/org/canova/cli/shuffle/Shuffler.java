@@ -50,6 +50,13 @@ public class Shuffler {
 		
 	}
 	
+	/**
+	 * @return the number of records buffered
+	 */
+	public int size() {
+		return this.records.size();
+	}
+
 	private int getRandomSlot() {
 
 		int min = 0;
@@ -0,0 +1,80 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.subcommands;
+
+import org.canova.cli.serve.VectorizationServer;
+import org.kohsuke.args4j.Option;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serve Command.
+ * Runs the vectorization daemon, jobs are handed to it with "canova submit"
+ *
+ * @author josh
+ */
+public class Serve implements SubCommand {
+
+    private static final Logger log = LoggerFactory.getLogger(Serve.class);
+
+    @Option(name = "-port", usage = "The loopback port to listen on")
+    public int port = VectorizationServer.DEFAULT_PORT;
+
+    @Option(name = "-threads", usage = "The number of vectorization jobs to run at once")
+    public int threads = Runtime.getRuntime().availableProcessors();
+
+    public Serve() {
+
+    }
+
+    public static void printUsage() {
+
+    	System.out.println( "Canova: Vectorization Daemon" );
+    	System.out.println( "" );
+    	System.out.println( "\tUsage:" );
+    	System.out.println( "\t\tcanova serve [-port <port>] [-threads <threads>]" );
+    	System.out.println( "" );
+    	System.out.println( "\tExample:" );
+    	System.out.println( "\t\tcanova serve -port 9876 -threads 4" );
+    	System.out.println( "\t\tcanova submit -port 9876 -conf /tmp/iris_conf.txt" );
+
+    }
+
+    public void execute() throws Exception {
+
+        final VectorizationServer server = new VectorizationServer(this.port, this.threads);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    server.close();
+                } catch (Exception e) {
+                    log.warn("Error stopping the server", e);
+                }
+            }
+        });
+
+        System.out.println( "Canova serving on 127.0.0.1:" + server.getPort() + " with " + this.threads + " workers" );
+        server.serve();
+
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.subcommands;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.Socket;
+
+import org.canova.api.exceptions.CanovaException;
+import org.canova.cli.serve.VectorizationServer;
+import org.kohsuke.args4j.Option;
+
+/**
+ * Submit Command.
+ * Thin client for the vectorization daemon (see Serve): hands it a conf file and
+ * prints the job's progress as it runs
+ *
+ * @author josh
+ */
+public class Submit implements SubCommand {
+
+    @Option(name = "-conf", usage = "Sets a configuration file to drive the vectorization process")
+    public String configurationFile = "";
+
+    @Option(name = "-port", usage = "The port the daemon listens on")
+    public int port = VectorizationServer.DEFAULT_PORT;
+
+    public Submit() {
+
+    }
+
+    public void execute() throws Exception {
+
+    	if ("".equals(this.configurationFile)) {
+    		Serve.printUsage();
+    		return;
+    	}
+
+        // the daemon has its own working directory
+        String confPath = new File(this.configurationFile).getAbsolutePath();
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), this.port)) {
+
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+            out.println(VectorizationServer.VECTORIZE + " " + confPath);
+
+            for (String line; (line = in.readLine()) != null; ) {
+                if (line.startsWith(VectorizationServer.PROGRESS + " ")) {
+                    System.out.println( line.substring(VectorizationServer.PROGRESS.length() + 1) );
+                } else if (line.startsWith(VectorizationServer.OK)) {
+                    return;
+                } else if (line.startsWith(VectorizationServer.FAILED)) {
+                    throw new CanovaException("Vectorization failed: " + line.substring(VectorizationServer.FAILED.length()).trim());
+                }
+            }
+            throw new CanovaException("Lost the connection to the daemon on port " + this.port);
+
+        }
+
+    }
+
+}
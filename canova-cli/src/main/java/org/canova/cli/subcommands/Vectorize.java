@@ -22,10 +22,19 @@ package org.canova.cli.subcommands;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.Properties;
@@ -41,6 +50,9 @@ import org.canova.api.split.FileSplit;
 import org.canova.api.split.InputSplit;
 import org.canova.api.writable.Writable;
 import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.incremental.VectorizationManifest;
+import org.canova.cli.metrics.PipelineMetrics;
+import org.canova.cli.output.SplittingRecordWriter;
 import org.canova.cli.vectorization.CSVVectorizationEngine;
 import org.canova.cli.vectorization.VectorizationEngine;
 import org.canova.image.recordreader.ImageRecordReader;
@@ -101,9 +113,32 @@ public class Vectorize implements SubCommand {
     public static final String DEFAULT_VECTORIZATION_ENGINE_CLASSNAME = "org.canova.cli.csv.vectorization.CSVVectorizationEngine";
 
     public static final String NORMALIZE_DATA_FLAG = "canova.input.vectorization.normalize";
+    // comma separated chain applied to every vector, e.g. "log,normalize" or "threshold:30,binarize:128"
+    public static final String TRANSFORMS_KEY = "canova.input.vectorization.transforms";
     public static final String SHUFFLE_DATA_FLAG = "canova.output.shuffle";
+    // comma separated ratios ("0.8,0.2" or "0.8,0.1,0.1") to write train / (validation) / test files instead of one
+    public static final String SPLIT_RATIOS_KEY = "canova.output.split.ratios";
+    public static final String SPLIT_SEED_KEY = "canova.output.split.seed";
+    // keep the class balance in every split: the label column for CSV, any value for the other engines
+    public static final String SPLIT_STRATIFY_KEY = "canova.output.split.stratify";
+    // rebalance the classes while writing: "uniform" or class=weight pairs ("spam=1,ham=2")
+    public static final String REBALANCE_TARGET_KEY = "canova.output.rebalance.target";
+    // the label column for CSV, the other engines rebalance on the last writable
+    public static final String REBALANCE_COLUMN_KEY = "canova.output.rebalance.column";
+    public static final String REBALANCE_RESERVOIR_KEY = "canova.output.rebalance.reservoir";
+    public static final String REBALANCE_SEED_KEY = "canova.output.rebalance.seed";
     public static final String PRINT_STATS_FLAG = "canova.input.statistics.debug.print";
+    // text: the fitted vocabulary / IDF model, loaded instead of fitting when it exists, saved after fitting otherwise
+    public static final String TEXT_MODEL_KEY = "canova.input.vectorization.text.model";
     public static final String PRINT_CONFIGURATION = "canova.conf.print";
+    // only vectorize input files not seen before, into new parts of the output directory
+    public static final String INCREMENTAL_FLAG = "canova.vectorize.incremental";
+    public static final String MANIFEST_FILENAME = "_manifest.json";
+    // seconds between progress reports in the log during a run, 0 turns them off
+    public static final String METRICS_INTERVAL_KEY = "canova.metrics.report.interval";
+    public static final int DEFAULT_METRICS_INTERVAL = 30;
+    // where to dump the pipeline metrics as JSON once the run is done
+    public static final String METRICS_FILENAME_KEY = "canova.metrics.file";
 
     protected String[] args;
 
@@ -115,6 +150,10 @@ public class Vectorize implements SubCommand {
     public Properties configProps = null;
     public String outputVectorFilename = "";
     public boolean normalizeData = true;
+    public boolean incremental = false;
+    // where the job reports to, the serve daemon hands in the client's connection
+    public PrintStream console = System.out;
+    protected boolean complete = false;
 
 //    private CSVInputSchema inputSchema = null;
 //    private CSVVectorizationEngine vectorizer = null;
@@ -150,7 +189,23 @@ public class Vectorize implements SubCommand {
         	}
         }
 
-        if (null == this.configProps.get(OUTPUT_FILENAME_KEY)) {
+        if (null != this.configProps.get(INCREMENTAL_FLAG)) {
+            this.incremental = "true".equals(((String) this.configProps.get(INCREMENTAL_FLAG)).trim().toLowerCase());
+        }
+
+        if (this.incremental) {
+
+            // the output is a directory of parts plus the manifest
+            if (null == this.configProps.get(OUTPUT_FILENAME_KEY)) {
+                throw new IllegalStateException("Incremental vectorization needs " + OUTPUT_FILENAME_KEY + " set to an output directory");
+            }
+            this.outputVectorFilename = (String) this.configProps.get(OUTPUT_FILENAME_KEY);
+            File outputDir = new File(this.outputVectorFilename);
+            if (!outputDir.isDirectory() && !outputDir.mkdirs()) {
+                throw new IllegalStateException("Couldn't create dir: " + outputDir);
+            }
+
+        } else if (null == this.configProps.get(OUTPUT_FILENAME_KEY)) {
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss");
             this.outputVectorFilename = "/tmp/canova_vectors_" + dateFormat.format(new Date()) + ".txt";
         } else {
@@ -197,14 +252,14 @@ public class Vectorize implements SubCommand {
         Properties props = this.configProps; //System.getProperties();
         Enumeration e = props.propertyNames();
 
-        System.out.println("\n--- Start Canova Configuration ---");
+        this.console.println("\n--- Start Canova Configuration ---");
 
         while (e.hasMoreElements()) {
             String key = (String) e.nextElement();
-            System.out.println(key + " -- " + props.getProperty(key));
+            this.console.println(key + " -- " + props.getProperty(key));
         }
 
-        System.out.println("---End Canova Configuration ---\n");
+        this.console.println("---End Canova Configuration ---\n");
     }
 
     public static void printUsage() {
@@ -229,6 +284,8 @@ public class Vectorize implements SubCommand {
     // 3. transform csv -> output format
     public void execute() throws Exception  {
 
+        this.complete = false;
+
     	if ("".equals(this.configurationFile)) {
     		printUsage();
     		return;
@@ -270,46 +327,246 @@ public class Vectorize implements SubCommand {
 
         }
 
+        File inputFile = new File(datasetInputPath);
+
+        if (this.incremental) {
+            this.executeIncremental(inputFile);
+            return;
+        }
+
+        InputSplit split = new FileSplit(inputFile);
+        VectorizationEngine engine = this.initializeEngine(split, this.outputVectorFilename);
+
+        boolean vectorizationComplete = true;
+        String failureString = "";
+
+        try {
+        	this.executeEngine(engine);
+        } catch (CanovaException ce) {
+        	vectorizationComplete = false;
+        	failureString = ce.toString();
+        }
+
+        this.complete = vectorizationComplete;
+        if (!vectorizationComplete) {
+
+        	this.console.println( "Vectorization failed due to: \n" + failureString );
+
+        } else {
+        	this.console.println( "Output vectors written to: " + this.outputVectorFilename );
+        }
+    }
+
+
+    /**
+     * Sets up an engine to vectorize the split into the output file
+     */
+    protected VectorizationEngine initializeEngine(InputSplit split, String outputFilename) throws IOException, InterruptedException, CanovaException {
+
         // ###########
         // THIS is where we end general vectorization and hit pipeline specific stuff
         // ###########
         Configuration conf = new Configuration();
-        conf.set( OutputFormat.OUTPUT_PATH, this.outputVectorFilename );
+        conf.set( OutputFormat.OUTPUT_PATH, outputFilename );
         // hard set this on for images for now
         conf.setBoolean( ImageRecordReader.APPEND_LABEL, true);
 
-
-        File inputFile = new File(datasetInputPath);
-        InputSplit split = new FileSplit(inputFile);
         InputFormat inputFormat = this.createInputFormat();
 
+        // the reader only reads the conf, share an immutable snapshot with it
+        Configuration frozenConf = conf.freeze();
+        RecordReader reader = inputFormat.createReader(split, frozenConf);
+
+        VectorizationEngine engine = this.createVectorizationEngine();
+        engine.setConsole(this.console);
+        // the engine creates the writer, possibly one per split
+        engine.initialize(split, inputFormat, this.createOutputFormat(), reader, null, this.configProps, outputFilename, conf );
+        return engine;
+
+    }
 
+    /**
+     * Runs the engine with its metrics reported every METRICS_INTERVAL_KEY seconds,
+     * and dumped to METRICS_FILENAME_KEY at the end
+     */
+    protected void executeEngine(VectorizationEngine engine) throws Exception {
 
-        //System.out.println( "input file: " + datasetInputPath );
+        int interval = DEFAULT_METRICS_INTERVAL;
+        if (null != this.configProps.get(METRICS_INTERVAL_KEY)) {
+            interval = Integer.parseInt(((String) this.configProps.get(METRICS_INTERVAL_KEY)).trim());
+        }
 
-        RecordReader reader = inputFormat.createReader(split, conf);
+        PipelineMetrics metrics = engine.getMetrics();
+        metrics.start();
+        metrics.startReporting(interval, this.console);
+        try {
+            engine.execute();
+        } finally {
+            metrics.stop();
+            this.console.println( "Pipeline metrics: " + metrics.summary() );
+            if (null != this.configProps.get(METRICS_FILENAME_KEY)) {
+                try (Writer w = new FileWriter((String) this.configProps.get(METRICS_FILENAME_KEY))) {
+                    metrics.writeJson(w);
+                }
+            }
+        }
 
+    }
 
-        VectorizationEngine engine = this.createVectorizationEngine();
-        engine.initialize(split, inputFormat, this.createOutputFormat(), reader, this.createOutputFormat().createWriter(conf), this.configProps, this.outputVectorFilename, conf );
+    /**
+     * Incremental mode: vectorizes only the input files the manifest in the output directory
+     * doesn't list yet, each one into its own part-NNNNN.txt next to the old ones (or its own
+ * part-NNNNN.train.txt, part-NNNNN.test.txt, ... with split ratios). A listed file that
+     * changed in place is vectorized again into its part, replacing the old rows.
+     *
+     * The first run collects the dataset statistics of the whole input directory and freezes
+     * them in the manifest before it writes any part. Every part is then vectorized with those
+     * statistics (for engines that can reuse them, see
+     * {@link VectorizationEngine#loadStatistics(java.io.Reader)}), so new vectors line up
+     * with the old ones. Parts are written under a temporary name and renamed when done,
+     * and the manifest is checkpointed after every part: a killed job picks up with the
+     * first unfinished file on the next run, whether it was the first run or a later one.
+     */
+    protected void executeIncremental(File inputFile) throws Exception {
 
-        boolean vectorizationComplete = true;
-        String failureString = "";
+        File outputDir = new File(this.outputVectorFilename);
+        VectorizationManifest manifest = VectorizationManifest.load(new File(outputDir, MANIFEST_FILENAME));
+        this.discardUnfinishedParts(outputDir, manifest);
 
+        if (manifest.getEntries().isEmpty() && null == manifest.getStatistics()) {
+            this.freezeStatistics(inputFile, manifest, outputDir);
+        }
+
+        int skipped = 0;
+        for (URI location : new FileSplit(inputFile).locations()) {
+            File f = new File(location);
+            if (manifest.isProcessed(f)) {
+                skipped++;
+                continue;
+            }
+            VectorizationManifest.Entry changed = manifest.getEntry(f);
+            if (null != changed && manifest.numFiles(changed.part) > 1) {
+                // the other files' rows would have to be vectorized again too
+                this.console.println( "Vectorization failed due to: \n" + f + " changed, but its part " + changed.part + " holds other files too" );
+                return;
+            }
+            String part = null == changed ? manifest.nextPartName() : changed.part;
+            if (!this.vectorizePart(new FileSplit(f), f, part, manifest, outputDir)) {
+                return;
+            }
+        }
+        log.info("Skipped {} already vectorized files", skipped);
+
+        this.complete = true;
+        this.console.println( "Output vectors written to: " + this.outputVectorFilename );
+
+    }
+
+    /**
+     * The names of the files an engine writes for one output path: the split names with
+     * SPLIT_RATIOS_KEY set (part-00003.train.txt, part-00003.test.txt), otherwise just the path (null)
+     */
+    private String[] splitNames() {
+
+        if (null == this.configProps.get(SPLIT_RATIOS_KEY)) {
+            return new String[] { null };
+        }
+        return SplittingRecordWriter.splitNames(SplittingRecordWriter.parseRatios((String) this.configProps.get(SPLIT_RATIOS_KEY)).length);
+
+    }
+
+    /**
+     * Deletes what a killed run left behind: temporary parts, and parts it renamed
+     * but didn't record in the manifest (their files are vectorized again)
+     */
+    private void discardUnfinishedParts(File outputDir, VectorizationManifest manifest) {
+
+        File[] files = outputDir.listFiles();
+        if (null == files) {
+            return;
+        }
+        for (File f : files) {
+            String name = f.getName();
+            boolean unfinished = name.startsWith(".part-") && name.endsWith(".tmp");
+            if (!unfinished && name.startsWith("part-")) {
+                // part-00003.txt or part-00003.train.txt
+                unfinished = !manifest.hasPart(name.substring(0, name.indexOf('.') < 0 ? name.length() : name.indexOf('.')));
+            }
+            if (unfinished) {
+                log.warn("Discarding unfinished part {}", f);
+                f.delete();
+            }
+        }
+
+    }
+
+    /**
+     * Collects the dataset statistics of the whole input and saves them in the manifest
+     */
+    private void freezeStatistics(File inputFile, VectorizationManifest manifest, File outputDir) throws Exception {
+
+        // the engine still opens a writer, on a temporary part that is discarded
+        VectorizationEngine engine = this.initializeEngine(new FileSplit(inputFile), new File(outputDir, ".part-statistics.tmp").getPath());
         try {
-        	engine.execute();
-        } catch (CanovaException ce) {
-        	vectorizationComplete = false;
-        	failureString = ce.toString();
+            if (engine.collectStatistics()) {
+                StringWriter statistics = new StringWriter();
+                engine.saveStatistics(statistics);
+                manifest.setStatistics(statistics.toString());
+                manifest.save();
+            }
+        } finally {
+            this.discardUnfinishedParts(outputDir, manifest);
         }
 
-        if (!vectorizationComplete) {
+    }
 
-        	System.out.println( "Vectorization failed due to: \n" + failureString );
+    /**
+     * @return true if the last execute() wrote all its output
+     */
+    public boolean isComplete() {
+        return this.complete;
+    }
 
-        } else {
-        	System.out.println( "Output vectors written to: " + this.outputVectorFilename );
+    /**
+     * Vectorizes the file into the part, a new one or (for a file that changed in place) the one
+     * it went into before, which the renames replace
+     */
+    private boolean vectorizePart(InputSplit split, File file, String part, VectorizationManifest manifest, File outputDir) throws Exception {
+
+        File tmp = new File(outputDir, "." + part + ".tmp");
+        File out = new File(outputDir, part + ".txt");
+
+        VectorizationEngine engine = this.initializeEngine(split, tmp.getPath());
+        if (null != manifest.getStatistics()) {
+            engine.loadStatistics(new StringReader(manifest.getStatistics()));
+        }
+
+        try {
+            this.executeEngine(engine);
+        } catch (CanovaException ce) {
+            this.console.println( "Vectorization failed due to: \n" + ce.toString() );
+            this.discardUnfinishedParts(outputDir, manifest);
+            return false;
         }
+
+        if (null == manifest.getStatistics()) {
+            StringWriter statistics = new StringWriter();
+            if (engine.saveStatistics(statistics)) {
+                manifest.setStatistics(statistics.toString());
+            }
+        }
+
+        // a part left over by a killed run was discarded, the renames only replace the part of a changed file
+        for (String name : this.splitNames()) {
+            File splitTmp = null == name ? tmp : new File(VectorizationEngine.splitPath(tmp.getPath(), name));
+            File splitOut = null == name ? out : new File(VectorizationEngine.splitPath(out.getPath(), name));
+            Files.move(splitTmp.toPath(), splitOut.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        manifest.addPart(Collections.singletonList(file), part);
+        manifest.save();
+        this.console.println( "Vectorized " + file + " into " + out );
+        return true;
+
     }
 
 
@@ -0,0 +1,87 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.transforms.chain;
+
+import java.util.Collection;
+
+import org.canova.api.writable.Writable;
+import org.canova.cli.csv.statistics.ColumnStatistics;
+import org.canova.cli.transforms.Transform;
+
+/**
+ * A transform that works on one vector entry at a time, so that a
+ * {@link TransformChain} can fuse any number of them into a single loop
+ * over a primitive buffer.
+ *
+ * Stateless transforms (threshold, binarize, log) only implement {@link #apply(double)}.
+ * Stateful ones (normalize, standardize) also see every value in
+ * {@link #collect(double)} during the statistics pass, then fix their
+ * parameters from the collected {@link ColumnStatistics} in {@link #evaluateStatistics()}.
+ *
+ * Used on its own, as a plain {@link Transform}, the last entry of a vector
+ * is taken to be the label and left alone.
+ *
+ * @author josh
+ *
+ */
+public abstract class ElementTransform implements Transform {
+
+	protected ColumnStatistics statistics = new ColumnStatistics();
+
+	/**
+	 * @return true if this transform needs a statistics pass before it can be applied
+	 */
+	public boolean isStateful() {
+		return false;
+	}
+
+	/**
+	 * Accumulate statistics for a single (non label) entry
+	 */
+	public void collect(double value) {
+		this.statistics.add(value);
+	}
+
+	public ColumnStatistics getStatistics() {
+		return this.statistics;
+	}
+
+	@Override
+	public void evaluateStatistics() {
+	}
+
+	/**
+	 * @return the transformed entry
+	 */
+	public abstract double apply(double value);
+
+	@Override
+	public void collectStatistics(Collection<Writable> vector) {
+		TransformChain.of(this).collectStatistics(vector);
+	}
+
+	@Override
+	public void transform(Collection<Writable> vector) {
+		// statistics, if any, were evaluated on this transform directly
+		TransformChain.of(this).assumeStatistics().transform(vector);
+	}
+
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.transforms.chain;
+
+/**
+ * Scales entries into [0, 1] with the min / max seen across all entries of all vectors
+ *
+ * 	normalize( x ) = ( x - min ) / range
+ *
+ * @author josh
+ *
+ */
+public class MinMaxNormalizeTransform extends ElementTransform {
+
+	public double minValue = Double.NaN;
+	public double maxValue = Double.NaN;
+
+	private double range = 0.0;
+
+	@Override
+	public boolean isStateful() {
+		return true;
+	}
+
+	@Override
+	public void evaluateStatistics() {
+		this.minValue = this.statistics.minValue;
+		this.maxValue = this.statistics.maxValue;
+		this.range = this.maxValue - this.minValue;
+	}
+
+	@Override
+	public double apply(double value) {
+		if (0.0 == this.range || Double.isNaN(this.range)) {
+			return 0.0;
+		}
+		return (value - this.minValue) / this.range;
+	}
+
+}
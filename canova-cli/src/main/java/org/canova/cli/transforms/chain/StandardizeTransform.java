@@ -0,0 +1,57 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.transforms.chain;
+
+/**
+ * Centers entries on the mean and scales them by the standard deviation seen
+ * across all entries of all vectors. The statistics use Welford's update so a
+ * single pass is numerically stable.
+ *
+ * @author josh
+ *
+ */
+public class StandardizeTransform extends ElementTransform {
+
+	public long count = 0;
+	public double mean = 0.0;
+	public double stddev = 0.0;
+
+	@Override
+	public boolean isStateful() {
+		return true;
+	}
+
+	@Override
+	public void evaluateStatistics() {
+		this.count = this.statistics.count;
+		this.mean = this.statistics.mean;
+		this.stddev = this.statistics.stddev();
+	}
+
+	@Override
+	public double apply(double value) {
+		if (0.0 == this.stddev) {
+			return value - this.mean;
+		}
+		return (value - this.mean) / this.stddev;
+	}
+
+}
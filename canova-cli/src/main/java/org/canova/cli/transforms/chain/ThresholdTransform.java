@@ -0,0 +1,42 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.transforms.chain;
+
+/**
+ * Zeroes out entries below a threshold, e.g. to drop faint pixels
+ *
+ * @author josh
+ *
+ */
+public class ThresholdTransform extends ElementTransform {
+
+	private final double threshold;
+
+	public ThresholdTransform(double threshold) {
+		this.threshold = threshold;
+	}
+
+	@Override
+	public double apply(double value) {
+		return value < this.threshold ? 0.0 : value;
+	}
+
+}
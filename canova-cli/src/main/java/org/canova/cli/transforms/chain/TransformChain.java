@@ -0,0 +1,256 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.transforms.chain;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.writable.Writable;
+import org.canova.cli.transforms.Transform;
+
+/**
+ * An ordered chain of {@link ElementTransform}s applied as one {@link Transform}.
+ *
+ * Each record is copied into a primitive buffer once, every stage runs over
+ * it inside a single loop, and the results are written back once, instead
+ * of each transform walking the writables on its own.
+ *
+ * Statistics are exact for any mix of stages: a stateful stage has to see the
+ * output of the stages in front of it, so each statistics pass feeds the
+ * values through the stages that are already evaluated and into the next
+ * stateful stage that isn't. A chain with one stateful stage (the common case)
+ * needs one pass, a stateless chain needs none; see {@link #hasPendingStatistics()}.
+ *
+ * The last entry of a vector is the label, it is neither transformed nor counted in the statistics.
+ * A chain reuses its buffer, so it is not thread safe.
+ *
+ * @author josh
+ *
+ */
+public class TransformChain implements Transform {
+
+	private List<ElementTransform> stages = new ArrayList<>();
+
+	// stages before this index have their statistics and can be applied
+	private int readyStages = 0;
+
+	private double[] buffer = new double[64];
+
+	public static TransformChain of(ElementTransform... stages) {
+		TransformChain chain = new TransformChain();
+		for (ElementTransform stage : stages) {
+			chain.add(stage);
+		}
+		return chain;
+	}
+
+	/**
+	 * Parses a comma separated chain, stages are applied left to right
+	 *
+	 * 	log, normalize, binarize:0.5
+	 *
+	 * known stages are threshold:t, binarize[:t], log, normalize and standardize
+	 *
+	 * @param spec the chain
+	 * @return the chain, empty for a blank spec
+	 */
+	public static TransformChain parse(String spec) {
+		TransformChain chain = new TransformChain();
+		if (null == spec || spec.trim().isEmpty()) {
+			return chain;
+		}
+		for (String part : spec.split(",")) {
+			String[] nameAndArg = part.trim().split(":");
+			String name = nameAndArg[0].trim().toLowerCase();
+			String arg = nameAndArg.length > 1 ? nameAndArg[1].trim() : null;
+			if (nameAndArg.length > 2) {
+				throw new IllegalArgumentException("Bad transform: " + part);
+			}
+			switch (name) {
+				case "threshold":
+					if (null == arg) {
+						throw new IllegalArgumentException("threshold needs a value, e.g. threshold:0.5");
+					}
+					chain.add(new ThresholdTransform(Double.parseDouble(arg)));
+					break;
+				case "binarize":
+					chain.add(new BinarizeTransform(null == arg ? 0.5 : Double.parseDouble(arg)));
+					break;
+				case "log":
+					chain.add(new LogTransform());
+					break;
+				case "normalize":
+					chain.add(new MinMaxNormalizeTransform());
+					break;
+				case "standardize":
+					chain.add(new StandardizeTransform());
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown transform: " + name);
+			}
+		}
+		return chain;
+	}
+
+	public TransformChain add(ElementTransform stage) {
+		this.stages.add(stage);
+		advanceReadyStages();
+		return this;
+	}
+
+	public List<ElementTransform> getStages() {
+		return this.stages;
+	}
+
+	public boolean isEmpty() {
+		return this.stages.isEmpty();
+	}
+
+	/**
+	 * @return true while another statistics pass over the data is needed before {@link #transform(Collection)}
+	 */
+	public boolean hasPendingStatistics() {
+		return this.readyStages < this.stages.size();
+	}
+
+	TransformChain assumeStatistics() {
+		this.readyStages = this.stages.size();
+		return this;
+	}
+
+	private void advanceReadyStages() {
+		while (this.readyStages < this.stages.size() && !this.stages.get(this.readyStages).isStateful()) {
+			this.readyStages++;
+		}
+	}
+
+	/**
+	 * One traversal of the record for the current statistics pass
+	 */
+	@Override
+	public void collectStatistics(Collection<Writable> vector) {
+
+		if (!hasPendingStatistics()) {
+			return;
+		}
+
+		int length = load(vector);
+		ElementTransform collector = this.stages.get(this.readyStages);
+		for (int i = 0; i < length; i++) {
+			double value = this.buffer[i];
+			for (int s = 0; s < this.readyStages; s++) {
+				value = this.stages.get(s).apply(value);
+			}
+			collector.collect(value);
+		}
+
+	}
+
+	/**
+	 * Ends a statistics pass, making the stage that was collecting ready
+	 */
+	@Override
+	public void evaluateStatistics() {
+
+		if (!hasPendingStatistics()) {
+			return;
+		}
+		this.stages.get(this.readyStages).evaluateStatistics();
+		this.readyStages++;
+		advanceReadyStages();
+
+	}
+
+	/**
+	 * Transform a vector in place, all stages fused into one loop
+	 */
+	@Override
+	public void transform(Collection<Writable> vector) {
+
+		if (hasPendingStatistics()) {
+			throw new IllegalStateException("Transform chain is missing statistics for " + this.stages.get(this.readyStages).getClass().getSimpleName());
+		}
+
+		int length = load(vector);
+		int numStages = this.stages.size();
+		if (1 == numStages) {
+			ElementTransform stage = this.stages.get(0);
+			for (int i = 0; i < length; i++) {
+				this.buffer[i] = stage.apply(this.buffer[i]);
+			}
+		} else {
+			ElementTransform[] chain = this.stages.toArray(new ElementTransform[numStages]);
+			for (int i = 0; i < length; i++) {
+				double value = this.buffer[i];
+				for (ElementTransform stage : chain) {
+					value = stage.apply(value);
+				}
+				this.buffer[i] = value;
+			}
+		}
+		store(vector, length);
+
+	}
+
+	/**
+	 * Copies the entries before the label into the buffer
+	 *
+	 * @return the number of entries copied
+	 */
+	private int load(Collection<Writable> vector) {
+
+		int length = vector.size() - 1;
+		if (length <= 0) {
+			return 0;
+		}
+		if (this.buffer.length < length) {
+			this.buffer = new double[Math.max(length, this.buffer.length * 2)];
+		}
+		Iterator<Writable> iter = vector.iterator();
+		for (int i = 0; i < length; i++) {
+			Writable w = iter.next();
+			this.buffer[i] = (w instanceof DoubleWritable) ? ((DoubleWritable) w).get() : Double.parseDouble(w.toString());
+		}
+		return length;
+
+	}
+
+	private void store(Collection<Writable> vector, int length) {
+
+		Iterator<Writable> iter = vector.iterator();
+		List<Writable> list = (vector instanceof List) ? (List<Writable>) vector : null;
+		for (int i = 0; i < length; i++) {
+			Writable w = iter.next();
+			if (w instanceof DoubleWritable) {
+				((DoubleWritable) w).set(this.buffer[i]);
+			} else if (null != list) {
+				list.set(i, new DoubleWritable(this.buffer[i]));
+			} else {
+				throw new IllegalArgumentException("Can't transform a " + w.getClass().getSimpleName() + " in place");
+			}
+		}
+
+	}
+
+}
@@ -6,17 +6,29 @@ import org.apache.lucene.analysis.snowball.SnowballAnalyzer;
 import org.canova.api.berkeley.Counter;
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
+import org.canova.api.util.Index;
 import org.canova.api.vector.Vectorizer.RecordCallBack;
 import org.canova.api.writable.Writable;
 import org.canova.cli.transforms.Transform;
 import org.nd4j.linalg.api.ndarray.INDArray;
 import org.nd4j.linalg.factory.Nd4j;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -25,14 +37,23 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import org.canova.nlp.metadata.BoundedVocabCache;
+import org.canova.nlp.metadata.CharTermIndex;
 import org.canova.nlp.metadata.DefaultVocabCache;
+import org.canova.nlp.metadata.MappedVocabCache;
 import org.canova.nlp.metadata.VocabCache;
+import org.canova.nlp.ngram.NGramVocab;
+import org.canova.nlp.ngram.NGrams;
+import org.canova.nlp.stopwords.StopWordSet;
 import org.canova.nlp.stopwords.StopWords;
+import org.canova.nlp.tokenization.tokenizer.FastTokenizer;
+import org.canova.nlp.tokenization.tokenizer.StopWordFilter;
 import org.canova.nlp.tokenization.tokenizer.TokenPreProcess;
 import org.canova.nlp.tokenization.tokenizer.Tokenizer;
 import org.canova.nlp.tokenization.tokenizer.preprocessor.EndingPreProcessor;
 import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
+import org.canova.nlp.tokenization.tokenizerfactory.UimaTokenizerFactory;
 
 /**
  * Design Notes
@@ -63,19 +84,104 @@ public class TfidfTextVectorizerTransform implements Transform {
     protected int minWordFrequency = 0;
     public final static String MIN_WORD_FREQUENCY = "org.nd4j.nlp.minwordfrequency";
     public final static String STOP_WORDS = "org.nd4j.nlp.stopwords";
+    // drop the stop words before they are counted (off by default); a token is checked before its endings are stripped
+    public final static String REMOVE_STOP_WORDS = "org.canova.nlp.stopwords.remove";
     public final static String TOKENIZER = "org.canova.nlp.tokenizerfactory";
+    // with the UimaTokenizerFactory, the number of engine replicas it's pooled over so that many documents
+    // can be tokenized at once, e.g. by jobs sharing the engine (1, the default, is one engine)
+    public final static String TOKENIZER_REPLICAS = "org.canova.nlp.tokenizer.replicas";
+    // emit each document as one sparse block of (vocab index, tf-idf) pairs instead of a DoubleWritable per vocab word (off by default, the text engine turns it on)
+    public final static String SPARSE_OUTPUT = "org.canova.nlp.tfidf.sparse";
+    protected boolean sparseOutput = false;
+    // n-gram features, numbered after the vocab words: the highest order (1, the default, is unigrams only), the number of
+    // tokens a gram may skip and the number of buckets to hash the grams to (0, the default, keeps them exact)
+    public final static String NGRAM_MAX = "org.canova.nlp.ngram.max";
+    public final static String NGRAM_SKIP = "org.canova.nlp.ngram.skip";
+    public final static String NGRAM_HASH_BUCKETS = "org.canova.nlp.ngram.buckets";
+    // fit in bounded memory: the count-min sketch budget and / or the max number of vocab words, see BoundedVocabCache
+    public final static String VOCAB_SKETCH_BYTES = "org.canova.nlp.vocab.sketch.bytes";
+    public final static String MAX_VOCAB_SIZE = "org.canova.nlp.vocab.maxsize";
+    // the keys whose values shape the model, saved as a fingerprint with it so a model fit differently isn't reused
+    public final static String[] MODEL_KEYS = {
+    		MIN_WORD_FREQUENCY, STOP_WORDS, REMOVE_STOP_WORDS, TOKENIZER,
+    		VOCAB_SKETCH_BYTES, MAX_VOCAB_SIZE, NGRAM_MAX, NGRAM_SKIP, NGRAM_HASH_BUCKETS
+    };
+    protected long modelFingerprint;
+    // with a bounded vocab, the distinct tokens fitTerms holds before it's cleared (between documents)
+    public final static int BOUNDED_FIT_TERMS = 1 << 20;
+    // null when there are only unigram features; the grams are rolled over the term ids of fitTerms and counted by 64 bit key
+    protected NGramVocab ngrams;
+    private NGrams grams;
+    private int[] gramFeatures = new int[ 64 ];
     protected Collection<String> stopWords;
+    // null when stop words are kept
+    protected StopWordSet stopWordSet;
     protected VocabCache cache;
 
+    // with the default tokenizer factory, tokens are scanned and filtered in place by a FastTokenizer and
+    // resolved to vocab ids by char range, so the common case creates no String per token
+    protected boolean fastTokenizer = false;
+    private final FastTokenizer tokens = new FastTokenizer( "", true );
+    // first pass: every distinct token seen so far, and the last document each one was counted for
+    private final CharTermIndex fitTerms = new CharTermIndex();
+    private int[] lastDocOfTerm = new int[ 64 ];
+    private int numDocsSeen = 0;
+    // 0 when the vocab is unbounded, otherwise fitTerms is cleared once it holds this many tokens
+    protected int maxFitTerms = 0;
+    // second pass: the vocab words by vocab index with their doc frequencies, rebuilt after the vocab changes
+    private CharTermIndex vocabTerms;
+    private int[] vocabDocFreqs;
+    private int[] termCounts = new int[ 0 ];
+    private int[] touchedTerms = new int[ 64 ];
+
 	// we want to track the label counts to understand the class balance
 	// layout: { columnName, columnID, occurenceCount }
 	public Map<String, Pair<Integer, Integer>> recordLabels = new LinkedHashMap<>();
 	
 	final EndingPreProcessor preProcessor = new EndingPreProcessor();
 
+	// the token preprocessing, in two steps so stop words are matched in between
+	private final TokenPreProcess filterToken = new TokenPreProcess() {
+		@Override
+		public String preProcess(String token) {
+			//token = token.toLowerCase();
+			if (token.startsWith("http://")) {
+
+			} else {
+				token = token.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+			}
+			return token;
+		}
+	};
+
+	private final TokenPreProcess stemToken = new TokenPreProcess() {
+		@Override
+		public String preProcess(String token) {
+			String base = preProcessor.preProcess(token);
+			base = base.replaceAll("\\d", "d");
+			return base;
+		}
+	};
+
+	private static TokenPreProcess chain( final TokenPreProcess first, final TokenPreProcess second ) {
+		return new TokenPreProcess() {
+			@Override
+			public String preProcess(String token) {
+				return second.preProcess( first.preProcess( token ) );
+			}
+		};
+	}
+
 	public int getVocabularySize() {
 		return this.cache.vocabWords().size();
 	}
+
+	/**
+	 * @return the vocabulary words plus the n-gram features
+	 */
+	public int getNumberOfFeatures() {
+		return this.getVocabularySize() + (this.ngrams == null ? 0 : this.ngrams.numFeatures());
+	}
 	
 	public void debugPrintVocabList() {
 		
@@ -106,14 +212,22 @@ public class TfidfTextVectorizerTransform implements Transform {
             
         	//System.out.println( "> vocab count " + cache.vocabWords().size() );
         	
-        	if(!seen.contains(token)) {
+        	if(seen.add(token)) {
                 cache.incrementDocCount(token);
             }
+        	
+        	if (this.ngrams != null) {
+        		countGrams( this.ngrams.getTerms().add( token ) );
+        	}
         }
         
     }
 
 
+    /**
+     * Every transform gets its own factory: initialize() installs a token preprocessor on it,
+     * so a factory shared between transforms (jobs of canova serve) would be shared mutable state.
+     */
     public TokenizerFactory createTokenizerFactory(Configuration conf) {
         String clazz = conf.get(TOKENIZER,DefaultTokenizerFactory.class.getName());
         
@@ -121,6 +235,10 @@ public class TfidfTextVectorizerTransform implements Transform {
         
         try {
             Class<? extends TokenizerFactory> tokenizerFactoryClazz = (Class<? extends TokenizerFactory>) Class.forName(clazz);
+            int replicas = conf.getInt(TOKENIZER_REPLICAS, 1);
+            if (replicas > 1 && tokenizerFactoryClazz == UimaTokenizerFactory.class) {
+            	return new UimaTokenizerFactory(replicas, true);
+            }
             return tokenizerFactoryClazz.newInstance();
         } catch (Exception e) {
            throw new RuntimeException(e);
@@ -130,39 +248,52 @@ public class TfidfTextVectorizerTransform implements Transform {
     
 
     public void initialize(Configuration conf) {
-        tokenizerFactory = createTokenizerFactory(conf);
-        tokenizerFactory.setTokenPreProcessor(new TokenPreProcess() {
-            @Override
-            public String preProcess(String token) {
-                //token = token.toLowerCase();
-            	if (token.startsWith("http://")) {
-            		
-            	} else {
-            		token = token.replaceAll("[^a-zA-Z ]", "").toLowerCase();
-            	}
-                String base = preProcessor.preProcess(token);
-                base = base.replaceAll("\\d", "d");
-                if (base.endsWith("ly") || base.endsWith("ing"))
-                    System.out.println();
-                return base;
-            }
-        });
-
-        
-        minWordFrequency = conf.getInt(MIN_WORD_FREQUENCY,5);
         stopWords = conf.getStringCollection(STOP_WORDS);
         if(stopWords == null || stopWords.isEmpty())
             stopWords = StopWords.getStopWords();
-        cache = new DefaultVocabCache(minWordFrequency);
+        stopWordSet = null;
+        if (conf.getBoolean(REMOVE_STOP_WORDS, false))
+            stopWordSet = stopWords == StopWords.getStopWords() ? StopWords.getStopWordSet() : new StopWordSet(stopWords);
+        this.tokens.setStopWords( stopWordSet );
+
+        tokenizerFactory = createTokenizerFactory(conf);
+        // with stop words, the StopWordFilter of createTokenizer() checks the filtered token and only then strips its endings
+        tokenizerFactory.setTokenPreProcessor(stopWordSet == null ? chain(this.filterToken, this.stemToken) : this.filterToken);
 
         
+        // FastTokenizer's normalization is the preprocessor above applied to DefaultTokenizer's tokens
+        fastTokenizer = tokenizerFactory.getClass() == DefaultTokenizerFactory.class;
+        minWordFrequency = conf.getInt(MIN_WORD_FREQUENCY,5);
+        sparseOutput = conf.getBoolean(SPARSE_OUTPUT, false);
+        modelFingerprint = MappedVocabCache.fingerprint(conf, MODEL_KEYS);
+        int maxNGram = conf.getInt(NGRAM_MAX, 1);
+        long sketchBytes = conf.getLong(VOCAB_SKETCH_BYTES, 0);
+        int maxVocabSize = conf.getInt(MAX_VOCAB_SIZE, 0);
+        this.maxFitTerms = 0;
+        if (sketchBytes > 0 || maxVocabSize > 0) {
+        	// gram keys are made of fitTerms ids, which clearing it would reuse for other tokens
+        	if (maxNGram > 1) {
+        		throw new IllegalArgumentException( "n-gram features (" + NGRAM_MAX + ") can't be combined with a bounded vocab (" + VOCAB_SKETCH_BYTES + ", " + MAX_VOCAB_SIZE + ")" );
+        	}
+            cache = new BoundedVocabCache(minWordFrequency, sketchBytes > 0 ? sketchBytes : BoundedVocabCache.DEFAULT_SKETCH_BYTES, maxVocabSize);
+            this.maxFitTerms = Math.max( BOUNDED_FIT_TERMS, 4 * maxVocabSize );
+        } else {
+            cache = new DefaultVocabCache(minWordFrequency);
+        }
+        this.ngrams = null;
+        this.grams = null;
+        if (maxNGram > 1) {
+            this.ngrams = new NGramVocab( this.fitTerms, minWordFrequency, conf.getInt(NGRAM_HASH_BUCKETS, 0) );
+            this.grams = new NGrams( maxNGram, conf.getInt(NGRAM_SKIP, 0) );
+        }
+        
         
     }
 
 
     protected Counter<String> wordFrequenciesForSentence( String sentence ) {
     	
-        Tokenizer tokenizer = tokenizerFactory.create( sentence );
+        Tokenizer tokenizer = this.createTokenizer( sentence );
         
         Counter<String> ret = new Counter<>();
         
@@ -188,37 +319,233 @@ public class TfidfTextVectorizerTransform implements Transform {
     
     public INDArray convertTextRecordToTFIDFVector( String textRecord ) {
     	
+    	SparseVectorWritable sparse = this.convertTextRecordToSparseTFIDFVector( textRecord );
+    	
+        INDArray ret = Nd4j.create(sparse.size());
+        for (int i = 0; i < sparse.numNonZero(); i++) {
+            ret.putScalar( sparse.indexAt( i ), sparse.valueAt( i ) );
+        }
+                
+        return ret;
+    	
+    }
+
+    /**
+     * Only the document's own terms can have a non zero tf-idf (tf(0) is 0), so this walks the
+     * document's term counts and looks each term's index up in the vocabulary, instead of
+     * walking the whole vocabulary for every document.
+     * 
+     * @return a block as wide as the vocabulary holding the document's (index, tf-idf) pairs
+     */
+    public SparseVectorWritable convertTextRecordToSparseTFIDFVector( String textRecord ) {
+    	
+    	if (this.fastTokenizer) {
+    		return this.convertTermsToSparseTFIDFVector( textRecord );
+    	}
+    	
     	// here sentence represents a full document
-    	Counter<String> wordFrequenciesForDocument = this.wordFrequenciesForSentence( textRecord );
+    	int numGrams = 0;
+    	Counter<String> wordFrequenciesForDocument;
+    	if (this.ngrams == null) {
+    		wordFrequenciesForDocument = this.wordFrequenciesForSentence( textRecord );
+    	} else {
+    		// one pass for the terms and the grams, a term the first pass never saw is in no gram
+    		wordFrequenciesForDocument = new Counter<>();
+    		this.grams.reset();
+    		Tokenizer tokenizer = this.createTokenizer( textRecord );
+    		while (tokenizer.hasMoreTokens()) {
+    			String token = tokenizer.nextToken();
+    			wordFrequenciesForDocument.incrementCount( token, 1.0 );
+    			numGrams = this.addGramFeatures( this.ngrams.getTerms().indexOf( token ), numGrams );
+    		}
+    	}
     	
-        INDArray ret = Nd4j.create(cache.vocabWords().size());
+    	Index vocab = cache.vocabWords();
+        SparseVectorWritable ret = new SparseVectorWritable( this.getNumberOfFeatures() );
 
 		int totalDocsInCorpus = (int)cache.numDocs();
 
-        // for each word in our known vocabulary ..
-        for(int i = 0; i < cache.vocabWords().size(); i++) {
+        // for each word in this document that is in our known vocabulary ..
+        for (String term : wordFrequenciesForDocument.keySet()) {
         	
-        	String term = cache.wordAt( i );
+        	int index = vocab.indexOf( term );
+        	if (index < 0) {
+        		continue;
+        	}
         	
         	// [TF] get the count of the word for this document (parameter for TF)
-            int termFreq_ForThisSpecificDoc = (int) wordFrequenciesForDocument.getCount( cache.wordAt( i ) );
+            int termFreq_ForThisSpecificDoc = (int) wordFrequenciesForDocument.getCount( term );
             
             // [IDF]
             // oddly enough, the vocabCache just pulls the doc frequency for a term
     		int numberOfDocsThisTermAppearsIn = (int) cache.idf(term);
             
-            
     		double tf_term = NLPUtils.tf( termFreq_ForThisSpecificDoc );
     		double idf_term = NLPUtils.idf( totalDocsInCorpus, numberOfDocsThisTermAppearsIn );
     		
-    		double tfidf_term = NLPUtils.tfidf( tf_term, idf_term );
-            
-            ret.putScalar( i, tfidf_term );
+            ret.add( index, NLPUtils.tfidf( tf_term, idf_term ) );
             
         }
+        
+        // sorted, each run of a gram feature is its count in the document
+        Arrays.sort( this.gramFeatures, 0, numGrams );
+        for (int i = 0; i < numGrams;) {
+        	int feature = this.gramFeatures[ i ];
+        	int termFreq = 0;
+        	for (; i < numGrams && this.gramFeatures[ i ] == feature; i++) {
+        		termFreq++;
+        	}
+        	double tf_term = NLPUtils.tf( termFreq );
+        	double idf_term = NLPUtils.idf( totalDocsInCorpus, this.ngrams.docFrequency( feature ) );
+        	ret.add( vocab.size() + feature, NLPUtils.tfidf( tf_term, idf_term ) );
+        }
                 
         return ret;
     	
+    }
+
+    /**
+     * Adds the features of the grams ending at the next token to gramFeatures
+     * 
+     * @return the number of gram features of the document so far
+     */
+    private int addGramFeatures( int termId, int numGrams ) {
+    	
+    	int n = this.grams.next( termId );
+    	for (int i = 0; i < n; i++) {
+    		int feature = this.ngrams.featureIndex( this.grams.keyAt( i ) );
+    		if (feature < 0) {
+    			continue;
+    		}
+    		if (numGrams == this.gramFeatures.length) {
+    			this.gramFeatures = Arrays.copyOf( this.gramFeatures, numGrams * 2 );
+    		}
+    		this.gramFeatures[ numGrams++ ] = feature;
+    	}
+    	return numGrams;
+    	
+    }
+
+    private void countGrams( int termId ) {
+    	int n = this.grams.next( termId );
+    	for (int i = 0; i < n; i++) {
+    		this.ngrams.increment( this.grams.keyAt( i ) );
+    	}
+    }
+
+    private Tokenizer createTokenizer( String sentence ) {
+    	Tokenizer tokenizer = tokenizerFactory.create( sentence );
+    	if (this.stopWordSet == null) {
+    		return tokenizer;
+    	}
+    	Tokenizer filtered = new StopWordFilter( tokenizer, this.stopWordSet );
+    	filtered.setTokenPreProcessor( this.stemToken );
+    	return filtered;
+    }
+
+    /**
+     * convertTextRecordToSparseTFIDFVector() for the default tokenizer: term counts are kept per vocab index
+     * in a reused array, only the touched entries are visited and reset
+     */
+    private SparseVectorWritable convertTermsToSparseTFIDFVector( String textRecord ) {
+    	
+    	Index vocab = cache.vocabWords();
+    	if (this.vocabTerms == null || this.vocabTerms.size() != vocab.size()) {
+    		this.indexVocab();
+    	}
+    	int vocabSize = vocab.size();
+        SparseVectorWritable ret = new SparseVectorWritable( this.termCounts.length );
+		int totalDocsInCorpus = (int)cache.numDocs();
+    	
+    	int numTouched = 0;
+    	this.tokens.reset( textRecord );
+    	if (this.ngrams != null) {
+    		this.grams.reset();
+    	}
+    	while (this.tokens.nextTerm()) {
+    		char[] term = this.tokens.termBuffer();
+    		int length = this.tokens.termLength();
+    		if (this.ngrams != null) {
+    			int numGrams = this.addGramFeatures( this.ngrams.getTerms().indexOf( term, 0, length ), 0 );
+    			for (int i = 0; i < numGrams; i++) {
+    				numTouched = this.countFeature( vocabSize + this.gramFeatures[ i ], numTouched );
+    			}
+    		}
+    		int index = this.vocabTerms.indexOf( term, 0, length );
+    		if (index >= 0) {
+    			numTouched = this.countFeature( index, numTouched );
+    		}
+    	}
+    	
+    	// ascending, so each add() appends to the block
+    	Arrays.sort( this.touchedTerms, 0, numTouched );
+    	for (int i = 0; i < numTouched; i++) {
+    		int index = this.touchedTerms[ i ];
+    		int docFreq = index < vocabSize ? this.vocabDocFreqs[ index ] : this.ngrams.docFrequency( index - vocabSize );
+    		double tf_term = NLPUtils.tf( this.termCounts[ index ] );
+    		double idf_term = NLPUtils.idf( totalDocsInCorpus, docFreq );
+    		ret.add( index, NLPUtils.tfidf( tf_term, idf_term ) );
+    		this.termCounts[ index ] = 0;
+    	}
+    	
+    	return ret;
+    	
+    }
+
+    // counts one occurrence of a vocab word or gram feature in termCounts
+    private int countFeature( int index, int numTouched ) {
+    	if (this.termCounts[ index ]++ == 0) {
+    		if (numTouched == this.touchedTerms.length) {
+    			this.touchedTerms = Arrays.copyOf( this.touchedTerms, numTouched * 2 );
+    		}
+    		this.touchedTerms[ numTouched++ ] = index;
+    	}
+    	return numTouched;
+    }
+
+    // a vocab word's id in vocabTerms is its vocab index, the gram features follow the vocab words in termCounts
+    private void indexVocab() {
+    	
+    	Index vocab = cache.vocabWords();
+    	this.vocabTerms = new CharTermIndex();
+    	this.vocabDocFreqs = new int[ vocab.size() ];
+    	for (int i = 0; i < vocab.size(); i++) {
+    		String word = cache.wordAt( i );
+    		this.vocabTerms.add( word );
+    		this.vocabDocFreqs[ i ] = (int) cache.idf( word );
+    	}
+    	this.termCounts = new int[ this.getNumberOfFeatures() ];
+    	
+    }
+
+    /**
+     * doWithTokens() for the default tokenizer: a String is only created the first time a token is seen
+     */
+    private void countTerms( String sentence ) {
+    	
+    	this.numDocsSeen++;
+    	if (this.maxFitTerms > 0 && this.fitTerms.size() >= this.maxFitTerms) {
+    		// the counts are in the bounded cache, this only drops the String per token shortcut
+    		this.fitTerms.clear();
+    		Arrays.fill( this.lastDocOfTerm, 0 );
+    	}
+    	this.tokens.reset( sentence );
+    	while (this.tokens.nextTerm()) {
+    		int id = this.fitTerms.add( this.tokens.termBuffer(), 0, this.tokens.termLength() );
+    		if (id == this.lastDocOfTerm.length) {
+    			this.lastDocOfTerm = Arrays.copyOf( this.lastDocOfTerm, id * 2 );
+    		}
+    		if (this.ngrams != null) {
+    			countGrams( id );
+    		}
+    		String token = this.fitTerms.term( id );
+    		cache.incrementCount( token );
+    		if (this.lastDocOfTerm[ id ] != this.numDocsSeen) {
+    			this.lastDocOfTerm[ id ] = this.numDocsSeen;
+    			cache.incrementDocCount( token );
+    		}
+    	}
+    	
     }
 
 	/**
@@ -252,11 +579,19 @@ public class TfidfTextVectorizerTransform implements Transform {
 	//	System.out.println( "sentence: " + sentence );
 		
 		
-            Tokenizer tokenizer = tokenizerFactory.create( sentence );
-        
             cache.incrementNumDocs(1);
+            if (this.ngrams != null) {
+            	this.ngrams.incrementNumDocs();
+            	this.grams.reset();
+            }
+            // the frequencies change, the vocab index is rebuilt on the next transform
+            this.vocabTerms = null;
             
-            doWithTokens(tokenizer);
+            if (this.fastTokenizer) {
+            	countTerms( sentence );
+            } else {
+            	doWithTokens( this.createTokenizer( sentence ) );
+            }
 
 
   //      }
@@ -349,10 +684,7 @@ public class TfidfTextVectorizerTransform implements Transform {
 		// 3. get the converted vector
 	//	System.out.print( "Label: " + label + " ");
 	//	INDArray tfidfVector = this.convertSentenceToTFIDFVector( textRecord );
-		INDArray tfidfVector = this.convertTextRecordToTFIDFVector( textRecord );
-		
-	//	System.out.println( "cols: " + tfidfVector.columns() );
-	//	System.out.println( "rows: " + tfidfVector.rows() );
+		SparseVectorWritable tfidfVector = this.convertTextRecordToSparseTFIDFVector( textRecord );
 		
 		// 4. rebuild the vector refernece w the schema { vector entries, ..., label }
 		
@@ -361,9 +693,20 @@ public class TfidfTextVectorizerTransform implements Transform {
 		
 		// 4.b. rebuild
 		
-		for ( int colID = 0; colID < tfidfVector.columns(); colID++ ) {
+		if (this.sparseOutput) {
+			
+			// the svmlight / libsvm writers lay the block out as index:value pairs
+			vector.add( tfidfVector );
+			
+		} else {
 			
-			vector.add(new DoubleWritable( tfidfVector.getDouble(0, colID) ) );
+			double[] dense = new double[ tfidfVector.size() ];
+			for (int i = 0; i < tfidfVector.numNonZero(); i++) {
+				dense[ tfidfVector.indexAt( i ) ] += tfidfVector.valueAt( i );
+			}
+			for ( int colID = 0; colID < dense.length; colID++ ) {
+				vector.add(new DoubleWritable( dense[ colID ] ) );
+			}
 			
 		}
 		
@@ -377,6 +720,73 @@ public class TfidfTextVectorizerTransform implements Transform {
 	
 
 
+	/**
+	 * Saves what the first pass learned: the vocabulary with its frequencies (see MappedVocabCache),
+	 * next to it in a .labels file the label IDs and counts and, with n-grams, the n-gram vocab in a .ngrams file.
+	 * The vocabulary carries the fingerprint of the MODEL_KEYS values. Every file is written under a temporary
+	 * name and moved into place, the vocabulary last: a killed save never leaves a matching model with stale sidecars
+	 */
+	public void saveModel(File modelFile) throws IOException {
+
+		if (this.ngrams != null) {
+			this.ngrams.save( new File( modelFile.getPath() + ".ngrams" ) );
+		}
+		File labels = labelsFile( modelFile );
+		File tmp = new File( labels.getAbsolutePath() + ".tmp" );
+		try (Writer out = new OutputStreamWriter( new FileOutputStream( tmp ), "UTF-8" )) {
+			for (Map.Entry<String, Pair<Integer, Integer>> label : this.recordLabels.entrySet()) {
+				out.write( label.getKey() + "\t" + label.getValue().getFirst() + "\t" + label.getValue().getSecond() + "\n" );
+			}
+		}
+		Files.move( tmp.toPath(), labels.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+		MappedVocabCache.save( this.cache, modelFile, this.modelFingerprint );
+
+	}
+
+	/**
+	 * Whether a model saved by saveModel() exists and was fit with the same MODEL_KEYS values as this transform
+	 */
+	public boolean modelMatches(File modelFile) throws IOException {
+
+		return modelFile.exists() && MappedVocabCache.load( modelFile ).getFingerprint() == this.modelFingerprint;
+
+	}
+
+	/**
+	 * Loads a model saved by saveModel() in place of the first pass, the vocabulary stays memory mapped.
+	 * Fails if it was fit with a different configuration, see modelMatches()
+	 */
+	public void loadModel(File modelFile) throws IOException {
+
+		MappedVocabCache loaded = MappedVocabCache.load( modelFile );
+		if (loaded.getFingerprint() != this.modelFingerprint) {
+			throw new IOException( "The text model " + modelFile + " was fit with a different configuration" );
+		}
+		this.cache = loaded;
+		if (this.ngrams != null) {
+			this.ngrams = NGramVocab.load( new File( modelFile.getPath() + ".ngrams" ) );
+		}
+		this.vocabTerms = null;
+		this.recordLabels.clear();
+		try (BufferedReader in = new BufferedReader( new InputStreamReader( new FileInputStream( labelsFile( modelFile ) ), "UTF-8" ) )) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.isEmpty()) {
+					continue;
+				}
+				// the label itself may hold tabs, the two numbers don't
+				int countTab = line.lastIndexOf( '\t' );
+				int idTab = line.lastIndexOf( '\t', countTab - 1 );
+				this.recordLabels.put( line.substring( 0, idTab ), new Pair<>( Integer.valueOf( line.substring( idTab + 1, countTab ) ), Integer.valueOf( line.substring( countTab + 1 ) ) ) );
+			}
+		}
+
+	}
+
+	private static File labelsFile(File modelFile) {
+		return new File( modelFile.getPath() + ".labels" );
+	}
+
 	/**
 	 * This is where we'll take the dataset stats learned from the first pass and setup for the 
 	 * transform pass
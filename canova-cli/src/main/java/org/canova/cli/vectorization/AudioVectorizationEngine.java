@@ -14,23 +14,23 @@ public class AudioVectorizationEngine extends VectorizationEngine {
 	@Override
 	public void execute() throws IOException {
 
-		System.out.println( "AudioVectorizationEngine > execute() [ START ]" );
+		this.console.println( "AudioVectorizationEngine > execute() [ START ]" );
 		
 		
         while (reader.hasNext()) {
             
         	// get the record from the input format
-        	Collection<Writable> w = reader.next();
+        	Collection<Writable> w = this.readRecord();
         	
         	// the reader did the work for us here
-        	writer.write(w);
+        	this.writeRecord(w);
          }
 	
 
         reader.close();
         writer.close();		
 		
-		System.out.println( "AudioVectorizationEngine > execute() [ END ]" );
+		this.console.println( "AudioVectorizationEngine > execute() [ END ]" );
         
 		
 	}
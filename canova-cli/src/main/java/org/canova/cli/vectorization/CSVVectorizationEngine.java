@@ -21,15 +21,24 @@
 package org.canova.cli.vectorization;
 
 import au.com.bytecode.opencsv.CSVParser;
+import org.apache.commons.math3.util.Pair;
 import org.canova.api.conf.Configuration;
 import org.canova.api.exceptions.CanovaException;
 import org.canova.api.formats.output.OutputFormat;
+import org.canova.api.formats.output.impl.LibSvmOutputFormat;
+import org.canova.api.formats.output.impl.SVMLightOutputFormat;
 import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.io.data.Text;
 import org.canova.api.records.writer.RecordWriter;
 import org.canova.api.writable.Writable;
 import org.canova.cli.csv.schema.CSVInputSchema;
 import org.canova.cli.csv.schema.CSVSchemaColumn;
+import org.canova.cli.csv.statistics.DatasetSummaryStatistics;
+import org.canova.cli.csv.statistics.StratifiedLineSampler;
+import org.canova.cli.metrics.PipelineMetrics;
+import org.canova.cli.output.RebalancingRecordWriter;
+import org.canova.cli.output.SplittingRecordWriter;
 import org.canova.cli.shuffle.Shuffler;
 import org.canova.cli.subcommands.Vectorize;
 import org.canova.cli.vectorization.VectorizationEngine;
@@ -40,10 +49,23 @@ import com.google.common.base.Strings;
 
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.io.Writer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Vectorization Engine
@@ -58,9 +80,23 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 
   public static final String SKIP_HEADER_KEY = "canova.input.header.skip";
   public static final String INPUT_VECTOR_SCHEMA = "canova.input.vector.schema";
+  // number of threads for the statistics pre-pass, 1 (the default) runs it sequentially
+  public static final String STATISTICS_THREADS_KEY = "canova.input.statistics.threads";
+  private static final int STATISTICS_CHUNK_SIZE = 4096;
+  // number of lines to estimate the statistics from instead of reading every record, 0 (the default) reads all
+  public static final String STATISTICS_SAMPLE_KEY = "canova.input.statistics.sample";
+  public static final String STATISTICS_SAMPLE_SEED_KEY = "canova.input.statistics.sample.seed";
 
   protected CSVInputSchema inputSchema = null;
   protected boolean skipHeader = false;
+  protected int statisticsThreads = 1;
+  protected int statisticsSampleSize = 0;
+  protected long statisticsSampleSeed = 12345;
+  // statistics handed to loadStatistics(), used instead of a pre-pass
+  protected String frozenStatistics = null;
+  // whether the output format expands sparse blocks into index:value pairs (svmlight, libsvm), the
+  // other writers would write the block's toString() into the row
+  protected boolean sparseOutput = false;
   //private CSVVectorizationEngine vectorizer = null;
 
 
@@ -71,6 +107,16 @@ public class CSVVectorizationEngine extends VectorizationEngine {
       this.inputSchema.parseSchemaFile(schemaFilePath);
   //    this.vectorizer = new CSVVectorizationEngine();
 
+      this.sparseOutput = this.outputFormat instanceof SVMLightOutputFormat || this.outputFormat instanceof LibSvmOutputFormat;
+      if (!this.sparseOutput) {
+          for (CSVSchemaColumn column : this.inputSchema.getColumnSchemas().values()) {
+              if (CSVSchemaColumn.TransformType.HASH == column.transform) {
+                  throw new CanovaException("Column " + column.name + ": !HASH needs a sparse output format (svmlight, libsvm), "
+                          + "a dense one would write all " + column.hashBuckets + " buckets of every record");
+              }
+          }
+      }
+
       if (null != this.configProps.get( SKIP_HEADER_KEY )) {
           String headerSkipString = (String) this.configProps.get( SKIP_HEADER_KEY );
           if ("true".equals(headerSkipString.trim().toLowerCase())) {
@@ -80,6 +126,17 @@ public class CSVVectorizationEngine extends VectorizationEngine {
           }
       }
 
+      if (null != this.configProps.get( STATISTICS_SAMPLE_KEY )) {
+          this.statisticsSampleSize = Integer.parseInt(((String) this.configProps.get( STATISTICS_SAMPLE_KEY )).trim());
+      }
+      if (null != this.configProps.get( STATISTICS_SAMPLE_SEED_KEY )) {
+          this.statisticsSampleSeed = Long.parseLong(((String) this.configProps.get( STATISTICS_SAMPLE_SEED_KEY )).trim());
+      }
+
+      if (null != this.configProps.get( STATISTICS_THREADS_KEY )) {
+          this.statisticsThreads = Integer.parseInt(((String) this.configProps.get( STATISTICS_THREADS_KEY )).trim());
+      }
+
 
   }
 
@@ -99,6 +156,8 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 
 	  try {
 		this.loadInputSchemaFile();
+	} catch (CanovaException e1) {
+		throw e1;
 	} catch (Exception e1) {
 		// TODO Auto-generated catch block
 		//e1.printStackTrace();
@@ -110,37 +169,7 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 		//return;
 	}
 
-     log.info("Step 1. Pre-Pass to Collect dataset Stats");
-      // 1. Do a pre-pass to collect dataset statistics
-      while (reader.hasNext()) {
-
-
-          Collection<Writable> w = reader.next();
-          recordsReadPrePass++;
-
-          if (this.skipHeader && recordsReadPrePass == 1) {
-
-        	  log.debug("Skipping Header: " + w.toArray()[0].toString());
-
-          } else {
-
-        	  try {
-		          this.inputSchema.evaluateInputRecord(w.toArray()[0].toString());
-		      } catch (Exception e) {
-                  log.error("Exception on line "+recordsReadPrePass);
-                  log.error("Exception line: "+w.toArray()[0].toString());
-		          e.printStackTrace();
-		      }
-
-          }
-
-      }
-
-      reader.close();
-
-      // 2. computate the dataset statistics
-      log.info("Step 2. Compute the dataset statistics");
-      this.inputSchema.computeDatasetStatistics();
+      recordsReadPrePass = this.computeStatistics();
 
       // 2.a. debug dataset stats
 /*      String schema_print_key = "canova.input.statistics.debug.print";
@@ -156,6 +185,12 @@ public class CSVVectorizationEngine extends VectorizationEngine {
       if (this.printStats) {
     	  this.inputSchema.debugPringDatasetStatistics();
       }
+      if (null != this.rebalancer) {
+          this.rebalanceClasses(this.rebalancer, (String) this.configProps.get(Vectorize.REBALANCE_COLUMN_KEY));
+      }
+      if (null != this.splitter && null != this.configProps.get(Vectorize.SPLIT_STRATIFY_KEY)) {
+          this.stratifySplits(this.splitter, ((String) this.configProps.get(Vectorize.SPLIT_STRATIFY_KEY)).trim());
+      }
       if (this.dumpStats) {
           log.info("Step 2a. Dumping stats to file {}", this.statFilename);
           Writer w = new FileWriter(this.statFilename);
@@ -180,7 +215,7 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 
     	  Shuffler shuffle = new Shuffler();
 
-	      RecordWriter writer = outputFormat.createWriter(conf); //new SVMLightRecordWriter(tmpOutSVMLightFile,true);
+	      RecordWriter writer = this.writer;
 
 
 
@@ -190,15 +225,21 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 	        	  skippedHeaderYet = true;
 		          Collection<Writable> w = reader.next();
 	          } else {
+		          long t = System.nanoTime();
 		          Collection<Writable> w = reader.next();
+		          t = this.metrics.lap(PipelineMetrics.Stage.READ, t);
 
 		          String line = w.toArray()[0].toString();
+		          this.metrics.addRows(1);
+		          this.metrics.addLine(line);
 
 		          // TODO: we need to be re-using objects here for heap churn purposes
 
 		          if (!Strings.isNullOrEmpty(line)) {
 		          //    writer.write(this.vectorizeToWritable("", line, this.inputSchema));
-		        	  shuffle.addRecord( this.vectorizeToWritable("", line, this.inputSchema) );
+		        	  shuffle.addRecord( this.transformRecord(line, recordsRead) );
+		        	  this.metrics.lap(PipelineMetrics.Stage.TRANSFORM, t);
+		        	  this.metrics.setQueueDepth("shuffle", shuffle.size());
 		          }
 		          recordsWritten++;
 
@@ -209,9 +250,12 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 			while (shuffle.hasNext()) {
 
 				Collection<Writable> shuffledRecord = shuffle.next();
+				long t = System.nanoTime();
 				writer.write( shuffledRecord );
+				this.metrics.lap(PipelineMetrics.Stage.WRITE, t);
 
 			}
+			this.metrics.setQueueDepth("shuffle", 0);
 
 
 	      reader.close();
@@ -220,10 +264,12 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 
       } else {
 
-	      RecordWriter writer = outputFormat.createWriter(conf); //new SVMLightRecordWriter(tmpOutSVMLightFile,true);
+	      RecordWriter writer = this.writer;
 	      while (reader.hasNext()) {
 
+              long t = System.nanoTime();
               Collection<Writable> w = reader.next();
+              t = this.metrics.lap(PipelineMetrics.Stage.READ, t);
               recordsRead++;
 	          if (this.skipHeader && !skippedHeaderYet) {
 
@@ -232,6 +278,8 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 	          } else {
 
 		          String line = w.toArray()[0].toString();
+		          this.metrics.addRows(1);
+		          this.metrics.addLine(line);
 		          // TODO: this will end up processing key-value pairs
 
 		          // TODO: this is where the transform system would live (example: execute the filter transforms, etc, here)
@@ -242,7 +290,10 @@ public class CSVVectorizationEngine extends VectorizationEngine {
 		          if (!Strings.isNullOrEmpty(line)) {
                       try {
 
-                          writer.write(this.vectorizeToWritable("", line, this.inputSchema));
+                          Collection<Writable> vector = this.transformRecord(line, recordsRead);
+                          t = this.metrics.lap(PipelineMetrics.Stage.TRANSFORM, t);
+                          writer.write(vector);
+                          this.metrics.lap(PipelineMetrics.Stage.WRITE, t);
                           recordsWritten++;
                       } catch (Exception e) {
                           log.error("Error Writing Line:"+recordsWritten);
@@ -260,12 +311,361 @@ public class CSVVectorizationEngine extends VectorizationEngine {
       }
 
 
+      if (null != this.splitter) {
+          log.info( "Vector Records Written per split: {}", Arrays.toString(this.splitter.getWrittenCounts()) );
+      }
+      if (null != this.rebalancer) {
+          log.info( "Vector Records Written per class{}: {}", null == this.splitter ? "" : " (train split)", this.rebalancer.getWrittenCounts() );
+      }
+
+      for (CSVSchemaColumn column : this.inputSchema.getColumnSchemas().values()) {
+          if (column.clampedValues > 0) {
+              log.info( "Column {}: {} values outside the sampled range were clamped", column.name, column.clampedValues );
+          }
+      }
+
       log.info( "CSV Lines Read Phase 1: {}", recordsReadPrePass );
       log.info( "CSV Lines Read Phase 2: {}" , recordsRead );
       log.info( "Vector Records Written: {}" ,recordsWritten );
 
   }
 
+  /**
+   * Steps 1 and 2: the pre-pass over the input (or the loaded statistics), then the dataset statistics
+   *
+   * @return the number of records read by the pre-pass
+   */
+  private long computeStatistics() throws IOException, InterruptedException {
+
+      long recordsReadPrePass = 0;
+      log.info("Step 1. Pre-Pass to Collect dataset Stats");
+      // 1. Do a pre-pass to collect dataset statistics, unless no column needs any
+      boolean prePass = this.inputSchema.requiresStatistics();
+      if (!prePass) {
+          log.info("No column needs dataset statistics, skipping the pre-pass");
+      }
+      if (prePass && null != this.frozenStatistics) {
+          log.info("Using the loaded dataset statistics, skipping the pre-pass");
+          this.inputSchema.loadDatasetStatistics(new StringReader(this.frozenStatistics));
+          // values outside the frozen range are clamped so the new vectors match the old ones
+          for (CSVSchemaColumn column : this.inputSchema.getColumnSchemas().values()) {
+              column.clampToRange = true;
+          }
+          prePass = false;
+      }
+      if (prePass && this.statisticsSampleSize > 0) {
+          if (this.inputSchema.supportsSampledStatistics()) {
+              recordsReadPrePass = this.sampledPrePass();
+              prePass = false;
+          } else {
+              log.warn("The schema has dictionary columns (labels, one-hot), ignoring {} and reading every record", STATISTICS_SAMPLE_KEY);
+          }
+      }
+      if (prePass && this.statisticsThreads > 1) {
+          recordsReadPrePass = this.parallelPrePass();
+      }
+      while (prePass && this.statisticsThreads <= 1 && reader.hasNext()) {
+
+
+          long t = System.nanoTime();
+          Collection<Writable> w = reader.next();
+          t = this.metrics.lap(PipelineMetrics.Stage.READ, t);
+          recordsReadPrePass++;
+
+          if (this.skipHeader && recordsReadPrePass == 1) {
+
+        	  log.debug("Skipping Header: " + w.toArray()[0].toString());
+
+          } else {
+
+        	  try {
+		          String line = w.toArray()[0].toString();
+		          this.metrics.addLine(line);
+		          this.inputSchema.evaluateInputRecord(line);
+		          this.metrics.lap(PipelineMetrics.Stage.PARSE, t);
+		      } catch (Exception e) {
+                  // like the parallel pre-pass: the line is counted as invalid, logged and skipped
+                  log.error("Exception on line "+recordsReadPrePass);
+                  log.error("Exception line: "+w.toArray()[0].toString(), e);
+		      }
+
+          }
+
+      }
+
+      reader.close();
+
+      // 2. computate the dataset statistics
+      log.info("Step 2. Compute the dataset statistics");
+      this.inputSchema.computeDatasetStatistics();
+
+      return recordsReadPrePass;
+
+  }
+
+  /**
+   * Loads the schema and runs only the pre-pass, nothing is written
+   */
+  @Override
+  public boolean collectStatistics() throws CanovaException, IOException, InterruptedException {
+
+      try {
+          this.loadInputSchemaFile();
+      } catch (CanovaException e) {
+          throw e;
+      } catch (Exception e) {
+          throw new CanovaException(e.toString());
+      }
+      this.computeStatistics();
+      this.writer.close();
+      return true;
+
+  }
+
+  /**
+   * Vectorizes one line of the second pass. A value the statistics have no ID for
+   * (possible when they were loaded from an earlier run) fails the job.
+   */
+  private Collection<Writable> transformRecord(String line, long lineNumber) throws IOException, CanovaException {
+      try {
+          return this.vectorizeToWritable("", line, this.inputSchema);
+      } catch (IllegalArgumentException e) {
+          throw new CanovaException("Can't vectorize line " + lineNumber + ": " + e.getMessage(), e);
+      }
+  }
+
+  @Override
+  public boolean saveStatistics(Writer w) throws IOException {
+      if (null == this.inputSchema) {
+          return false;
+      }
+      this.inputSchema.dumpDatasetStatisticsToFile(w);
+      return true;
+  }
+
+  @Override
+  public boolean loadStatistics(Reader r) throws IOException {
+      StringBuilder sb = new StringBuilder();
+      char[] buffer = new char[4096];
+      int read;
+      while ((read = r.read(buffer)) > 0) {
+          sb.append(buffer, 0, read);
+      }
+      this.frozenStatistics = sb.toString();
+      return true;
+  }
+
+  /**
+   * Stratifies the splits on a label column. The class of a record is the column's transformed
+   * value, and the label counts of the pre-pass make the per class split exact, unless the
+   * statistics were loaded from an earlier run (their counts describe other data). Then the
+   * splitter stratifies on the running class counts instead. Rebalancing happens after the
+   * split, so it doesn't change the counts.
+   */
+  protected void stratifySplits(SplittingRecordWriter splitter, String columnName) throws CanovaException {
+
+      CSVSchemaColumn stratifyColumn = this.classColumn(columnName, "stratify the splits");
+      splitter.stratifyOn(this.outputIndex(stratifyColumn), this.classCounts(stratifyColumn));
+
+  }
+
+  /**
+   * Rebalances the classes of a label column, by default the last LABEL column of the schema.
+   * The pre-pass label counts give the exact sampling rates (the rates only depend on the class
+   * proportions, which the train split shares with the data), the target may name the classes
+   * as they appear in the input or as they are written.
+   */
+  protected void rebalanceClasses(RebalancingRecordWriter rebalancer, String columnName) throws CanovaException {
+
+      CSVSchemaColumn labelColumn = null;
+      if (null == columnName) {
+          for (CSVSchemaColumn column : this.inputSchema.getColumnSchemas().values()) {
+              if (CSVSchemaColumn.TransformType.LABEL == column.transform) {
+                  labelColumn = column;
+              }
+          }
+          if (null == labelColumn) {
+              throw new CanovaException("Can't rebalance the classes, the schema has no LABEL column");
+          }
+      } else {
+          labelColumn = this.classColumn(columnName.trim(), "rebalance the classes");
+      }
+
+      if (null != rebalancer.getTarget()) {
+          Map<String, Double> target = new LinkedHashMap<>();
+          for (Map.Entry<String, Double> entry : rebalancer.getTarget().entrySet()) {
+              String key = entry.getKey();
+              if (labelColumn.recordLabels.containsKey(key)) {
+                  key = this.classKey(labelColumn, key);
+              }
+              target.put(key, entry.getValue());
+          }
+          rebalancer.setTarget(target);
+      }
+      rebalancer.rebalanceOn(this.outputIndex(labelColumn), this.classCounts(labelColumn));
+
+  }
+
+  private CSVSchemaColumn classColumn(String columnName, String purpose) throws CanovaException {
+      CSVSchemaColumn column = this.inputSchema.getColumnSchemaByName(columnName);
+      if (null == column || (CSVSchemaColumn.TransformType.LABEL != column.transform && CSVSchemaColumn.TransformType.COPY != column.transform)) {
+          throw new CanovaException("Can only " + purpose + " on a LABEL or COPY column, not " + columnName);
+      }
+      return column;
+  }
+
+  // every column but the skipped ones adds one writable to the record, but one-hot columns add one per label for dense writers
+  private int outputIndex(CSVSchemaColumn target) {
+      int index = 0;
+      for (CSVSchemaColumn column : this.inputSchema.getColumnSchemas().values()) {
+          if (column == target) {
+              break;
+          }
+          if (CSVSchemaColumn.TransformType.ONEHOT == column.transform && !this.sparseOutput) {
+              index += column.getOutputWidth();
+          } else if (CSVSchemaColumn.TransformType.SKIP != column.transform) {
+              index++;
+          }
+      }
+      return index;
+  }
+
+  // keyed the way vectorizeToWritable() writes the column
+  private String classKey(CSVSchemaColumn column, String label) {
+      return new Text(column.transformColumnValue(label) + "").toString();
+  }
+
+  // the pre-pass label counts by class key, null when unknown for this run's data
+  private Map<String, Integer> classCounts(CSVSchemaColumn column) {
+      if (null != this.frozenStatistics || column.recordLabels.isEmpty()) {
+          return null;
+      }
+      Map<String, Integer> classCounts = new HashMap<>();
+      for (Map.Entry<String, Pair<Integer, Integer>> label : column.recordLabels.entrySet()) {
+          String key = this.classKey(column, label.getKey());
+          Integer count = classCounts.get(key);
+          classCounts.put(key, (null == count ? 0 : count) + label.getValue().getSecond());
+      }
+      return classCounts;
+  }
+
+  /**
+   * Estimates the statistics from statisticsSampleSize lines spread over the input by byte offset,
+   * seeking to each instead of reading the whole input. Values the sample didn't cover are clamped
+   * into the sampled range during the transform pass.
+   *
+   * @return the number of lines sampled
+   */
+  protected long sampledPrePass() throws IOException {
+
+      StratifiedLineSampler sampler = new StratifiedLineSampler(this.split.locations(), this.statisticsSampleSeed)
+              .skipFirstLine(this.skipHeader);
+      List<String> lines = sampler.sample(this.statisticsSampleSize);
+      log.info("Sampled {} lines for the dataset statistics", lines.size());
+
+      for (String line : lines) {
+          if (Strings.isNullOrEmpty(line)) {
+              continue;
+          }
+          try {
+              this.inputSchema.evaluateInputRecord(line);
+          } catch (Exception e) {
+              log.error("Exception line: " + line, e);
+          }
+      }
+
+      for (CSVSchemaColumn column : this.inputSchema.getColumnSchemas().values()) {
+          column.clampToRange = true;
+      }
+
+      return lines.size();
+
+  }
+
+  /**
+   * The pre-pass split over statisticsThreads threads. Lines are handed out in chunks,
+   * each chunk is evaluated into its own accumulator and the accumulators are merged
+   * back in line order, so the statistics (label IDs included) match the sequential pass.
+   *
+   * @return the number of lines read
+   */
+  protected long parallelPrePass() throws IOException, InterruptedException {
+
+      ExecutorService pool = Executors.newFixedThreadPool(this.statisticsThreads);
+      Deque<Future<DatasetSummaryStatistics>> inFlight = new ArrayDeque<>();
+      long linesRead = 0;
+
+      try {
+          List<String> chunk = new ArrayList<>(STATISTICS_CHUNK_SIZE);
+          long chunkStart = 1;
+          while (reader.hasNext()) {
+
+              long t = System.nanoTime();
+              Collection<Writable> w = reader.next();
+              this.metrics.lap(PipelineMetrics.Stage.READ, t);
+              linesRead++;
+              if (this.skipHeader && linesRead == 1) {
+                  log.debug("Skipping Header: " + w.toArray()[0].toString());
+                  chunkStart++;
+                  continue;
+              }
+              String line = w.toArray()[0].toString();
+              this.metrics.addLine(line);
+              chunk.add(line);
+
+              if (chunk.size() == STATISTICS_CHUNK_SIZE) {
+                  inFlight.add(pool.submit(this.statisticsTask(chunk, chunkStart)));
+                  this.metrics.setQueueDepth("statistics", inFlight.size());
+                  chunk = new ArrayList<>(STATISTICS_CHUNK_SIZE);
+                  chunkStart = linesRead + 1;
+                  // bound the lines held in memory, merging the oldest chunk keeps the order
+                  if (inFlight.size() > 2 * this.statisticsThreads) {
+                      this.inputSchema.mergeStatistics(inFlight.poll().get());
+                  }
+              }
+
+          }
+          if (!chunk.isEmpty()) {
+              inFlight.add(pool.submit(this.statisticsTask(chunk, chunkStart)));
+          }
+          while (!inFlight.isEmpty()) {
+              this.inputSchema.mergeStatistics(inFlight.poll().get());
+          }
+      } catch (ExecutionException e) {
+          throw new IOException("Statistics pre-pass failed", e.getCause());
+      } finally {
+          pool.shutdownNow();
+      }
+
+      return linesRead;
+
+  }
+
+  private Callable<DatasetSummaryStatistics> statisticsTask(final List<String> lines, final long firstLine) {
+
+      return new Callable<DatasetSummaryStatistics>() {
+          @Override
+          public DatasetSummaryStatistics call() {
+              DatasetSummaryStatistics stats = inputSchema.newStatistics();
+              CSVParser parser = inputSchema.newParser();
+              long lineNumber = firstLine;
+              for (String line : lines) {
+                  try {
+                      long t = System.nanoTime();
+                      inputSchema.evaluateInputRecord(line, stats, parser);
+                      metrics.lap(PipelineMetrics.Stage.PARSE, t);
+                  } catch (Exception e) {
+                      log.error("Exception on line " + lineNumber);
+                      log.error("Exception line: " + line, e);
+                  }
+                  lineNumber++;
+              }
+              return stats;
+          }
+      };
+
+  }
+
   /**
    * Use statistics collected from a previous pass to vectorize (or drop) each column
    *
@@ -305,6 +705,14 @@ public class CSVVectorizationEngine extends VectorizationEngine {
         case SKIP:
           // dont append this to the output vector, skipping
           break;
+        case HASH:
+          this.addBlock(ret, colSchemaEntry.hash(columns[srcColIndex]), false);
+          dstColIndex += colSchemaEntry.hashBuckets;
+          break;
+        case ONEHOT:
+          this.addBlock(ret, colSchemaEntry.oneHot(columns[srcColIndex]), false);
+          dstColIndex += colSchemaEntry.getOutputWidth();
+          break;
         case LABEL:
           //	log.info( " label value: " + columns[ srcColIndex ] );
           label = colSchemaEntry.transformColumnValue(columns[srcColIndex].trim());
@@ -366,6 +774,16 @@ public class CSVVectorizationEngine extends VectorizationEngine {
         case SKIP:
           // dont append this to the output vector, skipping
           break;
+        case HASH:
+          // a sparse block, the record writer expands it into index:value pairs
+          this.addBlock(ret, colSchemaEntry.hash(columns[srcColIndex]), true);
+          dstColIndex += colSchemaEntry.hashBuckets;
+          break;
+        case ONEHOT:
+          // expanded to one value per label for the dense writers
+          this.addBlock(ret, colSchemaEntry.oneHot(columns[srcColIndex]), true);
+          dstColIndex += colSchemaEntry.getOutputWidth();
+          break;
         default:
 
           double convertedColumn = colSchemaEntry.transformColumnValue(columns[srcColIndex].trim());
@@ -382,4 +800,24 @@ public class CSVVectorizationEngine extends VectorizationEngine {
     return ret;
   }
 
+  /**
+   * Adds a sparse block as is for the sparse output formats, and as one value per entry
+   * (Text, or DoubleWritable) for the dense ones
+   */
+  private void addBlock(Collection<Writable> ret, SparseVectorWritable block, boolean asText) {
+
+      if (this.sparseOutput) {
+          ret.add(block);
+          return;
+      }
+      double[] dense = new double[block.size()];
+      for (int i = 0; i < block.numNonZero(); i++) {
+          dense[block.indexAt(i)] = block.valueAt(i);
+      }
+      for (double value : dense) {
+          ret.add(asText ? new Text(value + "") : new DoubleWritable(value));
+      }
+
+  }
+
 }
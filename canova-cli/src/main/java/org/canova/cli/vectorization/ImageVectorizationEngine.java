@@ -1,13 +1,14 @@
 package org.canova.cli.vectorization;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Collection;
 
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.writable.Writable;
 import org.canova.cli.shuffle.Shuffler;
 import org.canova.cli.subcommands.Vectorize;
-import org.canova.cli.transforms.image.NormalizeTransform;
+import org.canova.cli.transforms.chain.MinMaxNormalizeTransform;
 
 import com.google.common.base.Strings;
 
@@ -26,39 +27,41 @@ public class ImageVectorizationEngine extends VectorizationEngine {
 	 * 
 	 * 
 	 * Thoughts
-	 * 		-	Inside the vectorization engine is a great place to put a pluggable transformation system [ TODO: v2 ]
-	 * 			-	example: MNIST binarization could be a pluggable transform
-	 * 			-	example: custom thresholding on blocks of pixels
+	 * 		-	The pluggable transformation chain runs inside the vectorization engine (canova.input.vectorization.transforms)
+	 * 			-	example: MNIST binarization is "binarize:128"
+	 * 			-	example: "threshold:30,normalize"
+	 * 			-	every stateful transform in the chain costs one full statistics pass over the input before the write pass
+	 * 			-	only this engine runs the chain so far, the CSV and text engines reject it (see supportsTransforms())
 	 * 
 	 * 
 	 */
 	@Override
 	public void execute() throws IOException {
 
-		NormalizeTransform normalizer = new NormalizeTransform();
-		
-		// 1. collect stats for normalize
-        while (reader.hasNext()) {
-            
-        	// get the record from the input format
-        	Collection<Writable> w = reader.next();
-        	normalizer.collectStatistics(w);
-
-        }
-        
-		// 2. reset reader
-        
-        reader.close();
-        //RecordReader reader = null;
-		try {
-			this.reader = inputFormat.createReader(split, conf);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		// normalizing is the default chain for images
+		if (this.transforms.isEmpty() && normalizeData) {
+			this.addTransform(new MinMaxNormalizeTransform());
 		}
-		
+
+		// 1. collect stats, each pass feeds the next stateful transform in the chain (usually there is only one)
+		while (this.transforms.hasPendingStatistics()) {
+
+			while (reader.hasNext()) {
+
+				// get the record from the input format
+				Collection<Writable> w = this.readRecord();
+				this.transforms.collectStatistics(w);
+
+			}
+			this.transforms.evaluateStatistics();
+
+			// 2. reset reader
+			this.resetReader();
+
+		}
+
 		// 3. transform data
-		
+
 	      if (shuffleOn) {
 	    	  
 	    	  Shuffler shuffle = new Shuffler();
@@ -68,16 +71,13 @@ public class ImageVectorizationEngine extends VectorizationEngine {
 	        while (reader.hasNext()) {
 	            
 	        	// get the record from the input format
-	        	Collection<Writable> w = reader.next();
-	        	if (false == normalizeData) {
-	        		
-	        	} else {
-	        		normalizer.transform(w);
-	        	}
+	        	Collection<Writable> w = this.readRecord();
+	        	this.applyTransforms(w);
 	        	
 	        	// the reader did the work for us here
 	        	//writer.write(w);
 	        	shuffle.addRecord(w);
+	        	this.metrics.setQueueDepth("shuffle", shuffle.size());
 	 
 	        }
 	        
@@ -86,9 +86,10 @@ public class ImageVectorizationEngine extends VectorizationEngine {
 			while (shuffle.hasNext()) {
 				
 				Collection<Writable> shuffledRecord = shuffle.next();
-				writer.write( shuffledRecord );
+				this.writeRecord( shuffledRecord );
 				
 			}	  
+			this.metrics.setQueueDepth("shuffle", 0);
 	        
 
 	      } else {
@@ -97,15 +98,11 @@ public class ImageVectorizationEngine extends VectorizationEngine {
 		        while (reader.hasNext()) {
 		            
 		        	// get the record from the input format
-		        	Collection<Writable> w = reader.next();
-		        	if (false == normalizeData) {
-		        		
-		        	} else {
-		        		normalizer.transform(w);
-		        	}
+		        	Collection<Writable> w = this.readRecord();
+		        	this.applyTransforms(w);
 		        	
 		        	// the reader did the work for us here
-		        	writer.write(w);
+		        	this.writeRecord(w);
 		 
 		        }
 
@@ -121,4 +118,22 @@ public class ImageVectorizationEngine extends VectorizationEngine {
 	}
 
 	
+	@Override
+	protected boolean supportsTransforms() {
+		return true;
+	}
+
+	private void resetReader() throws IOException {
+
+		reader.close();
+		try {
+			this.reader = inputFormat.createReader(split, conf);
+		} catch (InterruptedException e) {
+			// the old reader is closed, so there is nothing left to read from: give up the pass
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException( "Interrupted while reopening the input for the next pass" );
+		}
+
+	}
+
 }
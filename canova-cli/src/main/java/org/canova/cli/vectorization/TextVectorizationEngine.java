@@ -1,23 +1,31 @@
 package org.canova.cli.vectorization;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
+import org.canova.api.formats.output.impl.LibSvmOutputFormat;
+import org.canova.api.formats.output.impl.SVMLightOutputFormat;
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.reader.impl.FileRecordReader;
 import org.canova.api.writable.Writable;
+import org.canova.cli.metrics.PipelineMetrics;
 import org.canova.cli.shuffle.Shuffler;
 import org.canova.cli.subcommands.Vectorize;
 import org.canova.cli.transforms.text.nlp.TfidfTextVectorizerTransform;
 import org.canova.nd4j.nlp.vectorizer.TfidfVectorizer;
 import org.nd4j.linalg.api.ndarray.INDArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class TextVectorizationEngine extends VectorizationEngine {
 
+	private static final Logger log = LoggerFactory.getLogger(TextVectorizationEngine.class);
+
 	/**
 	 * Currently the stock input format / RR gives us a vector already converted
 	 * -	TODO: separate this into a transform plugin
@@ -44,41 +52,83 @@ public class TextVectorizationEngine extends VectorizationEngine {
 	//	System.out.println( "TextVectorizationEngine > execute() [ START ]" );
 		
 		TfidfTextVectorizerTransform tfidfTransform = new TfidfTextVectorizerTransform();
-		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		// the transform's own keys (org.canova.nlp.*, org.nd4j.nlp.*, see TfidfTextVectorizerTransform) can be set in the conf file
+		for (String key : this.configProps.stringPropertyNames()) {
+			if (key.startsWith( "org.canova.nlp." ) || key.startsWith( "org.nd4j.nlp." )) {
+				conf.set( key, this.configProps.getProperty( key ).trim() );
+			}
+		}
+		if (null == conf.get( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY )) {
+			conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		}
+		// svmlight style output formats write index:value pairs, no need to write out every zero of the vocabulary.
+		// The others (e.g. CSV) need the dense vector unless asked otherwise
+		if (null == conf.get( TfidfTextVectorizerTransform.SPARSE_OUTPUT )) {
+			conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, this.outputFormat instanceof SVMLightOutputFormat || this.outputFormat instanceof LibSvmOutputFormat );
+		}
 	//	conf.set(TfidfTextVectorizerTransform.TOKENIZER, "org.canova.nlp.tokenization.tokenizerfactory.PosUimaTokenizerFactory");
 		tfidfTransform.initialize(conf);
 		
 		int recordsSeen = 0;
 		
+		File modelFile = null;
+		if (null != this.configProps.get( Vectorize.TEXT_MODEL_KEY )) {
+			modelFile = new File( ((String) this.configProps.get( Vectorize.TEXT_MODEL_KEY )).trim() );
+		}
+		boolean fitted = null != modelFile && tfidfTransform.modelMatches( modelFile );
+		if (!fitted && null != modelFile && modelFile.exists()) {
+			log.info( "The text model {} was fit with a different configuration, fitting it again", modelFile );
+		}
 		
-		// 1. collect stats for normalize
-        while (reader.hasNext()) {
-            
-        	// get the record from the input format
-        	Collection<Writable> w = reader.next();
-        	tfidfTransform.collectStatistics(w);
-        	recordsSeen++;
-
-        }
+		if (fitted) {
+			
+			// 1. the corpus was fit before, go straight to the transform pass
+			log.info( "Loading the text model from {}, skipping the statistics pass", modelFile );
+			tfidfTransform.loadModel( modelFile );
+			
+		} else {
+			
+			// 1. collect stats for normalize
+			while (reader.hasNext()) {
+				
+				// get the record from the input format
+				Collection<Writable> w = this.readRecord();
+				this.metrics.addLine(w.iterator().next().toString());
+				long t = System.nanoTime();
+				tfidfTransform.collectStatistics(w);
+				this.metrics.lap(PipelineMetrics.Stage.PARSE, t);
+				recordsSeen++;
+				
+			}
+			
+			if (null != modelFile) {
+				log.info( "Saving the text model to {}", modelFile );
+				tfidfTransform.saveModel( modelFile );
+			}
+			
+		}
         
         if (this.printStats) {
 
-	        System.out.println( "Total Records: " + recordsSeen );
-	        System.out.println( "Total Labels: " + tfidfTransform.getNumberOfLabelsSeen() );
-	        System.out.println( "Vocabulary Size of Corpus: " + tfidfTransform.getVocabularySize() );
+	        this.console.println( "Total Records: " + recordsSeen );
+	        this.console.println( "Total Labels: " + tfidfTransform.getNumberOfLabelsSeen() );
+	        this.console.println( "Vocabulary Size of Corpus: " + tfidfTransform.getVocabularySize() );
+	        this.console.println( "Number of Features: " + tfidfTransform.getNumberOfFeatures() );
 	        tfidfTransform.debugPrintVocabList();
 	        
         }
         
 		// 2. reset reader
         
-        reader.close();
-        //RecordReader reader = null;
-		try {
-			this.reader = inputFormat.createReader(split, conf);
-		} catch (InterruptedException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		if (!fitted) {
+			reader.close();
+			//RecordReader reader = null;
+			try {
+				this.reader = inputFormat.createReader(split, conf);
+			} catch (InterruptedException e) {
+				// TODO Auto-generated catch block
+				e.printStackTrace();
+			}
 		}
 		
 		// 3. transform data
@@ -93,10 +143,14 @@ public class TextVectorizationEngine extends VectorizationEngine {
 		        while (reader.hasNext()) {
 		            
 		        	// get the record from the input format
-		        	Collection<Writable> w = reader.next();
+		        	Collection<Writable> w = this.readRecord();
+		        	this.metrics.addLine(w.iterator().next().toString());
+		        	long t = System.nanoTime();
 		        	tfidfTransform.transform(w);
+		        	this.metrics.lap(PipelineMetrics.Stage.TRANSFORM, t);
 		        	
 		        	shuffle.addRecord(w);
+		        	this.metrics.setQueueDepth("shuffle", shuffle.size());
 		 
 		        }
 
@@ -107,7 +161,7 @@ public class TextVectorizationEngine extends VectorizationEngine {
 				while (shuffle.hasNext()) {
 					
 					Collection<Writable> shuffledRecord = shuffle.next();
-					writer.write( shuffledRecord );
+					this.writeRecord( shuffledRecord );
 					
 				}	  
 				
@@ -120,11 +174,14 @@ public class TextVectorizationEngine extends VectorizationEngine {
 		        while (reader.hasNext()) {
 		            
 		        	// get the record from the input format
-		        	Collection<Writable> w = reader.next();
+		        	Collection<Writable> w = this.readRecord();
+		        	this.metrics.addLine(w.iterator().next().toString());
+		        	long t = System.nanoTime();
 		        	tfidfTransform.transform(w);
+		        	this.metrics.lap(PipelineMetrics.Stage.TRANSFORM, t);
 		        	
 		        	// the reader did the work for us here
-		        	writer.write(w);
+		        	this.writeRecord(w);
 		 
 		        }
 		
@@ -1,6 +1,13 @@
 package org.canova.cli.vectorization;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Properties;
 
 import org.canova.api.conf.Configuration;
@@ -9,10 +16,18 @@ import org.canova.api.formats.input.InputFormat;
 import org.canova.api.formats.output.OutputFormat;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.records.writer.impl.FileRecordWriter;
 import org.canova.api.split.InputSplit;
+import org.canova.api.writable.Writable;
+import org.canova.cli.metrics.Instrumented;
+import org.canova.cli.metrics.PipelineMetrics;
+import org.canova.cli.output.RebalancingRecordWriter;
+import org.canova.cli.output.SplittingRecordWriter;
 import org.canova.cli.subcommands.Vectorize;
+import org.canova.cli.transforms.chain.ElementTransform;
+import org.canova.cli.transforms.chain.TransformChain;
 
-public abstract class VectorizationEngine {
+public abstract class VectorizationEngine implements Instrumented {
 
 	protected InputFormat inputFormat = null;
 	protected OutputFormat outputFormat = null;
@@ -27,17 +42,33 @@ public abstract class VectorizationEngine {
 	protected boolean normalizeData = true;
 	protected boolean printStats = false;
 	protected boolean dumpStats = false;
+	protected TransformChain transforms = new TransformChain();
+	protected PipelineMetrics metrics = new PipelineMetrics();
+	// where progress reports go, the job's console (streamed to the client when served)
+	protected PrintStream console = System.out;
+	// the writers createOutputWriter() set up, null if not configured
+	protected SplittingRecordWriter splitter = null;
+	protected RebalancingRecordWriter rebalancer = null;
+
+	private static final int SPLIT_BUFFER_SIZE = 1 << 16;
 
 	public void initialize( InputSplit split, InputFormat inputFormat, OutputFormat outputFormat, RecordReader reader, RecordWriter writer, Properties configProps, String outputFilename, Configuration conf) {
 
 		this.split = split;
 		this.reader = reader;
-		this.writer = writer;
 		this.configProps = configProps;
 		this.inputFormat = inputFormat;
 		this.outputFormat = outputFormat;
 		this.outputFilename = outputFilename;
 		this.conf = conf;
+		this.writer = writer;
+		if (null == this.writer) {
+			try {
+				this.writer = this.createOutputWriter(conf);
+			} catch (CanovaException e) {
+				throw new RuntimeException(e);
+			}
+		}
 
 
 		if (null != this.configProps.get(Vectorize.SHUFFLE_DATA_FLAG)) {
@@ -46,7 +77,7 @@ public abstract class VectorizationEngine {
 				shuffleOn = true;
 			}
 
-			System.out.println("Shuffle was turned on for this dataset.");
+			this.console.println("Shuffle was turned on for this dataset.");
 		}
 
 
@@ -56,7 +87,7 @@ public abstract class VectorizationEngine {
 				normalizeData = false;
 			}
 
-			System.out.println("Normalization was turned off for this dataset.");
+			this.console.println("Normalization was turned off for this dataset.");
 		}
 
 		if (null != this.configProps.get(Vectorize.PRINT_STATS_FLAG)) {
@@ -67,6 +98,13 @@ public abstract class VectorizationEngine {
 				this.printStats = true;
 			}
 		}
+		if (null != this.configProps.get(Vectorize.TRANSFORMS_KEY)) {
+			if (!this.supportsTransforms()) {
+				throw new IllegalArgumentException(Vectorize.TRANSFORMS_KEY + " is only supported for image input, not by " + this.getClass().getSimpleName());
+			}
+			this.transforms = TransformChain.parse((String) this.configProps.get(Vectorize.TRANSFORMS_KEY));
+		}
+
 		if ( null != this.configProps.get(Vectorize.STATS_FILENAME_KEY)) {
 			this.statFilename = (String) this.configProps.get(Vectorize.STATS_FILENAME_KEY);
 			this.dumpStats = true;
@@ -76,19 +114,171 @@ public abstract class VectorizationEngine {
 	public abstract void execute() throws CanovaException, IOException, InterruptedException;
 
 	/**
-	 * These two methods are stubbing the future vector transform transform system
+	 * Creates the writer for the output path in the conf. With split ratios configured
+	 * (Vectorize.SPLIT_RATIOS_KEY) that is a SplittingRecordWriter over one buffered writer
+	 * per split, each writing next to the output path, e.g. vectors.train.txt / vectors.test.txt.
+	 * With a rebalance target (Vectorize.REBALANCE_TARGET_KEY) a RebalancingRecordWriter resamples
+	 * the classes after the split, on the train split only (the first one), so the validation and
+	 * test splits keep the class balance of the data; without split ratios it rebalances everything.
+	 */
+	public RecordWriter createOutputWriter(Configuration conf) throws CanovaException {
+
+		String ratios = (String) this.configProps.get(Vectorize.SPLIT_RATIOS_KEY);
+		if (null == ratios) {
+			return this.rebalance(this.outputFormat.createWriter(conf));
+		}
+
+		double[] splitRatios = SplittingRecordWriter.parseRatios(ratios);
+		String[] names = SplittingRecordWriter.splitNames(splitRatios.length);
+		String outputPath = conf.get(OutputFormat.OUTPUT_PATH);
+		List<RecordWriter> writers = new ArrayList<>();
+		for (String name : names) {
+			Configuration splitConf = new Configuration(conf);
+			splitConf.set(OutputFormat.OUTPUT_PATH, splitPath(outputPath, name));
+			splitConf.setInt(FileRecordWriter.BUFFER_SIZE, SPLIT_BUFFER_SIZE);
+			RecordWriter writer = this.outputFormat.createWriter(splitConf);
+			writers.add(writers.isEmpty() ? this.rebalance(writer) : writer);
+		}
+
+		long seed = 12345;
+		if (null != this.configProps.get(Vectorize.SPLIT_SEED_KEY)) {
+			seed = Long.parseLong(((String) this.configProps.get(Vectorize.SPLIT_SEED_KEY)).trim());
+		}
+		this.splitter = new SplittingRecordWriter(writers, splitRatios, seed);
+		if (null != this.configProps.get(Vectorize.SPLIT_STRATIFY_KEY)) {
+			// the label is the last writable for the image / text / audio input formats, engines that know better override this.
+			// No class counts up front, the splitter keeps every split at its share of the classes seen so far
+			this.splitter.stratifyOn(SplittingRecordWriter.LAST, null);
+		}
+		return this.splitter;
+
+	}
+
+	// wraps the writer in a RebalancingRecordWriter if a rebalance target is configured
+	private RecordWriter rebalance(RecordWriter writer) {
+
+		String target = (String) this.configProps.get(Vectorize.REBALANCE_TARGET_KEY);
+		if (null == target) {
+			return writer;
+		}
+
+		int reservoirSize = RebalancingRecordWriter.DEFAULT_RESERVOIR_SIZE;
+		if (null != this.configProps.get(Vectorize.REBALANCE_RESERVOIR_KEY)) {
+			reservoirSize = Integer.parseInt(((String) this.configProps.get(Vectorize.REBALANCE_RESERVOIR_KEY)).trim());
+		}
+		long seed = 12345;
+		if (null != this.configProps.get(Vectorize.REBALANCE_SEED_KEY)) {
+			seed = Long.parseLong(((String) this.configProps.get(Vectorize.REBALANCE_SEED_KEY)).trim());
+		}
+		// the label is the last writable unless the engine says otherwise, the rates are estimated from the stream
+		this.rebalancer = new RebalancingRecordWriter(writer, RebalancingRecordWriter.parseTarget(target), reservoirSize, seed);
+		return this.rebalancer;
+
+	}
+
+	/**
+	 * vectors.txt -> vectors.train.txt
+	 */
+	public static String splitPath(String outputPath, String splitName) {
+		int slash = Math.max(outputPath.lastIndexOf('/'), outputPath.lastIndexOf(File.separatorChar));
+		int dot = outputPath.lastIndexOf('.');
+		if (dot <= slash + 1) {
+			return outputPath + "." + splitName;
+		}
+		return outputPath.substring(0, dot) + "." + splitName + outputPath.substring(dot);
+	}
+
+	/**
+	 * Writes the dataset statistics of the last execute() so later runs can vectorize new data
+	 * exactly the same way, see {@link #loadStatistics(Reader)}
 	 *
-	 * We want to separate the transform logic from the inputformat/recordreader
+	 * @return false if this engine has no statistics to save
+	 */
+	public boolean saveStatistics(Writer w) throws IOException {
+		return false;
+	}
+
+	/**
+	 * Runs only the statistics pass of execute() and writes nothing, so the data can then be
+	 * vectorized in several parts that all load the same statistics
+	 *
+	 * @return false if this engine has no dataset statistics
+	 */
+	public boolean collectStatistics() throws CanovaException, IOException, InterruptedException {
+		return false;
+	}
+
+	/**
+	 * Freezes the dataset statistics: execute() uses the given ones and skips its pre-pass
+	 *
+	 * @return false if this engine can't reuse saved statistics
+	 */
+	public boolean loadStatistics(Reader r) throws IOException {
+		return false;
+	}
+
+	/**
+	 * The vector transform system keeps the transform logic out of the inputformat/recordreader
 	 * 	-	example: a "thresholding" function that binarizes the vector entries
-	 * 	-	example: a sampling function that takes a larger images and down-samples the image into a small vector
+	 * 	-	example: log scaling followed by normalizing
+	 *
+	 * Transforms come from the conf file (see Vectorize.TRANSFORMS_KEY) or are added here,
+	 * they run in order as one fused pass per vector
 	 *
 	 */
-	public void addTransform() {
-		throw new UnsupportedOperationException();
+	public void addTransform(ElementTransform transform) {
+		this.transforms.add(transform);
+	}
+
+	/**
+	 * Whether execute() runs the transform chain, engines that don't reject a configured one
+	 */
+	protected boolean supportsTransforms() {
+		return false;
 	}
 
-	public void applyTransforms() {
-		throw new UnsupportedOperationException();
+	@Override
+	public PipelineMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	public void setConsole(PrintStream console) {
+		this.console = console;
+	}
+
+	public TransformChain getTransforms() {
+		return this.transforms;
+	}
+
+	/**
+	 * Applies the transform chain to a vector in place, its statistics must have been collected
+	 */
+	public void applyTransforms(Collection<Writable> vector) {
+		if (!this.transforms.isEmpty()) {
+			long t = System.nanoTime();
+			this.transforms.transform(vector);
+			this.metrics.lap(PipelineMetrics.Stage.TRANSFORM, t);
+		}
+	}
+
+	/**
+	 * reader.next(), timed as the read stage
+	 */
+	protected Collection<Writable> readRecord() {
+		long t = System.nanoTime();
+		Collection<Writable> w = this.reader.next();
+		this.metrics.lap(PipelineMetrics.Stage.READ, t);
+		return w;
+	}
+
+	/**
+	 * writer.write(), timed as the write stage and counted as an output row
+	 */
+	protected void writeRecord(Collection<Writable> w) throws IOException {
+		long t = System.nanoTime();
+		this.writer.write(w);
+		this.metrics.lap(PipelineMetrics.Stage.WRITE, t);
+		this.metrics.addRows(1);
 	}
 
 
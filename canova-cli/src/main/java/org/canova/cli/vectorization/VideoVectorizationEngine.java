@@ -18,23 +18,23 @@ public class VideoVectorizationEngine extends VectorizationEngine {
 	@Override
 	public void execute() throws IOException {
 
-		System.out.println( "VideoVectorizationEngine > execute() [ START ]" );
+		this.console.println( "VideoVectorizationEngine > execute() [ START ]" );
 		/*
 		int x = 0;
         while (reader.hasNext()) {
             
         	// get the record from the input format
-        	Collection<Writable> w = reader.next();
+        	Collection<Writable> w = this.readRecord();
         	
         	// the reader did the work for us here
-        	writer.write(w);
+        	this.writeRecord(w);
          }
 	*/
 
         reader.close();
         writer.close();		
 		
-		System.out.println( "VideoVectorizationEngine > execute() [ END ]" );
+		this.console.println( "VideoVectorizationEngine > execute() [ END ]" );
         
 		
 	}
@@ -22,6 +22,10 @@ package org.canova.cli.csv.schema;
 
 import static org.junit.Assert.*;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.canova.api.io.data.SparseVectorWritable;
 import org.junit.Test;
 
 public class TestCSVInputSchema {
@@ -64,6 +68,63 @@ public class TestCSVInputSchema {
 
 	}
 
+	@Test
+	public void testSparseColumnLayout() throws Exception {
+		String schemaFilePath = "src/test/resources/csv/schemas/unit_test_schema_sparse.txt";
+		CSVInputSchema inputSchema = new CSVInputSchema();
+		inputSchema.parseSchemaFile( schemaFilePath );
+
+		assertEquals( 16, inputSchema.getColumnSchemaByName( "agent" ).hashBuckets );
+
+		inputSchema.evaluateInputRecord( "1.5,red,curl,a" );
+		inputSchema.evaluateInputRecord( "2,green,firefox,b" );
+		inputSchema.evaluateInputRecord( "3,red,curl,a" );
+		inputSchema.computeDatasetStatistics();
+
+		// length, 2 colors, 16 hash buckets, label
+		assertEquals( 20, inputSchema.getTransformedVectorSize() );
+		assertEquals( 0, inputSchema.getColumnSchemaByName( "length" ).outputOffset );
+		assertEquals( 1, inputSchema.getColumnSchemaByName( "color" ).outputOffset );
+		assertEquals( 3, inputSchema.getColumnSchemaByName( "agent" ).outputOffset );
+		assertEquals( 19, inputSchema.getColumnSchemaByName( "class" ).outputOffset );
+
+		SparseVectorWritable color = inputSchema.getColumnSchemaByName( "color" ).oneHot( "green" );
+		assertEquals( 2, color.size() );
+		assertEquals( 1, color.numNonZero() );
+		assertEquals( 1, color.indexAt(0) );
+		try {
+			inputSchema.getColumnSchemaByName( "color" ).oneHot( "blue" );
+			fail( "one-hot vectorized a color the statistics never saw" );
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testStatisticsDumpAndLoad() throws Exception {
+		String schemaFilePath = "src/test/resources/csv/schemas/unit_test_schema.txt";
+		CSVInputSchema inputSchema = new CSVInputSchema();
+		inputSchema.parseSchemaFile( schemaFilePath );
+		inputSchema.evaluateInputRecord( "5.1,3.5,1.4,0.2,a,setosa" );
+		inputSchema.evaluateInputRecord( "7.0,3.2,4.7,1.4,b,versicolor" );
+		inputSchema.evaluateInputRecord( "6.3,3.3,6.0,2.5,a,virginica" );
+		inputSchema.computeDatasetStatistics();
+
+		StringWriter dump = new StringWriter();
+		inputSchema.dumpDatasetStatisticsToFile( dump );
+
+		CSVInputSchema loaded = new CSVInputSchema();
+		loaded.parseSchemaFile( schemaFilePath );
+		loaded.loadDatasetStatistics( new StringReader( dump.toString() ) );
+
+		assertEquals( 1.4, loaded.getColumnSchemaByName( "petallength" ).minValue, 0.0 );
+		assertEquals( 6.0, loaded.getColumnSchemaByName( "petallength" ).maxValue, 0.0 );
+		assertEquals( 2.5, loaded.getColumnSchemaByName( "petalwidth" ).maxValue, 0.0 );
+		assertEquals( inputSchema.getColumnSchemaByName( "class" ).recordLabels.keySet(), loaded.getColumnSchemaByName( "class" ).recordLabels.keySet() );
+		assertEquals( Integer.valueOf( 2 ), loaded.getColumnSchemaByName( "class" ).getLabelID( "virginica" ) );
+		assertEquals( inputSchema.getTransformedVectorSize(), loaded.getTransformedVectorSize() );
+	}
+
 	@Test
 	public void testLoadingUnsupportedSchemas() throws Exception {
 
@@ -22,6 +22,7 @@ package org.canova.cli.csv.schema;
 
 import static org.junit.Assert.*;
 
+import org.canova.api.io.data.SparseVectorWritable;
 import org.junit.Test;
 
 public class TestCSVSchemaColumn {
@@ -270,4 +271,75 @@ public class TestCSVSchemaColumn {
 	}	
 	
 	
+	@Test
+	public void testEvaluateCSVRecords_NominalColumns_Hash() throws Exception {
+
+		// { Nominal + Hash } needs no dictionary
+
+		CSVSchemaColumn schemaCol = new CSVSchemaColumn( "agent", CSVSchemaColumn.ColumnType.NOMINAL, 64, true );
+
+		schemaCol.evaluateColumnValue("Mozilla/5.0");
+		schemaCol.evaluateColumnValue("curl/7.1");
+
+		assertTrue( schemaCol.recordLabels.isEmpty() );
+		assertFalse( schemaCol.requiresStatistics() );
+		assertEquals( 64, schemaCol.getOutputWidth() );
+
+		SparseVectorWritable hashed = schemaCol.hash(" curl/7.1 ");
+		assertEquals( 64, hashed.size() );
+		assertEquals( 1, hashed.numNonZero() );
+		assertEquals( schemaCol.hashIndex("curl/7.1"), hashed.indexAt(0) );
+		assertEquals( 1.0, Math.abs(hashed.valueAt(0)), 0.0 );
+		assertEquals( hashed, schemaCol.hash("curl/7.1") );
+
+	}
+
+	@Test
+	public void testNormalizeClampsToSampledRange() throws Exception {
+
+		CSVSchemaColumn schemaCol = new CSVSchemaColumn( "a", CSVSchemaColumn.ColumnType.NUMERIC, CSVSchemaColumn.TransformType.NORMALIZE );
+		schemaCol.evaluateColumnValue("0");
+		schemaCol.evaluateColumnValue("10");
+		schemaCol.clampToRange = true;
+
+		assertEquals( 0.5, schemaCol.transformColumnValue("5"), 0.0 );
+		assertEquals( 1.0, schemaCol.transformColumnValue("12"), 0.0 );
+		assertEquals( 0.0, schemaCol.transformColumnValue("-3"), 0.0 );
+		assertEquals( 2, schemaCol.clampedValues );
+
+	}
+
+	@Test
+	public void testUnseenNominalValueFails() throws Exception {
+
+		// statistics frozen by an earlier run don't know the new value
+		for (CSVSchemaColumn.TransformType transform : new CSVSchemaColumn.TransformType[] {
+				CSVSchemaColumn.TransformType.LABEL, CSVSchemaColumn.TransformType.COPY, CSVSchemaColumn.TransformType.NORMALIZE }) {
+
+			CSVSchemaColumn schemaCol = new CSVSchemaColumn( "b", CSVSchemaColumn.ColumnType.NOMINAL, transform );
+			schemaCol.evaluateColumnValue("a");
+			schemaCol.evaluateColumnValue("b");
+
+			try {
+				schemaCol.transformColumnValue("c");
+				fail( transform + " vectorized a value it has no ID for" );
+			} catch (IllegalArgumentException e) {
+				assertTrue( e.getMessage().contains("'c'") );
+			}
+
+		}
+
+		// one-hot has no slot for it either
+		CSVSchemaColumn oneHot = new CSVSchemaColumn( "b", CSVSchemaColumn.ColumnType.NOMINAL, CSVSchemaColumn.TransformType.ONEHOT );
+		oneHot.evaluateColumnValue("a");
+		assertEquals( 1, oneHot.oneHot("a").numNonZero() );
+		try {
+			oneHot.oneHot("c");
+			fail( "one-hot vectorized a value it has no slot for" );
+		} catch (IllegalArgumentException e) {
+			assertTrue( e.getMessage().contains("'c'") );
+		}
+
+	}
+
 }
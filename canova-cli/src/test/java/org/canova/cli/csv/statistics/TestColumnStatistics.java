@@ -0,0 +1,120 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.csv.statistics;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import au.com.bytecode.opencsv.CSVParser;
+
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.csv.schema.CSVSchemaColumn;
+import org.junit.Test;
+
+public class TestColumnStatistics {
+
+	@Test
+	public void testMergeMatchesSequential() {
+
+		Random random = new Random(42);
+		ColumnStatistics sequential = new ColumnStatistics();
+		List<ColumnStatistics> parts = new ArrayList<>();
+		for (int p = 0; p < 5; p++) {
+			ColumnStatistics part = new ColumnStatistics();
+			for (int i = 0; i < 100 + p; i++) {
+				double value = random.nextGaussian() * 10 + p;
+				String label = "l" + random.nextInt(4 + 3 * p);
+				sequential.add(value);
+				sequential.addLabel(label);
+				part.add(value);
+				part.addLabel(label);
+			}
+			parts.add(part);
+		}
+
+		// merge as a tree, associativity means the grouping doesn't matter
+		ColumnStatistics merged = parts.get(0).merge(parts.get(1)).merge(parts.get(2).merge(parts.get(3).merge(parts.get(4))));
+
+		assertEquals( sequential.minValue, merged.minValue, 0.0 );
+		assertEquals( sequential.maxValue, merged.maxValue, 0.0 );
+		assertEquals( sequential.count, merged.count );
+		assertEquals( sequential.mean, merged.mean, 1e-9 );
+		assertEquals( sequential.variance(), merged.variance(), 1e-9 );
+		assertEquals( sequential.labels, merged.labels );
+		assertEquals( new ArrayList<>(sequential.labels.keySet()), new ArrayList<>(merged.labels.keySet()) );
+
+	}
+
+	@Test
+	public void testSchemaPartitionsMatchSequential() throws Exception {
+
+		String schemaFilePath = "src/test/resources/csv/schemas/unit_test_schema.txt";
+		CSVInputSchema sequential = new CSVInputSchema();
+		sequential.parseSchemaFile( schemaFilePath );
+		CSVInputSchema partitioned = new CSVInputSchema();
+		partitioned.parseSchemaFile( schemaFilePath );
+
+		String[] lines = { "1, 2, 3, 4, 0, a", "5, 2, -3, 4, 1, b", "2, 2, 8, 1, 0, c", "0, 1, 3, 9, 1, a", "7, 2, 3, 4, 0, d" };
+		for (String line : lines) {
+			sequential.evaluateInputRecord(line);
+		}
+
+		// a value that isn't a number is counted as invalid, and the record is rejected
+		String invalid = "1, x, 3, 4, 0, a";
+		try {
+			sequential.evaluateInputRecord(invalid);
+			fail();
+		} catch (NumberFormatException e) {
+			// expected
+		}
+
+		DatasetSummaryStatistics first = partitioned.newStatistics();
+		DatasetSummaryStatistics second = partitioned.newStatistics();
+		// each part reuses one parser, as the parallel pre-pass does per chunk
+		CSVParser firstParser = partitioned.newParser();
+		CSVParser secondParser = partitioned.newParser();
+		for (int i = 0; i < lines.length; i++) {
+			partitioned.evaluateInputRecord(lines[i], i < 2 ? first : second, i < 2 ? firstParser : secondParser);
+		}
+		try {
+			partitioned.evaluateInputRecord(invalid, second, secondParser);
+			fail();
+		} catch (NumberFormatException e) {
+			// expected
+		}
+		partitioned.mergeStatistics(first);
+		partitioned.mergeStatistics(second);
+
+		for (CSVSchemaColumn column : sequential.getColumnSchemas().values()) {
+			CSVSchemaColumn other = partitioned.getColumnSchemaByName(column.name);
+			assertEquals( column.minValue, other.minValue, 0.0 );
+			assertEquals( column.maxValue, other.maxValue, 0.0 );
+			assertEquals( column.recordLabels, other.recordLabels );
+			assertEquals( column.invalidDataEntries, other.invalidDataEntries );
+		}
+		assertEquals( 1, sequential.getColumnSchemaByName( "sepalwidth" ).invalidDataEntries );
+
+	}
+
+}
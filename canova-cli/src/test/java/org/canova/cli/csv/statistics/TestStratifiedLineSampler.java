@@ -0,0 +1,63 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.csv.statistics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.util.List;
+
+import org.junit.Test;
+
+public class TestStratifiedLineSampler {
+
+	@Test
+	public void testSampleIsSpreadAndOrdered() throws Exception {
+
+		File f = File.createTempFile("sample", ".csv");
+		f.deleteOnExit();
+		try (PrintWriter out = new PrintWriter(f, "UTF-8")) {
+			out.println("header");
+			for (int i = 0; i < 10000; i++) {
+				out.print(i + "," + (i * 2) + "\r\n");
+			}
+		}
+
+		List<String> lines = new StratifiedLineSampler(new URI[]{ f.toURI() }, 7).skipFirstLine(true).sample(100);
+
+		assertTrue( lines.size() > 90 && lines.size() <= 100 );
+		int last = -1;
+		for (String line : lines) {
+			String[] parts = line.split(",");
+			int i = Integer.parseInt(parts[0]);
+			// whole lines, no header, no duplicates, in file order
+			assertEquals( i * 2, Integer.parseInt(parts[1]) );
+			assertTrue( i > last );
+			last = i;
+		}
+		// stratified: the sample reaches the end of the file
+		assertTrue( last > 9800 );
+
+	}
+
+}
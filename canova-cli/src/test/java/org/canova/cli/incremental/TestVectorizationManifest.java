@@ -0,0 +1,88 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.incremental;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class TestVectorizationManifest {
+
+	private static File write(File dir, String name, String contents) throws Exception {
+		File f = new File(dir, name);
+		try (Writer w = new FileWriter(f)) {
+			w.write(contents);
+		}
+		return f;
+	}
+
+	@Test
+	public void testSaveLoadAndProcessedFiles() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_manifest").toFile();
+		File a = write(dir, "a.csv", "1,2,3\n");
+		File b = write(dir, "b.csv", "4,5,6\n");
+
+		File manifestFile = new File(dir, "_manifest.json");
+		VectorizationManifest manifest = VectorizationManifest.load(manifestFile);
+		assertTrue(manifest.getEntries().isEmpty());
+		assertFalse(manifest.isProcessed(a));
+
+		String part = manifest.nextPartName();
+		assertEquals("part-00000", part);
+		manifest.setStatistics("{\"schema\":[]}");
+		manifest.addPart(Arrays.asList(a, b), part);
+		manifest.save();
+		assertFalse(new File(dir, "_manifest.json.tmp").exists());
+
+		VectorizationManifest loaded = VectorizationManifest.load(manifestFile);
+		assertEquals(2, loaded.getEntries().size());
+		assertEquals("{\"schema\":[]}", loaded.getStatistics());
+		assertEquals("part-00001", loaded.nextPartName());
+		assertTrue(loaded.isProcessed(a));
+		assertTrue(loaded.isProcessed(b));
+		assertTrue(loaded.hasPart("part-00000"));
+		assertFalse(loaded.hasPart("part-00001"));
+
+		// a copy is matched on content, new content is not
+		File copy = write(dir, "copy.csv", "1,2,3\n");
+		File c = write(dir, "c.csv", "7,8,9\n");
+		assertTrue(loaded.isProcessed(copy));
+		assertFalse(loaded.isProcessed(c));
+
+		loaded.addPart(Collections.singletonList(c), "part-00001");
+		assertTrue(loaded.isProcessed(c));
+
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+
+	}
+
+}
@@ -0,0 +1,93 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.metrics;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+
+import org.canova.cli.metrics.PipelineMetrics.Stage;
+import org.canova.cli.metrics.PipelineMetrics.StageMetrics;
+import org.junit.Test;
+
+public class TestPipelineMetrics {
+
+	@Test
+	public void testStageHistogram() {
+
+		PipelineMetrics metrics = new PipelineMetrics();
+		for (int i = 0; i < 99; i++) {
+			metrics.record(Stage.READ, 1000);
+		}
+		metrics.record(Stage.READ, 1000000);
+
+		StageMetrics read = metrics.getStage(Stage.READ);
+		assertEquals( 100, read.count() );
+		assertEquals( 99 * 1000 + 1000000, read.totalNanos() );
+		assertEquals( 1000000, read.maxNanos() );
+		// 1000ns lands in the [512, 1024) bucket
+		assertEquals( 1024, read.percentileNanos(0.5) );
+		assertEquals( 1024, read.percentileNanos(0.99) );
+		assertEquals( 1000000, read.percentileNanos(1.0) );
+		assertEquals( 0, metrics.getStage(Stage.WRITE).percentileNanos(0.5) );
+
+	}
+
+	@Test
+	public void testLineBytes() throws Exception {
+
+		PipelineMetrics metrics = new PipelineMetrics();
+		String[] lines = { "", "a,b,c", "caf\u00e9", "\u20ac1", "smile \ud83d\ude00" };
+		long expected = 0;
+		for (String line : lines) {
+			metrics.addLine(line);
+			expected += line.getBytes("UTF-8").length + 1;
+		}
+		assertEquals( expected, metrics.getBytes() );
+
+	}
+
+	@Test
+	public void testJsonDump() throws Exception {
+
+		PipelineMetrics metrics = new PipelineMetrics();
+		metrics.start();
+		metrics.addRows(10);
+		metrics.addBytes(2048);
+		long t = metrics.lap(Stage.PARSE, System.nanoTime());
+		metrics.lap(Stage.WRITE, t);
+		metrics.setQueueDepth("shuffle", 5);
+		metrics.setQueueDepth("shuffle", 2);
+		metrics.stop();
+
+		StringWriter w = new StringWriter();
+		metrics.writeJson(w);
+		String json = w.toString().replaceAll("\\s", "");
+		assertTrue( json.contains("\"rows\":10") );
+		assertTrue( json.contains("\"bytes\":2048") );
+		assertTrue( json.contains("\"shuffle\":{\"current\":2,\"max\":5}") );
+		assertTrue( json.contains("\"parse\":{\"count\":1") );
+		assertTrue( json.contains("\"read\":{\"count\":0") );
+		assertTrue( metrics.summary().startsWith("10 rows") );
+
+	}
+
+}
@@ -0,0 +1,110 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.output;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.writable.Writable;
+import org.junit.Test;
+
+public class TestRebalancingRecordWriter {
+
+	private static class ListRecordWriter implements RecordWriter {
+
+		List<Collection<Writable>> records = new ArrayList<>();
+
+		@Override
+		public void write(Collection<Writable> record) {
+			this.records.add(record);
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public void setConf(Configuration conf) {
+		}
+
+		@Override
+		public Configuration getConf() {
+			return null;
+		}
+
+	}
+
+	private static void writeImbalanced(RecordWriter writer) throws Exception {
+		for (int i = 0; i < 10000; i++) {
+			writer.write(Arrays.<Writable>asList(new DoubleWritable(i), new Text(i % 10 == 0 ? "minority" : "majority")));
+		}
+	}
+
+	@Test
+	public void testUniformWithKnownCounts() throws Exception {
+
+		ListRecordWriter out = new ListRecordWriter();
+		RebalancingRecordWriter rebalancer = new RebalancingRecordWriter(out, RebalancingRecordWriter.parseTarget("uniform"), 16, 42);
+		Map<String, Integer> counts = new HashMap<>();
+		counts.put("majority", 9000);
+		counts.put("minority", 1000);
+		rebalancer.rebalanceOn(SplittingRecordWriter.LAST, counts);
+		writeImbalanced(rebalancer);
+		rebalancer.close();
+
+		Map<String, Long> written = rebalancer.getWrittenCounts();
+		assertEquals(5000, written.get("majority"), 200);
+		assertEquals(5000, written.get("minority"), 200);
+		assertEquals(out.records.size(), written.get("majority") + written.get("minority"));
+
+		// the duplicates are records of their own class
+		for (Collection<Writable> record : out.records) {
+			List<Writable> values = new ArrayList<>(record);
+			int i = (int) ((DoubleWritable) values.get(0)).get();
+			assertEquals(i % 10 == 0 ? "minority" : "majority", values.get(1).toString());
+		}
+
+	}
+
+	@Test
+	public void testWeightedTargetEstimatedFromStream() throws Exception {
+
+		ListRecordWriter out = new ListRecordWriter();
+		RebalancingRecordWriter rebalancer = new RebalancingRecordWriter(out, RebalancingRecordWriter.parseTarget("majority=3, minority=1"), 16, 7);
+		writeImbalanced(rebalancer);
+
+		Map<String, Long> written = rebalancer.getWrittenCounts();
+		double minorityShare = written.get("minority") / (double) out.records.size();
+		assertEquals(0.25, minorityShare, 0.02);
+
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.output;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.canova.api.conf.Configuration;
+import org.canova.api.formats.output.OutputFormat;
+import org.canova.api.formats.output.impl.SVMLightOutputFormat;
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.records.writer.RecordWriter;
+import org.canova.api.writable.Writable;
+import org.canova.cli.subcommands.Vectorize;
+import org.canova.cli.vectorization.VectorizationEngine;
+import org.junit.Test;
+
+public class TestSplittingRecordWriter {
+
+	private static class ListRecordWriter implements RecordWriter {
+
+		List<Collection<Writable>> records = new ArrayList<>();
+
+		@Override
+		public void write(Collection<Writable> record) {
+			this.records.add(record);
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public void setConf(Configuration conf) {
+		}
+
+		@Override
+		public Configuration getConf() {
+			return null;
+		}
+
+	}
+
+	private static int countClass(ListRecordWriter writer, String label) {
+		int count = 0;
+		for (Collection<Writable> record : writer.records) {
+			if (label.equals(new ArrayList<>(record).get(1).toString())) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testStratifiedSplitIsExact() throws Exception {
+
+		ListRecordWriter train = new ListRecordWriter();
+		ListRecordWriter validation = new ListRecordWriter();
+		ListRecordWriter test = new ListRecordWriter();
+		SplittingRecordWriter splitter = new SplittingRecordWriter(Arrays.<RecordWriter>asList(train, validation, test), SplittingRecordWriter.parseRatios("0.8, 0.1, 0.1"), 42);
+
+		Map<String, Integer> counts = new HashMap<>();
+		counts.put("0", 900);
+		counts.put("1", 100);
+		splitter.stratifyOn(1, counts);
+
+		for (int i = 0; i < 1000; i++) {
+			splitter.write(Arrays.<Writable>asList(new DoubleWritable(i), new Text(i % 10 == 0 ? "1" : "0")));
+		}
+		splitter.close();
+
+		assertEquals(720, countClass(train, "0"));
+		assertEquals(80, countClass(train, "1"));
+		assertEquals(90, countClass(validation, "0"));
+		assertEquals(10, countClass(validation, "1"));
+		assertEquals(90, countClass(test, "0"));
+		assertEquals(10, countClass(test, "1"));
+		assertArrayEquals(new long[] { 800, 100, 100 }, splitter.getWrittenCounts());
+
+	}
+
+	@Test
+	public void testStratifiedSplitWithoutCounts() throws Exception {
+
+		ListRecordWriter train = new ListRecordWriter();
+		ListRecordWriter test = new ListRecordWriter();
+		SplittingRecordWriter splitter = new SplittingRecordWriter(Arrays.<RecordWriter>asList(train, test), SplittingRecordWriter.parseRatios("0.8,0.2"), 7);
+		// the text / image engines: the label is last, its count isn't known up front
+		splitter.stratifyOn(SplittingRecordWriter.LAST, null);
+
+		for (int i = 0; i < 1000; i++) {
+			splitter.write(Arrays.<Writable>asList(new DoubleWritable(i), new Text(i % 10 == 0 ? "1" : "0")));
+			// every split stays within one record of its share of each class
+			int ones = i / 10 + 1;
+			int zeros = i + 1 - ones;
+			assertEquals(0.8 * ones, countClass(train, "1"), 1.0);
+			assertEquals(0.2 * ones, countClass(test, "1"), 1.0);
+			assertEquals(0.8 * zeros, countClass(train, "0"), 1.0);
+			assertEquals(0.2 * zeros, countClass(test, "0"), 1.0);
+		}
+		splitter.close();
+
+		assertEquals(80, countClass(train, "1"));
+		assertEquals(720, countClass(train, "0"));
+
+	}
+
+	@Test
+	public void testRebalanceTrainSplitOnly() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_split").toFile();
+		String output = new File(dir, "vectors.txt").getPath();
+		Properties props = new Properties();
+		props.setProperty(Vectorize.SPLIT_RATIOS_KEY, "0.5,0.5");
+		props.setProperty(Vectorize.SPLIT_STRATIFY_KEY, "true");
+		props.setProperty(Vectorize.REBALANCE_TARGET_KEY, "uniform");
+		Configuration conf = new Configuration();
+		conf.set(OutputFormat.OUTPUT_PATH, output);
+		VectorizationEngine engine = new VectorizationEngine() {
+			@Override
+			public void execute() {
+			}
+		};
+		engine.initialize(null, null, new SVMLightOutputFormat(), null, null, props, output, conf);
+
+		RecordWriter writer = engine.createOutputWriter(conf);
+		assertTrue(writer instanceof SplittingRecordWriter);
+		for (int i = 0; i < 2000; i++) {
+			writer.write(Arrays.<Writable>asList(new DoubleWritable(i), new DoubleWritable(i % 10 == 0 ? 1 : 0)));
+		}
+		writer.close();
+
+		try {
+			// the test split keeps the 9:1 balance of the data, the train split is rebalanced toward 1:1
+			Map<String, Integer> test = countLabels(new File(VectorizationEngine.splitPath(output, "test")));
+			assertEquals(900, test.get("0.0"), 1.0);
+			assertEquals(100, test.get("1.0"), 1.0);
+			Map<String, Integer> train = countLabels(new File(VectorizationEngine.splitPath(output, "train")));
+			double share = train.get("1.0") / (double) (train.get("0.0") + train.get("1.0"));
+			assertEquals(0.5, share, 0.1);
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+
+	}
+
+	// svmlight lines start with the label
+	private static Map<String, Integer> countLabels(File f) throws Exception {
+		Map<String, Integer> counts = new HashMap<>();
+		for (String line : Files.readAllLines(f.toPath(), Charset.forName("UTF-8"))) {
+			String label = line.split(" ")[0];
+			counts.put(label, (counts.containsKey(label) ? counts.get(label) : 0) + 1);
+		}
+		return counts;
+	}
+
+	@Test
+	public void testSplitNamesAndPaths() {
+
+		assertArrayEquals(new String[] { "train", "test" }, SplittingRecordWriter.splitNames(2));
+		assertEquals("/tmp/out/vectors.train.txt", VectorizationEngine.splitPath("/tmp/out/vectors.txt", "train"));
+		assertEquals("/tmp/out/vectors.test", VectorizationEngine.splitPath("/tmp/out/vectors", "test"));
+
+	}
+
+}
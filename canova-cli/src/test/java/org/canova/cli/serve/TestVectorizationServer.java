@@ -0,0 +1,157 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.serve;
+
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Test;
+
+public class TestVectorizationServer {
+
+	private static String request(int port, String request) throws Exception {
+		try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+			PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+			out.println(request);
+			return in.readLine();
+		}
+	}
+
+	@Test
+	public void testRequests() throws Exception {
+
+		final VectorizationServer server = new VectorizationServer(0, 2);
+		Thread serving = new Thread() {
+			@Override
+			public void run() {
+				try {
+					server.serve();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		serving.start();
+
+		assertEquals( "PONG", request(server.getPort(), "PING") );
+		assertEquals( "FAILED No conf file at /does/not/exist.txt", request(server.getPort(), "VECTORIZE /does/not/exist.txt") );
+		assertTrue( request(server.getPort(), "FROB").startsWith("FAILED") );
+		assertEquals( "OK", request(server.getPort(), "SHUTDOWN") );
+
+		serving.join(10000);
+		assertFalse( serving.isAlive() );
+
+	}
+
+	@Test
+	public void testVectorize() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_serve").toFile();
+		File output = new File(dir, "vectors.txt");
+		File conf = new File(dir, "conf.txt");
+		try (Writer w = new FileWriter(conf)) {
+			w.write("canova.input.data.type=csv\n"
+					+ "canova.input.format=org.canova.api.formats.input.impl.LineInputFormat\n"
+					+ "canova.input.directory=src/test/resources/csv/data/uci_iris_sample.txt\n"
+					+ "canova.input.vector.schema=src/test/resources/csv/schemas/uci/iris.txt\n"
+					+ "canova.output.format=org.canova.api.formats.output.impl.SVMLightOutputFormat\n"
+					+ "canova.output.directory=" + output.getAbsolutePath() + "\n");
+		}
+
+		final VectorizationServer server = new VectorizationServer(0, 1);
+		Thread serving = new Thread() {
+			@Override
+			public void run() {
+				try {
+					server.serve();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+		};
+		serving.start();
+
+		try {
+
+			List<String> lines = new ArrayList<>();
+			try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+				PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+				out.println("VECTORIZE " + conf.getAbsolutePath());
+				String line;
+				while (null != (line = in.readLine())) {
+					lines.add(line);
+				}
+			}
+
+			// the job's console output, then the result
+			assertTrue( lines.size() > 1 );
+			for (String line : lines.subList(0, lines.size() - 1)) {
+				assertTrue( line, line.startsWith("PROGRESS ") );
+			}
+			assertTrue( lines.contains("PROGRESS Output vectors written to: " + output.getAbsolutePath()) );
+			// the metrics reach the client too, not just the server's log
+			boolean metrics = false;
+			for (String line : lines) {
+				metrics |= line.startsWith("PROGRESS Pipeline metrics: 12 rows");
+			}
+			assertTrue( metrics );
+			assertEquals( "OK " + output.getAbsolutePath(), lines.get(lines.size() - 1) );
+			assertEquals( 12, Files.readAllLines(output.toPath(), Charset.forName("UTF-8")).size() );
+
+		} finally {
+			request(server.getPort(), "SHUTDOWN");
+			serving.join(10000);
+			FileUtils.deleteDirectory(dir);
+		}
+
+	}
+
+	@Test
+	public void testLinePrefix() throws Exception {
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		PrintStream out = new PrintStream(new VectorizationServer.LinePrefixOutputStream(bytes, "> ".getBytes("UTF-8")), true, "UTF-8");
+		out.print("one\ntwo");
+		out.println(" still two");
+		out.println();
+		out.println("three");
+
+		assertEquals( "> one\n> two still two\n> \n> three\n", bytes.toString("UTF-8").replace(System.getProperty("line.separator"), "\n") );
+
+	}
+
+}
@@ -0,0 +1,217 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.subcommands;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.canova.cli.incremental.VectorizationManifest;
+import org.junit.Test;
+
+public class TestIncrementalVectorize {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static File write(File dir, String name, String contents) throws Exception {
+		File f = new File(dir, name);
+		try (Writer w = new FileWriter(f)) {
+			w.write(contents);
+		}
+		return f;
+	}
+
+	private static Vectorize run(File conf) throws Exception {
+		Vectorize vectorize = new Vectorize();
+		vectorize.configurationFile = conf.getPath();
+		vectorize.console = new PrintStream(new NullOutputStream());
+		vectorize.execute();
+		return vectorize;
+	}
+
+	private static String label(File part, int line) throws Exception {
+		List<String> lines = Files.readAllLines(part.toPath(), UTF_8);
+		return lines.get(line).split(" ")[0];
+	}
+
+	@Test
+	public void testPartsPerFileAndRecovery() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_incremental").toFile();
+		File input = new File(dir, "input");
+		File output = new File(dir, "output");
+		input.mkdirs();
+		write(input, "a.csv", "5.1,3.5,1.4,0.2,Iris-setosa\n4.9,3.0,1.4,0.2,Iris-setosa\n");
+		write(input, "b.csv", "7.0,3.2,4.7,1.4,Iris-versicolor\n6.3,3.3,6.0,2.5,Iris-virginica\n");
+		File conf = write(dir, "conf.txt",
+				"canova.input.data.type=csv\n"
+				+ "canova.input.format=org.canova.api.formats.input.impl.LineInputFormat\n"
+				+ "canova.input.vector.schema=src/test/resources/csv/schemas/uci/iris.txt\n"
+				+ "canova.output.format=org.canova.api.formats.output.impl.SVMLightOutputFormat\n"
+				+ "canova.input.directory=" + input.getAbsolutePath() + "\n"
+				+ "canova.output.directory=" + output.getAbsolutePath() + "\n"
+				+ "canova.vectorize.incremental=true\n");
+
+		try {
+
+			// the first run checkpoints every file, all with the statistics of the whole input
+			assertTrue( run(conf).isComplete() );
+			VectorizationManifest manifest = VectorizationManifest.load(new File(output, Vectorize.MANIFEST_FILENAME));
+			assertNotNull( manifest.getStatistics() );
+			assertEquals( 2, manifest.getEntries().size() );
+			assertTrue( manifest.hasPart("part-00000") );
+			assertTrue( manifest.hasPart("part-00001") );
+			String[] parts = output.list();
+			assertEquals( 3, parts.length );
+			String setosa = label(new File(output, "part-00000.txt"), 0);
+			String virginica = label(new File(output, manifest.getEntries().get(0).path.endsWith("b.csv") ? "part-00000.txt" : "part-00001.txt"), 1);
+			assertFalse( setosa.equals(virginica) );
+
+			// a killed run left a renamed but unrecorded part and a temporary one behind
+			write(output, "part-00002.txt", "stale\n");
+			write(output, ".part-00003.tmp", "stale\n");
+			write(input, "c.csv", "6.5,3.0,5.8,2.2,Iris-virginica\n");
+			assertTrue( run(conf).isComplete() );
+			assertFalse( new File(output, ".part-00003.tmp").exists() );
+			File partC = new File(output, "part-00002.txt");
+			assertEquals( 1, Files.readAllLines(partC.toPath(), UTF_8).size() );
+			assertEquals( virginica, label(partC, 0) );
+			assertFalse( new File(output, "part-00003.txt").exists() );
+
+			// a class the frozen statistics never saw fails the job, nothing is recorded for it
+			write(input, "d.csv", "5.0,3.0,1.0,0.1,Iris-unseen\n");
+			assertFalse( run(conf).isComplete() );
+			manifest = VectorizationManifest.load(new File(output, Vectorize.MANIFEST_FILENAME));
+			assertEquals( 3, manifest.getEntries().size() );
+			assertEquals( 4, output.list().length );
+
+			// a file changed in place is vectorized again into its own part, its old rows are gone
+			new File(input, "d.csv").delete();
+			write(input, "c.csv", "6.5,3.0,5.8,2.2,Iris-virginica\n5.1,3.5,1.4,0.2,Iris-setosa\n");
+			assertTrue( run(conf).isComplete() );
+			assertEquals( 2, Files.readAllLines(partC.toPath(), UTF_8).size() );
+			assertEquals( virginica, label(partC, 0) );
+			assertEquals( setosa, label(partC, 1) );
+			manifest = VectorizationManifest.load(new File(output, Vectorize.MANIFEST_FILENAME));
+			assertEquals( 3, manifest.getEntries().size() );
+			assertEquals( 4, output.list().length );
+
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+
+	}
+
+	@Test
+	public void testNominalNormalizedColumn() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_incremental").toFile();
+		File input = new File(dir, "input");
+		File output = new File(dir, "output");
+		input.mkdirs();
+		File schema = write(dir, "schema.txt",
+				"@RELATION colors\n"
+				+ "@DELIMITER ,\n"
+				+ "@ATTRIBUTE length NUMERIC !NORMALIZE\n"
+				+ "@ATTRIBUTE color NOMINAL !NORMALIZE\n"
+				+ "@ATTRIBUTE class NOMINAL !LABEL\n");
+		write(input, "a.csv", "1,red,a\n2,green,b\n3,blue,a\n");
+		File conf = write(dir, "conf.txt",
+				"canova.input.data.type=csv\n"
+				+ "canova.input.format=org.canova.api.formats.input.impl.LineInputFormat\n"
+				+ "canova.input.vector.schema=" + schema.getAbsolutePath() + "\n"
+				+ "canova.output.format=org.canova.api.formats.output.impl.SVMLightOutputFormat\n"
+				+ "canova.input.directory=" + input.getAbsolutePath() + "\n"
+				+ "canova.output.directory=" + output.getAbsolutePath() + "\n"
+				+ "canova.vectorize.incremental=true\n");
+
+		try {
+
+			assertTrue( run(conf).isComplete() );
+
+			// the frozen statistics keep the colors, a later part maps them like the first one
+			write(input, "b.csv", "2,green,b\n");
+			assertTrue( run(conf).isComplete() );
+			List<String> first = Files.readAllLines(new File(output, "part-00000.txt").toPath(), UTF_8);
+			List<String> second = Files.readAllLines(new File(output, "part-00001.txt").toPath(), UTF_8);
+			assertEquals( 1, second.size() );
+			assertEquals( first.get(1), second.get(0) );
+
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+
+	}
+
+	@Test
+	public void testSplitParts() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_incremental").toFile();
+		File input = new File(dir, "input");
+		File output = new File(dir, "output");
+		input.mkdirs();
+		write(input, "a.csv", "5.1,3.5,1.4,0.2,Iris-setosa\n4.9,3.0,1.4,0.2,Iris-setosa\n4.7,3.2,1.3,0.2,Iris-setosa\n");
+		File conf = write(dir, "conf.txt",
+				"canova.input.data.type=csv\n"
+				+ "canova.input.format=org.canova.api.formats.input.impl.LineInputFormat\n"
+				+ "canova.input.vector.schema=src/test/resources/csv/schemas/uci/iris.txt\n"
+				+ "canova.output.format=org.canova.api.formats.output.impl.SVMLightOutputFormat\n"
+				+ "canova.input.directory=" + input.getAbsolutePath() + "\n"
+				+ "canova.output.directory=" + output.getAbsolutePath() + "\n"
+				+ "canova.output.split.ratios=0.5,0.5\n"
+				+ "canova.vectorize.incremental=true\n");
+
+		try {
+
+			assertTrue( run(conf).isComplete() );
+			write(input, "b.csv", "5.0,3.6,1.4,0.2,Iris-setosa\n");
+			assertTrue( run(conf).isComplete() );
+
+			// every part is split, the split files are kept across runs
+			for (String part : new String[] { "part-00000", "part-00001" }) {
+				assertTrue( new File(output, part + ".train.txt").exists() );
+				assertTrue( new File(output, part + ".test.txt").exists() );
+			}
+			int lines = 0;
+			for (File f : output.listFiles()) {
+				assertFalse( f.getName().endsWith(".tmp") );
+				if (f.getName().startsWith("part-")) {
+					lines += Files.readAllLines(f.toPath(), UTF_8).size();
+				}
+			}
+			assertEquals( 4, lines );
+			assertEquals( 5, output.list().length );
+
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+
+	}
+
+}
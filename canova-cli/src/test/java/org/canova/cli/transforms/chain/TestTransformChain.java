@@ -0,0 +1,99 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.transforms.chain;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.writable.Writable;
+import org.junit.Test;
+
+public class TestTransformChain {
+
+	private List<Writable> vector(double... values) {
+		List<Writable> ret = new ArrayList<>();
+		for (double value : values) {
+			ret.add(new DoubleWritable(value));
+		}
+		return ret;
+	}
+
+	private double get(Collection<Writable> vector, int i) {
+		return ((DoubleWritable) new ArrayList<>(vector).get(i)).get();
+	}
+
+	@Test
+	public void testStatelessChainNeedsNoStatistics() {
+
+		TransformChain chain = TransformChain.parse("threshold:2, binarize:3");
+		assertEquals( 2, chain.getStages().size() );
+		assertFalse( chain.hasPendingStatistics() );
+
+		List<Writable> v = vector(1.0, 2.5, 4.0, 7.0);
+		chain.transform(v);
+
+		assertEquals( 0.0, get(v, 0), 0.0 );
+		assertEquals( 0.0, get(v, 1), 0.0 );
+		assertEquals( 1.0, get(v, 2), 0.0 );
+		// the label is left alone
+		assertEquals( 7.0, get(v, 3), 0.0 );
+
+	}
+
+	@Test
+	public void testStatefulStagesSeeUpstreamOutput() {
+
+		TransformChain chain = TransformChain.parse("log,normalize,standardize");
+		List<List<Writable>> data = Arrays.asList(vector(0.0, Math.E - 1, 1.0), vector(Math.exp(2) - 1, Math.exp(4) - 1, 0.0));
+
+		int passes = 0;
+		while (chain.hasPendingStatistics()) {
+			for (List<Writable> v : data) {
+				chain.collectStatistics(v);
+			}
+			chain.evaluateStatistics();
+			passes++;
+		}
+		assertEquals( 2, passes );
+
+		// normalize saw the logged values { 0, 1, 2, 4 }
+		MinMaxNormalizeTransform normalize = (MinMaxNormalizeTransform) chain.getStages().get(1);
+		assertEquals( 0.0, normalize.minValue, 1e-9 );
+		assertEquals( 4.0, normalize.maxValue, 1e-9 );
+
+		// standardize saw the normalized values { 0, 0.25, 0.5, 1 }
+		StandardizeTransform standardize = (StandardizeTransform) chain.getStages().get(2);
+		assertEquals( 0.4375, standardize.mean, 1e-9 );
+
+		for (List<Writable> v : data) {
+			chain.transform(v);
+		}
+		assertEquals( (0.0 - 0.4375) / standardize.stddev, get(data.get(0), 0), 1e-9 );
+		assertEquals( (1.0 - 0.4375) / standardize.stddev, get(data.get(1), 1), 1e-9 );
+
+	}
+
+}
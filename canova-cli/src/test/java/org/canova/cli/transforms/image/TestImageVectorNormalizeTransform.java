@@ -8,6 +8,8 @@ import java.util.Iterator;
 
 import org.canova.api.io.data.DoubleWritable;
 import org.canova.api.writable.Writable;
+import org.canova.cli.transforms.chain.MinMaxNormalizeTransform;
+import org.canova.cli.transforms.chain.TransformChain;
 import org.junit.Test;
 
 public class TestImageVectorNormalizeTransform {
@@ -15,28 +17,34 @@ public class TestImageVectorNormalizeTransform {
 	@Test
 	public void testImageNormalizer() {
 		
-		NormalizeTransform normalizer = new NormalizeTransform();
+		// the image engine's default chain
+		MinMaxNormalizeTransform normalizer = new MinMaxNormalizeTransform();
+		TransformChain chain = TransformChain.of( normalizer );
 		
 		// 1. get some image data yo
 		
 		Collection<Writable> vector1 = new ArrayList<>();
 		vector1.add(new DoubleWritable(1.0));
 		vector1.add(new DoubleWritable(0.0));
+		vector1.add(new DoubleWritable(5.0));
 		
 		Collection<Writable> vector2 = new ArrayList<>();
-		vector1.add(new DoubleWritable(3.0));
-		vector1.add(new DoubleWritable(1.0));
+		vector2.add(new DoubleWritable(3.0));
+		vector2.add(new DoubleWritable(1.0));
+		vector2.add(new DoubleWritable(7.0));
 
 		
-		normalizer.collectStatistics(vector1);
-		normalizer.collectStatistics(vector2);
+		chain.collectStatistics(vector1);
+		chain.collectStatistics(vector2);
+		chain.evaluateStatistics();
 		
+		// the labels (5 and 7) are left out of the range
 		assertEquals( 0.0, normalizer.minValue, 0.0 );
 		assertEquals( 3.0, normalizer.maxValue, 0.0 );
 		
 		// 2. normalize it
 		
-		normalizer.transform(vector1);
+		chain.transform(vector1);
 		
 		// 3. check it
 		
@@ -44,9 +52,11 @@ public class TestImageVectorNormalizeTransform {
 		
 		Double val0 = ((DoubleWritable)iter.next()).get();
 		Double val1 = ((DoubleWritable)iter.next()).get();
+		Double label = ((DoubleWritable)iter.next()).get();
 		
 		assertEquals( (1.0/3.0), val0, 0.0);
 		assertEquals(0.0, val1, 0.0);
+		assertEquals(5.0, label, 0.0);
 		
 	
 	}
@@ -2,17 +2,22 @@ package org.canova.cli.transforms.text.nlp;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
 import org.canova.api.conf.Configuration;
 import org.canova.api.io.data.DoubleWritable;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.io.data.Text;
 import org.canova.api.records.reader.impl.FileRecordReader;
 import org.canova.api.util.MathUtils;
 import org.canova.api.writable.Writable;
+import org.canova.nlp.tokenization.tokenizerfactory.UimaTokenizerFactory;
 import org.junit.Test;
 
 public class TestTfidfTextVectorizerTransform {
@@ -69,6 +74,250 @@ public class TestTfidfTextVectorizerTransform {
 					
 	
 	
+	}
+
+	@Test
+	public void testSparseMatchesDense() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		String[] docs = { "go dogs go", "cats sleep all day", "dogs chase cats" };
+
+		TfidfTextVectorizerTransform dense = new TfidfTextVectorizerTransform();
+		dense.initialize(conf);
+		conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, true );
+		TfidfTextVectorizerTransform sparse = new TfidfTextVectorizerTransform();
+		sparse.initialize(conf);
+		for (String doc : docs) {
+			dense.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+			sparse.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+		}
+
+		Collection<Writable> denseVector = new ArrayList<>( Arrays.<Writable>asList( new Text("dogs chase dogs"), new Text("label") ) );
+		dense.transform(denseVector);
+		Collection<Writable> sparseVector = new ArrayList<>( Arrays.<Writable>asList( new Text("dogs chase dogs"), new Text("label") ) );
+		sparse.transform(sparseVector);
+
+		assertEquals( dense.getVocabularySize() + 1, denseVector.size() );
+		assertEquals( 2, sparseVector.size() );
+		List<Writable> denseValues = new ArrayList<>( denseVector );
+		SparseVectorWritable block = (SparseVectorWritable) sparseVector.iterator().next();
+		assertEquals( dense.getVocabularySize(), block.size() );
+		// only the document's two known terms are stored
+		assertEquals( 2, block.numNonZero() );
+		double[] expanded = new double[ block.size() ];
+		for (int i = 0; i < block.numNonZero(); i++) {
+			expanded[ block.indexAt(i) ] = block.valueAt(i);
+		}
+		for (int i = 0; i < expanded.length; i++) {
+			assertEquals( ((DoubleWritable) denseValues.get(i)).get(), expanded[i], 1e-12 );
+		}
+
+	}
+
+	@Test
+	public void testFastTokenizerMatchesTokenizerFactory() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, true );
+		conf.setBoolean( TfidfTextVectorizerTransform.REMOVE_STOP_WORDS, true );
+		String[] docs = { "Go Dogs, Go!", "the CATS walked\tslowly\nsinging  songs", "see http://Example.com/p4ge1s 42 ...",
+				"boss's dresses passed; 2015-ed", "walking is KINGLY things.", "This was what she owns", "" };
+
+		TfidfTextVectorizerTransform fast = new TfidfTextVectorizerTransform();
+		fast.initialize(conf);
+		assertTrue( fast.fastTokenizer );
+		TfidfTextVectorizerTransform factory = new TfidfTextVectorizerTransform();
+		factory.initialize(conf);
+		factory.fastTokenizer = false;
+		for (String doc : docs) {
+			fast.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+			factory.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+		}
+
+		assertEquals( factory.getVocabularySize(), fast.getVocabularySize() );
+		// stop words are matched before their endings are stripped: "this" and "was" are dropped rather than
+		// kept as "thi" and "wa", and "owns" is kept as "own", which is a stop word itself
+		for (TfidfTextVectorizerTransform transform : new TfidfTextVectorizerTransform[] { fast, factory }) {
+			for (String word : new String[] { "the", "thi", "wa", "what" }) {
+				assertTrue( word, transform.cache.vocabWords().indexOf( word ) < 0 );
+			}
+			for (String word : new String[] { "own", "walk", "cat" }) {
+				assertTrue( word, transform.cache.vocabWords().indexOf( word ) >= 0 );
+			}
+		}
+		for (int i = 0; i < factory.getVocabularySize(); i++) {
+			assertEquals( factory.cache.wordAt(i), fast.cache.wordAt(i) );
+			assertEquals( factory.cache.idf( factory.cache.wordAt(i) ), fast.cache.idf( fast.cache.wordAt(i) ), 0.0 );
+		}
+		for (String doc : docs) {
+			assertEquals( factory.convertTextRecordToSparseTFIDFVector( doc + " dogs dog unseen" ), fast.convertTextRecordToSparseTFIDFVector( doc + " dogs dog unseen" ) );
+		}
+
+		// stop words are kept by default
+		Configuration keepConf = new Configuration();
+		keepConf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		TfidfTextVectorizerTransform keep = new TfidfTextVectorizerTransform();
+		keep.initialize(keepConf);
+		keep.collectStatistics( Arrays.<Writable>asList( new Text("This was the one"), new Text("label") ) );
+		assertTrue( keep.cache.vocabWords().indexOf( "the" ) >= 0 );
+		assertTrue( keep.cache.vocabWords().indexOf( "wa" ) >= 0 );
+
+	}
+
+	@Test
+	public void testBoundedVocab() {
+
+		Configuration conf = new Configuration();
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, true );
+		String[] docs = { "dogs chase cats", "dogs sleep", "cats sleep all day", "dogs bark", "birds sing" };
+
+		TfidfTextVectorizerTransform unbounded = new TfidfTextVectorizerTransform();
+		unbounded.initialize(conf);
+		conf.setInt( TfidfTextVectorizerTransform.MAX_VOCAB_SIZE, 3 );
+		conf.setLong( TfidfTextVectorizerTransform.VOCAB_SKETCH_BYTES, 1 << 16 );
+		TfidfTextVectorizerTransform bounded = new TfidfTextVectorizerTransform();
+		bounded.initialize(conf);
+		assertTrue( bounded.fastTokenizer );
+		// clear the term index after every document
+		bounded.maxFitTerms = 1;
+		for (String doc : docs) {
+			unbounded.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+			bounded.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+		}
+
+		// the top 3 words by frequency: dogs (3), then cats and sleep (2)
+		assertEquals( 3, bounded.getVocabularySize() );
+		assertTrue( unbounded.getVocabularySize() > 3 );
+		for (String word : new String[] { "dog", "cat", "sleep" }) {
+			assertTrue( word, bounded.cache.vocabWords().indexOf( word ) >= 0 );
+			assertEquals( unbounded.cache.wordFrequency( word ), bounded.cache.wordFrequency( word ), 0.0 );
+			assertEquals( unbounded.cache.idf( word ), bounded.cache.idf( word ), 0.0 );
+		}
+		SparseVectorWritable vector = bounded.convertTextRecordToSparseTFIDFVector( "dogs sleep with birds" );
+		assertEquals( 3, vector.size() );
+		assertEquals( 2, vector.numNonZero() );
+
+		conf.setInt( TfidfTextVectorizerTransform.NGRAM_MAX, 2 );
+		try {
+			new TfidfTextVectorizerTransform().initialize(conf);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+
+	}
+
+	@Test
+	public void testPooledUimaTokenizer() {
+
+		Configuration conf = new Configuration();
+		conf.set( TfidfTextVectorizerTransform.TOKENIZER, UimaTokenizerFactory.class.getName() );
+		conf.setInt( TfidfTextVectorizerTransform.TOKENIZER_REPLICAS, 3 );
+		TfidfTextVectorizerTransform tfidfTransform = new TfidfTextVectorizerTransform();
+		tfidfTransform.initialize(conf);
+
+		UimaTokenizerFactory factory = (UimaTokenizerFactory) tfidfTransform.tokenizerFactory;
+		assertEquals( 3, factory.getUimaResource().getNumReplicas() );
+		assertFalse( tfidfTransform.fastTokenizer );
+
+	}
+
+	@Test
+	public void testNGramFeatures() throws Exception {
+
+		Configuration conf = new Configuration();
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, true );
+		conf.setInt( TfidfTextVectorizerTransform.NGRAM_MAX, 3 );
+		conf.setInt( TfidfTextVectorizerTransform.NGRAM_SKIP, 1 );
+		conf.setBoolean( TfidfTextVectorizerTransform.REMOVE_STOP_WORDS, true );
+		String[] docs = { "Go Dogs, Go!", "the dogs chase the cats", "dogs chase cats", "cats sleep" };
+
+		TfidfTextVectorizerTransform fast = new TfidfTextVectorizerTransform();
+		fast.initialize(conf);
+		TfidfTextVectorizerTransform factory = new TfidfTextVectorizerTransform();
+		factory.initialize(conf);
+		factory.fastTokenizer = false;
+		for (String doc : docs) {
+			fast.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+			factory.collectStatistics( Arrays.<Writable>asList( new Text(doc), new Text("label") ) );
+		}
+
+		// grams span the dropped stop words: "dogs chase cats" is seen twice
+		int vocabSize = fast.getVocabularySize();
+		assertTrue( fast.getNumberOfFeatures() > vocabSize );
+		assertEquals( factory.getNumberOfFeatures(), fast.getNumberOfFeatures() );
+		SparseVectorWritable vector = fast.convertTextRecordToSparseTFIDFVector( "dogs chase unseen cats" );
+		assertEquals( fast.getNumberOfFeatures(), vector.size() );
+		assertEquals( factory.convertTextRecordToSparseTFIDFVector( "dogs chase unseen cats" ), vector );
+		// the 3 words, "dogs chase", "dogs cats" and "chase cats"; the unseen word keeps "dogs chase cats" apart
+		assertEquals( 6, vector.numNonZero() );
+		assertTrue( vector.indexAt( 5 ) >= vocabSize );
+
+		File model = File.createTempFile( "tfidf", ".model" );
+		model.deleteOnExit();
+		new File( model.getPath() + ".labels" ).deleteOnExit();
+		new File( model.getPath() + ".ngrams" ).deleteOnExit();
+		fast.saveModel( model );
+		TfidfTextVectorizerTransform loaded = new TfidfTextVectorizerTransform();
+		loaded.initialize(conf);
+		loaded.loadModel( model );
+		assertEquals( fast.getNumberOfFeatures(), loaded.getNumberOfFeatures() );
+		for (String doc : docs) {
+			assertEquals( fast.convertTextRecordToSparseTFIDFVector( doc ), loaded.convertTextRecordToSparseTFIDFVector( doc ) );
+		}
+
+	}
+
+	@Test
+	public void testSavedModelMatchesFitted() throws Exception {
+
+		Configuration conf = new Configuration();
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 1 );
+		conf.setBoolean( TfidfTextVectorizerTransform.SPARSE_OUTPUT, true );
+		String[] docs = { "go dogs go", "cats sleep all day", "dogs chase cats", "birds sing" };
+		String[] labels = { "a", "b", "a", "c" };
+
+		TfidfTextVectorizerTransform fitted = new TfidfTextVectorizerTransform();
+		fitted.initialize(conf);
+		for (int i = 0; i < docs.length; i++) {
+			fitted.collectStatistics( Arrays.<Writable>asList( new Text(docs[i]), new Text(labels[i]) ) );
+		}
+		File model = File.createTempFile( "tfidf", ".model" );
+		model.deleteOnExit();
+		new File( model.getPath() + ".labels" ).deleteOnExit();
+		fitted.saveModel( model );
+
+		TfidfTextVectorizerTransform loaded = new TfidfTextVectorizerTransform();
+		loaded.initialize(conf);
+		loaded.loadModel( model );
+
+		assertEquals( fitted.getVocabularySize(), loaded.getVocabularySize() );
+		assertEquals( fitted.getNumberOfLabelsSeen(), loaded.getNumberOfLabelsSeen() );
+		for (String doc : new String[] { "dogs chase dogs", "birds sleep", "unknown words only" }) {
+			Collection<Writable> expected = new ArrayList<>( Arrays.<Writable>asList( new Text(doc), new Text("c") ) );
+			fitted.transform( expected );
+			Collection<Writable> actual = new ArrayList<>( Arrays.<Writable>asList( new Text(doc), new Text("c") ) );
+			loaded.transform( actual );
+			assertEquals( expected, actual );
+		}
+
+		// a model fit with another configuration isn't reused
+		assertTrue( loaded.modelMatches( model ) );
+		conf.setInt( TfidfTextVectorizerTransform.MIN_WORD_FREQUENCY, 2 );
+		TfidfTextVectorizerTransform other = new TfidfTextVectorizerTransform();
+		other.initialize(conf);
+		assertFalse( other.modelMatches( model ) );
+		try {
+			other.loadModel( model );
+			fail();
+		} catch (IOException e) {
+			// expected
+		}
+
 	}
 
 }
@@ -0,0 +1,131 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.cli.vectorization;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.canova.api.writable.Writable;
+import org.canova.cli.csv.schema.CSVInputSchema;
+import org.canova.cli.subcommands.Vectorize;
+import org.junit.Test;
+
+public class TestCSVVectorizationEngine {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final String SPARSE_SCHEMA = "src/test/resources/csv/schemas/unit_test_schema_sparse.txt";
+
+	private static File write(File dir, String name, String contents) throws Exception {
+		File f = new File(dir, name);
+		try (Writer w = new FileWriter(f)) {
+			w.write(contents);
+		}
+		return f;
+	}
+
+	private static Vectorize run(File dir, File input, String outputFormat) throws Exception {
+		File conf = write(dir, "conf.txt",
+				"canova.input.data.type=csv\n"
+				+ "canova.input.format=org.canova.api.formats.input.impl.LineInputFormat\n"
+				+ "canova.input.vector.schema=" + SPARSE_SCHEMA + "\n"
+				+ "canova.output.format=" + outputFormat + "\n"
+				+ "canova.input.directory=" + input.getAbsolutePath() + "\n"
+				+ "canova.output.directory=" + new File(dir, "vectors.txt").getAbsolutePath() + "\n");
+		Vectorize vectorize = new Vectorize();
+		vectorize.configurationFile = conf.getPath();
+		vectorize.console = new PrintStream(new NullOutputStream());
+		vectorize.execute();
+		return vectorize;
+	}
+
+	@Test
+	public void testHashColumnNeedsSparseOutput() throws Exception {
+
+		File dir = Files.createTempDirectory("canova_csv").toFile();
+		File input = write(dir, "input.csv", "1.5,red,curl,a\n2,green,firefox,b\n3,red,curl,a\n");
+
+		try {
+
+			// a dense writer would get the hashed block's toString() in the row
+			assertFalse( run(dir, input, "org.canova.api.formats.output.impl.CSVOutputFormat").isComplete() );
+
+			assertTrue( run(dir, input, "org.canova.api.formats.output.impl.SVMLightOutputFormat").isComplete() );
+			List<String> lines = Files.readAllLines(new File(dir, "vectors.txt").toPath(), UTF_8);
+			assertEquals( 3, lines.size() );
+			// label, length, one color and one hashed agent; the agent's bucket is after the 2 colors
+			String[] curl = lines.get(0).split(" ");
+			assertEquals( 4, curl.length );
+			int bucket = Integer.parseInt(curl[3].split(":")[0]);
+			assertTrue( bucket > 3 && bucket <= 19 );
+			assertEquals( curl[3], lines.get(2).split(" ")[3] );
+
+		} finally {
+			FileUtils.deleteDirectory(dir);
+		}
+
+	}
+
+	@Test
+	public void testOneHotColumns() throws Exception {
+
+		File schemaFile = File.createTempFile("onehot", ".txt");
+		schemaFile.deleteOnExit();
+		try (Writer w = new FileWriter(schemaFile)) {
+			w.write("@RELATION OneHotUnitTest\n@DELIMITER ,\n"
+					+ "@ATTRIBUTE length NUMERIC !COPY\n@ATTRIBUTE color NOMINAL !ONEHOT\n@ATTRIBUTE class NOMINAL !LABEL\n");
+		}
+		CSVInputSchema inputSchema = new CSVInputSchema();
+		inputSchema.parseSchemaFile( schemaFile.getPath() );
+		inputSchema.evaluateInputRecord( "1.5,red,a" );
+		inputSchema.evaluateInputRecord( "2,green,b" );
+		inputSchema.evaluateInputRecord( "3,blue,a" );
+		inputSchema.computeDatasetStatistics();
+
+		// dense writers get one value per color instead of the block
+		CSVVectorizationEngine engine = new CSVVectorizationEngine();
+		List<String> values = new ArrayList<>();
+		for (Writable w : engine.vectorizeToWritable( "", "2,green,b", inputSchema )) {
+			values.add( w.toString() );
+		}
+		assertEquals( Arrays.asList( "2.0", "0.0", "1.0", "0.0", "1.0" ), values );
+
+		// a color the statistics never saw fails, as an unseen label does
+		try {
+			engine.vectorizeToWritable( "", "2,purple,b", inputSchema );
+			fail( "one-hot vectorized an unseen color" );
+		} catch (IllegalArgumentException e) {
+			assertTrue( e.getMessage().contains("'purple'") );
+		}
+
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.util.CountMinSketch;
+import org.canova.api.util.Index;
+import org.canova.api.util.MathUtils;
+import org.canova.nlp.vectorizer.TextVectorizer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vocab cache that fits huge corpora in bounded memory.
+ *
+ * Word and document frequencies are first counted in two count-min sketches
+ * of a fixed size. A word only gets exact counters once its estimated
+ * frequency reaches the min word frequency, so the long tail of words seen
+ * a handful of times (most of the distinct tokens of a big corpus) never
+ * takes up a map entry. A promoted word starts from its estimates, which
+ * can only overcount.
+ *
+ * With a max vocab size the vocab is the top max vocab size words by
+ * frequency, and the exact counters are capped at twice that: beyond it,
+ * all but the most frequent max vocab size words are evicted back to the
+ * sketches (which keep counting every word), and are promoted again
+ * if they come back.
+ *
+ * All methods are synchronized, so the cache can be counted into from
+ * several threads.
+ *
+ * @author Adam Gibson
+ */
+public class BoundedVocabCache implements VocabCache {
+
+    public final static long DEFAULT_SKETCH_BYTES = 64L * 1024 * 1024;
+    public final static int SKETCH_DEPTH = 4;
+
+    private final CountMinSketch wordSketch;
+    private final CountMinSketch docSketch;
+    //promoted words: { word frequency, document frequency }
+    private final Map<String, double[]> counts = new HashMap<>();
+    private int minWordFrequency;
+    private final int maxVocabSize;
+    private double numDocs = 0;
+    private Index vocabWords;
+
+    /**
+     * @param minWordFrequency the min word frequency to be included in the vocab
+     * @param sketchBytes the memory budget of the two sketches together
+     * @param maxVocabSize the max number of words in the vocab, 0 for no limit
+     */
+    public BoundedVocabCache(int minWordFrequency, long sketchBytes, int maxVocabSize) {
+        this.minWordFrequency = minWordFrequency;
+        this.maxVocabSize = maxVocabSize;
+        this.wordSketch = CountMinSketch.forMemory(sketchBytes / 2, SKETCH_DEPTH);
+        this.docSketch = CountMinSketch.forMemory(sketchBytes / 2, SKETCH_DEPTH);
+    }
+
+    //sketches count whole occurrences, round fractions up so they never undercount
+    private static int sketchCount(double by) {
+        return (int) Math.ceil(by);
+    }
+
+    @Override
+    public synchronized void incrementNumDocs(double by) {
+        numDocs += by;
+    }
+
+    @Override
+    public synchronized double numDocs() {
+        return numDocs;
+    }
+
+    @Override
+    public synchronized String wordAt(int i) {
+        return vocabWords().get(i).toString();
+    }
+
+    @Override
+    public synchronized void initialize(Configuration conf) {
+        minWordFrequency = conf.getInt(TextVectorizer.MIN_WORD_FREQUENCY, 5);
+        vocabWords = null;
+    }
+
+    @Override
+    public synchronized double wordFrequency(String word) {
+        double[] exact = counts.get(word);
+        return exact != null ? exact[0] : wordSketch.estimate(word);
+    }
+
+    @Override
+    public int minWordFrequency() {
+        return minWordFrequency;
+    }
+
+    /**
+     * @return the max number of words in the vocab, 0 for no limit
+     */
+    public int maxVocabSize() {
+        return maxVocabSize;
+    }
+
+    /**
+     * @return the number of words with exact counters
+     */
+    public synchronized int numPromoted() {
+        return counts.size();
+    }
+
+    @Override
+    public synchronized Index vocabWords() {
+        if (vocabWords == null) {
+            List<String> words = wordsByFrequency();
+            Index ret = new Index();
+            for (String word : words) {
+                if (maxVocabSize > 0 && ret.size() == maxVocabSize)
+                    break;
+                if (counts.get(word)[0] >= minWordFrequency)
+                    ret.add(word);
+            }
+            vocabWords = ret;
+        }
+        return vocabWords;
+    }
+
+    //most frequent first, ties by word so the order is stable
+    private List<String> wordsByFrequency() {
+        List<String> words = new ArrayList<>(counts.keySet());
+        Collections.sort(words, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int cmp = Double.compare(counts.get(b)[0], counts.get(a)[0]);
+                return cmp != 0 ? cmp : a.compareTo(b);
+            }
+        });
+        return words;
+    }
+
+    private void evictIfNeeded() {
+        if (maxVocabSize <= 0 || counts.size() <= 2 * maxVocabSize)
+            return;
+        List<String> words = wordsByFrequency();
+        for (String word : words.subList(maxVocabSize, words.size()))
+            counts.remove(word);
+    }
+
+    @Override
+    public void incrementDocCount(String word) {
+        incrementDocCount(word, 1.0);
+    }
+
+    @Override
+    public synchronized void incrementDocCount(String word, double by) {
+        docSketch.add(word, sketchCount(by));
+        double[] exact = counts.get(word);
+        if (exact != null) {
+            exact[1] += by;
+            vocabWords = null;
+        }
+    }
+
+    @Override
+    public void incrementCount(String word) {
+        incrementCount(word, 1.0);
+    }
+
+    @Override
+    public synchronized void incrementCount(String word, double by) {
+        //the sketch keeps counting promoted words too, an evicted word comes back with its history
+        int estimate = wordSketch.add(word, sketchCount(by));
+        double[] exact = counts.get(word);
+        if (exact != null) {
+            exact[0] += by;
+            vocabWords = null;
+        } else if (estimate >= minWordFrequency) {
+            counts.put(word, new double[] {estimate, docSketch.estimate(word)});
+            evictIfNeeded();
+            vocabWords = null;
+        }
+    }
+
+    @Override
+    public synchronized double idf(String word) {
+        double[] exact = counts.get(word);
+        return exact != null ? exact[1] : docSketch.estimate(word);
+    }
+
+    @Override
+    public synchronized double tfidf(String word, double frequency) {
+        return MathUtils.tfidf(MathUtils.tf((int) frequency), MathUtils.idf(numDocs, idf(word)));
+    }
+
+    public int getMinWordFrequency() {
+        return minWordFrequency;
+    }
+
+    public synchronized void setMinWordFrequency(int minWordFrequency) {
+        this.minWordFrequency = minWordFrequency;
+        vocabWords = null;
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.metadata;
+
+import java.util.Arrays;
+
+/**
+ * Interns terms to dense ids (0, 1, 2, ... in the order they were first added),
+ * looked up by char range so a term held in a tokenizer's buffer (see
+ * {@link org.canova.nlp.tokenization.tokenizer.FastTokenizer}) can be resolved
+ * without creating a String.
+ *
+ * The term chars are appended to one shared char array; the hash table is an
+ * open addressed int array of ids with linear probing. A term's String is
+ * only created the first time {@link #term(int)} asks for it.
+ *
+ * Not thread safe.
+ *
+ * @author Adam Gibson
+ */
+public class CharTermIndex {
+
+    private char[] pool = new char[1024];
+    private int poolSize;
+    //term i is pool[starts[i], starts[i + 1])
+    private int[] starts = new int[65];
+    private int[] hashes = new int[64];
+    private String[] terms = new String[64];
+    private int size;
+    //id + 1, 0 is an empty slot
+    private int[] table = new int[128];
+
+    /**
+     * @return the id of the term, -1 if it was never added
+     */
+    public int indexOf(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = table.length - 1;
+        for (int slot = hash & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && matches(id, chars, offset, length))
+                return id;
+        }
+        return -1;
+    }
+
+    public int indexOf(String term) {
+        return indexOf(term.toCharArray(), 0, term.length());
+    }
+
+    /**
+     * Intern a term
+     * @return the term's id, a new one if it wasn't seen before
+     */
+    public int add(char[] chars, int offset, int length) {
+        int hash = hash(chars, offset, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        for (; table[slot] != 0; slot = (slot + 1) & mask) {
+            int id = table[slot] - 1;
+            if (hashes[id] == hash && matches(id, chars, offset, length))
+                return id;
+        }
+
+        if (size == hashes.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            terms = Arrays.copyOf(terms, size * 2);
+            starts = Arrays.copyOf(starts, size * 2 + 1);
+        }
+        if (poolSize + length > pool.length)
+            pool = Arrays.copyOf(pool, Math.max(poolSize + length, pool.length * 2));
+        System.arraycopy(chars, offset, pool, poolSize, length);
+        poolSize += length;
+        int id = size++;
+        hashes[id] = hash;
+        starts[id + 1] = poolSize;
+        table[slot] = id + 1;
+        //keep the table at most half full
+        if (size * 2 > table.length)
+            rehash();
+        return id;
+    }
+
+    public int add(String term) {
+        return add(term.toCharArray(), 0, term.length());
+    }
+
+    /**
+     * @return the term with the given id
+     */
+    public String term(int id) {
+        if (id < 0 || id >= size)
+            throw new IndexOutOfBoundsException("No term " + id);
+        String term = terms[id];
+        if (term == null) {
+            term = new String(pool, starts[id], starts[id + 1] - starts[id]);
+            terms[id] = term;
+        }
+        return term;
+    }
+
+    /**
+     * @return the number of distinct terms
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forget every term, the next one added gets id 0 again
+     */
+    public void clear() {
+        Arrays.fill(terms, 0, size, null);
+        Arrays.fill(table, 0);
+        size = 0;
+        poolSize = 0;
+    }
+
+    private boolean matches(int id, char[] chars, int offset, int length) {
+        int start = starts[id];
+        if (starts[id + 1] - start != length)
+            return false;
+        for (int i = 0; i < length; i++)
+            if (pool[start + i] != chars[offset + i])
+                return false;
+        return true;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (table[slot] != 0)
+                slot = (slot + 1) & mask;
+            table[slot] = id + 1;
+        }
+    }
+
+    //String's polynomial hash, finished with murmur's mix so the low bits used for the slot are spread
+    private static int hash(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++)
+            h = 31 * h + chars[i];
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.util.Index;
+import org.canova.api.util.MathUtils;
+import org.canova.nlp.vectorizer.TextVectorizer;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vocab cache that can be counted into from many threads.
+ *
+ * The word and document frequencies live in primitive counters spread over
+ * a power of two number of shards, each guarded by its own lock, so threads
+ * counting different words rarely meet. Nothing is pruned while counting:
+ * the vocab (the words seen at least minWordFrequency times) is built once,
+ * the first time it's asked for after the counts changed, ordered by
+ * descending frequency and then by word, so it doesn't depend on the order
+ * the threads counted in.
+ *
+ * Partial caches, e.g. one per fork join task, are combined with {@link #merge(ConcurrentVocabCache)}.
+ *
+ * @author Adam Gibson
+ */
+public class ConcurrentVocabCache implements VocabCache {
+
+    public final static int DEFAULT_NUM_SHARDS = 64;
+
+    //per word: { word frequency, document frequency }
+    private static class Shard {
+        final Map<String, double[]> counts = new HashMap<>();
+    }
+
+    private final Shard[] shards;
+    private final int mask;
+    private int minWordFrequency;
+    private double numDocs = 0;
+    private final Object numDocsLock = new Object();
+    //null until built, reset whenever the counts change
+    private volatile Index vocabWords;
+
+    /**
+     * Instantiate with a given min word frequency
+     * @param minWordFrequency
+     */
+    public ConcurrentVocabCache(int minWordFrequency) {
+        this(minWordFrequency, DEFAULT_NUM_SHARDS);
+    }
+
+    /**
+     * @param minWordFrequency the min word frequency to be included in the vocab
+     * @param numShards the number of lock stripes, rounded up to a power of two
+     */
+    public ConcurrentVocabCache(int minWordFrequency, int numShards) {
+        this.minWordFrequency = minWordFrequency;
+        int size = 1;
+        while (size < numShards)
+            size <<= 1;
+        shards = new Shard[size];
+        for (int i = 0; i < size; i++)
+            shards[i] = new Shard();
+        mask = size - 1;
+    }
+
+    private int shardIndex(String word) {
+        int h = word.hashCode();
+        //spread the high bits, the low ones pick the shard
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private Shard shardFor(String word) {
+        return shards[shardIndex(word)];
+    }
+
+    private void add(String word, double wordFrequency, double docFrequency) {
+        Shard shard = shardFor(word);
+        synchronized (shard) {
+            double[] counts = shard.counts.get(word);
+            if (counts == null) {
+                counts = new double[2];
+                shard.counts.put(word, counts);
+            }
+            counts[0] += wordFrequency;
+            counts[1] += docFrequency;
+        }
+        if (vocabWords != null)
+            vocabWords = null;
+    }
+
+    private double get(String word, int which) {
+        Shard shard = shardFor(word);
+        synchronized (shard) {
+            double[] counts = shard.counts.get(word);
+            return counts == null ? 0 : counts[which];
+        }
+    }
+
+    //copies the counts of one shard, so they can be added without holding its lock
+    private static List<Map.Entry<String, double[]>> snapshot(Shard shard) {
+        List<Map.Entry<String, double[]>> ret;
+        synchronized (shard) {
+            ret = new ArrayList<>(shard.counts.size());
+            for (Map.Entry<String, double[]> entry : shard.counts.entrySet())
+                ret.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().clone()));
+        }
+        return ret;
+    }
+
+    /**
+     * Adds the counts of another cache to this one. The other cache's shards
+     * are copied one at a time, and each of this cache's shards is locked once
+     * per merge to add its share of the copy, so concurrent merges only
+     * meet on the same shard and never hold two locks at once.
+     * @param other the (partial) cache to add
+     */
+    public void merge(ConcurrentVocabCache other) {
+        if (other == this)
+            throw new IllegalArgumentException("Can't merge a vocab cache into itself");
+        List<List<Map.Entry<String, double[]>>> byShard = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++)
+            byShard.add(null);
+        for (Shard shard : other.shards) {
+            for (Map.Entry<String, double[]> entry : snapshot(shard)) {
+                int i = shardIndex(entry.getKey());
+                if (byShard.get(i) == null)
+                    byShard.set(i, new ArrayList<Map.Entry<String, double[]>>());
+                byShard.get(i).add(entry);
+            }
+        }
+        for (int i = 0; i < shards.length; i++) {
+            if (byShard.get(i) == null)
+                continue;
+            synchronized (shards[i]) {
+                Map<String, double[]> counts = shards[i].counts;
+                for (Map.Entry<String, double[]> entry : byShard.get(i)) {
+                    double[] current = counts.get(entry.getKey());
+                    if (current == null)
+                        counts.put(entry.getKey(), entry.getValue());
+                    else {
+                        current[0] += entry.getValue()[0];
+                        current[1] += entry.getValue()[1];
+                    }
+                }
+            }
+        }
+        vocabWords = null;
+        incrementNumDocs(other.numDocs());
+    }
+
+    /**
+     * Adds the counts of this cache to any other (thread safe) vocab cache.
+     * A {@link BoundedVocabCache} is locked once for all of them.
+     * @param target the cache to add to
+     */
+    public void addTo(VocabCache target) {
+        if (target instanceof ConcurrentVocabCache) {
+            ((ConcurrentVocabCache) target).merge(this);
+            return;
+        }
+        List<Map.Entry<String, double[]>> entries = new ArrayList<>();
+        for (Shard shard : shards)
+            entries.addAll(snapshot(shard));
+        if (target instanceof BoundedVocabCache) {
+            synchronized (target) {
+                addAll(entries, target);
+            }
+        } else
+            addAll(entries, target);
+        target.incrementNumDocs(numDocs());
+    }
+
+    private static void addAll(List<Map.Entry<String, double[]>> entries, VocabCache target) {
+        for (Map.Entry<String, double[]> entry : entries) {
+            target.incrementCount(entry.getKey(), entry.getValue()[0]);
+            target.incrementDocCount(entry.getKey(), entry.getValue()[1]);
+        }
+    }
+
+    /**
+     * Number of distinct words counted, in the vocab or not
+     * @return the number of distinct words
+     */
+    public int numWords() {
+        int ret = 0;
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                ret += shard.counts.size();
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public void incrementNumDocs(double by) {
+        synchronized (numDocsLock) {
+            numDocs += by;
+        }
+    }
+
+    @Override
+    public double numDocs() {
+        synchronized (numDocsLock) {
+            return numDocs;
+        }
+    }
+
+    @Override
+    public String wordAt(int i) {
+        return vocabWords().get(i).toString();
+    }
+
+    @Override
+    public void initialize(Configuration conf) {
+        minWordFrequency = conf.getInt(TextVectorizer.MIN_WORD_FREQUENCY, 5);
+        vocabWords = null;
+    }
+
+    @Override
+    public double wordFrequency(String word) {
+        return get(word, 0);
+    }
+
+    @Override
+    public int minWordFrequency() {
+        return minWordFrequency;
+    }
+
+    @Override
+    public Index vocabWords() {
+        Index ret = vocabWords;
+        if (ret == null) {
+            ret = buildVocab();
+            vocabWords = ret;
+        }
+        return ret;
+    }
+
+    //prunes the words below the min word frequency, once for all the counts so far
+    private Index buildVocab() {
+        final Map<String, Double> frequencies = new HashMap<>();
+        for (Shard shard : shards) {
+            synchronized (shard) {
+                for (Map.Entry<String, double[]> entry : shard.counts.entrySet()) {
+                    if (entry.getValue()[0] >= minWordFrequency)
+                        frequencies.put(entry.getKey(), entry.getValue()[0]);
+                }
+            }
+        }
+        List<String> words = new ArrayList<>(frequencies.keySet());
+        Collections.sort(words, new Comparator<String>() {
+            @Override
+            public int compare(String a, String b) {
+                int cmp = Double.compare(frequencies.get(b), frequencies.get(a));
+                return cmp != 0 ? cmp : a.compareTo(b);
+            }
+        });
+        Index ret = new Index();
+        for (String word : words)
+            ret.add(word);
+        return ret;
+    }
+
+    @Override
+    public void incrementDocCount(String word) {
+        incrementDocCount(word, 1.0);
+    }
+
+    @Override
+    public void incrementDocCount(String word, double by) {
+        add(word, 0, by);
+    }
+
+    @Override
+    public void incrementCount(String word) {
+        incrementCount(word, 1.0);
+    }
+
+    @Override
+    public void incrementCount(String word, double by) {
+        add(word, by, 0);
+    }
+
+    @Override
+    public double idf(String word) {
+        return get(word, 1);
+    }
+
+    @Override
+    public double tfidf(String word, double frequency) {
+        return MathUtils.tfidf(MathUtils.tf((int) frequency), MathUtils.idf(numDocs(), idf(word)));
+    }
+
+    public int getMinWordFrequency() {
+        return minWordFrequency;
+    }
+
+    public void setMinWordFrequency(int minWordFrequency) {
+        this.minWordFrequency = minWordFrequency;
+        vocabWords = null;
+    }
+}
@@ -0,0 +1,465 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.util.Index;
+import org.canova.api.util.MathUtils;
+import org.canova.api.util.MurmurHash3;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Read only vocab cache over a fitted vocab saved with {@link #save(VocabCache, File)},
+ * so a corpus that hasn't changed doesn't have to be fit again.
+ *
+ * The file holds the vocab words only, in a compact binary layout:
+ *
+ * - a header: numDocs, the min word frequency, the number of terms and the
+ *   fingerprint of the configuration it was fit with (see {@link #fingerprint(Configuration, String...)})
+ * - the word and document frequencies as primitive arrays, in sorted term order
+ * - the mappings between sorted term order and vocab index order
+ * - the terms, sorted by their UTF-8 bytes and front coded in blocks of
+ *   {@link #BLOCK_SIZE}: the first term of a block is stored whole, every
+ *   other one as the length of the prefix it shares with the term before it
+ *   plus the rest of its bytes, with the offset of each block in an index
+ *
+ * {@link #load(File)} memory maps the file and nothing is decoded up front:
+ * a term lookup binary searches the blocks by their first term and scans one
+ * block. Words outside the vocab have a frequency of 0.
+ *
+ * @author Adam Gibson
+ */
+public class MappedVocabCache implements VocabCache {
+
+    public final static int MAGIC = 0x43564F43;
+    public final static int VERSION = 2;
+    public final static int BLOCK_SIZE = 16;
+    private final static int HEADER_SIZE = 88;
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer buffer;
+    private final double numDocs;
+    private final int minWordFrequency;
+    private final int numTerms;
+    private final int blockSize;
+    private final int maxTermLength;
+    private final int wordFreqOffset;
+    private final int docFreqOffset;
+    private final int vocabOfSortedOffset;
+    private final int sortedOfVocabOffset;
+    private final int blockOffsetsOffset;
+    private final int termsOffset;
+    private final long fingerprint;
+    private final Index vocabWords = new MappedIndex();
+
+    private MappedVocabCache(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a saved vocab cache");
+        if (buffer.getInt(4) != VERSION)
+            throw new IOException("Unsupported vocab cache version " + buffer.getInt(4));
+        numDocs = buffer.getDouble(8);
+        minWordFrequency = buffer.getInt(16);
+        numTerms = buffer.getInt(20);
+        blockSize = buffer.getInt(24);
+        maxTermLength = buffer.getInt(28);
+        wordFreqOffset = (int) buffer.getLong(32);
+        docFreqOffset = (int) buffer.getLong(40);
+        vocabOfSortedOffset = (int) buffer.getLong(48);
+        sortedOfVocabOffset = (int) buffer.getLong(56);
+        blockOffsetsOffset = (int) buffer.getLong(64);
+        termsOffset = (int) buffer.getLong(72);
+        fingerprint = buffer.getLong(80);
+    }
+
+    /**
+     * Memory map a saved vocab cache
+     * @param file the file written by {@link #save(VocabCache, File)}
+     * @return the read only vocab cache
+     */
+    public static MappedVocabCache load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+             FileChannel channel = raf.getChannel()) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("Vocab cache too large to map: " + file);
+            //the mapping stays valid after the channel is closed
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new MappedVocabCache(mapped);
+        }
+    }
+
+    /**
+     * Save the vocab words of a fitted vocab cache with their word and document frequencies
+     * @param cache the fitted cache
+     * @param file where to write it, replaced atomically
+     */
+    public static void save(VocabCache cache, File file) throws IOException {
+        save(cache, file, 0);
+    }
+
+    /**
+     * Save the vocab words of a fitted vocab cache with their word and document frequencies
+     * @param cache the fitted cache
+     * @param file where to write it, replaced atomically
+     * @param fingerprint the fingerprint of the configuration the cache was fit with
+     */
+    public static void save(VocabCache cache, File file, long fingerprint) throws IOException {
+        Index vocab = cache.vocabWords();
+        final int n = vocab.size();
+        final byte[][] terms = new byte[n][];
+        Integer[] sorted = new Integer[n];
+        int maxTermLength = 0;
+        for (int i = 0; i < n; i++) {
+            terms[i] = vocab.get(i).toString().getBytes(UTF_8);
+            sorted[i] = i;
+            maxTermLength = Math.max(maxTermLength, terms[i].length);
+        }
+        Arrays.sort(sorted, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return compareBytes(terms[a], terms[b]);
+            }
+        });
+
+        //front code the terms in blocks
+        int numBlocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        int[] blockOffsets = new int[numBlocks];
+        ByteArrayOutputStream termBytes = new ByteArrayOutputStream();
+        byte[] previous = null;
+        for (int p = 0; p < n; p++) {
+            byte[] term = terms[sorted[p]];
+            if (p % BLOCK_SIZE == 0) {
+                blockOffsets[p / BLOCK_SIZE] = termBytes.size();
+                writeVarInt(termBytes, term.length);
+                termBytes.write(term, 0, term.length);
+            } else {
+                int shared = 0;
+                while (shared < previous.length && shared < term.length && previous[shared] == term[shared])
+                    shared++;
+                writeVarInt(termBytes, shared);
+                writeVarInt(termBytes, term.length - shared);
+                termBytes.write(term, shared, term.length - shared);
+            }
+            previous = term;
+        }
+
+        long wordFreqOffset = HEADER_SIZE;
+        long docFreqOffset = wordFreqOffset + 8L * n;
+        long vocabOfSortedOffset = docFreqOffset + 8L * n;
+        long sortedOfVocabOffset = vocabOfSortedOffset + 4L * n;
+        long blockOffsetsOffset = sortedOfVocabOffset + 4L * n;
+        long termsOffset = blockOffsetsOffset + 4L * numBlocks;
+        if (termsOffset + termBytes.size() > Integer.MAX_VALUE)
+            throw new IOException("Vocab too large to save: " + n + " terms");
+
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeDouble(cache.numDocs());
+            out.writeInt(cache.minWordFrequency());
+            out.writeInt(n);
+            out.writeInt(BLOCK_SIZE);
+            out.writeInt(maxTermLength);
+            out.writeLong(wordFreqOffset);
+            out.writeLong(docFreqOffset);
+            out.writeLong(vocabOfSortedOffset);
+            out.writeLong(sortedOfVocabOffset);
+            out.writeLong(blockOffsetsOffset);
+            out.writeLong(termsOffset);
+            out.writeLong(fingerprint);
+            for (int p = 0; p < n; p++)
+                out.writeDouble(cache.wordFrequency(vocab.get(sorted[p]).toString()));
+            for (int p = 0; p < n; p++)
+                out.writeDouble(cache.idf(vocab.get(sorted[p]).toString()));
+            for (int p = 0; p < n; p++)
+                out.writeInt(sorted[p]);
+            int[] sortedOfVocab = new int[n];
+            for (int p = 0; p < n; p++)
+                sortedOfVocab[sorted[p]] = p;
+            for (int i = 0; i < n; i++)
+                out.writeInt(sortedOfVocab[i]);
+            for (int offset : blockOffsets)
+                out.writeInt(offset);
+            termBytes.writeTo(out);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Fingerprint the values of the configuration keys that shape a vocab,
+     * so a saved vocab can be checked against the configuration about to use it
+     * @param conf the configuration
+     * @param keys the keys to fingerprint, unset ones included
+     * @return the 64 bit fingerprint
+     */
+    public static long fingerprint(Configuration conf, String... keys) {
+        StringBuilder sb = new StringBuilder();
+        for (String key : keys)
+            sb.append(key).append('=').append(conf.get(key)).append('\n');
+        byte[] bytes = sb.toString().getBytes(UTF_8);
+        long high = MurmurHash3.hash32(bytes, 0, bytes.length, 0x9747b28c);
+        long low = MurmurHash3.hash32(bytes, 0, bytes.length, 0x5bd1e995);
+        return high << 32 | (low & 0xffffffffL);
+    }
+
+    /**
+     * @return the fingerprint of the configuration the vocab was fit with, 0 if none was saved
+     */
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    private static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    //unsigned lexicographic order, the order the terms are saved in
+    private static int compareBytes(byte[] a, byte[] b) {
+        int length = Math.min(a.length, b.length);
+        for (int i = 0; i < length; i++) {
+            int cmp = (a[i] & 0xff) - (b[i] & 0xff);
+            if (cmp != 0)
+                return cmp;
+        }
+        return a.length - b.length;
+    }
+
+    //decodes terms from the mapped buffer with absolute gets, so lookups can run on many threads
+    private class Cursor {
+        final byte[] term = new byte[maxTermLength];
+        int length;
+        int position;
+
+        int readVarInt() {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(position++);
+                value |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            return value;
+        }
+
+        void startBlock(int block) {
+            position = termsOffset + buffer.getInt(blockOffsetsOffset + 4 * block);
+            length = readVarInt();
+            for (int i = 0; i < length; i++)
+                term[i] = buffer.get(position++);
+        }
+
+        void next() {
+            int shared = readVarInt();
+            int rest = readVarInt();
+            for (int i = 0; i < rest; i++)
+                term[shared + i] = buffer.get(position++);
+            length = shared + rest;
+        }
+
+        int compareTo(byte[] key) {
+            int min = Math.min(length, key.length);
+            for (int i = 0; i < min; i++) {
+                int cmp = (term[i] & 0xff) - (key[i] & 0xff);
+                if (cmp != 0)
+                    return cmp;
+            }
+            return length - key.length;
+        }
+
+        String term() {
+            return new String(term, 0, length, UTF_8);
+        }
+    }
+
+    //the position of a term in sorted order, -1 if it isn't in the vocab
+    private int sortedPosition(String word) {
+        if (numTerms == 0)
+            return -1;
+        byte[] key = word.getBytes(UTF_8);
+        Cursor cursor = new Cursor();
+        //last block whose first term is <= key
+        int lo = 0, hi = (numTerms - 1) / blockSize;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            cursor.startBlock(mid);
+            if (cursor.compareTo(key) <= 0)
+                lo = mid;
+            else
+                hi = mid - 1;
+        }
+        cursor.startBlock(lo);
+        int end = Math.min(numTerms, (lo + 1) * blockSize);
+        for (int p = lo * blockSize; p < end; p++) {
+            if (p > lo * blockSize)
+                cursor.next();
+            int cmp = cursor.compareTo(key);
+            if (cmp == 0)
+                return p;
+            if (cmp > 0)
+                return -1;
+        }
+        return -1;
+    }
+
+    private String termAt(int sortedPosition) {
+        Cursor cursor = new Cursor();
+        int block = sortedPosition / blockSize;
+        cursor.startBlock(block);
+        for (int p = block * blockSize; p < sortedPosition; p++)
+            cursor.next();
+        return cursor.term();
+    }
+
+    /**
+     * The vocab index of a word
+     * @param word the word to look up
+     * @return its index, -1 if it isn't in the vocab
+     */
+    public int indexOf(String word) {
+        int p = sortedPosition(word);
+        return p < 0 ? -1 : buffer.getInt(vocabOfSortedOffset + 4 * p);
+    }
+
+    //the vocab as an Index, backed by the mapped dictionary
+    private class MappedIndex extends Index {
+        private static final long serialVersionUID = 2306427716329213317L;
+
+        @Override
+        public boolean add(Object o, int idx) {
+            throw new UnsupportedOperationException("Saved vocab caches are read only");
+        }
+
+        @Override
+        public boolean add(Object o) {
+            throw new UnsupportedOperationException("Saved vocab caches are read only");
+        }
+
+        @Override
+        public int indexOf(Object o) {
+            return MappedVocabCache.this.indexOf(o.toString());
+        }
+
+        @Override
+        public Object get(int i) {
+            if (i < 0 || i >= numTerms)
+                return null;
+            return termAt(buffer.getInt(sortedOfVocabOffset + 4 * i));
+        }
+
+        @Override
+        public int size() {
+            return numTerms;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + numTerms + " saved vocab words]";
+        }
+    }
+
+    @Override
+    public void incrementNumDocs(double by) {
+        throw new UnsupportedOperationException("Saved vocab caches are read only");
+    }
+
+    @Override
+    public double numDocs() {
+        return numDocs;
+    }
+
+    @Override
+    public String wordAt(int i) {
+        return (String) vocabWords.get(i);
+    }
+
+    @Override
+    public void initialize(Configuration conf) {
+        //fitted already
+    }
+
+    @Override
+    public double wordFrequency(String word) {
+        int p = sortedPosition(word);
+        return p < 0 ? 0 : buffer.getDouble(wordFreqOffset + 8 * p);
+    }
+
+    @Override
+    public int minWordFrequency() {
+        return minWordFrequency;
+    }
+
+    @Override
+    public Index vocabWords() {
+        return vocabWords;
+    }
+
+    @Override
+    public void incrementDocCount(String word) {
+        throw new UnsupportedOperationException("Saved vocab caches are read only");
+    }
+
+    @Override
+    public void incrementDocCount(String word, double by) {
+        throw new UnsupportedOperationException("Saved vocab caches are read only");
+    }
+
+    @Override
+    public void incrementCount(String word) {
+        throw new UnsupportedOperationException("Saved vocab caches are read only");
+    }
+
+    @Override
+    public void incrementCount(String word, double by) {
+        throw new UnsupportedOperationException("Saved vocab caches are read only");
+    }
+
+    @Override
+    public double idf(String word) {
+        int p = sortedPosition(word);
+        return p < 0 ? 0 : buffer.getDouble(docFreqOffset + 8 * p);
+    }
+
+    @Override
+    public double tfidf(String word, double frequency) {
+        return MathUtils.tfidf(MathUtils.tf((int) frequency), MathUtils.idf(numDocs, idf(word)));
+    }
+}
@@ -22,13 +22,9 @@ package org.canova.nlp.movingwindow;
 
 
 import org.canova.api.berkeley.Pair;
-import org.canova.api.berkeley.StringUtils;
 import org.canova.api.util.MultiDimensionalMap;
-import org.canova.nlp.tokenization.tokenizer.Tokenizer;
 import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
 
-import java.util.ArrayList;
-import java.util.List;
 
 /**
  * Context Label Retriever
@@ -38,10 +34,6 @@ import java.util.List;
 public class ContextLabelRetriever {
 
 
-  private static String BEGIN_LABEL = "<([A-Za-z]+|\\d+)>";
-  private static String END_LABEL = "</([A-Za-z]+|\\d+)>";
-
-
   private ContextLabelRetriever() {
   }
 
@@ -49,79 +41,23 @@ public class ContextLabelRetriever {
   /**
    * Returns a stripped sentence with the indices of words
    * with certain kinds of labels.
+   * The spans are the groups' own offsets, a phrase that repeats
+   * gets a span per occurrence, and untagged groups, the trailing
+   * one included, are labelled {@link LabelSpans#NONE}.
    *
    * @param sentence the sentence to process
    * @return a pair of a post processed sentence
    * with labels stripped and the spans of
    * the labels
+   * @see LabelSpans#scan(String) for white space separated
+   * sentences, with the spans as arrays
    */
   public static Pair<String, MultiDimensionalMap<Integer, Integer, String>> stringWithLabels(String sentence, TokenizerFactory tokenizerFactory) {
+    LabelSpans spans = LabelSpans.fromTokens(tokenizerFactory.create(sentence), LabelSpans.LETTERS_OR_DIGITS);
     MultiDimensionalMap<Integer, Integer, String> map = MultiDimensionalMap.newHashBackedMap();
-    Tokenizer t = tokenizerFactory.create(sentence);
-    List<String> currTokens = new ArrayList<>();
-    String currLabel = null;
-    String endLabel = null;
-    List<Pair<String, List<String>>> tokensWithSameLabel = new ArrayList<>();
-    while (t.hasMoreTokens()) {
-      String token = t.nextToken();
-      if (token.matches(BEGIN_LABEL)) {
-        currLabel = token;
-
-        //no labels; add these as NONE and begin the new label
-        if (!currTokens.isEmpty()) {
-          tokensWithSameLabel.add(new Pair<>("NONE", (List<String>) new ArrayList<>(currTokens)));
-          currTokens.clear();
-
-        }
-
-      } else if (token.matches(END_LABEL)) {
-        if (currLabel == null)
-          throw new IllegalStateException("Found an ending label with no matching begin label");
-        endLabel = token;
-      } else
-        currTokens.add(token);
-
-      if (currLabel != null && endLabel != null) {
-        currLabel = currLabel.replaceAll("[<>/]", "");
-        endLabel = endLabel.replaceAll("[<>/]", "");
-        assert !currLabel.isEmpty() : "Current label is empty!";
-        assert !endLabel.isEmpty() : "End label is empty!";
-        assert currLabel.equals(endLabel) : "Current label begin and end did not match for the parse. Was: " + currLabel + " ending with " + endLabel;
-
-        tokensWithSameLabel.add(new Pair<>(currLabel, (List<String>) new ArrayList<>(currTokens)));
-        currTokens.clear();
-
-
-        //clear out the tokens
-        currLabel = null;
-        endLabel = null;
-      }
-
-
-    }
-
-    //no labels; add these as NONE and begin the new label
-    if (!currTokens.isEmpty()) {
-      tokensWithSameLabel.add(new Pair<>("none", (List<String>) new ArrayList<>(currTokens)));
-      currTokens.clear();
-
-    }
-
-    //now join the output
-    StringBuilder strippedSentence = new StringBuilder();
-    for (Pair<String, List<String>> tokensWithLabel : tokensWithSameLabel) {
-      String joinedSentence = StringUtils.join(tokensWithLabel.getSecond(), " ");
-      //spaces between separate parts of the sentence
-      if (!(strippedSentence.length() < 1))
-        strippedSentence.append(" ");
-      strippedSentence.append(joinedSentence);
-      int begin = strippedSentence.toString().indexOf(joinedSentence);
-      int end = begin + joinedSentence.length();
-      map.put(begin, end, tokensWithLabel.getFirst());
-    }
-
-
-    return new Pair<>(strippedSentence.toString(), map);
+    for (int i = 0; i < spans.numSpans(); i++)
+      map.put(spans.getSpanBegins()[i], spans.getSpanEnds()[i], spans.getLabels()[i]);
+    return new Pair<>(spans.getSentence(), map);
   }
 
 
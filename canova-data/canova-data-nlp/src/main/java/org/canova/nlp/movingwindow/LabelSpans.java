@@ -0,0 +1,297 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.movingwindow;
+
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+
+import java.util.Arrays;
+
+/**
+ * A sentence with its label tags stripped, e.g. "go <PER> john smith </PER> now",
+ * and the spans the tags marked.
+ *
+ * The sentence is split into spans of consecutive tokens: each tagged run of
+ * tokens is one span with the tag's label, and the untagged runs around them are
+ * spans labelled {@link #NONE}. Spans are kept as primitive arrays of character
+ * offsets into the stripped sentence (tokens joined by single spaces) and of
+ * token indices, so the caller gets both without any per token objects.
+ *
+ * Tags are recognized by a char scan, see {@link #isBeginTag(CharSequence, int, int, int)},
+ * instead of a regular expression per token.
+ *
+ * @author Adam Gibson
+ */
+public class LabelSpans {
+
+    public final static String NONE = "NONE";
+
+    /** Tag names of upper case letters */
+    public final static int UPPER_CASE = 1;
+    /** Tag names of lower case letters */
+    public final static int LOWER_CASE = 2;
+    /** Tag names of digits only */
+    public final static int DIGITS = 4;
+    /** Tag names of letters or of digits, what {@link ContextLabelRetriever} accepts */
+    public final static int LETTERS_OR_DIGITS = UPPER_CASE | LOWER_CASE | DIGITS;
+
+    private String sentence;
+    private int numTokens;
+    private int[] tokenBegins = new int[16];
+    private int[] tokenEnds = new int[16];
+    private int numSpans;
+    private int[] spanBegins = new int[4];
+    private int[] spanEnds = new int[4];
+    private int[] spanFirstTokens = new int[4];
+    private int[] spanEndTokens = new int[4];
+    private String[] labels = new String[4];
+
+    //while scanning
+    private final int tagNames;
+    private StringBuilder stripped = new StringBuilder();
+    private int groupBegin, groupFirstToken, groupSize;
+    private String beginLabel, endLabel;
+
+    private LabelSpans(int tagNames) {
+        this.tagNames = tagNames;
+    }
+
+    /**
+     * Scan a sentence split on white space in one pass, no String is created per token
+     * @param sentence the sentence with label tags
+     * @return the stripped sentence and its spans
+     */
+    public static LabelSpans scan(String sentence) {
+        return scan(sentence, LETTERS_OR_DIGITS);
+    }
+
+    /**
+     * @param sentence the sentence with label tags
+     * @param tagNames the characters of tag names, e.g. {@link #UPPER_CASE}
+     */
+    public static LabelSpans scan(String sentence, int tagNames) {
+        LabelSpans ret = new LabelSpans(tagNames);
+        int length = sentence.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && isWhitespace(sentence.charAt(i)))
+                i++;
+            int start = i;
+            while (i < length && !isWhitespace(sentence.charAt(i)))
+                i++;
+            if (i > start)
+                ret.token(sentence, start, i);
+        }
+        ret.finish();
+        return ret;
+    }
+
+    /**
+     * Build the spans from another tokenizer's tokens
+     * @param tokenizer the tokens of the sentence, tags included
+     * @param tagNames the characters of tag names, e.g. {@link #LETTERS_OR_DIGITS}
+     */
+    public static LabelSpans fromTokens(Tokenizer tokenizer, int tagNames) {
+        LabelSpans ret = new LabelSpans(tagNames);
+        while (tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            ret.token(token, 0, token.length());
+        }
+        ret.finish();
+        return ret;
+    }
+
+    /**
+     * Whether the chars are a begin tag, &lt;NAME&gt;: a non empty name
+     * made of the allowed letters, or of digits only if allowed
+     */
+    public static boolean isBeginTag(CharSequence s, int from, int to, int tagNames) {
+        return to - from > 2 && s.charAt(from) == '<' && s.charAt(to - 1) == '>'
+                && isTagName(s, from + 1, to - 1, tagNames);
+    }
+
+    public static boolean isBeginTag(CharSequence s, int tagNames) {
+        return isBeginTag(s, 0, s.length(), tagNames);
+    }
+
+    /**
+     * Whether the chars are an end tag, &lt;/NAME&gt;
+     */
+    public static boolean isEndTag(CharSequence s, int from, int to, int tagNames) {
+        return to - from > 3 && s.charAt(from) == '<' && s.charAt(from + 1) == '/' && s.charAt(to - 1) == '>'
+                && isTagName(s, from + 2, to - 1, tagNames);
+    }
+
+    public static boolean isEndTag(CharSequence s, int tagNames) {
+        return isEndTag(s, 0, s.length(), tagNames);
+    }
+
+    /**
+     * @return the sentence without its tags, tokens joined by single spaces
+     */
+    public String getSentence() {
+        return sentence;
+    }
+
+    public int numTokens() {
+        return numTokens;
+    }
+
+    /**
+     * @return the character offset of each token in the stripped sentence
+     */
+    public int[] getTokenBegins() {
+        return tokenBegins;
+    }
+
+    public int[] getTokenEnds() {
+        return tokenEnds;
+    }
+
+    public int numSpans() {
+        return numSpans;
+    }
+
+    /**
+     * @return the character offset of each span in the stripped sentence
+     */
+    public int[] getSpanBegins() {
+        return spanBegins;
+    }
+
+    public int[] getSpanEnds() {
+        return spanEnds;
+    }
+
+    /**
+     * @return the index of each span's first token
+     */
+    public int[] getSpanFirstTokens() {
+        return spanFirstTokens;
+    }
+
+    /**
+     * @return the index after each span's last token
+     */
+    public int[] getSpanEndTokens() {
+        return spanEndTokens;
+    }
+
+    /**
+     * @return the label of each span, {@link #NONE} for untagged text
+     */
+    public String[] getLabels() {
+        return labels;
+    }
+
+    private void token(CharSequence s, int from, int to) {
+        if (isBeginTag(s, from, to, tagNames)) {
+            beginLabel = s.subSequence(from + 1, to - 1).toString();
+            //no labels; add these as NONE and begin the new label
+            if (groupSize > 0)
+                endGroup(NONE);
+        } else if (isEndTag(s, from, to, tagNames)) {
+            if (beginLabel == null)
+                throw new IllegalStateException("Found an ending label with no matching begin label");
+            endLabel = s.subSequence(from + 2, to - 1).toString();
+        } else {
+            if (groupSize == 0)
+                beginGroup();
+            else
+                stripped.append(' ');
+            if (numTokens == tokenBegins.length) {
+                tokenBegins = Arrays.copyOf(tokenBegins, numTokens * 2);
+                tokenEnds = Arrays.copyOf(tokenEnds, numTokens * 2);
+            }
+            tokenBegins[numTokens] = stripped.length();
+            stripped.append(s, from, to);
+            tokenEnds[numTokens++] = stripped.length();
+            groupSize++;
+        }
+
+        if (beginLabel != null && endLabel != null) {
+            assert beginLabel.equals(endLabel) : "Current label begin and end did not match for the parse. Was: " + beginLabel + " ending with " + endLabel;
+            endGroup(beginLabel);
+            beginLabel = null;
+            endLabel = null;
+        }
+    }
+
+    private void beginGroup() {
+        //spaces between separate parts of the sentence
+        if (stripped.length() > 0)
+            stripped.append(' ');
+        groupBegin = stripped.length();
+        groupFirstToken = numTokens;
+    }
+
+    private void endGroup(String label) {
+        if (groupSize == 0)
+            beginGroup();
+        if (numSpans == labels.length) {
+            spanBegins = Arrays.copyOf(spanBegins, numSpans * 2);
+            spanEnds = Arrays.copyOf(spanEnds, numSpans * 2);
+            spanFirstTokens = Arrays.copyOf(spanFirstTokens, numSpans * 2);
+            spanEndTokens = Arrays.copyOf(spanEndTokens, numSpans * 2);
+            labels = Arrays.copyOf(labels, numSpans * 2);
+        }
+        spanBegins[numSpans] = groupBegin;
+        spanEnds[numSpans] = stripped.length();
+        spanFirstTokens[numSpans] = groupFirstToken;
+        spanEndTokens[numSpans] = numTokens;
+        labels[numSpans++] = label;
+        groupSize = 0;
+    }
+
+    private void finish() {
+        if (groupSize > 0)
+            endGroup(NONE);
+        sentence = stripped.toString();
+        stripped = null;
+        tokenBegins = Arrays.copyOf(tokenBegins, numTokens);
+        tokenEnds = Arrays.copyOf(tokenEnds, numTokens);
+        spanBegins = Arrays.copyOf(spanBegins, numSpans);
+        spanEnds = Arrays.copyOf(spanEnds, numSpans);
+        spanFirstTokens = Arrays.copyOf(spanFirstTokens, numSpans);
+        spanEndTokens = Arrays.copyOf(spanEndTokens, numSpans);
+        labels = Arrays.copyOf(labels, numSpans);
+    }
+
+    private static boolean isTagName(CharSequence s, int from, int to, int tagNames) {
+        if ((tagNames & DIGITS) != 0 && s.charAt(from) >= '0' && s.charAt(from) <= '9') {
+            for (int i = from; i < to; i++)
+                if (s.charAt(i) < '0' || s.charAt(i) > '9')
+                    return false;
+            return true;
+        }
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            boolean upper = c >= 'A' && c <= 'Z';
+            boolean lower = c >= 'a' && c <= 'z';
+            if (!(upper && (tagNames & UPPER_CASE) != 0 || lower && (tagNames & LOWER_CASE) != 0))
+                return false;
+        }
+        return true;
+    }
+
+    //the delimiters of DefaultTokenizer
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.movingwindow;
+
+import org.canova.nlp.metadata.CharTermIndex;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Windows over a token stream, produced lazily one focus word at a time.
+ *
+ * Tokens are pulled from the tokenizer only as far as the current window
+ * reaches and interned to ids; a ring buffer holds the ids (and character
+ * offsets) of the last window's worth of tokens. Memory is bounded by the
+ * window size plus the distinct terms, however long the stream is.
+ *
+ * {@link #nextWindow()} advances without copying: the current window is read
+ * with {@link #idAt(int)} or {@link #wordAt(int)}. As an iterator each step
+ * is materialized as a {@link Window} with the same words, padding and labels
+ * as {@link Windows#windows(List, int)}. Begin and end are the offsets of
+ * the window's first and last tokens in the concatenated tokens.
+ *
+ * @author Adam Gibson
+ */
+public class StreamingWindows implements Iterator<Window> {
+
+    public final static String BEGIN_PADDING = "<s>";
+    public final static String END_PADDING = "</s>";
+
+    private final Tokenizer tokenizer;
+    private final CharTermIndex ids;
+    private final int beginId, endId;
+    private final int windowSize;
+    private final int contextSize;
+    private final int span;
+    //token at stream position p is at p % span
+    private final int[] ring;
+    private final int[] offsets;
+    private int loaded;
+    private int nextOffset;
+    private boolean exhausted;
+    //focus position of the next window, the current one is focus - 1
+    private int focus;
+
+    /**
+     * @param tokenizer the token stream
+     * @param windowSize the window size, as in {@link Windows#windowForWordInPosition(int, int, List)}
+     */
+    public StreamingWindows(Tokenizer tokenizer, int windowSize) {
+        this(tokenizer, new CharTermIndex(), windowSize);
+    }
+
+    /**
+     * @param tokenizer the token stream
+     * @param ids the term ids to intern tokens to, may be shared by many streams
+     * @param windowSize the window size
+     */
+    public StreamingWindows(Tokenizer tokenizer, CharTermIndex ids, int windowSize) {
+        if (windowSize < 1)
+            throw new IllegalArgumentException("Window size must be positive");
+        this.tokenizer = tokenizer;
+        this.ids = ids;
+        this.windowSize = windowSize;
+        this.contextSize = (windowSize - 1) / 2;
+        this.span = 2 * contextSize + 1;
+        this.ring = new int[span];
+        this.offsets = new int[span];
+        this.beginId = ids.add(BEGIN_PADDING);
+        this.endId = ids.add(END_PADDING);
+    }
+
+    /**
+     * Advance to the window around the next token
+     * @return false if there are no more tokens
+     */
+    public boolean nextWindow() {
+        if (!load(focus + contextSize))
+            return false;
+        focus++;
+        return true;
+    }
+
+    /**
+     * @return the number of words in a window
+     */
+    public int size() {
+        return span;
+    }
+
+    /**
+     * The id of the i-th word of the current window, padding included
+     * @param i 0 to size() - 1
+     */
+    public int idAt(int i) {
+        int position = position(i);
+        if (position < 0)
+            return beginId;
+        if (position >= loaded)
+            return endId;
+        return ring[position % span];
+    }
+
+    public String wordAt(int i) {
+        return ids.term(idAt(i));
+    }
+
+    /**
+     * @return the id of the current window's focus word
+     */
+    public int focusId() {
+        return idAt(contextSize);
+    }
+
+    /**
+     * @return the stream position of the current window's focus word
+     */
+    public int focusPosition() {
+        return focus - 1;
+    }
+
+    /**
+     * @return the term ids, used to map ids back to words
+     */
+    public CharTermIndex getIds() {
+        return ids;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return load(focus + contextSize);
+    }
+
+    @Override
+    public Window next() {
+        if (!nextWindow())
+            throw new NoSuchElementException();
+        List<String> words = new ArrayList<>(span);
+        for (int i = 0; i < span; i++)
+            words.add(wordAt(i));
+        int first = Math.max(0, position(0));
+        int last = Math.min(loaded - 1, position(span - 1));
+        int begin = offsets[first % span];
+        int end = offsets[last % span] + ids.term(ring[last % span]).length();
+        return new Window(words, windowSize, begin, end);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private int position(int i) {
+        return focus - 1 - contextSize + i;
+    }
+
+    //read tokens until the one at the given position, unless the stream ends first; true if the current focus exists
+    private boolean load(int position) {
+        while (!exhausted && loaded <= position) {
+            if (!tokenizer.hasMoreTokens()) {
+                exhausted = true;
+                break;
+            }
+            String token = tokenizer.nextToken();
+            ring[loaded % span] = ids.add(token);
+            offsets[loaded % span] = nextOffset;
+            nextOffset += token.length();
+            loaded++;
+        }
+        return focus < loaded;
+    }
+}
@@ -44,8 +44,7 @@ public class Window implements Serializable {
 	private boolean beginLabel;
 	private boolean endLabel;
   private int median;
-	private static String BEGIN_LABEL = "<([A-Z]+|\\d+)>";
-	private static String END_LABEL = "</([A-Z]+|\\d+)>";
+	private static final int LABEL_NAMES = LabelSpans.UPPER_CASE | LabelSpans.DIGITS;
     private int begin,end;
 
 	/**
@@ -88,13 +87,13 @@ public class Window implements Serializable {
 
 
 		for(String s : begin) {
-			if(s.matches(BEGIN_LABEL)) {
-				this.label = s.replaceAll("(<|>)","").replace("/","");
+			if(LabelSpans.isBeginTag(s, LABEL_NAMES)) {
+				this.label = s.substring(1, s.length() - 1);
 				beginLabel = true;
 			}
-			else if(s.matches(END_LABEL)) {
+			else if(LabelSpans.isEndTag(s, LABEL_NAMES)) {
 				endLabel = true;
-				this.label = s.replaceAll("(<|>|/)","").replace("/","");
+				this.label = s.substring(2, s.length() - 1);
 
 			}
 
@@ -102,14 +101,15 @@ public class Window implements Serializable {
 
 		for(String s1 : after) {
 
-            if(s1.matches(BEGIN_LABEL)) {
-                this.label = s1.replaceAll("(<|>)","").replace("/","");
+            if(LabelSpans.isBeginTag(s1, LABEL_NAMES)) {
+                this.label = s1.substring(1, s1.length() - 1);
                 beginLabel = true;
             }
 
-			if(s1.matches(END_LABEL)) {
+			if(LabelSpans.isEndTag(s1, LABEL_NAMES)) {
 				endLabel = true;
-				this.label = s1.replaceAll("(<|>)","");
+				//keeps the slash, getLabel() drops it
+				this.label = s1.substring(1, s1.length() - 1);
 
 			}
 		}
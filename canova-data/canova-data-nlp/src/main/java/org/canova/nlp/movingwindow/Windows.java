@@ -75,6 +75,31 @@ public class Windows {
     }
 
 
+    /**
+     * Windows of size windowSize over a stream, tokenized
+     * and windowed lazily in constant memory.
+     * Note that padding for each window is created as well.
+     * @param words the words to tokenize and construct windows from
+     * @param windowSize the window size to generate
+     * @return the windows for the tokenized stream
+     */
+    public static StreamingWindows streamingWindows(InputStream words,int windowSize) {
+        return new StreamingWindows(new DefaultStreamTokenizer(words),windowSize);
+    }
+
+    /**
+     * Windows of size windowSize over a stream, tokenized
+     * and windowed lazily in constant memory.
+     * Note that padding for each window is created as well.
+     * @param words the words to tokenize and construct windows from
+     * @param tokenizerFactory tokenizer factory to use
+     * @param windowSize the window size to generate
+     * @return the windows for the tokenized stream
+     */
+    public static StreamingWindows streamingWindows(InputStream words,TokenizerFactory tokenizerFactory,int windowSize) {
+        return new StreamingWindows(tokenizerFactory.create(words),windowSize);
+    }
+
     /**
      * Constructs a list of window of size windowSize.
      * Note that padding for each window is created as well.
@@ -0,0 +1,332 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.ngram;
+
+import org.canova.api.util.MurmurHash3;
+import org.canova.nlp.metadata.CharTermIndex;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+ * Counts the gram keys of {@link NGrams} over a corpus and numbers the
+ * frequent ones as features, the n-gram counterpart of a
+ * {@link org.canova.nlp.metadata.VocabCache}.
+ *
+ * Exact: keys live in an open addressed long array (0 is an empty slot, no
+ * key is 0) mapping to dense gram ids, with the word and document frequencies
+ * in int arrays by gram id. Grams seen at least minFrequency times are the
+ * features, numbered in the order they were first seen.
+ *
+ * Hashed: each key is hashed to one of a fixed number of buckets, as with
+ * the hashing trick, and the frequencies are kept per bucket. Memory is
+ * bounded by the bucket count however many distinct grams the corpus has;
+ * the feature of a bucket is the bucket itself, and the buckets no gram of
+ * the corpus was hashed to have none.
+ *
+ * The keys are made of the ids of a {@link CharTermIndex}, which is kept (and
+ * saved) with the counts so the same tokens map to the same keys later.
+ * Not thread safe.
+ *
+ * @author Adam Gibson
+ */
+public class NGramVocab {
+
+    public final static int MAGIC = 0x43564E47;
+    public final static int VERSION = 1;
+
+    private final CharTermIndex terms;
+    private final int minFrequency;
+    private final int hashBuckets;
+    private int numDocs;
+    //exact: keys and their gram ids + 1, 0 is an empty slot
+    private long[] keys;
+    private int[] gramIds;
+    private int numGrams;
+    //by gram id, or by bucket when hashed
+    private int[] wordFreqs;
+    private int[] docFreqs;
+    private int[] lastDoc;
+    //exact: gram id -> feature, -1 below the min frequency; null until the counts are indexed
+    private int[] features;
+    private int[] featureDocFreqs;
+    private int numFeatures;
+
+    /**
+     * @param terms the term ids the keys are made of
+     * @param minFrequency the number of times an exact gram has to be seen to be a feature
+     * @param hashBuckets the number of buckets to hash the keys to, 0 to keep them exact
+     */
+    public NGramVocab(CharTermIndex terms, int minFrequency, int hashBuckets) {
+        if (hashBuckets < 0)
+            throw new IllegalArgumentException("Hash bucket count must not be negative, was " + hashBuckets);
+        this.terms = terms;
+        this.minFrequency = minFrequency;
+        this.hashBuckets = hashBuckets;
+        int size = hashBuckets > 0 ? hashBuckets : 64;
+        wordFreqs = new int[size];
+        docFreqs = new int[size];
+        lastDoc = new int[size];
+        if (hashBuckets == 0) {
+            keys = new long[128];
+            gramIds = new int[128];
+        }
+    }
+
+    /**
+     * Start counting the next document
+     */
+    public void incrementNumDocs() {
+        numDocs++;
+    }
+
+    /**
+     * Count an occurrence of a gram in the current document
+     * @param key the gram's key from {@link NGrams}
+     */
+    public void increment(long key) {
+        int gram = hashBuckets > 0 ? bucket(key) : add(key);
+        wordFreqs[gram]++;
+        if (lastDoc[gram] != numDocs) {
+            lastDoc[gram] = numDocs;
+            docFreqs[gram]++;
+        }
+        features = null;
+    }
+
+    /**
+     * @param key a gram's key
+     * @return the gram's feature in [0, {@link #numFeatures()}), -1 if it isn't one
+     */
+    public int featureIndex(long key) {
+        if (hashBuckets > 0) {
+            int bucket = bucket(key);
+            return docFreqs[bucket] > 0 ? bucket : -1;
+        }
+        int gram = indexOf(key);
+        return gram < 0 ? -1 : features()[gram];
+    }
+
+    /**
+     * @return the number of features, the bucket count when hashed
+     */
+    public int numFeatures() {
+        if (hashBuckets > 0)
+            return hashBuckets;
+        features();
+        return numFeatures;
+    }
+
+    /**
+     * @param feature a feature from {@link #featureIndex(long)}
+     * @return the number of documents the feature's gram(s) appeared in
+     */
+    public int docFrequency(int feature) {
+        if (hashBuckets > 0)
+            return docFreqs[feature];
+        features();
+        return featureDocFreqs[feature];
+    }
+
+    public int numDocs() {
+        return numDocs;
+    }
+
+    public CharTermIndex getTerms() {
+        return terms;
+    }
+
+    public int getMinFrequency() {
+        return minFrequency;
+    }
+
+    public int getHashBuckets() {
+        return hashBuckets;
+    }
+
+    private int[] features() {
+        if (features == null) {
+            features = new int[numGrams];
+            featureDocFreqs = new int[numGrams];
+            numFeatures = 0;
+            for (int gram = 0; gram < numGrams; gram++) {
+                if (wordFreqs[gram] >= minFrequency) {
+                    featureDocFreqs[numFeatures] = docFreqs[gram];
+                    features[gram] = numFeatures++;
+                } else
+                    features[gram] = -1;
+            }
+        }
+        return features;
+    }
+
+    private int bucket(long key) {
+        return (MurmurHash3.hashLong(key, MurmurHash3.DEFAULT_SEED) & Integer.MAX_VALUE) % hashBuckets;
+    }
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        for (int slot = slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                return gramIds[slot] - 1;
+        return -1;
+    }
+
+    private int add(long key) {
+        if (key == 0)
+            throw new IllegalArgumentException("0 is not a gram key");
+        int mask = keys.length - 1;
+        int slot = slot(key, mask);
+        for (; keys[slot] != 0; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                return gramIds[slot] - 1;
+
+        int gram = numGrams++;
+        if (gram == wordFreqs.length) {
+            wordFreqs = Arrays.copyOf(wordFreqs, gram * 2);
+            docFreqs = Arrays.copyOf(docFreqs, gram * 2);
+            lastDoc = Arrays.copyOf(lastDoc, gram * 2);
+        }
+        keys[slot] = key;
+        gramIds[slot] = gram + 1;
+        //keep the table at most half full
+        if (numGrams * 2 > keys.length)
+            rehash();
+        return gram;
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldIds = gramIds;
+        keys = new long[oldKeys.length * 2];
+        gramIds = new int[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == 0)
+                continue;
+            int slot = slot(oldKeys[i], mask);
+            while (keys[slot] != 0)
+                slot = (slot + 1) & mask;
+            keys[slot] = oldKeys[i];
+            gramIds[slot] = oldIds[i];
+        }
+    }
+
+    //packed keys have their ids in the low bits, so fold the high bits in before masking
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Save the terms and the features with their frequencies; grams below the min frequency are dropped
+     * @param file where to write it, replaced atomically
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getAbsolutePath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(minFrequency);
+            out.writeInt(hashBuckets);
+            out.writeInt(numDocs);
+            out.writeInt(terms.size());
+            for (int id = 0; id < terms.size(); id++)
+                out.writeUTF(terms.term(id));
+            if (hashBuckets > 0) {
+                for (int bucket = 0; bucket < hashBuckets; bucket++) {
+                    out.writeInt(wordFreqs[bucket]);
+                    out.writeInt(docFreqs[bucket]);
+                }
+            } else {
+                int[] features = features();
+                out.writeInt(numFeatures);
+                for (int slot = 0; slot < keys.length; slot++) {
+                    if (keys[slot] == 0 || features[gramIds[slot] - 1] < 0)
+                        continue;
+                    int gram = gramIds[slot] - 1;
+                    out.writeInt(features[gram]);
+                    out.writeLong(keys[slot]);
+                    out.writeInt(wordFreqs[gram]);
+                    out.writeInt(docFreqs[gram]);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load a vocab saved with {@link #save(File)}; it numbers its features as the saved one did
+     * @param file the saved vocab
+     * @return the vocab, with the saved terms
+     */
+    public static NGramVocab load(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a saved n-gram vocab");
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported n-gram vocab version " + version);
+            int minFrequency = in.readInt();
+            int hashBuckets = in.readInt();
+            int numDocs = in.readInt();
+            CharTermIndex terms = new CharTermIndex();
+            int numTerms = in.readInt();
+            for (int id = 0; id < numTerms; id++)
+                terms.add(in.readUTF());
+            NGramVocab ret = new NGramVocab(terms, minFrequency, hashBuckets);
+            ret.numDocs = numDocs;
+            if (hashBuckets > 0) {
+                for (int bucket = 0; bucket < hashBuckets; bucket++) {
+                    ret.wordFreqs[bucket] = in.readInt();
+                    ret.docFreqs[bucket] = in.readInt();
+                }
+                return ret;
+            }
+            int numFeatures = in.readInt();
+            long[] keys = new long[numFeatures];
+            int[] wordFreqs = new int[numFeatures];
+            int[] docFreqs = new int[numFeatures];
+            for (int i = 0; i < numFeatures; i++) {
+                int feature = in.readInt();
+                keys[feature] = in.readLong();
+                wordFreqs[feature] = in.readInt();
+                docFreqs[feature] = in.readInt();
+            }
+            //added in feature order, so every gram keeps its feature
+            for (int feature = 0; feature < numFeatures; feature++) {
+                int gram = ret.add(keys[feature]);
+                ret.wordFreqs[gram] = wordFreqs[feature];
+                ret.docFreqs[gram] = docFreqs[feature];
+            }
+            return ret;
+        }
+    }
+}
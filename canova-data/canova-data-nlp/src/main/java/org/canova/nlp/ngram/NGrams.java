@@ -0,0 +1,180 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.ngram;
+
+import java.util.Arrays;
+
+/**
+ * Rolls n-gram and skip-gram keys over a stream of term ids
+ * (e.g. from a {@link org.canova.nlp.metadata.CharTermIndex}).
+ *
+ * {@link #next(int)} takes the id of the next token and yields the keys of
+ * every gram of order 2 to maxN that ends at it, read with {@link #keyAt(int)}.
+ * With a skip of k, the members of a gram may be up to k tokens apart in
+ * total, so the grams are the k-skip-n-grams (k = 0 gives the contiguous
+ * ones). The ids of the last (maxN - 1) * (k + 1) tokens are kept in a ring
+ * buffer; no Strings are built and the key buffer is reused.
+ *
+ * A key is a long combining the ids in order. Up to 3 ids below 2^21 - 1 are
+ * packed into 21 bit fields, so bigrams and trigrams over a vocab of up to
+ * 2 million terms have exact keys. Longer grams, or grams of larger ids, are
+ * mixed into a 64 bit hash with the top bit set, so it never equals a packed
+ * key; two such grams share a key with a probability around 2^-63.
+ *
+ * A negative id marks a token with no id (e.g. not in the vocab): no gram
+ * includes it. Not thread safe.
+ *
+ * @author Adam Gibson
+ */
+public class NGrams {
+
+    private static final int FIELD_BITS = 21;
+    private static final int MAX_PACKED = 3;
+    private static final long MAX_PACKED_ID = (1L << FIELD_BITS) - 2;
+
+    private final int maxN;
+    private final int maxSkip;
+    //the last tokens' ids, the current one at head
+    private final int[] ring;
+    private int head = -1;
+    private int filled;
+    private long[] keys = new long[16];
+    private int numKeys;
+
+    /**
+     * @param maxN the highest order, 1 yields no grams
+     * @param maxSkip the number of tokens the members of a gram may skip in total
+     */
+    public NGrams(int maxN, int maxSkip) {
+        if (maxN < 1)
+            throw new IllegalArgumentException("N-gram order must be positive, was " + maxN);
+        if (maxSkip < 0)
+            throw new IllegalArgumentException("Skip must not be negative, was " + maxSkip);
+        this.maxN = maxN;
+        this.maxSkip = maxSkip;
+        this.ring = new int[(maxN - 1) * (maxSkip + 1) + 1];
+    }
+
+    /**
+     * Start a new document: grams don't span documents
+     */
+    public void reset() {
+        head = -1;
+        filled = 0;
+        numKeys = 0;
+    }
+
+    /**
+     * Add the next token
+     * @param id the token's term id, negative if it has none
+     * @return the number of grams ending at the token, see {@link #keyAt(int)}
+     */
+    public int next(int id) {
+        head = (head + 1) % ring.length;
+        ring[head] = id;
+        if (filled < ring.length)
+            filled++;
+        numKeys = 0;
+        if (id >= 0)
+            collect(0, 1, 0, pack(-1, 0, id), mix(0, id));
+        return numKeys;
+    }
+
+    /**
+     * @param i which of the grams ending at the last token, in [0, {@link #next(int)})
+     * @return the gram's key
+     */
+    public long keyAt(int i) {
+        if (i < 0 || i >= numKeys)
+            throw new IndexOutOfBoundsException("No key " + i);
+        return keys[i];
+    }
+
+    public int getMaxN() {
+        return maxN;
+    }
+
+    public int getMaxSkip() {
+        return maxSkip;
+    }
+
+    /**
+     * The key of a gram, as {@link #next(int)} yields it
+     * @param ids the gram's term ids in text order, at least 2
+     * @return the gram's key
+     */
+    public static long key(int... ids) {
+        if (ids.length < 2)
+            throw new IllegalArgumentException("A gram has at least 2 terms");
+        long packed = -1;
+        long mixed = 0;
+        //members are added from the last token back, as the ring buffer is walked
+        for (int depth = 0; depth < ids.length; depth++) {
+            int id = ids[ids.length - 1 - depth];
+            if (id < 0)
+                throw new IllegalArgumentException("Negative term id " + id);
+            packed = pack(packed, depth, id);
+            mixed = mix(mixed, id);
+        }
+        return finish(packed, ids.length, mixed);
+    }
+
+    //members of the gram so far: the last one distance tokens back, skips tokens skipped
+    private void collect(int distance, int depth, int skips, long packed, long mixed) {
+        if (depth >= 2) {
+            if (numKeys == keys.length)
+                keys = Arrays.copyOf(keys, numKeys * 2);
+            keys[numKeys++] = finish(packed, depth, mixed);
+        }
+        if (depth == maxN)
+            return;
+        for (int skip = 0; skips + skip <= maxSkip; skip++) {
+            int back = distance + 1 + skip;
+            if (back >= filled)
+                return;
+            int id = ring[(head - back + ring.length) % ring.length];
+            if (id >= 0)
+                collect(back, depth + 1, skips + skip, pack(packed, depth, id), mix(mixed, id));
+        }
+    }
+
+    //-1 once the gram no longer packs
+    private static long pack(long packed, int depth, int id) {
+        if (depth >= MAX_PACKED || id > MAX_PACKED_ID || (depth > 0 && packed < 0))
+            return -1;
+        return (depth == 0 ? 0 : packed) | ((long) (id + 1) << (FIELD_BITS * depth));
+    }
+
+    private static long finish(long packed, int depth, long mixed) {
+        return depth <= MAX_PACKED && packed >= 0 ? packed : mixed | Long.MIN_VALUE;
+    }
+
+    //murmur3's 64 bit finalizer over the ids so far
+    private static long mix(long h, int id) {
+        h ^= (id + 1) * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.stopwords;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Immutable, case insensitive set of stop words.
+ *
+ * Words are stored lower cased in an open addressed table (linear probing,
+ * at most half full), and looked up by hashing and comparing lower cased
+ * chars on the fly, so a token can be checked straight from a char buffer
+ * without creating a String. Safe to share between threads.
+ *
+ * @author Adam Gibson
+ */
+public class StopWordSet {
+
+    private final char[][] table;
+    private final int mask;
+    private int size;
+
+    /**
+     * @param words the stop words, blank entries are skipped
+     */
+    public StopWordSet(Collection<String> words) {
+        int capacity = 16;
+        while (capacity < words.size() * 2)
+            capacity <<= 1;
+        table = new char[capacity][];
+        mask = capacity - 1;
+        for (String word : words) {
+            String trimmed = word.trim();
+            if (trimmed.isEmpty())
+                continue;
+            char[] lower = new char[trimmed.length()];
+            for (int i = 0; i < lower.length; i++)
+                lower[i] = Character.toLowerCase(trimmed.charAt(i));
+            add(lower);
+        }
+    }
+
+    public boolean contains(CharSequence word) {
+        int length = word.length();
+        int h = 0;
+        for (int i = 0; i < length; i++)
+            h = 31 * h + Character.toLowerCase(word.charAt(i));
+        for (int slot = mix(h) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            char[] stopWord = table[slot];
+            if (stopWord.length != length)
+                continue;
+            int i = 0;
+            while (i < length && stopWord[i] == Character.toLowerCase(word.charAt(i)))
+                i++;
+            if (i == length)
+                return true;
+        }
+        return false;
+    }
+
+    public boolean contains(char[] chars, int offset, int length) {
+        int h = 0;
+        for (int i = offset; i < offset + length; i++)
+            h = 31 * h + Character.toLowerCase(chars[i]);
+        for (int slot = mix(h) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+            char[] stopWord = table[slot];
+            if (stopWord.length != length)
+                continue;
+            int i = 0;
+            while (i < length && stopWord[i] == Character.toLowerCase(chars[offset + i]))
+                i++;
+            if (i == length)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of distinct stop words
+     */
+    public int size() {
+        return size;
+    }
+
+    private void add(char[] word) {
+        int h = 0;
+        for (char c : word)
+            h = 31 * h + c;
+        int slot = mix(h) & mask;
+        for (; table[slot] != null; slot = (slot + 1) & mask)
+            if (Arrays.equals(table[slot], word))
+                return;
+        table[slot] = word;
+        size++;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        return h;
+    }
+}
@@ -34,6 +34,7 @@ import java.util.List;
 public class StopWords {
 
 	private static List<String> stopWords;
+	private static StopWordSet stopWordSet;
 
 	@SuppressWarnings("unchecked")
 	public static List<String> getStopWords() {
@@ -47,4 +48,13 @@ public class StopWords {
 		return stopWords;
 	}
 
+	/**
+	 * The stop words as a hash set, see {@link StopWordSet}
+	 */
+	public static synchronized StopWordSet getStopWordSet() {
+		if(stopWordSet == null)
+			stopWordSet = new StopWordSet(getStopWords());
+		return stopWordSet;
+	}
+
 }
@@ -64,6 +64,8 @@ public class ConcurrentTokenizer extends AbstractTokenizer {
   
   private Feature probabilityFeature;
   
+  //only serializes the documents sent to this instance, a pooled
+  //UimaResource runs one instance per engine replica
   @Override
 public synchronized void process(CAS cas) throws AnalysisEngineProcessException {
 	super.process(cas);
@@ -0,0 +1,279 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.tokenization.tokenizer;
+
+import org.canova.nlp.stopwords.StopWordSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Whitespace tokenizer that scans a char array in place.
+ *
+ * Splits on the same delimiters as {@link DefaultTokenizer} (space, tab,
+ * new line, carriage return and form feed). Each token is copied into a
+ * reusable term buffer, see {@link #nextTerm()}, so a caller that looks
+ * terms up by char range (e.g. {@link org.canova.nlp.metadata.CharTermIndex})
+ * never materializes a String per token. One instance can be reused across
+ * documents with {@link #reset(String)}.
+ *
+ * With normalize on, each token is filtered as it's copied: tokens starting
+ * with http:// are kept whole with their digits folded to 'd', anything else
+ * keeps only its ASCII letters, lower cased. Then the endings of
+ * {@link org.canova.nlp.tokenization.tokenizer.preprocessor.EndingPreProcessor}
+ * are stripped in the same order.
+ *
+ * With stop words set, a token whose filtered form is a stop word is skipped.
+ * It's checked before the endings are stripped, so a stemmed form that happens
+ * to be (or not be) a stop word doesn't change what is dropped.
+ *
+ * @author Adam Gibson
+ */
+public class FastTokenizer implements Tokenizer {
+
+    private static final char[] URL_PREFIX = "http://".toCharArray();
+
+    private final boolean normalize;
+    private char[] chars = new char[0];
+    private int pos;
+    private int end;
+    private char[] term = new char[32];
+    private int termLength;
+    private TokenPreProcess tokenPreProcess;
+    private StopWordSet stopWords;
+    //whether hasMoreTokens() already copied the next term
+    private boolean pending;
+
+    public FastTokenizer(String tokens) {
+        this(tokens, false);
+    }
+
+    /**
+     * @param tokens the text to tokenize
+     * @param normalize whether to filter and strip the endings of each token
+     */
+    public FastTokenizer(String tokens, boolean normalize) {
+        this.normalize = normalize;
+        reset(tokens);
+    }
+
+    /**
+     * @param chars the text to tokenize, not copied
+     * @param offset the first char
+     * @param length the number of chars
+     * @param normalize whether to filter and strip the endings of each token
+     */
+    public FastTokenizer(char[] chars, int offset, int length, boolean normalize) {
+        this.normalize = normalize;
+        reset(chars, offset, length);
+    }
+
+    /**
+     * Start over on new text, reusing this tokenizer's buffers
+     * @param tokens the text to tokenize
+     */
+    public void reset(String tokens) {
+        if (chars.length < tokens.length())
+            chars = new char[Math.max(tokens.length(), chars.length * 2)];
+        tokens.getChars(0, tokens.length(), chars, 0);
+        pos = 0;
+        end = tokens.length();
+        pending = false;
+    }
+
+    /**
+     * Start over on a range of a char array, the array isn't copied
+     */
+    public void reset(char[] chars, int offset, int length) {
+        this.chars = chars;
+        pos = offset;
+        end = offset + length;
+        pending = false;
+    }
+
+    /**
+     * Skip the tokens that are stop words, null (the default) to keep every token
+     */
+    public void setStopWords(StopWordSet stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    /**
+     * Advance to the next token that isn't a stop word and copy it, filtered if normalizing,
+     * into the term buffer
+     * @return false if there are no more tokens
+     */
+    public boolean nextTerm() {
+        if (!pending && !advance())
+            return false;
+        pending = false;
+        return true;
+    }
+
+    //copy the next token that isn't a stop word into the term buffer
+    private boolean advance() {
+        while (true) {
+            while (pos < end && isDelimiter(chars[pos]))
+                pos++;
+            if (pos >= end)
+                return false;
+            int start = pos;
+            while (pos < end && !isDelimiter(chars[pos]))
+                pos++;
+            if (copyTerm(start, pos))
+                return true;
+        }
+    }
+
+    /**
+     * The current term, valid up to {@link #termLength()} until the next call to {@link #nextTerm()}
+     * (or, with stop words, to {@link #hasMoreTokens()}, which looks ahead for a token that isn't one)
+     */
+    public char[] termBuffer() {
+        return term;
+    }
+
+    public int termLength() {
+        return termLength;
+    }
+
+    @Override
+    public boolean hasMoreTokens() {
+        if (stopWords != null) {
+            if (!pending)
+                pending = advance();
+            return pending;
+        }
+        while (pos < end && isDelimiter(chars[pos]))
+            pos++;
+        return pos < end;
+    }
+
+    /**
+     * The number of tokens left, stop words included
+     */
+    @Override
+    public int countTokens() {
+        int count = pending ? 1 : 0;
+        boolean inToken = false;
+        for (int i = pos; i < end; i++) {
+            boolean delimiter = isDelimiter(chars[i]);
+            if (!delimiter && !inToken)
+                count++;
+            inToken = !delimiter;
+        }
+        return count;
+    }
+
+    @Override
+    public String nextToken() {
+        if (!nextTerm())
+            throw new NoSuchElementException();
+        String base = new String(term, 0, termLength);
+        if (tokenPreProcess != null)
+            base = tokenPreProcess.preProcess(base);
+        return base;
+    }
+
+    @Override
+    public List<String> getTokens() {
+        List<String> tokens = new ArrayList<>();
+        while (hasMoreTokens())
+            tokens.add(nextToken());
+        return tokens;
+    }
+
+    @Override
+    public void setTokenPreProcessor(TokenPreProcess tokenPreProcessor) {
+        this.tokenPreProcess = tokenPreProcessor;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f';
+    }
+
+    //false if the token is a stop word
+    private boolean copyTerm(int start, int stop) {
+        if (term.length < stop - start)
+            term = new char[Math.max(stop - start, term.length * 2)];
+        boolean url = normalize && startsWith(start, stop, URL_PREFIX);
+        int length = 0;
+        if (!normalize || url) {
+            System.arraycopy(chars, start, term, 0, stop - start);
+            length = stop - start;
+        } else {
+            for (int i = start; i < stop; i++) {
+                char c = chars[i];
+                if (c >= 'a' && c <= 'z')
+                    term[length++] = c;
+                else if (c >= 'A' && c <= 'Z')
+                    term[length++] = (char) (c + ('a' - 'A'));
+            }
+        }
+        if (stopWords != null && stopWords.contains(term, 0, length))
+            return false;
+
+        if (normalize) {
+            length = stripEndings(length);
+            if (url) {
+                for (int i = 0; i < length; i++)
+                    if (term[i] >= '0' && term[i] <= '9')
+                        term[i] = 'd';
+            }
+        }
+        termLength = length;
+        return true;
+    }
+
+    //EndingPreProcessor on the term buffer
+    private int stripEndings(int length) {
+        if (endsWith(length, "s") && !endsWith(length, "ss"))
+            length--;
+        if (endsWith(length, "."))
+            length--;
+        if (endsWith(length, "ed"))
+            length -= 2;
+        if (endsWith(length, "ing"))
+            length -= 3;
+        if (endsWith(length, "ly"))
+            length -= 2;
+        return length;
+    }
+
+    private boolean endsWith(int length, String suffix) {
+        int offset = length - suffix.length();
+        if (offset < 0)
+            return false;
+        for (int i = 0; i < suffix.length(); i++)
+            if (term[offset + i] != suffix.charAt(i))
+                return false;
+        return true;
+    }
+
+    private boolean startsWith(int start, int stop, char[] prefix) {
+        if (stop - start < prefix.length)
+            return false;
+        for (int i = 0; i < prefix.length; i++)
+            if (chars[start + i] != prefix[i])
+                return false;
+        return true;
+    }
+}
@@ -24,10 +24,13 @@ import org.apache.uima.analysis_engine.AnalysisEngine;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
 import org.canova.nlp.annotator.PoStagger;
 import org.canova.nlp.annotator.SentenceAnnotator;
 import org.canova.nlp.annotator.StemmerAnnotator;
 import org.canova.nlp.annotator.TokenizerAnnotator;
+import org.canova.nlp.movingwindow.LabelSpans;
+import org.canova.nlp.uima.UimaResource;
 import org.cleartk.token.type.Sentence;
 import org.cleartk.token.type.Token;
 
@@ -45,50 +48,66 @@ import java.util.List;
  */
 public class PosUimaTokenizer  implements Tokenizer {
 
-    private static AnalysisEngine engine;
     private List<String> tokens;
     private Collection<String> allowedPosTags;
     private int index;
-    private static CAS cas;
+
+    /**
+     * Tag the text with a cas of its own, on an engine that
+     * runs one document at a time
+     */
     public PosUimaTokenizer(String tokens,AnalysisEngine engine,Collection<String> allowedPosTags) {
-        if(engine == null)
-            PosUimaTokenizer.engine = engine;
         this.allowedPosTags = allowedPosTags;
         this.tokens = new ArrayList<>();
         try {
-            if(cas == null)
-                cas = engine.newCAS();
-
-            cas.reset();
+            CAS cas = engine.newCAS();
             cas.setDocumentText(tokens);
-            PosUimaTokenizer.engine.process(cas);
-            for(Sentence s : JCasUtil.select(cas.getJCas(), Sentence.class)) {
-                for(Token t : JCasUtil.selectCovered(Token.class,s)) {
-                    //add NONE for each invalid token
-                    if(valid(t))
-                        if(t.getLemma() != null)
-                            this.tokens.add(t.getLemma());
-                        else if(t.getStem() != null)
-                            this.tokens.add(t.getStem());
-                        else
-                            this.tokens.add(t.getCoveredText());
-                    else
-                        this.tokens.add("NONE");
-                }
-            }
-
-
+            engine.process(cas);
+            addTokens(cas.getJCas());
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
 
+    }
 
+    /**
+     * Tag the text with a cas from the resource's pool,
+     * safe to call from as many threads as the resource has replicas
+     */
+    public PosUimaTokenizer(String tokens,UimaResource resource,Collection<String> allowedPosTags) {
+        this.allowedPosTags = allowedPosTags;
+        this.tokens = new ArrayList<>();
+        CAS cas = resource.process(tokens);
+        try {
+            addTokens(cas.getJCas());
         } catch (Exception e) {
             throw new RuntimeException(e);
+        } finally {
+            resource.release(cas);
         }
 
     }
 
+    private void addTokens(JCas jCas) {
+        for(Sentence s : JCasUtil.select(jCas, Sentence.class)) {
+            for(Token t : JCasUtil.selectCovered(Token.class,s)) {
+                //add NONE for each invalid token
+                if(valid(t))
+                    if(t.getLemma() != null)
+                        this.tokens.add(t.getLemma());
+                    else if(t.getStem() != null)
+                        this.tokens.add(t.getStem());
+                    else
+                        this.tokens.add(t.getCoveredText());
+                else
+                    this.tokens.add("NONE");
+            }
+        }
+    }
+
     private boolean valid(Token token) {
         String check = token.getCoveredText();
-        if(check.matches("<[A-Z]+>") || check.matches("</[A-Z]+>"))
+        if(LabelSpans.isBeginTag(check, LabelSpans.UPPER_CASE) || LabelSpans.isEndTag(check, LabelSpans.UPPER_CASE))
             return false;
         else if(token.getPos() != null && !this.allowedPosTags.contains(token.getPos()))
             return false;
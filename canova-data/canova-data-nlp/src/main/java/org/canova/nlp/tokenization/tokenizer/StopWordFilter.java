@@ -0,0 +1,90 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.tokenization.tokenizer;
+
+import org.canova.nlp.stopwords.StopWordSet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Drops the stop words from another tokenizer's tokens.
+ * Tokens are checked after the wrapped tokenizer's pre processor ran, and before
+ * this filter's own (see {@link #setTokenPreProcessor(TokenPreProcess)}), so a stemmer
+ * set here changes the kept tokens but not which tokens are stop words.
+ *
+ * @author Adam Gibson
+ */
+public class StopWordFilter implements Tokenizer {
+
+    private final Tokenizer tokenizer;
+    private final StopWordSet stopWords;
+    private TokenPreProcess tokenPreProcess;
+    //the next token that isn't a stop word, null if not looked for yet
+    private String next;
+
+    public StopWordFilter(Tokenizer tokenizer, StopWordSet stopWords) {
+        this.tokenizer = tokenizer;
+        this.stopWords = stopWords;
+    }
+
+    @Override
+    public boolean hasMoreTokens() {
+        while (next == null && tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            if (!stopWords.contains(token))
+                next = token;
+        }
+        return next != null;
+    }
+
+    @Override
+    public int countTokens() {
+        return getTokens().size();
+    }
+
+    @Override
+    public String nextToken() {
+        if (!hasMoreTokens())
+            throw new NoSuchElementException();
+        String ret = next;
+        next = null;
+        if (tokenPreProcess != null)
+            ret = tokenPreProcess.preProcess(ret);
+        return ret;
+    }
+
+    @Override
+    public List<String> getTokens() {
+        List<String> tokens = new ArrayList<>();
+        while (hasMoreTokens())
+            tokens.add(nextToken());
+        return tokens;
+    }
+
+    /**
+     * Pre process the tokens that aren't stop words, once they have been checked
+     */
+    @Override
+    public void setTokenPreProcessor(TokenPreProcess tokenPreProcessor) {
+        this.tokenPreProcess = tokenPreProcessor;
+    }
+}
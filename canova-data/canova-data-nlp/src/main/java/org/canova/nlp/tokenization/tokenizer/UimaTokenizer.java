@@ -22,6 +22,7 @@ package org.canova.nlp.tokenization.tokenizer;
 
 import org.apache.uima.cas.CAS;
 import org.apache.uima.fit.util.JCasUtil;
+import org.canova.nlp.movingwindow.LabelSpans;
 import org.canova.nlp.uima.UimaResource;
 import org.cleartk.token.type.Token;
 import org.slf4j.Logger;
@@ -77,7 +78,7 @@ public class UimaTokenizer implements Tokenizer {
     }
 
     private boolean valid(String check) {
-        if(check.matches("<[A-Z]+>") || check.matches("</[A-Z]+>"))
+        if(LabelSpans.isBeginTag(check, LabelSpans.UPPER_CASE) || LabelSpans.isEndTag(check, LabelSpans.UPPER_CASE))
             return false;
         return true;
     }
@@ -0,0 +1,90 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.tokenization.tokenizerfactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tokenizes a batch of documents on an executor, usually one thread per engine replica
+ */
+class BatchTokenization {
+
+    private BatchTokenization() {
+    }
+
+    /**
+     * A fixed pool of daemon threads, so a factory that is never
+     * shut down doesn't keep the JVM alive
+     * @param numThreads the number of documents to tokenize at once
+     * @return the executor
+     */
+    static ExecutorService newExecutor(int numThreads) {
+        return Executors.newFixedThreadPool(Math.max(1, numThreads), new ThreadFactory() {
+            private final ThreadFactory threads = Executors.defaultThreadFactory();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread ret = threads.newThread(r);
+                ret.setDaemon(true);
+                return ret;
+            }
+        });
+    }
+
+    /**
+     * @param factory a thread safe tokenizer factory
+     * @param documents the documents to tokenize
+     * @param executor the executor to tokenize on, left running
+     * @return the tokens of each document, in the order of the documents
+     */
+    static List<List<String>> tokenize(final TokenizerFactory factory, List<String> documents, ExecutorService executor) {
+        List<Callable<List<String>>> tasks = new ArrayList<>(documents.size());
+        for (final String document : documents) {
+            tasks.add(new Callable<List<String>>() {
+                @Override
+                public List<String> call() {
+                    if (document == null || document.isEmpty())
+                        return Collections.emptyList();
+                    return factory.create(document).getTokens();
+                }
+            });
+        }
+
+        try {
+            List<List<String>> ret = new ArrayList<>(documents.size());
+            for (Future<List<String>> tokens : executor.invokeAll(tasks))
+                ret.add(tokens.get());
+            return ret;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
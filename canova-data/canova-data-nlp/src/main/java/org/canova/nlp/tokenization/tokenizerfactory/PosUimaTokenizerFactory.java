@@ -22,6 +22,9 @@ package org.canova.nlp.tokenization.tokenizerfactory;
 
 
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.CasPool;
 import org.canova.nlp.annotator.PoStagger;
 import org.canova.nlp.annotator.SentenceAnnotator;
 import org.canova.nlp.annotator.StemmerAnnotator;
@@ -29,10 +32,13 @@ import org.canova.nlp.annotator.TokenizerAnnotator;
 import org.canova.nlp.tokenization.tokenizer.PosUimaTokenizer;
 import org.canova.nlp.tokenization.tokenizer.TokenPreProcess;
 import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+import org.canova.nlp.uima.UimaResource;
 
 
 import java.io.InputStream;
 import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
 import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDescription;
@@ -46,41 +52,96 @@ import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngineDesc
  */
 public class PosUimaTokenizerFactory implements TokenizerFactory {
 
-    private AnalysisEngine tokenizer;
+    private UimaResource resource;
     private Collection<String> allowedPoSTags;
     private TokenPreProcess tokenPreProcess;
+    //created by the first tokenize(List), see BatchTokenization
+    private ExecutorService executor;
 
 
     public PosUimaTokenizerFactory(Collection<String> allowedPoSTags) {
         this(defaultAnalysisEngine(),allowedPoSTags);
     }
 
+    /**
+     * Tag up to numReplicas documents at once
+     * with replicas of the default pipeline
+     * @see UimaResource#pooled(AnalysisEngineDescription, int)
+     */
+    public PosUimaTokenizerFactory(Collection<String> allowedPoSTags,int numReplicas) {
+        try {
+            this.resource = UimaResource.pooled(defaultAnalysisEngineDescription(),numReplicas);
+        } catch (ResourceInitializationException e) {
+            throw new RuntimeException(e);
+        }
+        this.allowedPoSTags = allowedPoSTags;
+    }
+
     public PosUimaTokenizerFactory(AnalysisEngine tokenizer,Collection<String> allowedPosTags) {
-        this.tokenizer = tokenizer;
+        try {
+            //a single engine runs one document at a time, one cas is all it can use
+            this.resource = new UimaResource(tokenizer,new CasPool(1,tokenizer));
+        } catch (ResourceInitializationException e) {
+            throw new RuntimeException(e);
+        }
         this.allowedPoSTags = allowedPosTags;
     }
 
 
     public static AnalysisEngine defaultAnalysisEngine()  {
         try {
-            return createEngine(
-                    createEngineDescription(SentenceAnnotator.getDescription(),
-                            TokenizerAnnotator.getDescription(),
-                            PoStagger.getDescription("en"),
-                            StemmerAnnotator.getDescription("English")));
+            return createEngine(defaultAnalysisEngineDescription());
         }catch(Exception e) {
             throw new RuntimeException(e);
         }
     }
 
+    /**
+     * The description of the default pipeline: sentence splitting,
+     * tokenization, part of speech tagging and stemming
+     */
+    public static AnalysisEngineDescription defaultAnalysisEngineDescription() throws ResourceInitializationException {
+        return createEngineDescription(SentenceAnnotator.getDescription(),
+                TokenizerAnnotator.getDescription(),
+                PoStagger.getDescription("en"),
+                StemmerAnnotator.getDescription("English"));
+    }
+
 
     @Override
     public Tokenizer create(String toTokenize) {
-        PosUimaTokenizer t =  new PosUimaTokenizer(toTokenize,tokenizer,allowedPoSTags);
+        PosUimaTokenizer t =  new PosUimaTokenizer(toTokenize,resource,allowedPoSTags);
         t.setTokenPreProcessor(tokenPreProcess);
         return t;
     }
 
+    /**
+     * Tokenizes the documents on as many threads
+     * as the resource has engine replicas, on an executor
+     * created the first time and reused after that
+     * @param documents the documents to tokenize
+     * @return the tokens of each document, in order
+     */
+    public List<List<String>> tokenize(List<String> documents) {
+        return tokenize(documents,executor());
+    }
+
+    /**
+     * Tokenizes the documents on the given executor
+     * @param documents the documents to tokenize
+     * @param executor the executor to tokenize on, left running
+     * @return the tokens of each document, in order
+     */
+    public List<List<String>> tokenize(List<String> documents,ExecutorService executor) {
+        return BatchTokenization.tokenize(this,documents,executor);
+    }
+
+    private synchronized ExecutorService executor() {
+        if(executor == null)
+            executor = BatchTokenization.newExecutor(resource.getNumReplicas());
+        return executor;
+    }
+
     @Override
     public Tokenizer create(InputStream toTokenize) {
         throw new UnsupportedOperationException();
@@ -0,0 +1,78 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+package org.canova.nlp.tokenization.tokenizerfactory;
+
+import org.canova.nlp.stopwords.StopWordSet;
+import org.canova.nlp.tokenization.tokenizer.StopWordFilter;
+import org.canova.nlp.tokenization.tokenizer.TokenPreProcess;
+import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+
+import java.io.InputStream;
+
+/**
+ * Wraps the tokenizers of another factory in a {@link StopWordFilter}.
+ * The pre processor set on this factory runs on the tokens that aren't stop words,
+ * so the stop words are matched against the unstemmed tokens.
+ *
+ * @author Adam Gibson
+ */
+public class StopWordTokenizerFactory implements TokenizerFactory {
+
+    private final TokenizerFactory tokenizerFactory;
+    private final StopWordSet stopWords;
+    private TokenPreProcess preProcessor;
+
+    public StopWordTokenizerFactory(TokenizerFactory tokenizerFactory, StopWordSet stopWords) {
+        this.tokenizerFactory = tokenizerFactory;
+        this.stopWords = stopWords;
+    }
+
+    @Override
+    public Tokenizer create(String toTokenize) {
+        return filter(tokenizerFactory.create(toTokenize));
+    }
+
+    @Override
+    public Tokenizer create(InputStream toTokenize) {
+        return filter(tokenizerFactory.create(toTokenize));
+    }
+
+    private Tokenizer filter(Tokenizer tokenizer) {
+        Tokenizer ret = new StopWordFilter(tokenizer, stopWords);
+        ret.setTokenPreProcessor(preProcessor);
+        return ret;
+    }
+
+    @Override
+    public void setTokenPreProcessor(TokenPreProcess preProcessor) {
+        this.preProcessor = preProcessor;
+    }
+
+    /**
+     * @return the factory whose tokens are filtered
+     */
+    public TokenizerFactory getTokenizerFactory() {
+        return tokenizerFactory;
+    }
+
+    public StopWordSet getStopWords() {
+        return stopWords;
+    }
+}
@@ -21,6 +21,7 @@
 package org.canova.nlp.tokenization.tokenizerfactory;
 
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.canova.nlp.annotator.SentenceAnnotator;
@@ -32,6 +33,8 @@ import org.canova.nlp.uima.UimaResource;
 
 
 import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
 
 
 /**
@@ -49,6 +52,8 @@ public class UimaTokenizerFactory implements TokenizerFactory {
 	private boolean checkForLabel;
 	private static AnalysisEngine defaultAnalysisEngine;
     private TokenPreProcess preProcess;
+	//created by the first tokenize(List), see BatchTokenization
+	private ExecutorService executor;
 
 	public UimaTokenizerFactory() throws ResourceInitializationException {
 		this(defaultAnalysisEngine(),true);
@@ -75,6 +80,15 @@ public class UimaTokenizerFactory implements TokenizerFactory {
 		this(defaultAnalysisEngine(),checkForLabel);
 	}
 
+	/**
+	 * Tokenize up to numReplicas documents at once
+	 * with replicas of the default pipeline
+	 * @see UimaResource#pooled(AnalysisEngineDescription, int)
+	 */
+	public UimaTokenizerFactory(int numReplicas,boolean checkForLabel) throws ResourceInitializationException {
+		this(UimaResource.pooled(defaultAnalysisEngineDescription(),numReplicas),checkForLabel);
+	}
+
 
 
 	public UimaTokenizerFactory(AnalysisEngine tokenizer,boolean checkForLabel) {
@@ -106,18 +120,43 @@ public class UimaTokenizerFactory implements TokenizerFactory {
 	}
 
 
+	/**
+	 * Tokenizes the documents on as many threads
+	 * as the resource has engine replicas, on an executor
+	 * created the first time and reused after that
+	 * @param documents the documents to tokenize
+	 * @return the tokens of each document, in order
+	 */
+	public List<List<String>> tokenize(List<String> documents) {
+		return tokenize(documents,executor());
+	}
+
+	/**
+	 * Tokenizes the documents on the given executor
+	 * @param documents the documents to tokenize
+	 * @param executor the executor to tokenize on, left running
+	 * @return the tokens of each document, in order
+	 */
+	public List<List<String>> tokenize(List<String> documents,ExecutorService executor) {
+		return BatchTokenization.tokenize(this,documents,executor);
+	}
+
+	private synchronized ExecutorService executor() {
+		if(executor == null)
+			executor = BatchTokenization.newExecutor(uimaResource.getNumReplicas());
+		return executor;
+	}
+
+
 	/**
 	 * Creates a tokenization,/stemming pipeline
 	 * @return a tokenization/stemming pipeline
 	 */
-	public static AnalysisEngine defaultAnalysisEngine()  {
+	public static synchronized AnalysisEngine defaultAnalysisEngine()  {
 		try {
 			if(defaultAnalysisEngine == null)
 
-				defaultAnalysisEngine =  AnalysisEngineFactory.createEngine(
-						AnalysisEngineFactory.createEngineDescription(
-								SentenceAnnotator.getDescription(),
-								TokenizerAnnotator.getDescription()));
+				defaultAnalysisEngine =  AnalysisEngineFactory.createEngine(defaultAnalysisEngineDescription());
 
 			return defaultAnalysisEngine;
 		}catch(Exception e) {
@@ -125,6 +164,15 @@ public class UimaTokenizerFactory implements TokenizerFactory {
 		}
 	}
 
+	/**
+	 * The description of the default pipeline: sentence splitting and tokenization
+	 */
+	public static AnalysisEngineDescription defaultAnalysisEngineDescription() throws ResourceInitializationException {
+		return AnalysisEngineFactory.createEngineDescription(
+				SentenceAnnotator.getDescription(),
+				TokenizerAnnotator.getDescription());
+	}
+
 
 	@Override
 	public Tokenizer create(InputStream toTokenize) {
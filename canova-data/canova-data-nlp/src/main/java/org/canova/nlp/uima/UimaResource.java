@@ -20,7 +20,9 @@
 
 package org.canova.nlp.uima;
 
+import org.apache.uima.UIMAFramework;
 import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.CAS;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -34,8 +36,12 @@ import org.apache.uima.util.CasPool;
 public class
         UimaResource {
 
+	//times process() runs a document before giving up on it
+	public final static int MAX_PROCESS_ATTEMPTS = 3;
+
 	private AnalysisEngine analysisEngine;
 	private CasPool casPool;
+	private int numReplicas = 1;
 	
 	public UimaResource(AnalysisEngine analysisEngine) throws ResourceInitializationException {
 		this.analysisEngine = analysisEngine;
@@ -49,6 +55,31 @@ public class
 
 	}
 
+	/**
+	 * A resource that processes up to numReplicas documents at once.
+	 * A single analysis engine only runs one document at a time, so UIMA
+	 * instantiates the description numReplicas times behind one thread safe
+	 * engine, paired with a cas pool of the same size.
+	 * @param description the pipeline to replicate
+	 * @param numReplicas the number of engine replicas, usually the number of cores
+	 * @return the pooled resource
+	 */
+	public static UimaResource pooled(AnalysisEngineDescription description, int numReplicas) throws ResourceInitializationException {
+		if(numReplicas < 1)
+			throw new IllegalArgumentException("Need at least one replica");
+		AnalysisEngine engine = UIMAFramework.produceAnalysisEngine(description, numReplicas, 0);
+		UimaResource ret = new UimaResource(engine, new CasPool(numReplicas, engine));
+		ret.numReplicas = numReplicas;
+		return ret;
+	}
+
+	/**
+	 * @return the number of documents that can be processed at once
+	 */
+	public int getNumReplicas() {
+		return numReplicas;
+	}
+
 
 	public AnalysisEngine getAnalysisEngine() {
 		return analysisEngine;
@@ -72,25 +103,26 @@ public class
 	
 	/**
 	 * Use the given analysis engine and process the given text
-	 * You must release the return cas yourself
+	 * You must release the return cas yourself.
+	 * A failed non empty document is tried again, up to {@link #MAX_PROCESS_ATTEMPTS} times in all
 	 * @param text the text to rpocess
 	 * @return the processed cas
 	 */
 	public  CAS process(String text) {
-		CAS cas = retrieve();
-		
-		cas.setDocumentText(text);
-		try {
-			analysisEngine.process(cas);
-		} catch (AnalysisEngineProcessException e) {
-			if(text != null && !text.isEmpty())
-                return process(text);
-            throw new RuntimeException(e);
+		int attempts = text != null && !text.isEmpty() ? MAX_PROCESS_ATTEMPTS : 1;
+		for(int attempt = 1; ; attempt++) {
+			CAS cas = retrieve();
+			cas.setDocumentText(text);
+			try {
+				analysisEngine.process(cas);
+				return cas;
+			} catch (AnalysisEngineProcessException e) {
+				//give the cas back, a bounded pool would otherwise run dry
+				release(cas);
+				if(attempt >= attempts)
+					throw new RuntimeException(e);
+			}
 		}
-		
-		return cas;
-		
-		
 	}
 	
 	
@@ -25,16 +25,31 @@ import org.canova.api.conf.Configuration;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.vector.Vectorizer;
 import org.canova.api.writable.Writable;
+import org.canova.nlp.metadata.BoundedVocabCache;
+import org.canova.nlp.metadata.ConcurrentVocabCache;
 import org.canova.nlp.metadata.DefaultVocabCache;
+import org.canova.nlp.metadata.MappedVocabCache;
 import org.canova.nlp.metadata.VocabCache;
+import org.canova.nlp.stopwords.StopWordSet;
 import org.canova.nlp.stopwords.StopWords;
 import org.canova.nlp.tokenization.tokenizer.Tokenizer;
+import org.canova.nlp.tokenization.tokenizerfactory.StopWordTokenizerFactory;
 import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Baseline text vectorizer that includes some common elements
@@ -48,18 +63,61 @@ public abstract class TextVectorizer<VECTOR_TYPE> implements Vectorizer<VECTOR_T
     protected int minWordFrequency = 0;
     public final static String MIN_WORD_FREQUENCY = "org.nd4j.nlp.minwordfrequency";
     public final static String STOP_WORDS = "org.nd4j.nlp.stopwords";
+    //whether the tokenizers drop the stop words (the STOP_WORDS list, or the built in one), off by default,
+    //see StopWordTokenizerFactory for which pre processing runs before the tokens are matched
+    public final static String REMOVE_STOP_WORDS = "org.canova.nlp.stopwords.remove";
     public final static String TOKENIZER = "org.canova.nlp.tokenizerfactory";
+    //with the UimaTokenizerFactory, the number of engine replicas it's pooled over so that many documents
+    //are tokenized at once, FIT_THREADS by default
+    public final static String TOKENIZER_REPLICAS = "org.canova.nlp.tokenizer.replicas";
+    //number of threads fit() tokenizes and counts on, 1 (the default) fits on the calling thread
+    public final static String FIT_THREADS = "org.canova.nlp.fit.threads";
+    //records read per fork join job, and per leaf task of a job
+    public final static int FIT_BATCH_SIZE = 4096;
+    public final static int FIT_TASK_SIZE = 256;
+    //fit in bounded memory: the count-min sketch budget and / or the max number of vocab words, see BoundedVocabCache
+    public final static String VOCAB_SKETCH_BYTES = "org.canova.nlp.vocab.sketch.bytes";
+    public final static String MAX_VOCAB_SIZE = "org.canova.nlp.vocab.maxsize";
+    //a vocab saved with saveVocab(): readers load it instead of fitting when it exists and was fit with the same VOCAB_KEYS values,
+    //and (re)fit and save to it otherwise
+    public final static String VOCAB_MODEL = "org.canova.nlp.vocab.model";
+    //n-gram features after the unigram ones: the highest order (1, the default, is unigrams only), the number of
+    //tokens a gram may skip and the number of buckets to hash the grams to (0, the default, keeps them exact), see NGramVocab
+    public final static String NGRAM_MAX = "org.canova.nlp.ngram.max";
+    public final static String NGRAM_SKIP = "org.canova.nlp.ngram.skip";
+    public final static String NGRAM_HASH_BUCKETS = "org.canova.nlp.ngram.buckets";
+    //the keys whose values shape the fitted vocab, see vocabMatches(File)
+    public final static String[] VOCAB_KEYS = {
+            MIN_WORD_FREQUENCY, STOP_WORDS, REMOVE_STOP_WORDS, TOKENIZER,
+            VOCAB_SKETCH_BYTES, MAX_VOCAB_SIZE, NGRAM_MAX, NGRAM_SKIP, NGRAM_HASH_BUCKETS
+    };
     protected Collection<String> stopWords;
     protected VocabCache cache;
+    protected int fitThreads = 1;
+    protected long vocabFingerprint;
 
     @Override
     public void initialize(Configuration conf) {
+        fitThreads = conf.getInt(FIT_THREADS,1);
         tokenizerFactory = createTokenizerFactory(conf);
         minWordFrequency = conf.getInt(MIN_WORD_FREQUENCY,5);
         stopWords = conf.getStringCollection(STOP_WORDS);
         if(stopWords == null || stopWords.isEmpty())
             stopWords = StopWords.getStopWords();
-        cache = new DefaultVocabCache(minWordFrequency);
+        if(conf.getBoolean(REMOVE_STOP_WORDS,false)) {
+            StopWordSet stopWordSet = stopWords == StopWords.getStopWords() ? StopWords.getStopWordSet() : new StopWordSet(stopWords);
+            tokenizerFactory = new StopWordTokenizerFactory(tokenizerFactory,stopWordSet);
+        }
+        vocabFingerprint = MappedVocabCache.fingerprint(conf,VOCAB_KEYS);
+        long sketchBytes = conf.getLong(VOCAB_SKETCH_BYTES,0);
+        int maxVocabSize = conf.getInt(MAX_VOCAB_SIZE,0);
+        if(sketchBytes > 0 || maxVocabSize > 0)
+            cache = new BoundedVocabCache(minWordFrequency,sketchBytes > 0 ? sketchBytes : BoundedVocabCache.DEFAULT_SKETCH_BYTES,maxVocabSize);
+        else if(fitThreads > 1)
+            cache = new ConcurrentVocabCache(minWordFrequency);
+        //a serial fit keeps the vocab (and its feature order) of earlier versions
+        else
+            cache = new DefaultVocabCache(minWordFrequency);
 
     }
 
@@ -68,8 +126,19 @@ public abstract class TextVectorizer<VECTOR_TYPE> implements Vectorizer<VECTOR_T
         fit(reader,null);
     }
 
+    /**
+     * Fit the vocab. With more than one fit thread (and a thread safe cache)
+     * the records are read on the calling thread in batches, and each batch is split
+     * across a fork join pool: every leaf task tokenizes its records into a partial
+     * vocab, which is then merged into the shared cache. The call back sees each
+     * record as it is read.
+     */
     @Override
     public void fit(RecordReader reader, RecordCallBack callBack) {
+        if(fitThreads > 1 && (cache instanceof ConcurrentVocabCache || cache instanceof BoundedVocabCache)) {
+            fitParallel(reader, callBack, cache);
+            return;
+        }
         while(reader.hasNext()) {
             Collection<Writable> record = reader.next();
             String s = toString(record);
@@ -84,6 +153,109 @@ public abstract class TextVectorizer<VECTOR_TYPE> implements Vectorizer<VECTOR_T
     }
 
 
+    /**
+     * Save the fitted vocab, see {@link MappedVocabCache}, with the fingerprint of the configuration
+     * @param file where to save it
+     */
+    public void saveVocab(File file) throws IOException {
+        MappedVocabCache.save(cache, file, vocabFingerprint);
+    }
+
+    /**
+     * Whether a vocab saved with {@link #saveVocab(File)} was fit with the same
+     * {@link #VOCAB_KEYS} values as this vectorizer, so it can be loaded in place of fitting
+     * @param file the saved vocab
+     * @return true if it exists and matches the configuration
+     */
+    public boolean vocabMatches(File file) throws IOException {
+        return file.exists() && MappedVocabCache.load(file).getFingerprint() == vocabFingerprint;
+    }
+
+    /**
+     * Use a vocab saved with {@link #saveVocab(File)} instead of fitting
+     * @param file the saved vocab
+     * @throws IOException if it was fit with a different configuration, see {@link #vocabMatches(File)}
+     */
+    public void loadVocab(File file) throws IOException {
+        MappedVocabCache loaded = MappedVocabCache.load(file);
+        if(loaded.getFingerprint() != vocabFingerprint)
+            throw new IOException("The vocab " + file + " was fit with a different configuration");
+        cache = loaded;
+    }
+
+    private void fitParallel(RecordReader reader, RecordCallBack callBack, VocabCache target) {
+        ForkJoinPool pool = new ForkJoinPool(fitThreads);
+        Deque<ForkJoinTask<Void>> pending = new ArrayDeque<>();
+        try {
+            List<String> batch = new ArrayList<>(FIT_BATCH_SIZE);
+            while(reader.hasNext()) {
+                Collection<Writable> record = reader.next();
+                batch.add(toString(record));
+                if(callBack != null)
+                    callBack.onRecord(record);
+                if(batch.size() == FIT_BATCH_SIZE) {
+                    pending.add(pool.submit(new FitTask(batch, 0, batch.size(), target)));
+                    batch = new ArrayList<>(FIT_BATCH_SIZE);
+                    //bound the records held in memory
+                    while(pending.size() > fitThreads * 2)
+                        pending.removeFirst().join();
+                }
+            }
+            if(!batch.isEmpty())
+                pending.add(pool.submit(new FitTask(batch, 0, batch.size(), target)));
+            while(!pending.isEmpty())
+                pending.removeFirst().join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private class FitTask extends RecursiveAction {
+        private final List<String> documents;
+        private final int from, to;
+        private final VocabCache target;
+
+        FitTask(List<String> documents, int from, int to, VocabCache target) {
+            this.documents = documents;
+            this.from = from;
+            this.to = to;
+            this.target = target;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > FIT_TASK_SIZE) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new FitTask(documents, from, mid, target), new FitTask(documents, mid, to, target));
+                return;
+            }
+            //no pruning in the partial vocab, that happens once on the merged counts
+            ConcurrentVocabCache partial = new ConcurrentVocabCache(0, 1);
+            for(int i = from; i < to; i++) {
+                partial.incrementNumDocs(1);
+                countTokens(tokenizerFactory.create(documents.get(i)), partial);
+            }
+            partial.addTo(target);
+        }
+    }
+
+    /**
+     * Count the tokens of one document into a vocab: every occurrence
+     * adds to the word frequency, every distinct word to its document frequency.
+     * The parallel fit counts with this, concurrently, so it must only touch the given cache.
+     * @param tokenizer the tokens of the document
+     * @param cache the vocab to count into
+     */
+    protected void countTokens(Tokenizer tokenizer, VocabCache cache) {
+        Set<String> seen = new HashSet<>();
+        while(tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            cache.incrementCount(token);
+            if(seen.add(token))
+                cache.incrementDocCount(token);
+        }
+    }
+
     protected Counter<String> wordFrequenciesForRecord(Collection<Writable> record) {
         String s = toString(record);
         Tokenizer tokenizer = tokenizerFactory.create(s);
@@ -20,46 +20,191 @@
 
 package org.canova.nlp.vectorizer;
 
+import org.canova.api.berkeley.Counter;
 import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
+import org.canova.api.util.Index;
+import org.canova.api.util.MathUtils;
 import org.canova.api.writable.Writable;
+import org.canova.nlp.metadata.CharTermIndex;
+import org.canova.nlp.ngram.NGramVocab;
+import org.canova.nlp.ngram.NGrams;
 import org.canova.nlp.tokenization.tokenizer.Tokenizer;
 import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
 import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
+import org.canova.nlp.tokenization.tokenizerfactory.UimaTokenizerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 
 /**
  * Tf idf vectorizer
+ *
+ * With {@link #NGRAM_MAX} above 1 the grams of 2 up to that many tokens are
+ * features too, numbered after the vocab words. The grams are rolled over
+ * term ids (see {@link NGrams}) and counted by 64 bit key in an {@link NGramVocab},
+ * so no String is built per gram.
+ *
  * @author Adam Gibson
  */
 public abstract class TfidfVectorizer<VECTOR_TYPE> extends TextVectorizer<VECTOR_TYPE> {
 
+    //null when there are only unigram features
+    protected NGramVocab ngrams;
+    protected int maxNGram = 1;
+    protected int nGramSkip = 0;
+
+    @Override
+    public void initialize(Configuration conf) {
+        super.initialize(conf);
+        maxNGram = conf.getInt(NGRAM_MAX,1);
+        nGramSkip = conf.getInt(NGRAM_SKIP,0);
+        ngrams = null;
+        if(maxNGram > 1) {
+            ngrams = new NGramVocab(new CharTermIndex(),minWordFrequency,conf.getInt(NGRAM_HASH_BUCKETS,0));
+            //the grams are counted in document order on the fit thread
+            fitThreads = 1;
+        }
+    }
+
     @Override
     public void doWithTokens(Tokenizer tokenizer) {
+        if(ngrams == null) {
+            countTokens(tokenizer, cache);
+            return;
+        }
+        CharTermIndex terms = ngrams.getTerms();
+        NGrams grams = new NGrams(maxNGram,nGramSkip);
         Set<String> seen = new HashSet<>();
+        ngrams.incrementNumDocs();
         while(tokenizer.hasMoreTokens()) {
             String token = tokenizer.nextToken();
             cache.incrementCount(token);
-            if(!seen.contains(token)) {
+            if(seen.add(token))
                 cache.incrementDocCount(token);
-            }
+            int numGrams = grams.next(terms.add(token));
+            for(int i = 0; i < numGrams; i++)
+                ngrams.increment(grams.keyAt(i));
         }
     }
 
+    /**
+     * @return the number of features: the vocab words, then the n-grams
+     */
+    public int numFeatures() {
+        return cache.vocabWords().size() + (ngrams == null ? 0 : ngrams.numFeatures());
+    }
+
+    /**
+     * Saves the n-gram vocab next to the vocab, in a .ngrams file
+     */
+    @Override
+    public void saveVocab(File file) throws IOException {
+        super.saveVocab(file);
+        if(ngrams != null)
+            ngrams.save(ngramsFile(file));
+    }
+
+    @Override
+    public void loadVocab(File file) throws IOException {
+        super.loadVocab(file);
+        if(ngrams != null)
+            ngrams = NGramVocab.load(ngramsFile(file));
+    }
+
+    private static File ngramsFile(File file) {
+        return new File(file.getPath() + ".ngrams");
+    }
+
     @Override
     public TokenizerFactory createTokenizerFactory(Configuration conf) {
         String clazz = conf.get(TOKENIZER,DefaultTokenizerFactory.class.getName());
         try {
             Class<? extends TokenizerFactory> tokenizerFactoryClazz = (Class<? extends TokenizerFactory>) Class.forName(clazz);
+            //fit threads share the factory, a single engine would tag one document at a time
+            int replicas = conf.getInt(TOKENIZER_REPLICAS,fitThreads);
+            if(replicas > 1 && tokenizerFactoryClazz == UimaTokenizerFactory.class)
+                return new UimaTokenizerFactory(replicas,true);
             return tokenizerFactoryClazz.newInstance();
         } catch (Exception e) {
            throw new RuntimeException(e);
         }
     }
 
+    /**
+     * The tfidf of a document's terms, walking only the document's own terms:
+     * words outside the document have a term frequency of 0, so a tfidf of 0
+     * @param termCounts the term counts of the document
+     * @return a block as wide as the features with the (vocab index, tfidf) pairs of the document
+     */
+    public SparseVectorWritable createSparseVector(Counter<String> termCounts) {
+        return createSparseVector(termCounts,new int[0],0);
+    }
+
+    /**
+     * The tfidf of a document's terms and n-grams
+     * @param termCounts the term counts of the document
+     * @param gramFeatures the n-gram feature of each of the document's grams, reordered in place
+     * @param numGrams the number of grams
+     * @return a block as wide as the features with the document's (feature, tfidf) pairs
+     */
+    public SparseVectorWritable createSparseVector(Counter<String> termCounts, int[] gramFeatures, int numGrams) {
+        Index vocab = cache.vocabWords();
+        SparseVectorWritable ret = new SparseVectorWritable(numFeatures());
+        for(String term : termCounts.keySet()) {
+            int index = vocab.indexOf(term);
+            if(index >= 0)
+                ret.add(index,cache.tfidf(term,termCounts.getCount(term)));
+        }
+        //sorted, each run of a feature is its count in the document
+        Arrays.sort(gramFeatures,0,numGrams);
+        for(int i = 0; i < numGrams;) {
+            int feature = gramFeatures[i];
+            int count = 0;
+            for(; i < numGrams && gramFeatures[i] == feature; i++)
+                count++;
+            double idf = MathUtils.idf(cache.numDocs(),ngrams.docFrequency(feature));
+            ret.add(vocab.size() + feature,MathUtils.tfidf(MathUtils.tf(count),idf));
+        }
+        return ret;
+    }
+
+    /**
+     * Transform a record into its sparse tfidf vector, see {@link #createSparseVector(Counter, int[], int)}
+     * @param record the record to transform
+     * @return the sparse tfidf vector
+     */
+    public SparseVectorWritable transformSparse(Collection<Writable> record) {
+        if(ngrams == null)
+            return createSparseVector(wordFrequenciesForRecord(record));
+        Tokenizer tokenizer = tokenizerFactory.create(toString(record));
+        CharTermIndex terms = ngrams.getTerms();
+        NGrams grams = new NGrams(maxNGram,nGramSkip);
+        Counter<String> termCounts = new Counter<>();
+        int[] gramFeatures = new int[16];
+        int numGrams = 0;
+        while(tokenizer.hasMoreTokens()) {
+            String token = tokenizer.nextToken();
+            termCounts.incrementCount(token,1.0);
+            //a term the fit never saw is in no gram
+            int n = grams.next(terms.indexOf(token));
+            for(int i = 0; i < n; i++) {
+                int feature = ngrams.featureIndex(grams.keyAt(i));
+                if(feature < 0)
+                    continue;
+                if(numGrams == gramFeatures.length)
+                    gramFeatures = Arrays.copyOf(gramFeatures,numGrams * 2);
+                gramFeatures[numGrams++] = feature;
+            }
+        }
+        return createSparseVector(termCounts,gramFeatures,numGrams);
+    }
+
     @Override
     public abstract VECTOR_TYPE createVector(Object[] args);
 
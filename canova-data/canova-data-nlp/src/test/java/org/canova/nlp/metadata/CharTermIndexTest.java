@@ -0,0 +1,81 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CharTermIndexTest {
+
+    @Test
+    public void testAddAndLookUpByRange() {
+        CharTermIndex index = new CharTermIndex();
+        assertEquals(0, index.add("apple"));
+        assertEquals(1, index.add("banana"));
+        assertEquals(0, index.add("apple"));
+        assertEquals(2, index.size());
+
+        char[] buffer = "xxbananaxx".toCharArray();
+        assertEquals(1, index.indexOf(buffer, 2, 6));
+        assertEquals(1, index.add(buffer, 2, 6));
+        //a prefix isn't the term
+        assertEquals(-1, index.indexOf(buffer, 2, 5));
+        assertEquals(-1, index.indexOf("cherry"));
+        assertEquals("banana", index.term(1));
+        //the empty term is a term like any other
+        assertEquals(2, index.add(""));
+        assertEquals("", index.term(2));
+    }
+
+    @Test
+    public void testGrows() {
+        CharTermIndex index = new CharTermIndex();
+        //past the initial char pool, id arrays and hash table
+        for (int i = 0; i < 5000; i++)
+            assertEquals(i, index.add("term" + i));
+        assertEquals(5000, index.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals(i, index.indexOf("term" + i));
+            assertEquals("term" + i, index.term(i));
+        }
+    }
+
+    @Test
+    public void testClear() {
+        CharTermIndex index = new CharTermIndex();
+        index.add("apple");
+        index.add("banana");
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(-1, index.indexOf("apple"));
+        assertEquals(0, index.add("banana"));
+        assertEquals("banana", index.term(0));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testUnknownId() {
+        CharTermIndex index = new CharTermIndex();
+        index.add("apple");
+        index.term(1);
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.metadata;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ConcurrentVocabCacheTest {
+
+    @Test
+    public void testConcurrentCounts() throws Exception {
+        final ConcurrentVocabCache cache = new ConcurrentVocabCache(1, 4);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 10000; i++) {
+                        cache.incrementCount("word" + (i % 100));
+                        cache.incrementDocCount("word" + (i % 100));
+                        cache.incrementNumDocs(1);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures)
+            future.get();
+        pool.shutdown();
+
+        assertEquals(80000, cache.numDocs(), 0.0);
+        assertEquals(100, cache.numWords());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(800, cache.wordFrequency("word" + i), 0.0);
+            assertEquals(800, cache.idf("word" + i), 0.0);
+        }
+    }
+
+    @Test
+    public void testConcurrentMerges() throws Exception {
+        final ConcurrentVocabCache cache = new ConcurrentVocabCache(1, 8);
+        final BoundedVocabCache bounded = new BoundedVocabCache(1, 1 << 16, 0);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    for (int i = 0; i < 100; i++) {
+                        //a different shard count than the target
+                        ConcurrentVocabCache partial = new ConcurrentVocabCache(0, 2);
+                        for (int j = 0; j < 50; j++) {
+                            partial.incrementCount("word" + j, 2);
+                            partial.incrementDocCount("word" + j);
+                        }
+                        partial.incrementNumDocs(1);
+                        partial.addTo(cache);
+                        partial.addTo(bounded);
+                    }
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> future : futures)
+            future.get();
+        pool.shutdown();
+
+        assertEquals(800, cache.numDocs(), 0.0);
+        assertEquals(800, bounded.numDocs(), 0.0);
+        assertEquals(50, cache.numWords());
+        for (int j = 0; j < 50; j++) {
+            assertEquals(1600, cache.wordFrequency("word" + j), 0.0);
+            assertEquals(800, cache.idf("word" + j), 0.0);
+            assertEquals(1600, bounded.wordFrequency("word" + j), 0.0);
+        }
+    }
+
+    @Test
+    public void testVocabOrderAndPruning() {
+        ConcurrentVocabCache cache = new ConcurrentVocabCache(2);
+        cache.incrementCount("pear", 2);
+        cache.incrementCount("fig", 5);
+        cache.incrementCount("apple", 2);
+        cache.incrementCount("kiwi");
+        assertEquals(Arrays.asList("fig", "apple", "pear"), words(cache));
+
+        //the vocab is rebuilt once the counts change
+        cache.incrementCount("kiwi", 9);
+        assertEquals(Arrays.asList("kiwi", "fig", "apple", "pear"), words(cache));
+        cache.setMinWordFrequency(5);
+        assertEquals(Arrays.asList("kiwi", "fig"), words(cache));
+    }
+
+    @Test
+    public void testMergeAndAddTo() {
+        ConcurrentVocabCache a = new ConcurrentVocabCache(1);
+        a.incrementCount("dog", 2);
+        a.incrementDocCount("dog", 1);
+        a.incrementNumDocs(1);
+        ConcurrentVocabCache b = new ConcurrentVocabCache(1, 1);
+        b.incrementCount("dog", 1);
+        b.incrementCount("cat", 3);
+        b.incrementDocCount("dog", 1);
+        b.incrementDocCount("cat", 1);
+        b.incrementNumDocs(2);
+
+        a.merge(b);
+        assertEquals(3, a.wordFrequency("dog"), 0.0);
+        assertEquals(2, a.idf("dog"), 0.0);
+        assertEquals(3, a.wordFrequency("cat"), 0.0);
+        assertEquals(3, a.numDocs(), 0.0);
+        //both at 3, ties are broken by the word
+        assertEquals(Arrays.asList("cat", "dog"), words(a));
+
+        DefaultVocabCache target = new DefaultVocabCache(1);
+        a.addTo(target);
+        assertEquals(3, target.wordFrequency("dog"), 0.0);
+        assertEquals(1, target.idf("cat"), 0.0);
+        assertEquals(3, target.numDocs(), 0.0);
+
+        try {
+            a.merge(a);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    private static List<String> words(VocabCache cache) {
+        List<String> ret = new ArrayList<>();
+        for (int i = 0; i < cache.vocabWords().size(); i++)
+            ret.add(cache.wordAt(i));
+        return ret;
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.movingwindow;
+
+import org.canova.api.berkeley.Pair;
+import org.canova.api.util.MultiDimensionalMap;
+import org.canova.nlp.tokenization.tokenizer.DefaultTokenizer;
+import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LabelSpansTest {
+
+    //what stringWithLabels returned before LabelSpans, spans found with indexOf on the stripped sentence
+    private static Pair<String, MultiDimensionalMap<Integer, Integer, String>> previousStringWithLabels(String sentence) {
+        MultiDimensionalMap<Integer, Integer, String> map = MultiDimensionalMap.newHashBackedMap();
+        List<String> groupLabels = new ArrayList<>();
+        List<List<String>> groups = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        String label = null, endLabel = null;
+        for (String token : sentence.split("\\s+")) {
+            if (token.isEmpty())
+                continue;
+            if (token.matches("<([A-Za-z]+|\\d+)>")) {
+                label = token;
+                if (!current.isEmpty()) {
+                    groupLabels.add("NONE");
+                    groups.add(new ArrayList<>(current));
+                    current.clear();
+                }
+            } else if (token.matches("</([A-Za-z]+|\\d+)>"))
+                endLabel = token;
+            else
+                current.add(token);
+            if (label != null && endLabel != null) {
+                groupLabels.add(label.replaceAll("[<>/]", ""));
+                groups.add(new ArrayList<>(current));
+                current.clear();
+                label = null;
+                endLabel = null;
+            }
+        }
+        if (!current.isEmpty()) {
+            groupLabels.add("none");
+            groups.add(current);
+        }
+        StringBuilder stripped = new StringBuilder();
+        for (int i = 0; i < groups.size(); i++) {
+            StringBuilder joined = new StringBuilder();
+            for (String token : groups.get(i))
+                joined.append(joined.length() > 0 ? " " : "").append(token);
+            if (stripped.length() > 0)
+                stripped.append(' ');
+            stripped.append(joined);
+            int begin = stripped.indexOf(joined.toString());
+            map.put(begin, begin + joined.length(), groupLabels.get(i));
+        }
+        return new Pair<>(stripped.toString(), map);
+    }
+
+    @Test
+    public void testMatchesPreviousOutput() {
+        String[] sentences = {
+                "<PERSON> John Smith </PERSON> went to <LOCATION> Paris </LOCATION> .",
+                "nothing tagged here",
+                "<1> one </1> and <ORG> Acme Corp </ORG>",
+                "<empty> </empty> then words",
+        };
+        for (String sentence : sentences) {
+            Pair<String, MultiDimensionalMap<Integer, Integer, String>> previous = previousStringWithLabels(sentence);
+            Pair<String, MultiDimensionalMap<Integer, Integer, String>> current =
+                    ContextLabelRetriever.stringWithLabels(sentence, new DefaultTokenizerFactory());
+            assertEquals(sentence, previous.getFirst(), current.getFirst());
+            assertEquals(sentence, previous.getSecond().size(), current.getSecond().size());
+            for (MultiDimensionalMap.Entry<Integer, Integer, String> span : previous.getSecond().entrySet()) {
+                //a trailing untagged group used to be "none", it's NONE like any other now
+                String label = span.getValue().equals("none") ? LabelSpans.NONE : span.getValue();
+                assertEquals(sentence, label, current.getSecond().get(span.getFirstKey(), span.getSecondKey()));
+            }
+        }
+    }
+
+    @Test
+    public void testRepeatedPhrases() {
+        String sentence = "<PER> john </PER> met <PER> john </PER> and john met john";
+        Pair<String, MultiDimensionalMap<Integer, Integer, String>> previous = previousStringWithLabels(sentence);
+        Pair<String, MultiDimensionalMap<Integer, Integer, String>> current =
+                ContextLabelRetriever.stringWithLabels(sentence, new DefaultTokenizerFactory());
+        assertEquals("john met john and john met john", current.getFirst());
+        assertEquals(previous.getFirst(), current.getFirst());
+
+        //indexOf found the first "john" for both tagged ones, so one span overwrote the other
+        assertEquals(3, previous.getSecond().size());
+        //the spans are where the groups are
+        MultiDimensionalMap<Integer, Integer, String> spans = current.getSecond();
+        assertEquals(4, spans.size());
+        assertEquals("PER", spans.get(0, 4));
+        assertEquals(LabelSpans.NONE, spans.get(5, 8));
+        assertEquals("PER", spans.get(9, 13));
+        assertEquals(LabelSpans.NONE, spans.get(14, 31));
+    }
+
+    @Test
+    public void testScanMatchesFromTokens() {
+        String[] sentences = {
+                "<PERSON> John Smith </PERSON> went to <LOCATION> Paris </LOCATION> .",
+                "  leading\tand trailing white space \n",
+                "<A> a </A> <B> b </B> <C> c c c </C> tail tail",
+                "<per> lower case </per> <x1> not a tag </x1>",
+                "",
+        };
+        for (String sentence : sentences) {
+            LabelSpans scanned = LabelSpans.scan(sentence);
+            LabelSpans tokens = LabelSpans.fromTokens(new DefaultTokenizer(sentence), LabelSpans.LETTERS_OR_DIGITS);
+            assertEquals(sentence, tokens.getSentence(), scanned.getSentence());
+            assertEquals(sentence, tokens.numTokens(), scanned.numTokens());
+            assertEquals(sentence, tokens.numSpans(), scanned.numSpans());
+            int n = scanned.numTokens(), spans = scanned.numSpans();
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getTokenBegins(), n), Arrays.copyOf(scanned.getTokenBegins(), n));
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getTokenEnds(), n), Arrays.copyOf(scanned.getTokenEnds(), n));
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getSpanBegins(), spans), Arrays.copyOf(scanned.getSpanBegins(), spans));
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getSpanEnds(), spans), Arrays.copyOf(scanned.getSpanEnds(), spans));
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getSpanFirstTokens(), spans), Arrays.copyOf(scanned.getSpanFirstTokens(), spans));
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getSpanEndTokens(), spans), Arrays.copyOf(scanned.getSpanEndTokens(), spans));
+            assertArrayEquals(sentence, Arrays.copyOf(tokens.getLabels(), spans), Arrays.copyOf(scanned.getLabels(), spans));
+        }
+
+        LabelSpans spans = LabelSpans.scan("<A> a </A> <B> b </B> <C> c c c </C> tail tail");
+        assertEquals("a b c c c tail tail", spans.getSentence());
+        assertEquals(4, spans.numSpans());
+        assertArrayEquals(new String[] {"A", "B", "C", LabelSpans.NONE}, Arrays.copyOf(spans.getLabels(), 4));
+        assertArrayEquals(new int[] {1, 3, 9, 19}, Arrays.copyOf(spans.getSpanEnds(), 4));
+        assertArrayEquals(new int[] {1, 2, 5, 7}, Arrays.copyOf(spans.getSpanEndTokens(), 4));
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.movingwindow;
+
+import org.apache.commons.lang3.StringUtils;
+import org.canova.nlp.tokenization.tokenizer.DefaultTokenizer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StreamingWindowsTest {
+
+    private static List<Window> streamed(List<String> tokens, int windowSize) {
+        StreamingWindows windows = new StreamingWindows(new DefaultTokenizer(StringUtils.join(tokens, " ")), windowSize);
+        List<Window> ret = new ArrayList<>();
+        while (windows.hasNext())
+            ret.add(windows.next());
+        assertFalse(windows.hasNext());
+        return ret;
+    }
+
+    //offsets aren't compared: Windows finds them by searching the sentence, StreamingWindows knows them
+    private static void assertSameWindows(List<String> tokens, int windowSize) {
+        List<Window> expected = Windows.windows(tokens, windowSize);
+        List<Window> actual = streamed(tokens, windowSize);
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Window e = expected.get(i), a = actual.get(i);
+            String message = "window " + i + " of size " + windowSize;
+            assertEquals(message, e.getWords(), a.getWords());
+            assertEquals(message, e.getFocusWord(), a.getFocusWord());
+            assertEquals(message, e.getLabel(), a.getLabel());
+            assertEquals(message, e.isBeginLabel(), a.isBeginLabel());
+            assertEquals(message, e.isEndLabel(), a.isEndLabel());
+        }
+    }
+
+    @Test
+    public void testMatchesWindows() {
+        List<String> tokens = Arrays.asList("<PERSON>", "Barack", "Obama", "</PERSON>", "met", "the", "press", "in",
+                "<LOCATION>", "Paris", "</LOCATION>", "today");
+        for (int windowSize = 1; windowSize <= 9; windowSize++)
+            assertSameWindows(tokens, windowSize);
+    }
+
+    @Test
+    public void testStreamShorterThanWindow() {
+        //every window is padded at both the start and the end of the stream
+        for (int windowSize = 1; windowSize <= 7; windowSize++) {
+            assertSameWindows(Arrays.asList("one"), windowSize);
+            assertSameWindows(Arrays.asList("one", "two"), windowSize);
+        }
+        assertEquals(Arrays.asList("<s>", "<s>", "one", "two", "</s>"), streamed(Arrays.asList("one", "two"), 5).get(0).getWords());
+        assertTrue(streamed(new ArrayList<String>(), 5).isEmpty());
+    }
+
+    @Test
+    public void testRepeatedWordsOffsets() {
+        List<String> tokens = Arrays.asList("a", "rose", "is", "a", "rose", "is", "a", "rose");
+        assertSameWindows(tokens, 3);
+        //the offsets are the window's own in the concatenated tokens, not the first occurrence of its words
+        String concatenated = StringUtils.join(tokens, "");
+        List<Window> windows = streamed(tokens, 3);
+        for (int i = 0; i < windows.size(); i++) {
+            List<String> words = new ArrayList<>();
+            for (String word : windows.get(i).getWords())
+                if (!word.equals(StreamingWindows.BEGIN_PADDING) && !word.equals(StreamingWindows.END_PADDING))
+                    words.add(word);
+            int begin = StringUtils.join(tokens.subList(0, Math.max(0, i - 1)), "").length();
+            assertEquals(begin, windows.get(i).getBegin());
+            assertEquals(StringUtils.join(words, ""), concatenated.substring(windows.get(i).getBegin(), windows.get(i).getEnd()));
+        }
+    }
+
+    @Test
+    public void testNextWindowWithoutCopies() {
+        List<String> tokens = Arrays.asList("the", "quick", "brown", "fox", "jumps");
+        List<Window> expected = Windows.windows(tokens, 3);
+        StreamingWindows windows = new StreamingWindows(new DefaultTokenizer(StringUtils.join(tokens, " ")), 3);
+        int n = 0;
+        while (windows.nextWindow()) {
+            assertEquals(n, windows.focusPosition());
+            for (int i = 0; i < windows.size(); i++)
+                assertEquals(expected.get(n).getWord(i), windows.wordAt(i));
+            assertEquals(windows.getIds().indexOf(tokens.get(n)), windows.focusId());
+            n++;
+        }
+        assertEquals(tokens.size(), n);
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.ngram;
+
+import org.canova.nlp.metadata.CharTermIndex;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class NGramVocabTest {
+
+    private static CharTermIndex terms(String... words) {
+        CharTermIndex terms = new CharTermIndex();
+        for (String word : words)
+            terms.add(word);
+        return terms;
+    }
+
+    @Test
+    public void testExactFeatures() {
+        NGramVocab vocab = new NGramVocab(terms("a", "b", "c", "d"), 2, 0);
+        vocab.incrementNumDocs();
+        vocab.increment(NGrams.key(0, 1));
+        vocab.increment(NGrams.key(0, 1));
+        vocab.increment(NGrams.key(1, 2));
+        vocab.increment(NGrams.key(2, 3));
+        vocab.incrementNumDocs();
+        vocab.increment(NGrams.key(1, 2));
+
+        //numbered in the order they were first seen, the one seen once isn't a feature
+        assertEquals(2, vocab.numDocs());
+        assertEquals(2, vocab.numFeatures());
+        assertEquals(0, vocab.featureIndex(NGrams.key(0, 1)));
+        assertEquals(1, vocab.featureIndex(NGrams.key(1, 2)));
+        assertEquals(-1, vocab.featureIndex(NGrams.key(2, 3)));
+        assertEquals(-1, vocab.featureIndex(NGrams.key(3, 0)));
+        assertEquals(1, vocab.docFrequency(0));
+        assertEquals(2, vocab.docFrequency(1));
+    }
+
+    @Test
+    public void testHashedBuckets() {
+        NGramVocab vocab = new NGramVocab(terms("a", "b", "c"), 1, 16);
+        assertEquals(16, vocab.numFeatures());
+        //no bucket has a gram yet
+        assertEquals(-1, vocab.featureIndex(NGrams.key(0, 1)));
+
+        long[] keys = { NGrams.key(0, 1), NGrams.key(1, 2), NGrams.key(0, 1, 2), NGrams.key(0, 1, 2, 0), NGrams.key(1 << 22, 0) };
+        vocab.incrementNumDocs();
+        for (long key : keys)
+            vocab.increment(key);
+        vocab.incrementNumDocs();
+        vocab.increment(keys[0]);
+        vocab.increment(keys[0]);
+
+        assertEquals(16, vocab.numFeatures());
+        for (long key : keys) {
+            int bucket = vocab.featureIndex(key);
+            assertTrue(bucket >= 0 && bucket < 16);
+            assertTrue(vocab.docFrequency(bucket) >= 1);
+        }
+        //the first key's bucket was in both documents
+        assertEquals(2, vocab.docFrequency(vocab.featureIndex(keys[0])));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        File dir = Files.createTempDirectory("canova_ngrams").toFile();
+        try {
+            //enough grams to grow the key table, half of them seen once
+            NGramVocab vocab = new NGramVocab(terms("a", "b", "c"), 2, 0);
+            for (int doc = 0; doc < 3; doc++) {
+                vocab.incrementNumDocs();
+                for (int i = 0; i < 500; i++) {
+                    vocab.increment(NGrams.key(i, i % 7));
+                    vocab.increment(NGrams.key(i, 7 + doc));
+                }
+            }
+            vocab.increment(NGrams.key(1, 2, 3, 4));
+            vocab.increment(NGrams.key(1, 2, 3, 4));
+            File file = new File(dir, "vocab.ngrams");
+            vocab.save(file);
+            assertFalse(new File(dir, "vocab.ngrams.tmp").exists());
+
+            NGramVocab loaded = NGramVocab.load(file);
+            assertEquals(vocab.numDocs(), loaded.numDocs());
+            assertEquals(vocab.getMinFrequency(), loaded.getMinFrequency());
+            assertEquals(0, loaded.getHashBuckets());
+            assertEquals(3, loaded.getTerms().size());
+            assertEquals("c", loaded.getTerms().term(2));
+            assertEquals(vocab.numFeatures(), loaded.numFeatures());
+            assertEquals(501, vocab.numFeatures());
+            for (int i = 0; i < 500; i++) {
+                int feature = vocab.featureIndex(NGrams.key(i, i % 7));
+                assertEquals(i, feature);
+                assertEquals(feature, loaded.featureIndex(NGrams.key(i, i % 7)));
+                assertEquals(3, loaded.docFrequency(feature));
+                for (int doc = 0; doc < 3; doc++)
+                    assertEquals(-1, loaded.featureIndex(NGrams.key(i, 7 + doc)));
+            }
+            assertEquals(vocab.featureIndex(NGrams.key(1, 2, 3, 4)), loaded.featureIndex(NGrams.key(1, 2, 3, 4)));
+            assertTrue(loaded.featureIndex(NGrams.key(1, 2, 3, 4)) >= 0);
+        } finally {
+            for (File f : dir.listFiles())
+                f.delete();
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void testSaveAndLoadHashed() throws Exception {
+        File dir = Files.createTempDirectory("canova_ngrams").toFile();
+        try {
+            NGramVocab vocab = new NGramVocab(terms("a", "b"), 1, 8);
+            vocab.incrementNumDocs();
+            for (int i = 0; i < 20; i++)
+                vocab.increment(NGrams.key(i, i + 1));
+            File file = new File(dir, "vocab.ngrams");
+            vocab.save(file);
+
+            NGramVocab loaded = NGramVocab.load(file);
+            assertEquals(8, loaded.getHashBuckets());
+            assertEquals(8, loaded.numFeatures());
+            for (int i = 0; i < 20; i++)
+                assertEquals(vocab.featureIndex(NGrams.key(i, i + 1)), loaded.featureIndex(NGrams.key(i, i + 1)));
+            for (int bucket = 0; bucket < 8; bucket++)
+                assertEquals(vocab.docFrequency(bucket), loaded.docFrequency(bucket));
+        } finally {
+            for (File f : dir.listFiles())
+                f.delete();
+            dir.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testLoadRejectsOtherFiles() throws Exception {
+        File file = File.createTempFile("canova_ngrams", ".ngrams");
+        try {
+            try (FileOutputStream out = new FileOutputStream(file)) {
+                out.write(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            }
+            NGramVocab.load(file);
+        } finally {
+            file.delete();
+        }
+    }
+
+}
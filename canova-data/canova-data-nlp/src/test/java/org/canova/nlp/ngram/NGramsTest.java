@@ -0,0 +1,98 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.ngram;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NGramsTest {
+
+    private static final int MAX_PACKED_ID = (1 << 21) - 2;
+
+    @Test
+    public void testPackedKeys() {
+        //21 bit fields of id + 1, the last term in the lowest one
+        assertEquals(6L | (4L << 21), NGrams.key(3, 5));
+        assertEquals(4L | (3L << 21) | (2L << 42), NGrams.key(1, 2, 3));
+        assertEquals(1L | (1L << 21), NGrams.key(0, 0));
+        long largest = NGrams.key(MAX_PACKED_ID, MAX_PACKED_ID, MAX_PACKED_ID);
+        assertTrue(largest > 0);
+        assertEquals((1L << 63) - 1, largest);
+        assertFalse(NGrams.key(3, 5) == NGrams.key(5, 3));
+    }
+
+    @Test
+    public void testHashedKeysHaveTheTopBitSet() {
+        //an id past the 21 bits, or more than 3 ids, no longer packs
+        assertTrue(NGrams.key(MAX_PACKED_ID + 1, 0) < 0);
+        assertTrue(NGrams.key(0, MAX_PACKED_ID + 1) < 0);
+        assertTrue(NGrams.key(1, 2, 3, 4) < 0);
+        assertFalse(NGrams.key(MAX_PACKED_ID + 1, 0) == NGrams.key(0, MAX_PACKED_ID + 1));
+        assertFalse(NGrams.key(1, 2, 3, 4) == NGrams.key(4, 3, 2, 1));
+        assertEquals(NGrams.key(1, 2, 3, 4), NGrams.key(1, 2, 3, 4));
+    }
+
+    @Test
+    public void testRollingGrams() {
+        NGrams grams = new NGrams(4, 0);
+        assertEquals(0, grams.next(1));
+        assertEquals(1, grams.next(2));
+        assertEquals(NGrams.key(1, 2), grams.keyAt(0));
+        assertEquals(2, grams.next(3));
+        assertEquals(NGrams.key(2, 3), grams.keyAt(0));
+        assertEquals(NGrams.key(1, 2, 3), grams.keyAt(1));
+        //the 4-gram's key is hashed, the same as the static one
+        assertEquals(3, grams.next(4));
+        assertEquals(NGrams.key(3, 4), grams.keyAt(0));
+        assertEquals(NGrams.key(2, 3, 4), grams.keyAt(1));
+        assertEquals(NGrams.key(1, 2, 3, 4), grams.keyAt(2));
+
+        //a token with no id breaks the grams
+        assertEquals(0, grams.next(-1));
+        assertEquals(0, grams.next(5));
+        assertEquals(1, grams.next(6));
+        assertEquals(NGrams.key(5, 6), grams.keyAt(0));
+
+        //nor do they span documents
+        grams.reset();
+        assertEquals(0, grams.next(7));
+    }
+
+    @Test
+    public void testSkipGrams() {
+        NGrams grams = new NGrams(2, 1);
+        grams.next(1);
+        grams.next(2);
+        assertEquals(2, grams.next(3));
+        assertEquals(NGrams.key(2, 3), grams.keyAt(0));
+        assertEquals(NGrams.key(1, 3), grams.keyAt(1));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testNoSuchKey() {
+        NGrams grams = new NGrams(2, 0);
+        grams.next(1);
+        grams.next(2);
+        grams.keyAt(1);
+    }
+
+}
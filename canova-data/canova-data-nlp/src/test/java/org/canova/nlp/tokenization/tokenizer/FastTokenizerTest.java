@@ -0,0 +1,100 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.tokenization.tokenizer;
+
+import org.canova.nlp.tokenization.tokenizer.preprocessor.EndingPreProcessor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FastTokenizerTest {
+
+    private static final List<String> TEXTS = Arrays.asList(
+            "Hello, world! It's raining... cats & dogs.",
+            "visit http://example.com/page42 and http://example.com/pages today",
+            "café naïve RéSUMÉS 日本語 emoji😀ing",
+            "tabs\tnew\nlines\r\nform\ffeeds",
+            "  leading and trailing  ",
+            "no break em spaces",
+            "",
+            "   ");
+
+    //the CLI's token preprocessing before it moved onto the fast tokenizer: filter, then strip the endings
+    private static final TokenPreProcess NORMALIZE = new TokenPreProcess() {
+        private final EndingPreProcessor endings = new EndingPreProcessor();
+
+        @Override
+        public String preProcess(String token) {
+            if (!token.startsWith("http://"))
+                token = token.replaceAll("[^a-zA-Z ]", "").toLowerCase();
+            return endings.preProcess(token).replaceAll("\\d", "d");
+        }
+    };
+
+    @Test
+    public void testMatchesDefaultTokenizer() {
+        for (String text : TEXTS) {
+            DefaultTokenizer expected = new DefaultTokenizer(text);
+            FastTokenizer tokenizer = new FastTokenizer(text);
+            assertEquals(text, expected.countTokens(), tokenizer.countTokens());
+            assertEquals(text, expected.getTokens(), tokenizer.getTokens());
+        }
+    }
+
+    @Test
+    public void testNormalizeMatchesEndingPreProcessor() {
+        for (String text : TEXTS) {
+            DefaultTokenizer expected = new DefaultTokenizer(text);
+            expected.setTokenPreProcessor(NORMALIZE);
+            assertEquals(text, expected.getTokens(), new FastTokenizer(text, true).getTokens());
+        }
+        assertEquals(Arrays.asList("hello", "world", "it", "rain", "cat", "", "dog"), new FastTokenizer(TEXTS.get(0), true).getTokens());
+        assertEquals(Arrays.asList("visit", "http://example.com/pagedd", "and", "http://example.com/page", "today"), new FastTokenizer(TEXTS.get(1), true).getTokens());
+        //non ASCII letters are dropped, non ASCII spaces don't split
+        assertEquals(Arrays.asList("caf", "nave", "rsum", "", "emoji"), new FastTokenizer(TEXTS.get(2), true).getTokens());
+        assertEquals(Arrays.asList("nobreakem", "space"), new FastTokenizer(TEXTS.get(5), true).getTokens());
+    }
+
+    @Test
+    public void testReuseAndTermBuffer() {
+        FastTokenizer tokenizer = new FastTokenizer("", true);
+        for (String text : TEXTS) {
+            DefaultTokenizer expected = new DefaultTokenizer(text);
+            expected.setTokenPreProcessor(NORMALIZE);
+            tokenizer.reset(text);
+            List<String> terms = new ArrayList<>();
+            while (tokenizer.nextTerm())
+                terms.add(new String(tokenizer.termBuffer(), 0, tokenizer.termLength()));
+            assertEquals(text, expected.getTokens(), terms);
+        }
+
+        //a range of a char array, not copied
+        char[] chars = "xx walking dogs xx".toCharArray();
+        tokenizer.reset(chars, 3, 12);
+        assertEquals(Arrays.asList("walk", "dog"), tokenizer.getTokens());
+        assertFalse(tokenizer.hasMoreTokens());
+    }
+
+}
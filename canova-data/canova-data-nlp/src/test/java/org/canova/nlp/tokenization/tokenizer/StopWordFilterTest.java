@@ -0,0 +1,68 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.tokenization.tokenizer;
+
+import org.canova.nlp.stopwords.StopWords;
+import org.canova.nlp.tokenization.tokenizer.preprocessor.EndingPreProcessor;
+import org.canova.nlp.tokenization.tokenizerfactory.DefaultTokenizerFactory;
+import org.canova.nlp.tokenization.tokenizerfactory.StopWordTokenizerFactory;
+import org.canova.nlp.tokenization.tokenizerfactory.TokenizerFactory;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StopWordFilterTest {
+
+    private static final String TEXT = "This was the house she owns 42 walking";
+    //"this" and "was" would be kept as "thi" and "wa", and "owns" dropped as "own", if they were matched once stemmed
+    private static final List<String> EXPECTED = Arrays.asList("house", "own", "42", "walk");
+
+    @Test
+    public void testStopWordsMatchedBeforeStemming() {
+        TokenizerFactory factory = new StopWordTokenizerFactory(new DefaultTokenizerFactory(), StopWords.getStopWordSet());
+        factory.setTokenPreProcessor(new EndingPreProcessor());
+        assertEquals(EXPECTED, factory.create(TEXT).getTokens());
+    }
+
+    @Test
+    public void testFastTokenizerStopWords() {
+        FastTokenizer tokenizer = new FastTokenizer(TEXT, true);
+        tokenizer.setStopWords(StopWords.getStopWordSet());
+        //normalizing drops the number's digits, leaving an empty term
+        assertEquals(Arrays.asList("house", "own", "", "walk"), tokenizer.getTokens());
+
+        //hasMoreTokens() looks past trailing stop words
+        tokenizer.reset("walking the");
+        assertTrue(tokenizer.hasMoreTokens());
+        assertTrue(tokenizer.hasMoreTokens());
+        assertEquals("walk", tokenizer.nextToken());
+        assertFalse(tokenizer.hasMoreTokens());
+        assertFalse(tokenizer.nextTerm());
+
+        tokenizer.setStopWords(null);
+        tokenizer.reset("walking the");
+        assertEquals(Arrays.asList("walk", "the"), tokenizer.getTokens());
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.tokenization.tokenizerfactory;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class UimaTokenizerFactoryTest {
+
+    private static List<String> documents() {
+        List<String> ret = new ArrayList<>();
+        for (int i = 0; i < 40; i++)
+            ret.add("Document " + i + " has a sentence. And another one, number " + (i * 7) + "!");
+        ret.add("");
+        return ret;
+    }
+
+    @Test
+    public void testPooledMatchesSingleEngine() throws Exception {
+        List<String> documents = documents();
+        UimaTokenizerFactory single = new UimaTokenizerFactory(false);
+        List<List<String>> expected = new ArrayList<>();
+        for (String document : documents)
+            expected.add(document.isEmpty() ? Collections.<String>emptyList() : single.create(document).getTokens());
+        assertEquals(Arrays.asList("Document", "0", "has", "a", "sentence"), expected.get(0).subList(0, 5));
+
+        UimaTokenizerFactory pooled = new UimaTokenizerFactory(4, false);
+        assertEquals(4, pooled.getUimaResource().getNumReplicas());
+        //twice, on the same executor
+        assertEquals(expected, pooled.tokenize(documents));
+        assertEquals(expected, pooled.tokenize(documents));
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            assertEquals(expected, pooled.tokenize(documents, executor));
+            //left running for the caller
+            assertFalse(executor.isShutdown());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.uima;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasPool;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UimaResourceTest {
+
+    private static final AtomicInteger calls = new AtomicInteger();
+
+    public static class FailingAnnotator extends JCasAnnotator_ImplBase {
+        @Override
+        public void process(JCas jCas) throws AnalysisEngineProcessException {
+            calls.incrementAndGet();
+            throw new AnalysisEngineProcessException(new IllegalStateException("always fails"));
+        }
+    }
+
+    @Test
+    public void testBoundedRetries() throws Exception {
+        AnalysisEngine engine = AnalysisEngineFactory.createEngine(FailingAnnotator.class);
+        UimaResource resource = new UimaResource(engine, new CasPool(1, engine));
+        calls.set(0);
+        try {
+            resource.process("some text");
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getCause() instanceof AnalysisEngineProcessException);
+        }
+        assertEquals(UimaResource.MAX_PROCESS_ATTEMPTS, calls.get());
+
+        //empty documents aren't tried again, and every failed cas went back to the pool
+        calls.set(0);
+        try {
+            resource.process("");
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals(1, calls.get());
+        }
+        assertEquals(1, resource.getCasPool().getSize());
+    }
+
+}
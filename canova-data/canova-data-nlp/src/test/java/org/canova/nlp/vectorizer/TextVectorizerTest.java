@@ -0,0 +1,140 @@
+/*
+ *
+ *  *
+ *  *  * Copyright 2015 Skymind,Inc.
+ *  *  *
+ *  *  *    Licensed under the Apache License, Version 2.0 (the "License");
+ *  *  *    you may not use this file except in compliance with the License.
+ *  *  *    You may obtain a copy of the License at
+ *  *  *
+ *  *  *        http://www.apache.org/licenses/LICENSE-2.0
+ *  *  *
+ *  *  *    Unless required by applicable law or agreed to in writing, software
+ *  *  *    distributed under the License is distributed on an "AS IS" BASIS,
+ *  *  *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  *  *    See the License for the specific language governing permissions and
+ *  *  *    limitations under the License.
+ *  *
+ *
+ */
+
+package org.canova.nlp.vectorizer;
+
+import org.canova.api.conf.Configuration;
+import org.canova.api.io.data.SparseVectorWritable;
+import org.canova.api.io.data.Text;
+import org.canova.api.records.reader.RecordReader;
+import org.canova.api.records.reader.impl.CollectionRecordReader;
+import org.canova.api.writable.Writable;
+import org.canova.nlp.metadata.ConcurrentVocabCache;
+import org.canova.nlp.metadata.DefaultVocabCache;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TextVectorizerTest {
+
+    private static class SparseTfidfVectorizer extends TfidfVectorizer<SparseVectorWritable> {
+        @Override
+        public SparseVectorWritable createVector(Object[] args) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SparseVectorWritable fitTransform(RecordReader reader) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SparseVectorWritable fitTransform(RecordReader reader, RecordCallBack callBack) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public SparseVectorWritable transform(Collection<Writable> record) {
+            return transformSparse(record);
+        }
+    }
+
+    //skewed word frequencies, so some words fall below the min word frequency
+    private static List<Collection<Writable>> documents(int n, long seed) {
+        Random random = new Random(seed);
+        List<Collection<Writable>> ret = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            StringBuilder sb = new StringBuilder();
+            int length = 1 + random.nextInt(20);
+            for (int j = 0; j < length; j++) {
+                int word = (int) Math.abs(random.nextGaussian() * 200);
+                sb.append(" word").append(word);
+            }
+            ret.add(Arrays.<Writable>asList(new Text(sb.toString())));
+        }
+        return ret;
+    }
+
+    private static SparseTfidfVectorizer fit(List<Collection<Writable>> documents, int threads) {
+        Configuration conf = new Configuration();
+        conf.setInt(TextVectorizer.MIN_WORD_FREQUENCY, 3);
+        conf.setInt(TextVectorizer.FIT_THREADS, threads);
+        SparseTfidfVectorizer vectorizer = new SparseTfidfVectorizer();
+        vectorizer.initialize(conf);
+        final int[] seen = new int[1];
+        vectorizer.fit(new CollectionRecordReader(documents), new org.canova.api.vector.Vectorizer.RecordCallBack() {
+            @Override
+            public void onRecord(Collection<Writable> record) {
+                seen[0]++;
+            }
+        });
+        assertEquals(documents.size(), seen[0]);
+        return vectorizer;
+    }
+
+    @Test
+    public void testFitsOnOneThreadByDefault() {
+        SparseTfidfVectorizer vectorizer = new SparseTfidfVectorizer();
+        vectorizer.initialize(new Configuration());
+        assertEquals(1, vectorizer.fitThreads);
+        assertTrue(vectorizer.cache instanceof DefaultVocabCache);
+    }
+
+    @Test
+    public void testParallelFitMatchesSerial() {
+        //several fit batches, the last one partial
+        List<Collection<Writable>> documents = documents(3 * TextVectorizer.FIT_BATCH_SIZE + 123, 42);
+        SparseTfidfVectorizer serial = fit(documents, 1);
+        SparseTfidfVectorizer parallel = fit(documents, 4);
+        assertTrue(parallel.cache instanceof ConcurrentVocabCache);
+
+        //the same counts, the serial cache keeps its own word order
+        assertEquals(serial.cache.numDocs(), parallel.cache.numDocs(), 0.0);
+        assertEquals(serial.cache.vocabWords().size(), parallel.cache.vocabWords().size());
+        assertTrue(serial.cache.vocabWords().size() > 100);
+        for (int i = 0; i < serial.cache.vocabWords().size(); i++) {
+            String word = serial.cache.wordAt(i);
+            assertTrue(word, parallel.cache.vocabWords().indexOf(word) >= 0);
+            assertEquals(serial.cache.wordFrequency(word), parallel.cache.wordFrequency(word), 0.0);
+            assertEquals(serial.cache.idf(word), parallel.cache.idf(word), 0.0);
+        }
+    }
+
+    @Test
+    public void testParallelFitOrderIsStable() {
+        List<Collection<Writable>> documents = documents(3 * TextVectorizer.FIT_BATCH_SIZE + 123, 42);
+        SparseTfidfVectorizer two = fit(documents, 2);
+        SparseTfidfVectorizer four = fit(documents, 4);
+
+        assertEquals(two.cache.vocabWords().size(), four.cache.vocabWords().size());
+        for (int i = 0; i < two.cache.vocabWords().size(); i++)
+            //same words in the same order, so the same feature indexes
+            assertEquals(two.cache.wordAt(i), four.cache.wordAt(i));
+        for (Collection<Writable> document : documents.subList(0, 50))
+            assertEquals(two.transform(document), four.transform(document));
+    }
+
+}
@@ -44,7 +44,7 @@ public class SVMLightRecordReader extends LineRecordReader {
         Text t =  (Text) super.next().iterator().next();
         
         
-        String val = new String(t.getBytes());
+        String val = t.toString();
         Collection<Writable> ret = new ArrayList<>();
         StringTokenizer tok;
         int	index,max;
@@ -27,7 +27,9 @@ import org.canova.api.split.InputSplit;
 import org.canova.api.vector.Vectorizer;
 import org.canova.api.writable.Writable;
 import org.canova.nd4j.nlp.vectorizer.TfidfVectorizer;
+import org.canova.nlp.vectorizer.TextVectorizer;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -43,6 +45,8 @@ public class TfidfRecordReader extends FileRecordReader  {
     private Collection<Collection<Writable>> records = new ArrayList<>();
     private Iterator<Collection<Writable>> recordIter;
     private Configuration conf;
+    //true while fit() reads the raw records through this reader
+    private boolean fitting = false;
 
 
     @Override
@@ -55,24 +59,51 @@ public class TfidfRecordReader extends FileRecordReader  {
         super.initialize(conf,split);
         tfidfVectorizer = new TfidfVectorizer();
         tfidfVectorizer.initialize(conf);
-        tfidfVectorizer.fit(this, new Vectorizer.RecordCallBack() {
-            @Override
-            public void onRecord(Collection<Writable> record) {
-                records.add(record);
-            }
-        });
+        String model = conf.get(TextVectorizer.VOCAB_MODEL);
+        if(model != null && tfidfVectorizer.vocabMatches(new File(model))) {
+            //pre-fitted: no fit pass, the records stream straight from the files
+            tfidfVectorizer.loadVocab(new File(model));
+            return;
+        }
+        fitting = true;
+        try {
+            tfidfVectorizer.fit(this, new Vectorizer.RecordCallBack() {
+                @Override
+                public void onRecord(Collection<Writable> record) {
+                    //labeled now, while the current file is the record's
+                    records.add(withLabel(record));
+                }
+            });
+        } finally {
+            fitting = false;
+        }
+        if(model != null)
+            tfidfVectorizer.saveVocab(new File(model));
 
         recordIter = records.iterator();
     }
 
+    /**
+     * @return the fitted (or loaded) vectorizer
+     */
+    public TfidfVectorizer getTfidfVectorizer() {
+        return tfidfVectorizer;
+    }
+
     @Override
     public Collection<Writable> next() {
-        if(recordIter == null)
-            return super.next();
-        Collection<Writable> record = recordIter.next();
-        if(appendLabel)
-            record.add(new IntWritable(getCurrentLabel()));
-        return record;
+        if(recordIter != null)
+            return recordIter.next();
+        Collection<Writable> record = super.next();
+        return fitting ? record : withLabel(record);
+    }
+
+    private Collection<Writable> withLabel(Collection<Writable> record) {
+        if(!appendLabel)
+            return record;
+        Collection<Writable> ret = new ArrayList<>(record);
+        ret.add(new IntWritable(getCurrentLabel()));
+        return ret;
     }
 
     @Override
@@ -22,6 +22,7 @@ package org.canova.nd4j.nlp.vectorizer;
 
 
 import org.canova.api.berkeley.Counter;
+import org.canova.api.io.data.SparseVectorWritable;
 import org.canova.api.records.reader.RecordReader;
 import org.canova.api.writable.Writable;
 import org.nd4j.linalg.api.ndarray.INDArray;
@@ -40,13 +41,13 @@ import java.util.List;
 public class TfidfVectorizer extends org.canova.nlp.vectorizer.TfidfVectorizer<INDArray> {
     @Override
     public INDArray createVector(Object[] args) {
-        INDArray ret = Nd4j.create(cache.vocabWords().size());
-        Counter<String> docFrequencies = (Counter<String>)args[0];
-        for(int i = 0; i < cache.vocabWords().size(); i++) {
-            double freq = docFrequencies.getCount(cache.wordAt(i));
-            double tfidf = cache.tfidf(cache.wordAt(i),freq);
-            ret.putScalar(i,tfidf);
-        }
+        return toArray(createSparseVector((Counter<String>) args[0]));
+    }
+
+    private static INDArray toArray(SparseVectorWritable sparse) {
+        INDArray ret = Nd4j.create(sparse.size());
+        for(int i = 0; i < sparse.numNonZero(); i++)
+            ret.putScalar(sparse.indexAt(i),sparse.valueAt(i));
         return ret;
     }
 
@@ -69,7 +70,7 @@ public class TfidfVectorizer extends org.canova.nlp.vectorizer.TfidfVectorizer<I
         if(records.isEmpty())
             throw new IllegalStateException("No records found!");
 
-        INDArray ret = Nd4j.create(records.size(),cache.vocabWords().size());
+        INDArray ret = Nd4j.create(records.size(),numFeatures());
         int i = 0;
         for(Collection<Writable> record : records) {
             ret.putRow(i++, transform(record));
@@ -82,8 +83,7 @@ public class TfidfVectorizer extends org.canova.nlp.vectorizer.TfidfVectorizer<I
 
     @Override
     public INDArray transform(Collection<Writable> record) {
-        Counter<String> wordFrequencies = wordFrequenciesForRecord(record);
-        return createVector(new Object[]{wordFrequencies});
+        return toArray(transformSparse(record));
 
     }
 }
@@ -28,9 +28,16 @@ import org.canova.nd4j.nlp.vectorizer.TfidfVectorizer;
 import org.junit.Test;
 import org.springframework.core.io.ClassPathResource;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author Adam Gibson
@@ -55,4 +62,48 @@ public class TfidfRecordReaderTest {
         assertEquals(3,count);
     }
 
+    private List<Collection<Writable>> read(Configuration conf) throws Exception {
+        TfidfRecordReader reader = new TfidfRecordReader();
+        reader.initialize(conf, new FileSplit(new ClassPathResource("labeled").getFile()));
+        List<Collection<Writable>> ret = new ArrayList<>();
+        while(reader.hasNext())
+            ret.add(reader.next());
+        return ret;
+    }
+
+    @Test
+    public void testSavedVocab() throws Exception {
+        File model = File.createTempFile("tfidf", ".vocab");
+        model.delete();
+        model.deleteOnExit();
+        Configuration conf = new Configuration();
+        conf.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY, 1);
+        conf.setBoolean(RecordReader.APPEND_LABEL, true);
+        conf.set(TfidfVectorizer.VOCAB_MODEL, model.getPath());
+
+        List<Collection<Writable>> fitted = read(conf);
+        assertTrue(model.exists());
+        //pre-fitted, the records are labeled the same way
+        List<Collection<Writable>> loaded = read(conf);
+        assertEquals(3, fitted.size());
+        assertEquals(fitted, loaded);
+        //one document per label directory
+        Set<Writable> labels = new HashSet<>();
+        for(Collection<Writable> record : loaded) {
+            assertEquals(2, record.size());
+            labels.add(new ArrayList<>(record).get(1));
+        }
+        assertEquals(3, labels.size());
+
+        //a different configuration refits, and replaces the saved vocab
+        Configuration other = new Configuration(conf);
+        other.setInt(TfidfVectorizer.MIN_WORD_FREQUENCY, 2);
+        assertEquals(fitted, read(other));
+        TfidfVectorizer vectorizer = new TfidfVectorizer();
+        vectorizer.initialize(conf);
+        assertFalse(vectorizer.vocabMatches(model));
+        vectorizer.initialize(other);
+        assertTrue(vectorizer.vocabMatches(model));
+    }
+
 }